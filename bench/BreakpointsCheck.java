@@ -0,0 +1,115 @@
+import mars.mips.hardware.*;
+import mars.simulator.*;
+import java.io.*;
+
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Check of the breakpoint and watchpoint bookkeeping of Breakpoints at the edges of
+ * the address space: breakpoints in the user and kernel text segments and outside
+ * both, misaligned ones, and watched ranges that end at or would run past the last
+ * byte of memory.  Any failure is reported and the exit status is 1.  See check.sh
+ * for how to build and run it.
+ * <pre>
+ *   java BreakpointsCheck
+ * </pre>
+ *
+ * @version October 2026
+ */
+
+public class BreakpointsCheck
+{
+	private static final PrintStream console = System.out;
+
+	private static int failures = 0;
+
+	public static void main(String[] args)
+	{
+		int text = Memory.textBaseAddress;
+		int kernelText = Memory.kernelTextBaseAddress;
+		int[] set = {text, text + 4, text + 0x1000, kernelText, kernelText + 0x180,
+				Memory.kernelTextLimitAddress - 4, Memory.dataBaseAddress, text + 2, 0xFFFFFFFC};
+		int[] unset = {text + 8, text - 4, kernelText + 0x17C, kernelText + 0x184, kernelText - 4,
+				Memory.kernelTextLimitAddress, text + 6, kernelText + 0x181, 0, 0xFFFFFFF8};
+		Breakpoints breakpoints = new Breakpoints();
+		for(int i = 0; i < set.length; i++)
+		{
+			breakpoints.add(set[i]);
+			breakpoints.add(set[i]);
+		}
+		for(int i = 0; i < set.length; i++)
+			check(breakpoints.isSet(set[i]), "breakpoint at " + hex(set[i]) + " is set");
+		for(int i = 0; i < unset.length; i++)
+			check(!breakpoints.isSet(unset[i]), "no breakpoint at " + hex(unset[i]));
+
+		Breakpoints kernelOnly = new Breakpoints(new int[] {kernelText + 0x180});
+		check(kernelOnly.isSet(kernelText + 0x180), "kernel text breakpoint alone is set");
+		check(!kernelOnly.isSet(text), "kernel text breakpoint alone sets no user text one");
+
+		Breakpoints watched = new Breakpoints();
+		watched.watch(0xFFFFFFFC, 4);
+		watched.watch(0x7FFFFFFC, 8);
+		watched.written(0xFFFFFFFC, 4);
+		watched.written(0x80000000, 4);
+		check(watched.hasWatchpoints(), "ranges up to the last byte of memory are watched");
+		rejected(0xFFFFFFFC, 5);
+		rejected(0xFFFFFFFF, 2);
+		rejected(0, 0);
+
+		console.println(failures + " failure(s)");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static void rejected(int address, int length)
+	{
+		try
+		{
+			new Breakpoints().watch(address, length);
+			check(false, "watching " + length + " bytes at " + hex(address) + " is rejected");
+		}
+		catch(IllegalArgumentException e)
+		{
+		}
+	}
+
+	private static void check(boolean holds, String description)
+	{
+		if(!holds)
+		{
+			failures++;
+			console.println("failed: " + description);
+		}
+	}
+
+	private static String hex(int value)
+	{
+		return "0x" + Integer.toHexString(value);
+	}
+}
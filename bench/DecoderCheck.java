@@ -0,0 +1,166 @@
+import mars.*;
+import mars.mips.instructions.*;
+import java.io.*;
+import java.util.*;
+
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Exhaustive check of InstructionSet.findByBinaryCode() against the matcher it replaced,
+ * which kept a map from opcode match to instruction for each distinct opcode mask and
+ * tried the masks in turn, those with the most 1 bits first, ties broken by the lower
+ * mask.  That matcher is rebuilt here from the basic instructions of the instruction
+ * set, and both must decode every one of the 2^32 words to the same instruction, or
+ * both to none.  To keep this short the reference only tries the masks and matches
+ * that agree with the primary opcode of the word, which cannot change its result.  Any
+ * difference is reported and the exit status is 1.  See decoder.sh for how to build and
+ * run it.
+ * <pre>
+ *   java DecoderCheck
+ * </pre>
+ *
+ * @version October 2026
+ */
+
+public class DecoderCheck
+{
+	private static final PrintStream console = System.out;
+	private static final int OPCODE_SHIFT = 26;
+	private static final int OPCODE_MASK = 0xFC000000;
+	// Differences reported individually before only counting them.
+	private static final int REPORTED = 20;
+
+	public static void main(String[] args)
+	{
+		Globals.initialize(false);
+		InstructionSet instructionSet = Globals.instructionSet;
+		ArrayList order = referenceOrder(instructionSet.getInstructionList());
+		long differences = 0;
+		long words = 0;
+		for(int opcode = 0; opcode < 64; opcode++)
+		{
+			// The reference's masks and matches for this opcode, in the order it tries them.
+			ArrayList candidates = new ArrayList();
+			for(int i = 0; i < order.size(); i++)
+			{
+				Object[] triple = (Object[]) order.get(i);
+				int mask = ((Integer) triple[0]).intValue();
+				int match = ((Integer) triple[1]).intValue();
+				if((((opcode << OPCODE_SHIFT) ^ match) & mask & OPCODE_MASK) == 0)
+					candidates.add(triple);
+			}
+			int[] masks = new int[candidates.size()];
+			int[] matches = new int[candidates.size()];
+			BasicInstruction[] instructions = new BasicInstruction[candidates.size()];
+			for(int i = 0; i < candidates.size(); i++)
+			{
+				Object[] triple = (Object[]) candidates.get(i);
+				masks[i] = ((Integer) triple[0]).intValue();
+				matches[i] = ((Integer) triple[1]).intValue();
+				instructions[i] = (BasicInstruction) triple[2];
+			}
+			for(int low = 0; low < 1 << OPCODE_SHIFT; low++)
+			{
+				int word = (opcode << OPCODE_SHIFT) | low;
+				BasicInstruction expected = null;
+				for(int i = 0; i < masks.length; i++)
+				{
+					if((word & masks[i]) == matches[i])
+					{
+						expected = instructions[i];
+						break;
+					}
+				}
+				BasicInstruction found = instructionSet.findByBinaryCode(word);
+				if(found != expected)
+				{
+					if(differences < REPORTED)
+						console.println("0x" + Integer.toHexString(word) + ": " + name(found)
+										+ " instead of " + name(expected));
+					differences++;
+				}
+			}
+			words += 1L << OPCODE_SHIFT;
+		}
+		console.println(words + " words, " + differences + " difference(s)");
+		System.exit(differences == 0 ? 0 : 1);
+	}
+
+	// The {mask, match, instruction} triples of the replaced matcher in the order it tried
+	// them.  As there, of several instructions with the same mask and match the last wins.
+	private static ArrayList referenceOrder(ArrayList instructionList)
+	{
+		HashMap maskMap = new HashMap();
+		ArrayList masks = new ArrayList();
+		for(int i = 0; i < instructionList.size(); i++)
+		{
+			if(!(instructionList.get(i) instanceof BasicInstruction))
+				continue;
+			BasicInstruction basic = (BasicInstruction) instructionList.get(i);
+			Integer mask = Integer.valueOf(basic.getOpcodeMask());
+			HashMap matchMap = (HashMap) maskMap.get(mask);
+			if(matchMap == null)
+			{
+				matchMap = new HashMap();
+				maskMap.put(mask, matchMap);
+				masks.add(mask);
+			}
+			matchMap.put(Integer.valueOf(basic.getOpcodeMatch()), basic);
+		}
+		Collections.sort(masks, new Comparator()
+		{
+			public int compare(Object a, Object b)
+			{
+				int x = ((Integer) a).intValue();
+				int y = ((Integer) b).intValue();
+				int d = Integer.bitCount(y) - Integer.bitCount(x);
+				if(d == 0)
+					d = x - y;
+				return d;
+			}
+		});
+		ArrayList order = new ArrayList();
+		for(int i = 0; i < masks.size(); i++)
+		{
+			Iterator it = ((HashMap) maskMap.get(masks.get(i))).entrySet().iterator();
+			while(it.hasNext())
+			{
+				Map.Entry entry = (Map.Entry) it.next();
+				order.add(new Object[] {masks.get(i), entry.getKey(), entry.getValue()});
+			}
+		}
+		return order;
+	}
+
+	private static String name(BasicInstruction instruction)
+	{
+		return (instruction == null) ? "nothing" : instruction.getName() + " (" + instruction.getExampleFormat() + ")";
+	}
+}
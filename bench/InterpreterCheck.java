@@ -0,0 +1,198 @@
+import mars.*;
+import mars.mips.hardware.*;
+import mars.util.*;
+import java.io.*;
+import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Differential check of the simulator's fast paths against the SimulationCode of each
+ * instruction, which is the reference.  Each MIPS program named on the command line
+ * is assembled and run headlessly with the turbo loop alone, with the compact
+ * interpreter and with block translation, each time on a fresh Machine and with
+ * several step limits, so that runs also stop partway.  The console output, error
+ * message, registers, coprocessor 1 registers and the words of the start of the data
+ * segment, the heap and the stack must all match the reference run.  Any difference
+ * is reported and the exit status is 1.  See check.sh for how to build and run it.
+ * <pre>
+ *   java InterpreterCheck [-input file] file.asm ...
+ * </pre>
+ *
+ * @version October 2026
+ */
+
+public class InterpreterCheck
+{
+	private static final PrintStream console = System.out;
+	private static final String[] MODES = {"reference", "compact", "jit"};
+	private static final int[] STEP_LIMITS = {-1, 1, 7, 100, 1001, 12345, 100000};
+	// Words compared at the start of the data segment, the heap and below the stack pointer.
+	private static final int WORDS = 4096;
+
+	private static byte[] input = new byte[0];
+
+	public static void main(String[] args) throws Exception
+	{
+		ArrayList files = new ArrayList();
+		for(int i = 0; i < args.length; i++)
+		{
+			if(args[i].equals("-input") && i + 1 < args.length)
+				input = readFile(args[++i]);
+			else
+				files.add(args[i]);
+		}
+		if(files.isEmpty())
+		{
+			console.println("usage: java InterpreterCheck [-input file] file.asm ...");
+			System.exit(1);
+		}
+		Globals.initialize(false);
+		Globals.turboExecution = true;
+		int differences = 0;
+		for(int i = 0; i < files.size(); i++)
+		{
+			String file = (String) files.get(i);
+			for(int s = 0; s < STEP_LIMITS.length; s++)
+			{
+				ArrayList reference = run(file, STEP_LIMITS[s], 0);
+				for(int mode = 1; mode < MODES.length; mode++)
+				{
+					ArrayList state = run(file, STEP_LIMITS[s], mode);
+					String difference = firstDifference(reference, state);
+					if(difference != null)
+					{
+						differences++;
+						console.println(new File(file).getName() + " steps " + STEP_LIMITS[s] + " "
+										+ MODES[mode] + ": " + difference);
+					}
+				}
+			}
+			console.println(new File(file).getName() + " checked");
+		}
+		console.println(differences + " difference(s)");
+		System.exit(differences == 0 ? 0 : 1);
+	}
+
+	// Run the program on a fresh machine, returning its final state as lines of text.
+	private static ArrayList run(final String file, final int steps, int mode) throws Exception
+	{
+		Globals.compactInterpretation = (mode == 1);
+		Globals.blockTranslation = (mode == 2);
+		final ArrayList state = new ArrayList();
+		final Exception[] failure = new Exception[1];
+		Thread thread = new MachineThread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					simulate(file, steps, state);
+				}
+				catch(Exception e)
+				{
+					failure[0] = e;
+				}
+			}
+		}, "check", new Machine());
+		thread.start();
+		thread.join();
+		if(failure[0] != null)
+			throw failure[0];
+		return state;
+	}
+
+	private static void simulate(String file, int steps, ArrayList state) throws Exception
+	{
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		Machine.current().getSystemIO().setConsole(new ByteArrayInputStream(input),
+				new PrintStream(stdout), new PrintStream(stdout));
+		MIPSprogram program = new MIPSprogram();
+		ArrayList names = new ArrayList();
+		names.add(file);
+		program.assemble(program.prepareFilesForAssembly(names, file, null), true, false);
+		RegisterFile.initializeProgramCounter(true);
+		try
+		{
+			state.add("completed " + program.simulate(steps));
+		}
+		catch(ProcessingException e)
+		{
+			state.add("error " + e.errors().generateErrorAndWarningReport().trim());
+		}
+		state.add("output " + stdout.toString());
+		state.add("exit code " + Machine.current().getExitCode());
+		for(int i = 0; i < 35; i++)
+			state.add("register " + i + " " + RegisterFile.getValue(i));
+		for(int i = 0; i < 32; i++)
+			state.add("$f" + i + " " + Coprocessor1.getValue(i));
+		state.add("cc " + Coprocessor1.getConditionFlags());
+		Memory memory = Memory.getInstance();
+		for(int i = 0; i < WORDS; i++)
+		{
+			addWord(state, memory, Memory.dataBaseAddress + 4 * i);
+			addWord(state, memory, Memory.heapBaseAddress + 4 * i);
+			addWord(state, memory, Memory.stackPointer - 4 * i);
+		}
+	}
+
+	private static void addWord(ArrayList state, Memory memory, int address) throws AddressErrorException
+	{
+		state.add("word " + Binary.intToHexString(address) + " " + memory.getRawWord(address));
+	}
+
+	private static String firstDifference(ArrayList expected, ArrayList actual)
+	{
+		for(int i = 0; i < Math.min(expected.size(), actual.size()); i++)
+		{
+			if(!expected.get(i).equals(actual.get(i)))
+				return "expected \"" + expected.get(i) + "\" but was \"" + actual.get(i) + "\"";
+		}
+		if(expected.size() != actual.size())
+			return "expected " + expected.size() + " lines of state but got " + actual.size();
+		return null;
+	}
+
+	private static byte[] readFile(String name) throws IOException
+	{
+		InputStream in = new FileInputStream(name);
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for(int n = in.read(buffer); n > 0; n = in.read(buffer))
+				bytes.write(buffer, 0, n);
+			return bytes.toByteArray();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,144 @@
+import mars.*;
+import mars.mips.hardware.*;
+import mars.simulator.*;
+import java.io.*;
+import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Command-line throughput benchmark for the simulator.  Each MIPS program named
+ * on the command line is assembled and run headlessly several times with the
+ * machine state locked per instruction (the old behavior) and then with the
+ * simulator holding it exclusively for batches of instructions, and the
+ * simulated instructions per second of each mode are reported.  Program output
+ * is discarded.  See throughput.sh for how to build and run it.
+ * <pre>
+ *   java SimulatorThroughput [-runs n] [-turbo [-jit | -compact]] file.asm ...
+ * </pre>
+ *
+ * @version October 2026
+ */
+
+public class SimulatorThroughput
+{
+	private static final PrintStream console = System.out;
+
+	public static void main(String[] args) throws Exception
+	{
+		int runs = 5;
+		ArrayList files = new ArrayList();
+		for(int i = 0; i < args.length; i++)
+		{
+			if(args[i].equals("-runs") && i + 1 < args.length)
+				runs = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-turbo"))
+				Globals.turboExecution = true;
+			else if(args[i].equals("-jit"))
+				Globals.blockTranslation = true;
+			else if(args[i].equals("-compact"))
+				Globals.compactInterpretation = true;
+			else
+				files.add(args[i]);
+		}
+		if(files.isEmpty())
+		{
+			console.println("usage: java SimulatorThroughput [-runs n] [-turbo [-jit | -compact]] file.asm ...");
+			System.exit(1);
+		}
+		Globals.initialize(false);
+		console.println(String.format("%-28s %12s %16s %16s %8s", "program", "instructions",
+									  "locked instr/s", "exclusive instr/s", "speedup"));
+		for(int i = 0; i < files.size(); i++)
+		{
+			String file = (String) files.get(i);
+			long count = countInstructions(file);
+			double locked = instructionsPerSecond(file, count, runs, false);
+			double exclusive = instructionsPerSecond(file, count, runs, true);
+			console.println(String.format("%-28s %12d %16.0f %16.0f %7.2fx", new File(file).getName(),
+										  count, locked, exclusive, exclusive / locked));
+		}
+		System.exit(0);
+	}
+
+	// Best of the given number of timed runs, after one untimed warm-up run.
+	private static double instructionsPerSecond(String file, long count, int runs, boolean exclusive)
+	throws Exception
+	{
+		Globals.exclusiveExecution = exclusive;
+		long best = Long.MAX_VALUE;
+		for(int run = 0; run <= runs; run++)
+		{
+			MIPSprogram program = assemble(file);
+			long start = System.nanoTime();
+			simulate(program);
+			long elapsed = System.nanoTime() - start;
+			if(run > 0)
+				best = Math.min(best, elapsed);
+		}
+		return count * 1e9 / best;
+	}
+
+	// The simulator counts the instructions it executes, at no measurable cost, but
+	// the count is taken by a run of its own so that the timed runs do nothing else.
+	private static long countInstructions(String file) throws Exception
+	{
+		MIPSprogram program = assemble(file);
+		long before = ExecutionCounts.getInstance().getTotal();
+		simulate(program);
+		return ExecutionCounts.getInstance().getTotal() - before;
+	}
+
+	private static MIPSprogram assemble(String file) throws ProcessingException
+	{
+		MIPSprogram program = new MIPSprogram();
+		ArrayList names = new ArrayList();
+		names.add(file);
+		program.assemble(program.prepareFilesForAssembly(names, file, null), true, false);
+		RegisterFile.initializeProgramCounter(true);
+		return program;
+	}
+
+	private static void simulate(MIPSprogram program) throws ProcessingException
+	{
+		System.setOut(new PrintStream(new OutputStream()
+		{
+			public void write(int b) { }
+			public void write(byte[] b, int off, int len) { }
+		}));
+		try
+		{
+			program.simulate(-1);
+		}
+		finally
+		{
+			System.setOut(console);
+		}
+	}
+}
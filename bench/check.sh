@@ -0,0 +1,11 @@
+#! /bin/bash
+# Builds MARS and the checks into a scratch directory, checks the breakpoint and
+# watchpoint bookkeeping, then compares the compact interpreter and block translation
+# against the reference simulation on the given MIPS programs, e.g.
+#    bench/check.sh bench/programs/*.asm
+# Run from the MARS root directory (the one containing java_files.txt).
+BUILD=${TMPDIR:-/tmp}/mars-check-classes
+mkdir -p $BUILD
+javac --release 10 -encoding ISO-8859-1 -nowarn -d $BUILD @java_files.txt bench/InterpreterCheck.java bench/BreakpointsCheck.java || exit 1
+java -cp $BUILD:. BreakpointsCheck || exit 1
+java -cp $BUILD:. InterpreterCheck "$@"
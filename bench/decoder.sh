@@ -0,0 +1,9 @@
+#! /bin/bash
+# Builds MARS and the decoder check into a scratch directory, then checks that
+# InstructionSet.findByBinaryCode() decodes every 32-bit word as the matcher it
+# replaced did.  Takes up to a minute or so.
+# Run from the MARS root directory (the one containing java_files.txt).
+BUILD=${TMPDIR:-/tmp}/mars-check-classes
+mkdir -p $BUILD
+javac --release 10 -encoding ISO-8859-1 -nowarn -d $BUILD @java_files.txt bench/DecoderCheck.java || exit 1
+java -cp $BUILD:. DecoderCheck
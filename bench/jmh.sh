@@ -0,0 +1,20 @@
+#! /bin/bash
+# Builds MARS and the JMH benchmarks in bench/jmh into a scratch directory, then
+# runs them with the GC profiler, which adds the allocation rate to the results.
+# Arguments are passed on to JMH, e.g.
+#    bench/jmh.sh -p program=alu.asm,fp.asm SimulatorBenchmark.simulate
+# JMH is not bundled with MARS.  Set JMH_CLASSPATH to the jmh-core and
+# jmh-generator-annprocess jars and their dependencies (jopt-simple and
+# commons-math3), for instance from a local Maven repository.
+# Run from the MARS root directory (the one containing java_files.txt).
+if [ -z "$JMH_CLASSPATH" ]; then
+	echo "JMH_CLASSPATH must list the JMH jars, see $0" >&2
+	exit 1
+fi
+BUILD=${TMPDIR:-/tmp}/mars-jmh-classes
+rm -rf $BUILD
+mkdir -p $BUILD
+javac --release 10 -encoding ISO-8859-1 -nowarn -d $BUILD @java_files.txt || exit 1
+javac --release 10 -encoding ISO-8859-1 -nowarn -cp $BUILD:$JMH_CLASSPATH -d $BUILD \
+	bench/jmh/mars/bench/*.java || exit 1
+java -cp $BUILD:$JMH_CLASSPATH:. org.openjdk.jmh.Main -prof gc "$@"
@@ -0,0 +1,179 @@
+package mars.bench;
+import mars.*;
+import mars.mips.hardware.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * JMH benchmarks for the simulator core.  Each program of the corpus in
+ * bench/programs is assembled and simulated headlessly, the way the command
+ * line runs it, with its console output discarded.
+ * <ul>
+ * <li><tt>simulate</tt> measures simulation alone (the program is assembled
+ * before each invocation, outside the measurement).  Besides runs per second,
+ * it reports the simulated instructions per second as the secondary
+ * <tt>instructions</tt> result.</li>
+ * <li><tt>assemble</tt> measures assembly alone.</li>
+ * </ul>
+ * Run with the GC profiler (bench/jmh.sh does) to also get the allocation rate,
+ * per second and per run.  The corpus directory can be changed with the
+ * <tt>mars.bench.programs</tt> system property, and other programs benchmarked
+ * with JMH's <tt>-p program=...</tt> option.
+ *
+ * @version October 2026
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimulatorBenchmark
+{
+	/** Corpus program: tight ALU loop, memory-bound sweeps, syscall-heavy output,
+	    recursive calls and floating point kernel respectively. */
+	@Param({"alu.asm", "memory.asm", "syscalls.asm", "recursion.asm", "fp.asm"})
+	public String program;
+
+	private String file;
+	private long instructionCount;
+
+	private static final PrintStream console = System.out;
+	private static final PrintStream discard = new PrintStream(new OutputStream()
+	{
+		public void write(int b) { }
+		public void write(byte[] b, int off, int len) { }
+	});
+
+	/**
+	 * Counts the instructions each simulate() invocation executes, so that JMH
+	 * reports them as a rate alongside the benchmark's own.
+	 */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Executed
+	{
+		public long instructions;
+	}
+
+	/**
+	 * A freshly assembled program, ready to simulate.  Simulation changes memory
+	 * and registers, so every invocation of simulate() needs its own.
+	 */
+	@State(Scope.Thread)
+	public static class Assembled
+	{
+		MIPSprogram program;
+
+		@Setup(Level.Invocation)
+		public void assemble(SimulatorBenchmark benchmark) throws ProcessingException
+		{
+			program = benchmark.assemble();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws ProcessingException
+	{
+		Globals.initialize(false);
+		file = new File(System.getProperty("mars.bench.programs", "bench/programs"), program).getPath();
+		instructionCount = countInstructions();
+	}
+
+	@Benchmark
+	public MIPSprogram assemble() throws ProcessingException
+	{
+		MIPSprogram assembled = new MIPSprogram();
+		ArrayList names = new ArrayList();
+		names.add(file);
+		assembled.assemble(assembled.prepareFilesForAssembly(names, file, null), true, false);
+		RegisterFile.initializeProgramCounter(true);
+		return assembled;
+	}
+
+	@Benchmark
+	public void simulate(Assembled assembled, Executed executed) throws ProcessingException
+	{
+		run(assembled.program);
+		executed.instructions += instructionCount;
+	}
+
+	private static void run(MIPSprogram program) throws ProcessingException
+	{
+		System.setOut(discard);
+		try
+		{
+			program.simulate(-1);
+		}
+		finally
+		{
+			System.setOut(console);
+		}
+	}
+
+	// The instruction count is taken once, with an observer on the text segment as the
+	// "ic" command-line option does, since observing the text segment slows simulation.
+	private long countInstructions() throws ProcessingException
+	{
+		final long[] count = new long[1];
+		Observer counter = new Observer()
+		{
+			public void update(Observable o, Object obj)
+			{
+				if(obj instanceof MemoryAccessNotice
+						&& ((AccessNotice) obj).getAccessType() == AccessNotice.READ
+						&& ((AccessNotice) obj).accessIsFromMIPS())
+					count[0]++;
+			}
+		};
+		MIPSprogram assembled = assemble();
+		try
+		{
+			Globals.memory.addObserver(counter, Memory.textBaseAddress, Memory.textLimitAddress);
+		}
+		catch(AddressErrorException e)
+		{
+			throw new IllegalStateException(e.toString());
+		}
+		try
+		{
+			run(assembled);
+		}
+		finally
+		{
+			Globals.memory.deleteObserver(counter);
+		}
+		return count[0];
+	}
+}
@@ -0,0 +1,26 @@
+# Tight integer ALU loop: a linear congruential generator mixed with shifts,
+# logic and a multiply, with no memory traffic.  Prints a checksum.
+	.text
+	.globl main
+main:
+	li	$s0, 400000		# iterations
+	li	$t0, 12345		# generator state
+	li	$t1, 0			# checksum
+loop:	sll	$t2, $t0, 13
+	xor	$t0, $t0, $t2
+	srl	$t2, $t0, 17
+	xor	$t0, $t0, $t2
+	sll	$t2, $t0, 5
+	xor	$t0, $t0, $t2
+	andi	$t3, $t0, 0xff
+	mult	$t3, $s0
+	mflo	$t4
+	addu	$t1, $t1, $t4
+	or	$t1, $t1, $t3
+	addiu	$s0, $s0, -1
+	bnez	$s0, loop
+	move	$a0, $t1
+	li	$v0, 1
+	syscall
+	li	$v0, 10
+	syscall
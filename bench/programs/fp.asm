@@ -0,0 +1,73 @@
+# Floating point kernel: double precision dot product and Newton square roots
+# over an array, plus a single precision accumulation.  Prints the results.
+	.data
+vec:	.space	8192		# 1024 doubles
+one:	.double	1.0
+half:	.double	0.5
+fone:	.float	1.0
+	.text
+	.globl main
+main:
+	la	$s0, vec
+	li	$s1, 1024
+	l.d	$f20, one
+	l.d	$f22, half
+	# vec[i] = i + 1.0
+	li	$t0, 0
+	move	$t1, $s0
+init:	mtc1	$t0, $f0
+	cvt.d.w	$f0, $f0
+	add.d	$f0, $f0, $f20
+	s.d	$f0, 0($t1)
+	addiu	$t1, $t1, 8
+	addiu	$t0, $t0, 1
+	bne	$t0, $s1, init
+	li	$s2, 20			# passes
+	mtc1	$zero, $f24
+	cvt.d.w	$f24, $f24		# dot product accumulator
+	mtc1	$zero, $f26
+	cvt.d.w	$f26, $f26		# square root accumulator
+pass:	li	$t0, 0
+	move	$t1, $s0
+elem:	l.d	$f0, 0($t1)
+	mul.d	$f2, $f0, $f0
+	add.d	$f24, $f24, $f2
+	# four Newton steps for sqrt(x), starting from x
+	mov.d	$f4, $f0
+	li	$t2, 4
+newton:	div.d	$f6, $f0, $f4
+	add.d	$f4, $f4, $f6
+	mul.d	$f4, $f4, $f22
+	addiu	$t2, $t2, -1
+	bnez	$t2, newton
+	c.lt.d	$f4, $f20
+	bc1t	skip
+	add.d	$f26, $f26, $f4
+skip:	addiu	$t1, $t1, 8
+	addiu	$t0, $t0, 1
+	bne	$t0, $s1, elem
+	addiu	$s2, $s2, -1
+	bnez	$s2, pass
+	mov.d	$f12, $f24
+	li	$v0, 3
+	syscall
+	li	$a0, ' '
+	li	$v0, 11
+	syscall
+	mov.d	$f12, $f26
+	li	$v0, 3
+	syscall
+	# single precision: sum of 1.0 a thousand times
+	l.s	$f8, fone
+	mtc1	$zero, $f12
+	li	$t0, 1000
+fsum:	add.s	$f12, $f12, $f8
+	addiu	$t0, $t0, -1
+	bnez	$t0, fsum
+	li	$a0, ' '
+	li	$v0, 11
+	syscall
+	li	$v0, 2
+	syscall
+	li	$v0, 10
+	syscall
@@ -0,0 +1,62 @@
+# Memory-bound array sweeps: fill a 64 KB word array on the heap-sized data
+# segment, sum it with word loads, copy it byte by byte, then insertion sort a
+# smaller array in place.  Prints a checksum.
+	.data
+src:	.space	65536
+dst:	.space	65536
+	.text
+	.globl main
+main:
+	la	$s0, src
+	la	$s1, dst
+	li	$s2, 16384		# words
+	# fill: src[i] = i * 2654435761
+	li	$t0, 0
+	move	$t1, $s0
+	li	$t5, 0x9e3779b1
+fill:	mul	$t2, $t0, $t5
+	sw	$t2, 0($t1)
+	addiu	$t1, $t1, 4
+	addiu	$t0, $t0, 1
+	bne	$t0, $s2, fill
+	# byte copy src -> dst
+	li	$t0, 0
+	sll	$t3, $s2, 2
+copy:	addu	$t1, $s0, $t0
+	lbu	$t2, 0($t1)
+	addu	$t1, $s1, $t0
+	sb	$t2, 0($t1)
+	addiu	$t0, $t0, 1
+	bne	$t0, $t3, copy
+	# halfword sum of dst
+	li	$t0, 0
+	li	$t4, 0
+hsum:	addu	$t1, $s1, $t0
+	lhu	$t2, 0($t1)
+	addu	$t4, $t4, $t2
+	addiu	$t0, $t0, 2
+	bne	$t0, $t3, hsum
+	# insertion sort of the first 512 words of dst
+	li	$t0, 1
+	li	$t9, 512
+isort:	sll	$t1, $t0, 2
+	addu	$t1, $s1, $t1
+	lw	$t2, 0($t1)		# key
+inner:	beq	$t1, $s1, place
+	lw	$t3, -4($t1)
+	ble	$t3, $t2, place
+	sw	$t3, 0($t1)
+	addiu	$t1, $t1, -4
+	j	inner
+place:	sw	$t2, 0($t1)
+	addiu	$t0, $t0, 1
+	bne	$t0, $t9, isort
+	# checksum: halfword sum plus the smallest and largest sorted words
+	lw	$t2, 0($s1)
+	addu	$t4, $t4, $t2
+	lw	$t2, 2044($s1)
+	addu	$a0, $t4, $t2
+	li	$v0, 1
+	syscall
+	li	$v0, 10
+	syscall
@@ -0,0 +1,34 @@
+# Deep recursive calls with stack frames: naive Fibonacci.  Prints fib(22).
+	.text
+	.globl main
+main:
+	li	$a0, 22
+	jal	fib
+	move	$a0, $v0
+	li	$v0, 1
+	syscall
+	li	$v0, 10
+	syscall
+
+# int fib(int n)
+fib:	slti	$t0, $a0, 2
+	beqz	$t0, recurse
+	move	$v0, $a0
+	jr	$ra
+recurse:
+	addiu	$sp, $sp, -12
+	sw	$ra, 8($sp)
+	sw	$s0, 4($sp)
+	sw	$a0, 0($sp)
+	addiu	$a0, $a0, -1
+	jal	fib
+	move	$s0, $v0
+	lw	$a0, 0($sp)
+	addiu	$a0, $a0, -2
+	jal	fib
+	addu	$v0, $v0, $s0
+	lw	$a0, 0($sp)
+	lw	$s0, 4($sp)
+	lw	$ra, 8($sp)
+	addiu	$sp, $sp, 12
+	jr	$ra
@@ -0,0 +1,29 @@
+# Syscall-heavy console output: prints numbers, characters and strings in a
+# loop, as a typical student program's output routines do.
+	.data
+label:	.asciiz	"value "
+sep:	.asciiz	" = "
+	.text
+	.globl main
+main:
+	li	$s0, 0
+	li	$s1, 4000
+loop:	la	$a0, label
+	li	$v0, 4
+	syscall
+	move	$a0, $s0
+	li	$v0, 1
+	syscall
+	la	$a0, sep
+	li	$v0, 4
+	syscall
+	mul	$a0, $s0, $s0
+	li	$v0, 34
+	syscall
+	li	$a0, '\n'
+	li	$v0, 11
+	syscall
+	addiu	$s0, $s0, 1
+	bne	$s0, $s1, loop
+	li	$v0, 10
+	syscall
@@ -0,0 +1,9 @@
+#! /bin/bash
+# Builds MARS and the throughput benchmark into a scratch directory, then runs
+# the benchmark on the given MIPS programs, e.g.
+#    bench/throughput.sh -runs 5 bench/programs/*.asm
+# Run from the MARS root directory (the one containing java_files.txt).
+BUILD=${TMPDIR:-/tmp}/mars-bench-classes
+mkdir -p $BUILD
+javac --release 10 -encoding ISO-8859-1 -nowarn -d $BUILD @java_files.txt bench/SimulatorThroughput.java || exit 1
+java -cp $BUILD:. SimulatorThroughput "$@"
@@ -0,0 +1,421 @@
+package mars;
+import mars.assembler.AssemblyCache;
+import mars.assembler.SymbolTable;
+import mars.mips.hardware.*;
+import mars.simulator.*;
+import mars.util.SystemIO;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Runs a batch of MIPS programs, each with any number of input sets, from the command
+ * line ("batch" option of MarsLaunch).  Jobs are listed in a manifest file, one per
+ * line, with these tab-separated fields:
+ * <pre>
+ *   id  sources  stdin  steps  arguments
+ * </pre>
+ * <ul>
+ * <li><b>id</b> identifies the job in the results.
+ * <li><b>sources</b> names the source files to assemble together, separated by spaces,
+ * main file first.
+ * <li><b>stdin</b> names the file the program reads its console input from; empty or
+ * "-" for no input.
+ * <li><b>steps</b> is the maximum number of instructions to simulate; empty or "-"
+ * for the limit given on the command line, if any.
+ * <li><b>arguments</b>, optional, are the program arguments (argc and argv),
+ * separated by spaces.
+ * </ul>
+ * Relative file names are relative to the directory of the manifest.  Blank lines and
+ * lines starting with # are ignored.
+ * <p>
+ * Each distinct set of sources is assembled once, then every job is run on its own
+ * copy of the assembled program, several at a time on separate Machines.  One line of
+ * results per job is written in JSON, in manifest order, giving the job id, the exit
+ * code, the console output, the number of instructions executed, whether the program
+ * ran to completion (rather than to the step limit) and the error that stopped it, if any:
+ * <pre>
+ *   {"id":"t1","exitCode":0,"stdout":"42\n","stderr":"","instructions":1234,"completed":true,"error":null}
+ * </pre>
+ * The exit code is the one set by the program (syscall 17), or that given by the "ae"
+ * or "se" option if the program failed to assemble or hit a runtime error.  A job whose
+ * input file cannot be read, or on which the simulator itself fails, gets the "se" exit
+ * code and the reason as its error; the other jobs still run.  Console input and
+ * output are read and written as UTF-8.
+ *
+ * @version October 2026
+ */
+
+public class BatchRunner
+{
+	private static final Charset CONSOLE_CHARSET = StandardCharsets.UTF_8;
+
+	private final int threads;
+	private final boolean pseudo;
+	private final boolean warningsAreErrors;
+	private final boolean startAtMain;
+	private final int maxSteps;
+	private final int assembleErrorExitCode;
+	private final int simulateErrorExitCode;
+	private final AssemblyCache cache;
+
+	/**
+	 * Create a runner.  Settings that apply to all machines (delayed branching, self-modifying
+	 * code, memory configuration) are taken from Globals.getSettings() as usual.
+	 *
+	 * @param threads number of jobs to run at once, 0 or less for one per processor
+	 * @param pseudo true if pseudo-instructions are allowed
+	 * @param warningsAreErrors true if assembler warnings count as errors
+	 * @param startAtMain true to start at the global label main, which must then exist
+	 * @param maxSteps default step limit for jobs that give none, -1 for none
+	 * @param assembleErrorExitCode exit code reported for a job whose program does not assemble
+	 * @param simulateErrorExitCode exit code reported for a job that ends with a runtime error
+	 * @param cache cache of assembled programs to use, or null to always assemble
+	 */
+	public BatchRunner(int threads, boolean pseudo, boolean warningsAreErrors, boolean startAtMain,
+					   int maxSteps, int assembleErrorExitCode, int simulateErrorExitCode,
+					   AssemblyCache cache)
+	{
+		this.threads = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+		this.pseudo = pseudo;
+		this.warningsAreErrors = warningsAreErrors;
+		this.startAtMain = startAtMain;
+		this.maxSteps = maxSteps;
+		this.assembleErrorExitCode = assembleErrorExitCode;
+		this.simulateErrorExitCode = simulateErrorExitCode;
+		this.cache = cache;
+	}
+
+	/**
+	 * Run every job of the given manifest and write their results.
+	 *
+	 * @param manifest the manifest file
+	 * @param results where to write one line of results per job
+	 * @throws IOException if the manifest cannot be read
+	 * @throws IllegalArgumentException if a line of the manifest is malformed
+	 */
+	public void run(File manifest, PrintStream results) throws IOException
+	{
+		ArrayList jobs = readManifest(manifest);
+		ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			private int count = 0;
+			public synchronized Thread newThread(Runnable r)
+			{
+				Thread thread = new MachineThread(r, "MARS batch " + (++count), Machine.getDefault());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try
+		{
+			HashMap assembled = new HashMap();
+			ArrayList outcomes = new ArrayList();
+			for(int i = 0; i < jobs.size(); i++)
+			{
+				Job job = (Job) jobs.get(i);
+				Future program = (Future) assembled.get(job.sources);
+				if(program == null)
+				{
+					program = pool.submit(new Assembly(job.sources));
+					assembled.put(job.sources, program);
+				}
+				// Each program is queued before the jobs that wait for it, so it is
+				// always being assembled by the time one of them starts waiting.
+				outcomes.add(pool.submit(new Run(job, program)));
+			}
+			for(int i = 0; i < outcomes.size(); i++)
+			{
+				results.println(((Future) outcomes.get(i)).get());
+				results.flush();
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////
+	// One line of the manifest.
+	private static class Job
+	{
+		String id;
+		ArrayList sources;  // absolute file names, main first
+		File stdin;         // null for none
+		int maxSteps;
+		String arguments;
+	}
+
+	private ArrayList readManifest(File manifest) throws IOException
+	{
+		File directory = manifest.getAbsoluteFile().getParentFile();
+		ArrayList jobs = new ArrayList();
+		BufferedReader in = new BufferedReader(new FileReader(manifest));
+		try
+		{
+			String line;
+			int lineNumber = 0;
+			while((line = in.readLine()) != null)
+			{
+				lineNumber++;
+				if(line.trim().length() == 0 || line.trim().startsWith("#"))
+					continue;
+				String[] fields = line.split("\t", 5);
+				if(fields.length < 2 || fields[1].trim().length() == 0)
+					throw new IllegalArgumentException(manifest + ":" + lineNumber + ": no source file given");
+				Job job = new Job();
+				job.id = fields[0].trim();
+				job.sources = new ArrayList();
+				StringTokenizer st = new StringTokenizer(fields[1]);
+				while(st.hasMoreTokens())
+					job.sources.add(resolve(directory, st.nextToken()).getPath());
+				String stdin = (fields.length > 2) ? fields[2].trim() : "";
+				job.stdin = (stdin.length() == 0 || stdin.equals("-")) ? null : resolve(directory, stdin);
+				String steps = (fields.length > 3) ? fields[3].trim() : "";
+				try
+				{
+					job.maxSteps = (steps.length() == 0 || steps.equals("-")) ? maxSteps : Integer.decode(steps).intValue();
+				}
+				catch(NumberFormatException e)
+				{
+					throw new IllegalArgumentException(manifest + ":" + lineNumber + ": invalid step limit " + steps);
+				}
+				job.arguments = (fields.length > 4) ? fields[4] : "";
+				jobs.add(job);
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		return jobs;
+	}
+
+	private static File resolve(File directory, String name)
+	{
+		File file = new File(name);
+		return (file.isAbsolute() ? file : new File(directory, name)).getAbsoluteFile();
+	}
+
+	/////////////////////////////////////////////////////////////////////
+	// Runs the given code on the given machine, on the (pooled) MachineThread calling it.
+	private static abstract class OnMachine implements Callable
+	{
+		public Object call() throws Exception
+		{
+			MachineThread thread = (MachineThread) Thread.currentThread();
+			thread.setMachine(new Machine());
+			try
+			{
+				return callOnMachine();
+			}
+			finally
+			{
+				thread.setMachine(Machine.getDefault());
+			}
+		}
+
+		abstract Object callOnMachine() throws Exception;
+	}
+
+	// A program assembled, on a machine of its own, as a snapshot of its memory that
+	// each run starts from.
+	private static class Program
+	{
+		Memory.Snapshot memory;
+		int startAddress;
+		String error;  // null if it assembled
+	}
+
+	private class Assembly extends OnMachine
+	{
+		private final ArrayList sources;
+
+		Assembly(ArrayList sources)
+		{
+			this.sources = sources;
+		}
+
+		Object callOnMachine()
+		{
+			Program program = new Program();
+			try
+			{
+				MIPSprogram code = new MIPSprogram();
+				if(cache != null)
+					cache.assemble(code, sources, (String) sources.get(0), pseudo, warningsAreErrors);
+				else
+				{
+					ArrayList programs = code.prepareFilesForAssembly(sources, (String) sources.get(0), null);
+					code.assemble(programs, pseudo, warningsAreErrors);
+				}
+				if(startAtMain && SymbolTable.getStartLabelAddr() == SymbolTable.NOT_FOUND)
+					program.error = "If 'sm' is specified there must be a global 'main'.";
+				program.startAddress = startAtMain ? SymbolTable.getStartLabelAddr()
+											   : RegisterFile.getInitialProgramCounter();
+				program.memory = Memory.getInstance().takeSnapshot();
+			}
+			catch(ProcessingException e)
+			{
+				program.error = e.errors().generateErrorAndWarningReport();
+			}
+			catch(RuntimeException e)
+			{
+				program.error = e.toString();
+			}
+			return program;
+		}
+	}
+
+	private class Run extends OnMachine
+	{
+		private final Job job;
+		private final Future assembly;
+
+		Run(Job job, Future assembly)
+		{
+			this.job = job;
+			this.assembly = assembly;
+		}
+
+		Object callOnMachine() throws Exception
+		{
+			Program program = (Program) assembly.get();
+			if(program.error != null)
+				return result(job, assembleErrorExitCode, "", "", 0, false, program.error);
+			Machine machine = Machine.current();
+			ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+			ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+			long countBefore = machine.getExecutionCounts().getTotal();
+			int exitCode;
+			boolean completed = false;
+			String error = null;
+			// Whatever goes wrong is reported for this job alone.
+			try
+			{
+				byte[] input = (job.stdin == null) ? new byte[0] : Files.readAllBytes(job.stdin.toPath());
+				machine.getSystemIO().setConsole(new ByteArrayInputStream(input),
+												 new PrintStream(stdout, false, CONSOLE_CHARSET.name()),
+												 new PrintStream(stderr, false, CONSOLE_CHARSET.name()),
+												 CONSOLE_CHARSET);
+				// Shares the blocks of the assembled program, copying only those the run writes.
+				machine.getMemory().restoreSnapshot(program.memory);
+				RegisterFile.initializeProgramCounter(program.startAddress);
+				new ProgramArgumentList(job.arguments).storeProgramArguments();
+				completed = new MIPSprogram().simulate(job.maxSteps);
+				exitCode = machine.getExitCode();
+			}
+			catch(ProcessingException e)
+			{
+				exitCode = simulateErrorExitCode;
+				error = e.errors().generateErrorAndWarningReport();
+			}
+			catch(IOException e)
+			{
+				exitCode = simulateErrorExitCode;
+				error = "Cannot read input file " + job.stdin + ": " + e;
+			}
+			catch(RuntimeException e)
+			{
+				exitCode = simulateErrorExitCode;
+				error = e.toString();
+				// The simulator did not get to write out what the program printed.
+				SystemIO.flushOutput();
+			}
+			return result(job, exitCode, new String(stdout.toByteArray(), CONSOLE_CHARSET),
+						  new String(stderr.toByteArray(), CONSOLE_CHARSET),
+						  machine.getExecutionCounts().getTotal() - countBefore, completed, error);
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////
+	// Results, as a line of JSON.
+	private static String result(Job job, int exitCode, String stdout, String stderr, long instructions,
+								 boolean completed, String error)
+	{
+		StringBuffer json = new StringBuffer();
+		json.append("{\"id\":").append(quote(job.id));
+		json.append(",\"exitCode\":").append(exitCode);
+		json.append(",\"stdout\":").append(quote(stdout));
+		json.append(",\"stderr\":").append(quote(stderr));
+		json.append(",\"instructions\":").append(instructions);
+		json.append(",\"completed\":").append(completed);
+		json.append(",\"error\":").append((error == null) ? "null" : quote(error.trim()));
+		json.append("}");
+		return json.toString();
+	}
+
+	private static String quote(String s)
+	{
+		StringBuffer quoted = new StringBuffer(s.length() + 2);
+		quoted.append('"');
+		for(int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			switch(c)
+			{
+				case '"' :
+					quoted.append("\\\"");
+					break;
+				case '\\' :
+					quoted.append("\\\\");
+					break;
+				case '\n' :
+					quoted.append("\\n");
+					break;
+				case '\r' :
+					quoted.append("\\r");
+					break;
+				case '\t' :
+					quoted.append("\\t");
+					break;
+				default :
+					if(c < 0x20 || c > 0x7e)
+						quoted.append(String.format("\\u%04x", (int) c));
+					else
+						quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
@@ -54,12 +54,16 @@ public class Globals
 	public static InstructionSet instructionSet;
 	/** the program currently being worked with.  Used by GUI only, not command line. **/
 	public static MIPSprogram program;
-	/** Symbol table for file currently being assembled. **/
+	/** Symbol table for file currently being assembled, on the default Machine. **/
 	public static SymbolTable symbolTable;
-	/** Simulated MIPS memory component. **/
+	/** Simulated MIPS memory component, that of the default Machine. **/
 	public static Memory memory;
 	/** Lock variable used at head of synchronized block to guard MIPS memory and registers **/
 	public static Object memoryAndRegistersLock = new Object();
+	/** Sequence lock published by the simulator at the end of each batch of instructions it runs
+	    while holding memoryAndRegistersLock.  Lets other threads read MIPS memory and registers
+	    consistently without waiting for that lock.  See mars.util.SequenceLock. **/
+	public static final SequenceLock memoryAndRegistersSequence = new SequenceLock();
 	/** Lock variable used while input syscalls are running, to prevent opening tools from
 	deadlocking MARS. */
 	public static Lock inputSyscallLock = new ReentrantLock();
@@ -100,6 +104,18 @@ public class Globals
 	public static int exitCode = 0;
 	/** When true and MARS is run in headless mode, disables buffering of Stdout. */
 	public static boolean disableStdoutBuffering = false;
+	/** When true and MARS is run in headless mode, simulate with the specialized "turbo" loop
+	    that evaluates GUI, run speed, backstep and breakpoint checks once per run. */
+	public static boolean turboExecution = false;
+	/** When true, the "turbo" loop translates frequently executed blocks of instructions
+	    to Java bytecode (see mars.simulator.BlockTranslator). */
+	public static boolean blockTranslation = false;
+	/** When true, the "turbo" loop simulates the common integer instructions with a
+	    switch-based interpreter (see mars.simulator.CompactInterpreter). */
+	public static boolean compactInterpretation = false;
+	/** When true (the default), a simulation that is not throttled for display holds
+	    memoryAndRegistersLock for a batch of instructions at a time instead of one. */
+	public static boolean exclusiveExecution = true;
 
 	public static boolean runSpeedPanelExists = false;
 
@@ -160,7 +176,7 @@ public class Globals
 	// Read backstep limit (number of operations to buffer) from properties file.
 	private static int getBackstepLimit()
 	{
-		return getIntegerProperty(configPropertiesFile, "BackstepLimit", 1000);
+		return getIntegerProperty(configPropertiesFile, "BackstepLimit", 2000000);
 	}
 
 	// Read ASCII default display character for non-printing characters, from properties file.
@@ -189,6 +189,25 @@ public class MIPSprogram
 		return localSymbolTable;
 	}
 
+	/**
+	 * Makes this program stand for a source file whose assembled program was loaded
+	 * from an AssemblyCache instead of being read, tokenized and assembled.  Its source
+	 * and token lists remain empty.
+	 * @param file name of the source file
+	 * @param localSymbolTable its local labels, or null for a file that was included
+	 * @param machineList the assembled statements of the whole program, for the first
+	 * file, otherwise null
+	 **/
+
+	public void setAssembled(String file, SymbolTable localSymbolTable, ArrayList machineList)
+	{
+		this.filename = file;
+		this.sourceList = new ArrayList();
+		this.localSymbolTable = localSymbolTable;
+		this.machineList = machineList;
+		this.backStepper = (machineList == null) ? null : new BackStepper();
+	}
+
 	/**
 	 * Returns status of BackStepper associated with this program.
 	 * @return true if enabled, false if disabled or non-existant.
@@ -367,7 +386,7 @@ public class MIPSprogram
 
 	public boolean simulate(int maxSteps) throws ProcessingException
 	{
-		return this.simulateFromPC(null, maxSteps, null);
+		return this.simulateFromPC((Breakpoints) null, maxSteps, null);
 	}
 
 	/**
@@ -381,10 +400,25 @@ public class MIPSprogram
 	 * @throws ProcessingException Will throw exception if errors occured while simulating.
 	 **/
 	public boolean simulateFromPC(int[] breakPoints, int maxSteps, AbstractAction a) throws ProcessingException
+	{
+		return this.simulateFromPC((breakPoints == null) ? null : new Breakpoints(breakPoints), maxSteps, a);
+	}
+
+	/**
+	 * Simulates execution of the MIPS program. Program must have already been assembled.
+	 * Begins simulation at current program counter address and continues until stopped,
+	 * paused, maximum steps exceeded, or exception occurs.
+	 * @param breakpoints breakpoints, possibly conditional, and watchpoints.  Can be null.
+	 * @param maxSteps maximum number of instruction executions.  Default -1 means no maximum.
+	 * @param a the GUI component responsible for this call (GO normally).  set to null if none.
+	 * @return true if execution completed and false otherwise
+	 * @throws ProcessingException Will throw exception if errors occured while simulating.
+	 **/
+	public boolean simulateFromPC(Breakpoints breakpoints, int maxSteps, AbstractAction a) throws ProcessingException
 	{
 		steppedExecution = false;
 		Simulator sim = Simulator.getInstance();
-		return sim.simulate(this, RegisterFile.getProgramCounter(), maxSteps, breakPoints, a);
+		return sim.simulate(this, RegisterFile.getProgramCounter(), maxSteps, breakpoints, a);
 	}
 
 
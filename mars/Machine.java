@@ -0,0 +1,273 @@
+package mars;
+import mars.assembler.*;
+import mars.mips.hardware.*;
+import mars.mips.instructions.syscalls.*;
+import mars.simulator.*;
+import mars.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * The complete state of one simulated MIPS machine: memory, the register files of
+ * the CPU and coprocessors 0 and 1, the pending delayed branch, the files opened by
+ * the MIPS program, the random number streams, the counts of executed instructions,
+ * the call sampler and the time travel recorder, the symbol table the program is
+ * assembled against, and the simulator that runs it.
+ * <p>
+ * The static methods of RegisterFile, Coprocessor0, Coprocessor1, Memory.getInstance(),
+ * SystemIO and so on remain the way MARS code reaches this state.  They work on the
+ * machine of the calling thread, see current(): a MachineThread carries its own
+ * machine, and every other thread (the GUI, the command line, tools) uses the default
+ * machine, which is the one <tt>Globals.memory</tt>, <tt>Globals.program</tt>,
+ * <tt>Globals.symbolTable</tt> and <tt>Globals.memoryAndRegistersLock</tt> refer to.
+ * To assemble and simulate several programs at once, give each its own Machine and
+ * run it on a MachineThread.  The instruction set and the settings are shared by all
+ * machines and must be initialized (see Globals.initialize) beforehand.
+ *
+ * @version October 2026
+ */
+
+public class Machine
+{
+	private static final Machine defaultMachine =
+		new Machine(Globals.memoryAndRegistersLock, Globals.memoryAndRegistersSequence);
+
+	private final Memory memory;
+	private final RegisterFile registerFile;
+	private final Coprocessor0 coprocessor0;
+	private final Coprocessor1 coprocessor1;
+	private final DelayedBranch delayedBranch;
+	private final SystemIO systemIO;
+	private final RandomStreams randomStreams;
+	private final ExecutionCounts executionCounts;
+	private final CallSampler callSampler;
+	private final TimeTravel timeTravel;
+	private final Object lock;
+	private final SequenceLock sequence;
+	// Only used by machines other than the default one, whose program, symbol
+	// table and exit code are kept in Globals.
+	private MIPSprogram program;
+	private SymbolTable symbolTable;
+	private int exitCode;
+	private Simulator simulator;
+
+	/**
+	 * Create a new machine with cleared memory and registers, and no program.
+	 */
+	public Machine()
+	{
+		this(new Object(), new SequenceLock());
+		symbolTable = new SymbolTable("global");
+	}
+
+	private Machine(Object lock, SequenceLock sequence)
+	{
+		this.memory = new Memory();
+		this.registerFile = new RegisterFile();
+		this.coprocessor0 = new Coprocessor0();
+		this.coprocessor1 = new Coprocessor1();
+		this.delayedBranch = new DelayedBranch();
+		this.systemIO = new SystemIO();
+		this.randomStreams = new RandomStreams();
+		this.executionCounts = new ExecutionCounts();
+		this.callSampler = new CallSampler();
+		this.timeTravel = new TimeTravel();
+		this.lock = lock;
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Returns the machine of the calling thread: that of a MachineThread, otherwise
+	 * the default machine.
+	 *
+	 * @return the current machine
+	 */
+	public static Machine current()
+	{
+		Thread thread = Thread.currentThread();
+		return (thread instanceof MachineThread) ? ((MachineThread) thread).getMachine() : defaultMachine;
+	}
+
+	/**
+	 * Returns the default machine, used by all threads that are not MachineThreads.
+	 *
+	 * @return the default machine
+	 */
+	public static Machine getDefault()
+	{
+		return defaultMachine;
+	}
+
+	/**
+	 * @return true if this is the default machine
+	 */
+	public boolean isDefault()
+	{
+		return this == defaultMachine;
+	}
+
+	public Memory getMemory()
+	{
+		return memory;
+	}
+
+	public RegisterFile getRegisterFile()
+	{
+		return registerFile;
+	}
+
+	public Coprocessor0 getCoprocessor0()
+	{
+		return coprocessor0;
+	}
+
+	public Coprocessor1 getCoprocessor1()
+	{
+		return coprocessor1;
+	}
+
+	public DelayedBranch getDelayedBranch()
+	{
+		return delayedBranch;
+	}
+
+	public SystemIO getSystemIO()
+	{
+		return systemIO;
+	}
+
+	public RandomStreams getRandomStreams()
+	{
+		return randomStreams;
+	}
+
+	public ExecutionCounts getExecutionCounts()
+	{
+		return executionCounts;
+	}
+
+	public CallSampler getCallSampler()
+	{
+		return callSampler;
+	}
+
+	public TimeTravel getTimeTravel()
+	{
+		return timeTravel;
+	}
+
+	/**
+	 * Returns the object the simulator of this machine synchronizes on while it runs,
+	 * and which other threads should hold while they access its memory and registers.
+	 * For the default machine this is <tt>Globals.memoryAndRegistersLock</tt>.
+	 *
+	 * @return the lock guarding this machine's memory and registers
+	 */
+	public Object getLock()
+	{
+		return lock;
+	}
+
+	/**
+	 * Returns the sequence the simulator of this machine publishes its batches through.
+	 * For the default machine this is <tt>Globals.memoryAndRegistersSequence</tt>.
+	 *
+	 * @return the sequence lock of this machine
+	 */
+	public SequenceLock getSequence()
+	{
+		return sequence;
+	}
+
+	/**
+	 * Returns the program whose backstepper records changes to this machine, if any.
+	 * For the default machine this is <tt>Globals.program</tt>, which is only set by
+	 * the GUI.
+	 *
+	 * @return the program, or null
+	 */
+	public MIPSprogram getProgram()
+	{
+		return (this == defaultMachine) ? Globals.program : program;
+	}
+
+	public void setProgram(MIPSprogram program)
+	{
+		if(this == defaultMachine)
+			Globals.program = program;
+		else
+			this.program = program;
+	}
+
+	/**
+	 * Returns the symbol table of global symbols used when assembling for this machine.
+	 * For the default machine this is <tt>Globals.symbolTable</tt>.
+	 *
+	 * @return the global symbol table
+	 */
+	public SymbolTable getSymbolTable()
+	{
+		return (this == defaultMachine) ? Globals.symbolTable : symbolTable;
+	}
+
+	/**
+	 * Returns the exit code set by the MIPS program (syscall 17) when run from the
+	 * command line.  For the default machine this is <tt>Globals.exitCode</tt>.
+	 *
+	 * @return the exit code
+	 */
+	public int getExitCode()
+	{
+		return (this == defaultMachine) ? Globals.exitCode : exitCode;
+	}
+
+	public void setExitCode(int exitCode)
+	{
+		if(this == defaultMachine)
+			Globals.exitCode = exitCode;
+		else
+			this.exitCode = exitCode;
+	}
+
+	/**
+	 * Returns the simulator of this machine, null until Simulator.getInstance() is
+	 * first called on it.
+	 *
+	 * @return the simulator, or null
+	 */
+	public Simulator getSimulator()
+	{
+		return simulator;
+	}
+
+	public void setSimulator(Simulator simulator)
+	{
+		this.simulator = simulator;
+	}
+}
@@ -0,0 +1,76 @@
+package mars;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * A thread that simulates (or assembles for) a Machine other than the default one.
+ * While running on such a thread, all of the static MARS methods that access MIPS
+ * state (RegisterFile, Memory.getInstance(), SystemIO and so on) work on its
+ * machine; see Machine.current().  Threads started by the simulator inherit the
+ * machine of the thread that started them.
+ *
+ * @version October 2026
+ */
+
+public class MachineThread extends Thread
+{
+	private Machine machine;
+
+	/**
+	 * Create a thread that will run the given code on the given machine.
+	 *
+	 * @param target code to run
+	 * @param name name of the thread
+	 * @param machine machine it works on
+	 */
+	public MachineThread(Runnable target, String name, Machine machine)
+	{
+		super(target, name);
+		this.machine = machine;
+	}
+
+	/**
+	 * @return the machine this thread works on
+	 */
+	public Machine getMachine()
+	{
+		return machine;
+	}
+
+	/**
+	 * Switch the thread to another machine, e.g. a pooled thread moving on to the next
+	 * program.  Should only be called by the thread itself, or before it is started.
+	 *
+	 * @param machine machine to work on from now on
+	 */
+	public void setMachine(Machine machine)
+	{
+		this.machine = machine;
+	}
+}
@@ -1,4 +1,5 @@
 package mars;
+import mars.assembler.AssemblyCache;
 import mars.assembler.SymbolTable;
 import mars.venus.*;
 import mars.util.*;
@@ -58,6 +59,15 @@ public class MarsLaunch
 		  ae<n>  -- terminate MARS with integer exit code <n> if an assemble error occurs.<br>
 		  ascii  -- display memory or register contents interpreted as ASCII
 			   b  -- brief - do not display register/memory address along with contents<br>
+	     cache  -- keep assembled programs in a directory, given as argument, and load<br>
+	               them from there instead of assembling the same sources again.<br>
+	 callgraph  -- sample the call stack every 1000 instructions (or every <n> with<br>
+	               <tt>callgraph&lt;n&gt;</tt>) and write the samples to a file, given<br>
+	               as argument, in collapsed-stack format for flame graph tools.<br>
+	checkpoint  -- save the machine state to a file, given as argument, at the end of<br>
+	               the run, e.g. when the step limit is reached.  Compressed if the<br>
+	               file name ends in <tt>.gz</tt>.  See <i>resume</i>.<br>
+	   compact  -- with turbo, simulate common integer instructions with a switch-based interpreter<br>
 			   d  -- print debugging statements<br>
 	        da  -- both a and d<br>
 	        db  -- MIPS delayed branching is enabled.<br>
@@ -70,18 +80,24 @@ public class MarsLaunch
 	         h  -- display help.  Use by itself and with no filename</br>
 	       hex  -- display memory or register contents in hexadecimal (default)<br>
 	        ic  -- display count of MIPS basic instructions 'executed'");
+	       jit  -- with turbo, translate frequently executed code to Java bytecode<br>
 	        mc  -- set memory configuration.  Option has 1 argument, e.g.<br>
 	               <tt>mc &lt;config$gt;</tt>, where &lt;config$gt; is <tt>Default</tt><br>
 	               for the MARS default 32-bit address space, <tt>CompactDataAtZero</tt> for<br>
 	               a 32KB address space with data segment at address 0, or <tt>CompactTextAtZero</tt><br>
 	               for a 32KB address space with text segment at address 0.<br>
 	        me  -- display MARS messages to standard err instead of standard out. Can separate via redirection.</br>
+	        nb  -- write out program output after every syscall rather than buffering it.<br>
 	        nc  -- do not display copyright notice (for cleaner redirected/piped output).</br>
 			  np  -- No Pseudo-instructions allowed ("ne" will work also).<br>
 			   p  -- Project mode - assemble all files in the same directory as given file.<br>
+	   profile  -- display the source lines, labels, instructions and syscalls most executed<br>
+	    resume  -- restore the machine state from a checkpoint file, given as argument,<br>
+	               before the run, to go on from where the checkpointed run stopped.<br>
 		  se<n>  -- terminate MARS with integer exit code <n> if a simulation (run) error occurs.<br>
 	        sm  -- Start execution at Main - Execution will start at program statement globally labeled main.<br>
 	       smc  -- Self Modifying Code - Program can write and branch to either text or data segment<br>
+	     turbo  -- use the streamlined simulation loop for unattended runs (no GUI, breakpoints or back-stepping)<br>
 	        we  -- assembler Warnings will be considered Errors<br>
 	       <n>  -- where <n> is an integer maximum count of steps to simulate.<br>
 	               If 0, negative or not specified, there is no maximum.<br>
@@ -109,10 +125,17 @@ public class MarsLaunch
 	private boolean warningsAreErrors; // Whether assembler warnings should be considered errors.
 	private boolean startAtMain; // Whether to start execution at statement labeled 'main'
 	private boolean countInstructions; // Whether to count and report number of instructions executed
+	private boolean profile; // Whether to report where the program spent its time
+	private String callGraphFile; // File to write call stack samples to, if any
+	private int callGraphInterval; // Instructions between call stack samples
+	private String checkpointFile; // File to save the machine state to after the run, if any
+	private String resumeFile; // File to restore the machine state from before the run, if any
+	private String cacheDirectory; // Directory of cached assembled programs, if any
 	private boolean selfModifyingCode; // Whether to allow self-modifying code (e.g. write to text segment)
 	private static final String rangeSeparator = "-";
 	private static final int splashDuration = 2000; // time in MS to show splash screen
 	private static final int memoryWordsPerLine = 4; // display 4 memory words, tab separated, per line
+	private static final int profileEntries = 10; // entries of each hot list displayed by profile option
 	private static final int DECIMAL = 0; // memory and register display format
 	private static final int HEXADECIMAL = 1;// memory and register display format
 	private static final int ASCII = 2;// memory and register display format
@@ -121,12 +144,14 @@ public class MarsLaunch
 	private ArrayList filenameList;
 	private MIPSprogram code;
 	private int maxSteps;
-	private int instructionCount;
+	private long instructionCountStart; // executed instruction count before the run
 	private PrintStream out; // stream for display of command line output
 	private ArrayList dumpTriples = null; // each element holds 3 arguments for dump option
 	private ArrayList programArgumentList; // optional program args for MIPS program (becomes argc, argv)
 	private int assembleErrorExitCode;  // MARS command exit code to return if assemble error occurs
 	private int simulateErrorExitCode;// MARS command exit code to return if simulation error occurs
+	private String batchManifest; // manifest of jobs to run in batch mode, null if not in batch mode
+	private int batchThreads; // number of batch jobs to run at once, 0 for one per processor
 
 	public MarsLaunch(String[] args)
 	{
@@ -147,10 +172,18 @@ public class MarsLaunch
 			warningsAreErrors = false;
 			startAtMain = false;
 			countInstructions = false;
+			profile = false;
+			callGraphFile = null;
+			callGraphInterval = CallSampler.DEFAULT_INTERVAL;
+			checkpointFile = null;
+			resumeFile = null;
+			cacheDirectory = null;
 			selfModifyingCode = false;
-			instructionCount = 0;
+			instructionCountStart = 0;
 			assembleErrorExitCode = 0;
 			simulateErrorExitCode = 0;
+			batchManifest = null;
+			batchThreads = 0;
 			registerDisplayList = new ArrayList();
 			memoryDisplayList = new ArrayList();
 			filenameList = new ArrayList();
@@ -161,11 +194,15 @@ public class MarsLaunch
 			out = System.out;
 			if(parseCommandArgs(args))
 			{
-				if(runCommand())
+				if(batchManifest != null)
+					runBatch();
+				else if(runCommand())
 				{
 					displayMiscellaneousPostMortem();
 					displayRegistersPostMortem();
 					displayMemoryPostMortem();
+					writeCallGraph();
+					saveCheckpoint();
 				}
 				dumpSegments();
 			}
@@ -338,6 +375,88 @@ public class MarsLaunch
 				}
 				continue;
 			}
+			if(args[i].toLowerCase().indexOf("callgraph") == 0)
+			{
+				String s = args[i].substring(9);
+				try
+				{
+					if(s.length() > 0)
+						callGraphInterval = Integer.decode(s).intValue();
+					if(callGraphInterval <= 0)
+						throw new NumberFormatException();
+				}
+				catch(NumberFormatException nfe)
+				{
+					out.println("Invalid call graph sampling interval: " + s);
+					argsOK = false;
+					continue;
+				}
+				if(args.length <= (i + 1))
+				{
+					out.println("Callgraph command line argument requires a file name.");
+					argsOK = false;
+				}
+				else
+					callGraphFile = args[++i];
+				continue;
+			}
+			if(args[i].toLowerCase().equals("checkpoint"))
+			{
+				if(args.length <= (i + 1))
+				{
+					out.println("Checkpoint command line argument requires a file name.");
+					argsOK = false;
+				}
+				else
+					checkpointFile = args[++i];
+				continue;
+			}
+			if(args[i].toLowerCase().equals("resume"))
+			{
+				if(args.length <= (i + 1))
+				{
+					out.println("Resume command line argument requires a checkpoint file name.");
+					argsOK = false;
+				}
+				else
+					resumeFile = args[++i];
+				continue;
+			}
+			if(args[i].toLowerCase().equals("cache"))
+			{
+				if(args.length <= (i + 1))
+				{
+					out.println("Cache command line argument requires a directory name.");
+					argsOK = false;
+				}
+				else
+					cacheDirectory = args[++i];
+				continue;
+			}
+			if(args[i].toLowerCase().equals("batch"))
+			{
+				if(args.length <= (i + 1))
+				{
+					out.println("Batch command line argument requires a manifest file name.");
+					argsOK = false;
+				}
+				else
+					batchManifest = args[++i];
+				continue;
+			}
+			if(args[i].toLowerCase().equals("threads"))
+			{
+				try
+				{
+					batchThreads = Integer.decode(args[++i]).intValue();
+				}
+				catch(RuntimeException e)
+				{
+					out.println("Threads command line argument requires a number of threads.");
+					argsOK = false;
+				}
+				continue;
+			}
 			if(args[i].toLowerCase().equals("mc"))
 			{
 				String configName = args[++i];
@@ -451,11 +570,31 @@ public class MarsLaunch
 				countInstructions = true;
 				continue;
 			}
+			if(args[i].toLowerCase().equals("profile"))
+			{
+				profile = true;
+				continue;
+			}
 			if(args[i].toLowerCase().equals("nb"))
 			{
 				Globals.disableStdoutBuffering = true;
 				continue;
 			}
+			if(args[i].toLowerCase().equals("turbo"))
+			{
+				Globals.turboExecution = true;
+				continue;
+			}
+			if(args[i].toLowerCase().equals("jit"))
+			{
+				Globals.blockTranslation = true;
+				continue;
+			}
+			if(args[i].toLowerCase().equals("compact"))
+			{
+				Globals.compactInterpretation = true;
+				continue;
+			}
 
 
 			if(args[i].indexOf("$") == 0)
@@ -558,12 +697,22 @@ public class MarsLaunch
 				filesToAssemble = FilenameFinder.getFilenameList(filenameList, FilenameFinder.MATCH_ALL_EXTENSIONS);
 			if(Globals.debug)
 				out.println("--------  TOKENIZING BEGINS  -----------");
-			ArrayList MIPSprogramsToAssemble =
-				code.prepareFilesForAssembly(filesToAssemble, mainFile.getAbsolutePath(), null);
-			if(Globals.debug)
-				out.println("--------  ASSEMBLY BEGINS  -----------");
-			// Added logic to check for warnings and print if any. DPS 11/28/06
-			ErrorList warnings = code.assemble(MIPSprogramsToAssemble, pseudo, warningsAreErrors);
+			ErrorList warnings;
+			if(cacheDirectory != null)
+			{
+				// tokenizes and assembles only if not cached
+				warnings = new AssemblyCache(new File(cacheDirectory))
+						   .assemble(code, filesToAssemble, mainFile.getAbsolutePath(), pseudo, warningsAreErrors);
+			}
+			else
+			{
+				ArrayList MIPSprogramsToAssemble =
+					code.prepareFilesForAssembly(filesToAssemble, mainFile.getAbsolutePath(), null);
+				if(Globals.debug)
+					out.println("--------  ASSEMBLY BEGINS  -----------");
+				// Added logic to check for warnings and print if any. DPS 11/28/06
+				warnings = code.assemble(MIPSprogramsToAssemble, pseudo, warningsAreErrors);
+			}
 			if(warnings != null && warnings.warningsOccurred())
 				out.println(warnings.generateWarningReport());
 
@@ -576,8 +725,16 @@ public class MarsLaunch
 				{
 					// store program args (if any) in MIPS memory
 					new ProgramArgumentList(programArgumentList).storeProgramArguments();
-					// establish observer if specified
-					establishObserver();
+					// go on from a checkpoint, if requested
+					if(resumeFile != null)
+						Checkpoint.restore(new File(resumeFile));
+					// remember where the instruction count starts, if it is to be reported
+					if(countInstructions)
+						instructionCountStart = ExecutionCounts.getInstance().getTotal();
+					if(profile)
+						ExecutionCounts.getInstance().startCountingByAddress();
+					if(callGraphFile != null)
+						CallSampler.getInstance().start(callGraphInterval);
 					if(Globals.debug)
 						out.println("--------  SIMULATION BEGINS  -----------");
 					programRan = true;
@@ -595,10 +752,41 @@ public class MarsLaunch
 			out.println(e.errors().generateErrorAndWarningReport());
 			out.println("Processing terminated due to errors.");
 		}
+		catch(IOException e)
+		{
+			Globals.exitCode = 1;
+			out.println("Cannot restore checkpoint " + resumeFile + ": " + e.getMessage());
+		}
 		return programRan;
 	}
 
 
+	//////////////////////////////////////////////////////////////////////
+	// Run the jobs of the batch manifest, results to standard output.
+
+	private void runBatch()
+	{
+		Globals.getSettings().setBooleanSettingNonPersistent(Settings.DELAYED_BRANCHING_ENABLED, delayedBranching);
+		Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, selfModifyingCode);
+		try
+		{
+			new BatchRunner(batchThreads, pseudo, warningsAreErrors, startAtMain, maxSteps,
+							assembleErrorExitCode, simulateErrorExitCode,
+							(cacheDirectory == null) ? null : new AssemblyCache(new File(cacheDirectory))).run(new File(batchManifest), System.out);
+		}
+		catch(IOException e)
+		{
+			out.println("Cannot read batch manifest: " + e.getMessage());
+			Globals.exitCode = 1;
+		}
+		catch(IllegalArgumentException e)
+		{
+			out.println(e.getMessage());
+			Globals.exitCode = 1;
+		}
+	}
+
+
 	//////////////////////////////////////////////////////////////////////
 	// Check for memory address subrange.  Has to be two integers separated
 	// by "-"; no embedded spaces.  e.g. 0x00400000-0x00400010
@@ -625,55 +813,58 @@ public class MarsLaunch
 		return memoryRange;
 	}
 
-	/////////////////////////////////////////////////////////////////
-	// Required for counting instructions executed, if that option is specified.
+	//////////////////////////////////////////////////////////////////////
+	// Displays any specified runtime properties. Initially just instruction count
 	// DPS 19 July 2012
-	private void establishObserver()
+	private void displayMiscellaneousPostMortem()
 	{
 		if(countInstructions)
+			out.println("\n" + (ExecutionCounts.getInstance().getTotal() - instructionCountStart));
+		long[] countsByAddress = ExecutionCounts.getInstance().getCountsByAddress();
+		if(profile && countsByAddress != null)
 		{
-			Observer instructionCounter =
-				new Observer()
-			{
-				private int lastAddress = 0;
-				public void update(Observable o, Object obj)
-				{
-					if(obj instanceof AccessNotice)
-					{
-						AccessNotice notice = (AccessNotice) obj;
-						if(!notice.accessIsFromMIPS())
-							return;
-						if(notice.getAccessType() != AccessNotice.READ)
-							return;
-						MemoryAccessNotice m = (MemoryAccessNotice) notice;
-						int a = m.getAddress();
-						if(a == lastAddress)
-							return;
-						lastAddress = a;
-						instructionCount++;
-					}
-				}
-			};
-			try
-			{
-				Globals.memory.addObserver(instructionCounter, Memory.textBaseAddress, Memory.textLimitAddress);
-			}
-			catch(AddressErrorException aee)
-			{
-				out.println("Internal error: MarsLaunch uses incorrect text segment address for instruction observer");
-			}
+			out.println();
+			new ExecutionProfile(countsByAddress, ExecutionCounts.getInstance().getCountsBySyscall()).print(out, profileEntries);
 		}
 	}
 
+
 	//////////////////////////////////////////////////////////////////////
-	// Displays any specified runtime properties. Initially just instruction count
-	// DPS 19 July 2012
-	private void displayMiscellaneousPostMortem()
+	// Writes the call stack samples taken, if requested by the callgraph option.
+
+	private void writeCallGraph()
 	{
-		if(countInstructions)
-			out.println("\n" + instructionCount);
+		if(callGraphFile == null)
+			return;
+		CallSampler.getInstance().stop();
+		try
+		{
+			PrintStream stacks = new PrintStream(new FileOutputStream(callGraphFile));
+			CallSampler.getInstance().writeCollapsedStacks(stacks);
+			stacks.close();
+		}
+		catch(IOException e)
+		{
+			out.println("Error while attempting to write call graph samples to " + callGraphFile + ": " + e.getMessage());
+		}
 	}
 
+	//////////////////////////////////////////////////////////////////////
+	// Saves the machine state, if requested by the checkpoint option.
+
+	private void saveCheckpoint()
+	{
+		if(checkpointFile == null)
+			return;
+		try
+		{
+			Checkpoint.save(new File(checkpointFile), checkpointFile.toLowerCase().endsWith(".gz"));
+		}
+		catch(IOException e)
+		{
+			out.println("Error while attempting to save checkpoint to " + checkpointFile + ": " + e.getMessage());
+		}
+	}
 
 	//////////////////////////////////////////////////////////////////////
 	// Displays requested register or registers
@@ -885,6 +1076,21 @@ public class MarsLaunch
 		out.println("  ae<n>  -- terminate MARS with integer exit code <n> if an assemble error occurs.");
 		out.println("  ascii  -- display memory or register contents interpreted as ASCII codes.");
 		out.println("      b  -- brief - do not display register/memory address along with contents");
+		out.println("  batch <file> -- batch mode: run each job listed in <file> and write a line of");
+		out.println("            results (JSON) per job to standard output.  A job is a line of");
+		out.println("            tab-separated fields: id, source files, input file, step limit and");
+		out.println("            program arguments.  No other file name is needed.");
+		out.println("cache <dir>  -- keep assembled programs in directory <dir>, and load a program from");
+		out.println("            there rather than assemble it again if its source files and the");
+		out.println("            settings that affect assembly (db, mc, np, sm, we) are unchanged.");
+		out.println("callgraph[<n>] <file>  -- sample the call stack every <n> instructions (default");
+		out.println("            " + CallSampler.DEFAULT_INTERVAL + ") and write the samples to <file> in the collapsed-stack");
+		out.println("            format of flame graph tools.  Not used with jit or compact.");
+		out.println("checkpoint <file>  -- save the machine state (registers, memory, open files) to");
+		out.println("            <file> at the end of the run, e.g. when the step limit is reached.");
+		out.println("            Compressed if <file> ends in .gz.  See resume.");
+		out.println("compact  -- with turbo, simulate common integer instructions with a switch-based");
+		out.println("            interpreter.  Not used with db or smc; same results.");
 		out.println("      d  -- display MARS debugging statements");
 		out.println("     db  -- MIPS delayed branching is enabled");
 		out.println("    dec  -- display memory or register contents in decimal.");
@@ -897,6 +1103,9 @@ public class MarsLaunch
 		out.println("      h  -- display this help.  Use by itself with no filename.");
 		out.println("    hex  -- display memory or register contents in hexadecimal (default)");
 		out.println("     ic  -- display count of MIPS basic instructions 'executed'");
+		out.println("    jit  -- with turbo, translate frequently executed code to Java bytecode.");
+		out.println("            Not used with db or smc; same results, but faster loops.");
+		out.println("            Takes precedence over compact.");
 		out.println("     mc <config>  -- set memory configuration.  Argument <config> is");
 		out.println("            case-sensitive and possible values are: Default for the default");
 		out.println("            32-bit address space, CompactDataAtZero for a 32KB memory with");
@@ -904,12 +1113,22 @@ public class MarsLaunch
 		out.println("            memory with text segment at address 0.");
 		out.println("     me  -- display MARS messages to standard err instead of standard out. ");
 		out.println("            Can separate messages from program output using redirection");
+		out.println("     nb  -- write out program output after every syscall.  Otherwise it is buffered,");
+		out.println("            and written out before input is read, when the run ends, and at");
+		out.println("            the end of each line when MARS runs on an interactive terminal.");
 		out.println("     nc  -- do not display copyright notice (for cleaner redirected/piped output).");
 		out.println("     np  -- use of pseudo instructions and formats not permitted");
 		out.println("      p  -- Project mode - assemble all files in the same directory as given file.");
+		out.println("profile  -- display the source lines, labels, instructions and syscalls most executed.");
+		out.println("resume <file>  -- restore the machine state saved by checkpoint in <file> before");
+		out.println("            the run, to go on from where that run stopped.  Give the same");
+		out.println("            program and memory configuration (mc).");
 		out.println("  se<n>  -- terminate MARS with integer exit code <n> if a simulation (run) error occurs.");
 		out.println("     sm  -- start execution at statement with global label main, if defined");
 		out.println("    smc  -- Self Modifying Code - Program can write and branch to either text or data segment");
+		out.println("threads <n>  -- number of batch mode jobs to run at once (default one per processor)");
+		out.println("  turbo  -- use the streamlined simulation loop intended for unattended batch runs.");
+		out.println("            Same results; speed control and interrupts from tools do not apply.");
 		out.println("    <n>  -- where <n> is an integer maximum count of steps to simulate.");
 		out.println("            If 0, negative or not specified, there is no maximum.");
 		out.println(" $<reg>  -- where <reg> is number or name (e.g. 5, t3, f10) of register whose ");
@@ -3,6 +3,7 @@ import mars.assembler.*;
 import mars.mips.instructions.*;
 import mars.mips.hardware.*;
 import mars.util.*;
+import java.io.*;
 import java.util.*;
 
 /*
@@ -490,6 +491,96 @@ public class ProgramStatement
 	}
 
 
+	/**
+	 * Writes what assembly determined about this statement beyond its binary machine
+	 * code: source, line number, operands and basic assembly statement.  Used by
+	 * AssemblyCache together with Memory.writeCheckpoint().
+	 * @param out where to write
+	 * @throws IOException if writing fails
+	 **/
+
+	public void writeAssembly(DataOutputStream out) throws IOException
+	{
+		out.writeUTF(source);
+		out.writeInt(sourceLine);
+		writeString(out, basicAssemblyStatement);
+		writeString(out, machineStatement);
+		out.writeInt(numOperands);
+		out.writeBoolean(operands != null);
+		if(operands != null)
+		{
+			out.writeInt(operands.length);
+			for(int i = 0; i < operands.length; i++)
+				out.writeInt(operands[i]);
+		}
+		ArrayList list = basicStatementList.list;
+		out.writeInt(list.size());
+		for(int i = 0; i < list.size(); i++)
+		{
+			BasicStatementList.ListElement element = (BasicStatementList.ListElement) list.get(i);
+			out.writeByte(element.type);
+			if(element.type == 0)
+				out.writeUTF(element.sValue);
+			else
+				out.writeInt(element.iValue);
+		}
+	}
+
+	/**
+	 * Restores what writeAssembly() wrote, to this statement created from its binary
+	 * machine code, making it the same as when assembled but for the token lists.
+	 * @param in where to read from
+	 * @param sourceMIPSprogram the MIPSprogram that contains this statement
+	 * @param originalProgram the program of the (included) file the source line is in,
+	 * as given to the constructor used by the assembler
+	 * @throws IOException if reading fails
+	 **/
+
+	public void readAssembly(DataInputStream in, MIPSprogram sourceMIPSprogram, MIPSprogram originalProgram)
+	throws IOException
+	{
+		this.sourceMIPSprogram = sourceMIPSprogram;
+		this.originalProgram = originalProgram;
+		this.source = in.readUTF();
+		this.sourceLine = in.readInt();
+		this.basicAssemblyStatement = readString(in);
+		this.machineStatement = readString(in);
+		this.numOperands = in.readInt();
+		this.operands = null;
+		if(in.readBoolean())
+		{
+			this.operands = new int[in.readInt()];
+			for(int i = 0; i < operands.length; i++)
+				operands[i] = in.readInt();
+		}
+		BasicStatementList list = new BasicStatementList();
+		int count = in.readInt();
+		for(int i = 0; i < count; i++)
+		{
+			int type = in.readByte();
+			if(type == 0)
+				list.addString(in.readUTF());
+			else if(type == 1)
+				list.addAddress(in.readInt());
+			else
+				list.addValue(in.readInt());
+		}
+		this.basicStatementList = list;
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException
+	{
+		out.writeBoolean(string != null);
+		if(string != null)
+			out.writeUTF(string);
+	}
+
+	private static String readString(DataInputStream in) throws IOException
+	{
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+
 	/**
 	 * Produces MIPSprogram object representing the source file containing this statement.
 	 * @return The MIPSprogram object.  May be null...
@@ -359,7 +359,8 @@ public class Settings extends Observable
 	  */
 	public boolean getBackSteppingEnabled()
 	{
-		return (Globals.program != null && Globals.program.getBackStepper() != null && Globals.program.getBackStepper().enabled());
+		MIPSprogram program = Machine.current().getProgram();
+		return (program != null && program.getBackStepper() != null && program.getBackStepper().enabled());
 	}
 
 
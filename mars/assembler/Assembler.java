@@ -3,11 +3,13 @@ package mars.assembler;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
 import mars.ErrorList;
 import mars.ErrorMessage;
 import mars.Globals;
 import mars.MIPSprogram;
+import mars.Machine;
 import mars.ProcessingException;
 import mars.ProgramStatement;
 import mars.mips.hardware.AddressErrorException;
@@ -198,8 +200,8 @@ public class Assembler
 		externAddress = Memory.externBaseAddress;
 		currentFileDataSegmentForwardReferences = new DataSegmentForwardReferences();
 		accumulatedDataSegmentForwardReferences = new DataSegmentForwardReferences();
-		Globals.symbolTable.clear();
-		Globals.memory.clear();
+		Machine.current().getSymbolTable().clear();
+		Memory.getInstance().clear();
 		this.machineList = new ArrayList();
 		this.errors = new ErrorList();
 		if(Globals.debug)
@@ -283,7 +285,7 @@ public class Assembler
 		// Have processed all source files. Attempt to resolve any remaining forward label
 		// references from global symbol table. Those that remain unresolved are undefined
 		// and require error message.
-		accumulatedDataSegmentForwardReferences.resolve(Globals.symbolTable);
+		accumulatedDataSegmentForwardReferences.resolve(Machine.current().getSymbolTable());
 		accumulatedDataSegmentForwardReferences.generateErrorMessages(errors);
 
 		// Throw collection of errors accumulated through the first pass.
@@ -389,7 +391,7 @@ public class Assembler
 						// statement, add to list.
 						TokenList newTokenList = new Tokenizer().tokenizeLine(sourceLine,
 								instruction, errors, false);
-						ArrayList instrMatches = this.matchInstruction(newTokenList.get(0));
+						List instrMatches = this.matchInstruction(newTokenList.get(0));
 						Instruction instr = OperandFormat.bestOperandMatch(newTokenList,
 											instrMatches);
 						// Only first generated instruction is linked to original source
@@ -422,7 +424,7 @@ public class Assembler
 				System.out.println(statement);
 			try
 			{
-				Globals.memory.setStatement(statement.getAddress(), statement);
+				Memory.getInstance().setStatement(statement.getAddress(), statement);
 			}
 			catch(AddressErrorException e)
 			{
@@ -621,7 +623,7 @@ public class Assembler
 		}
 		else
 		{
-			ArrayList instrMatches = this.matchInstruction(token);
+			List instrMatches = this.matchInstruction(token);
 			if(instrMatches == null)
 				return ret;
 			// OK, we've got an operator match, let's check the operands.
@@ -670,7 +672,7 @@ public class Assembler
 	private boolean compactTranslationCanBeApplied(ProgramStatement statement)
 	{
 		return (statement.getInstruction() instanceof ExtendedInstruction
-				&& Globals.memory.usingCompactMemoryConfiguration() && ((ExtendedInstruction) statement
+				&& Memory.getInstance().usingCompactMemoryConfiguration() && ((ExtendedInstruction) statement
 						.getInstruction()).hasCompactTranslation());
 	}
 
@@ -981,9 +983,9 @@ public class Assembler
 			}
 			int size = Binary.stringToInt(tokens.get(2).getValue());
 			// If label already in global symtab, do nothing. If not, add it right now.
-			if(Globals.symbolTable.getAddress(tokens.get(1).getValue()) == SymbolTable.NOT_FOUND)
+			if(Machine.current().getSymbolTable().getAddress(tokens.get(1).getValue()) == SymbolTable.NOT_FOUND)
 			{
-				Globals.symbolTable.addSymbol(tokens.get(1), this.externAddress,
+				Machine.current().getSymbolTable().addSymbol(tokens.get(1), this.externAddress,
 											  Symbol.DATA_SYMBOL, errors);
 				this.externAddress += size;
 			}
@@ -1048,7 +1050,7 @@ public class Assembler
 			}
 			else
 			{
-				if(Globals.symbolTable.getAddress(label.getValue()) != SymbolTable.NOT_FOUND)
+				if(Machine.current().getSymbolTable().getAddress(label.getValue()) != SymbolTable.NOT_FOUND)
 				{
 					errors.add(new ErrorMessage(fileCurrentlyBeingAssembled, label.getSourceLine(),
 												label.getStartPos(), "\"" + label.getValue()
@@ -1057,7 +1059,7 @@ public class Assembler
 				else
 				{
 					fileCurrentlyBeingAssembled.getLocalSymbolTable().removeSymbol(label);
-					Globals.symbolTable.addSymbol(label, symtabEntry.getAddress(),
+					Machine.current().getSymbolTable().addSymbol(label, symtabEntry.getAddress(),
 												  symtabEntry.getType(), errors);
 				}
 			}
@@ -1086,7 +1088,7 @@ public class Assembler
 	// //////////////////////////////////////////////////////////////////////////////////
 	// Given token, find the corresponding Instruction object. If token was not
 	// recognized as OPERATOR, there is a problem.
-	private ArrayList matchInstruction(Token token)
+	private List matchInstruction(Token token)
 	{
 		if(token.getType() != TokenTypes.OPERATOR)
 		{
@@ -1101,7 +1103,7 @@ public class Assembler
 												 + "\" is not a recognized operator"));
 			return null;
 		}
-		ArrayList inst = Globals.instructionSet.matchOperator(token.getValue());
+		List inst = Globals.instructionSet.matchOperator(token.getValue());
 		if(inst == null)    // This should NEVER happen...
 		{
 			this.errors.add(new ErrorMessage(token.getSourceMIPSprogram(), token.getSourceLine(),
@@ -1188,7 +1190,7 @@ public class Assembler
 			 *
 			 * else { // not in data segment...which we assume to mean in text
 			 * segment. try { for (int i=0; i < repetitions; i++) {
-			 * Globals.memory.set(this.textAddress.get(),
+			 * Memory.getInstance().set(this.textAddress.get(),
 			 * Binary.stringToInt(valueToken.getValue()), lengthInBytes);
 			 * this.textAddress.increment(lengthInBytes); } } catch
 			 * (AddressErrorException e) { errors.add(new
@@ -1254,7 +1256,7 @@ public class Assembler
 			{
 				try
 				{
-					Globals.memory.set(this.textAddress.get(), value, lengthInBytes);
+					Memory.getInstance().set(this.textAddress.get(), value, lengthInBytes);
 				}
 				catch(AddressErrorException e)
 				{
@@ -1413,7 +1415,7 @@ public class Assembler
 					}
 					try
 					{
-						Globals.memory.set(this.dataAddress.get(), (int) theChar,
+						Memory.getInstance().set(this.dataAddress.get(), (int) theChar,
 										   DataTypes.CHAR_SIZE);
 					}
 					catch(AddressErrorException e)
@@ -1428,7 +1430,7 @@ public class Assembler
 				{
 					try
 					{
-						Globals.memory.set(this.dataAddress.get(), 0, DataTypes.CHAR_SIZE);
+						Memory.getInstance().set(this.dataAddress.get(), 0, DataTypes.CHAR_SIZE);
 					}
 					catch(AddressErrorException e)
 					{
@@ -1467,7 +1469,7 @@ public class Assembler
 			this.dataAddress.set(this.alignToBoundary(this.dataAddress.get(), lengthInBytes));
 		try
 		{
-			Globals.memory.set(this.dataAddress.get(), value, lengthInBytes);
+			Memory.getInstance().set(this.dataAddress.get(), value, lengthInBytes);
 		}
 		catch(AddressErrorException e)
 		{
@@ -1493,7 +1495,7 @@ public class Assembler
 			this.dataAddress.set(this.alignToBoundary(this.dataAddress.get(), lengthInBytes));
 		try
 		{
-			Globals.memory.setDouble(this.dataAddress.get(), value);
+			Memory.getInstance().setDouble(this.dataAddress.get(), value);
 		}
 		catch(AddressErrorException e)
 		{
@@ -1672,7 +1674,7 @@ public class Assembler
 					// patch address has to be valid b/c we already stored there...
 					try
 					{
-						Globals.memory.set(entry.patchAddress, labelAddress, entry.length);
+						Memory.getInstance().set(entry.patchAddress, labelAddress, entry.length);
 					}
 					catch(AddressErrorException aee)
 					{
@@ -0,0 +1,419 @@
+package mars.assembler;
+import mars.*;
+import mars.mips.hardware.*;
+import mars.mips.instructions.*;
+import mars.util.*;
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * An on-disk cache of assembled programs, so that running the same sources again does
+ * not read, tokenize and assemble them again.  An entry holds everything assembly
+ * leaves behind: the text segments as machine code and the data segments (see
+ * Memory.writeCheckpoint), the global and local symbol tables, the source file and
+ * line of every statement, and the assembler warnings.  On a hit these are loaded
+ * straight into memory.
+ * <p>
+ * Entries are named after a SHA-256 hash of the names and contents of the source
+ * files and of everything else that affects assembly: the MARS version, whether
+ * pseudo-instructions are allowed and warnings are errors, the delayed branching, bare
+ * machine, function local labels and start at main settings, the memory configuration
+ * and the pseudo-instruction table loaded from PseudoOps.txt.  Every file read through
+ * .include, whether or not it adds any statements, is recorded with a hash of its
+ * contents in the entry itself, which is ignored if any of them has changed.  Only
+ * programs that assemble are cached, and only if each of their statements decodes
+ * from its machine code to the same instruction, as statements are rebuilt from the
+ * machine code on a hit (see ProgramStatement.readAssembly).  Entries are written to
+ * a temporary file first and moved into place, so several processes or threads may
+ * share a cache directory.
+ *
+ * @version October 2026
+ */
+
+public class AssemblyCache
+{
+	private static final int MAGIC = 0x4d41534d; // "MASM"
+	private static final int VERSION = 2;
+
+	private final File directory;
+
+	/**
+	 * Create a cache kept in the given directory, which is created when the first entry
+	 * is written to it.
+	 *
+	 * @param directory directory of the cache entries
+	 */
+	public AssemblyCache(File directory)
+	{
+		this.directory = directory;
+	}
+
+	/**
+	 * Assemble the given files for the current machine, as MIPSprogram methods
+	 * prepareFilesForAssembly() (with no exception handler) then assemble() would, unless
+	 * the cache holds the result, in which case it is loaded instead.  A program assembled
+	 * is added to the cache.  Problems with the cache itself are not reported; the files
+	 * are then simply assembled.
+	 *
+	 * @param program the MIPSprogram for the lead file, as for prepareFilesForAssembly()
+	 * @param filenames names of the source files
+	 * @param leadFilename name of the source file to go first
+	 * @param extendedAssemblerEnabled whether pseudo-instructions are allowed
+	 * @param warningsAreErrors whether assembler warnings are errors
+	 * @return the assembler warnings
+	 * @throws ProcessingException if the files cannot be read, tokenized or assembled
+	 */
+	public ErrorList assemble(MIPSprogram program, ArrayList filenames, String leadFilename,
+							  boolean extendedAssemblerEnabled, boolean warningsAreErrors) throws ProcessingException
+	{
+		File entry = null;
+		try
+		{
+			entry = new File(directory, getKey(filenames, leadFilename, extendedAssemblerEnabled, warningsAreErrors) + ".img");
+			if(entry.isFile())
+			{
+				ErrorList warnings = load(entry, program);
+				if(warnings != null)
+					return warnings;
+			}
+		}
+		catch(IOException e)
+		{
+			// assemble as if it was not cached
+		}
+		ArrayList programs = program.prepareFilesForAssembly(filenames, leadFilename, null);
+		ErrorList warnings = program.assemble(programs, extendedAssemblerEnabled, warningsAreErrors);
+		if(entry != null)
+		{
+			try
+			{
+				store(entry, program, programs, warnings);
+			}
+			catch(IOException e)
+			{
+				// not cached this time
+			}
+		}
+		return warnings;
+	}
+
+	// The hash of everything the assembly depends on, other than included files.
+	private static String getKey(ArrayList filenames, String leadFilename, boolean extendedAssemblerEnabled,
+								 boolean warningsAreErrors) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(VERSION);
+		out.writeUTF(Globals.version);
+		out.writeBoolean(extendedAssemblerEnabled);
+		out.writeBoolean(warningsAreErrors);
+		out.writeBoolean(Globals.getSettings().getDelayedBranchingEnabled());
+		out.writeBoolean(Globals.getSettings().getBareMachineEnabled());
+		out.writeBoolean(Globals.getSettings().getFunctionLocalLabels());
+		out.writeBoolean(Globals.getSettings().getStartAtMain());
+		out.writeUTF(MemoryConfigurations.getCurrentConfiguration().getConfigurationIdentifier());
+		// The pseudo-instructions come from PseudoOps.txt, which users can replace.
+		ArrayList instructions = Globals.instructionSet.getInstructionList();
+		out.writeInt(instructions.size());
+		for(int i = 0; i < instructions.size(); i++)
+		{
+			Instruction instruction = (Instruction) instructions.get(i);
+			out.writeUTF(instruction.getExampleFormat());
+			if(instruction instanceof ExtendedInstruction)
+			{
+				writeStrings(out, ((ExtendedInstruction) instruction).getBasicIntructionTemplateList());
+				writeStrings(out, ((ExtendedInstruction) instruction).getCompactBasicIntructionTemplateList());
+			}
+		}
+		out.writeUTF(leadFilename);
+		out.writeInt(filenames.size());
+		for(int i = 0; i < filenames.size(); i++)
+		{
+			String filename = (String) filenames.get(i);
+			byte[] contents = Files.readAllBytes(Paths.get(filename));
+			out.writeUTF(filename);
+			out.writeInt(contents.length);
+			out.write(contents);
+		}
+		out.close();
+		return toHex(digest(bytes.toByteArray()));
+	}
+
+	// A list of Strings, or null.
+	private static void writeStrings(DataOutputStream out, ArrayList strings) throws IOException
+	{
+		out.writeInt((strings == null) ? -1 : strings.size());
+		for(int i = 0; strings != null && i < strings.size(); i++)
+			out.writeUTF((String) strings.get(i));
+	}
+
+	/////////////////////////////////////////////////////////////////////
+	// Entries: magic number and version, included files and their hashes, warnings,
+	// the programs (file name and local symbols, if any), global symbols, memory, then
+	// the source location of each statement.
+
+	private static void store(File entry, MIPSprogram program, ArrayList programs, ErrorList warnings)
+	throws IOException
+	{
+		ArrayList statements = program.getMachineList();
+		ArrayList allPrograms = new ArrayList(programs);
+		for(int i = 0; i < statements.size(); i++)
+		{
+			ProgramStatement statement = (ProgramStatement) statements.get(i);
+			if(!decodesTheSame(statement))
+				return;
+			MIPSprogram original = statement.getOrigMIPSprogram();
+			if(original != null && !containsProgram(allPrograms, original))
+				allPrograms.add(original);
+		}
+		// As the tokenizer read them, including those that add only data, .eqv or macros.
+		ArrayList included = new ArrayList();
+		for(int i = 0; i < programs.size(); i++)
+		{
+			ArrayList files = ((MIPSprogram) programs.get(i)).getTokenizer().getIncludedFiles();
+			for(int j = 0; j < files.size(); j++)
+				if(!included.contains(files.get(j)))
+					included.add(files.get(j));
+		}
+		Files.createDirectories(directory(entry).toPath());
+		File temporary = File.createTempFile("asm", ".tmp", directory(entry));
+		try
+		{
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Channels.newOutputStream(FileChannel.open(temporary.toPath(), StandardOpenOption.WRITE))));
+			try
+			{
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(included.size());
+				for(int i = 0; i < included.size(); i++)
+				{
+					String filename = (String) included.get(i);
+					out.writeUTF(filename);
+					out.write(digest(Files.readAllBytes(Paths.get(filename))));
+				}
+				ArrayList messages = warnings.getErrorMessages();
+				out.writeInt(messages.size());
+				for(int i = 0; i < messages.size(); i++)
+				{
+					ErrorMessage message = (ErrorMessage) messages.get(i);
+					out.writeBoolean(message.isWarning());
+					out.writeUTF(message.getFilename());
+					out.writeInt(message.getLine());
+					out.writeInt(message.getPosition());
+					out.writeUTF(message.getMessage());
+					out.writeUTF(message.getMacroExpansionHistory());
+				}
+				out.writeInt(allPrograms.indexOf(program));
+				out.writeInt(allPrograms.size());
+				for(int i = 0; i < allPrograms.size(); i++)
+				{
+					MIPSprogram p = (MIPSprogram) allPrograms.get(i);
+					out.writeUTF(p.getFilename());
+					out.writeBoolean(i < programs.size());
+					if(i < programs.size())
+						writeSymbols(out, p.getLocalSymbolTable());
+				}
+				writeSymbols(out, Machine.current().getSymbolTable());
+				Memory.getInstance().writeCheckpoint(out);
+				out.writeInt(statements.size());
+				for(int i = 0; i < statements.size(); i++)
+				{
+					ProgramStatement statement = (ProgramStatement) statements.get(i);
+					out.writeInt(statement.getAddress());
+					out.writeInt(allPrograms.indexOf(statement.getSourceMIPSprogram()));
+					out.writeInt(allPrograms.indexOf(statement.getOrigMIPSprogram()));
+					statement.writeAssembly(out);
+				}
+			}
+			finally
+			{
+				out.close();
+			}
+			Files.move(temporary.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					   StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			temporary.delete();
+		}
+	}
+
+	// Returns the warnings, or null if an included file has changed.
+	private static ErrorList load(File entry, MIPSprogram program) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(entry.toPath())));
+		if(in.readInt() != MAGIC || in.readInt() != VERSION)
+			return null;
+		int includedCount = in.readInt();
+		for(int i = 0; i < includedCount; i++)
+		{
+			Path included = Paths.get(in.readUTF());
+			byte[] hash = new byte[32];
+			in.readFully(hash);
+			if(!Files.isRegularFile(included) || !Arrays.equals(hash, digest(Files.readAllBytes(included))))
+				return null;
+		}
+		ErrorList warnings = new ErrorList();
+		int messageCount = in.readInt();
+		for(int i = 0; i < messageCount; i++)
+		{
+			boolean isWarning = in.readBoolean();
+			String filename = in.readUTF();
+			int line = in.readInt();
+			int position = in.readInt();
+			String message = in.readUTF();
+			warnings.add(new ErrorMessage(isWarning, filename, line, position, message, in.readUTF()));
+		}
+		int lead = in.readInt();
+		MIPSprogram[] programs = new MIPSprogram[in.readInt()];
+		SymbolTable[] localSymbolTables = new SymbolTable[programs.length];
+		if(lead < 0 || lead >= programs.length)
+			throw new IOException("invalid assembled program");
+		for(int i = 0; i < programs.length; i++)
+		{
+			programs[i] = (i == lead) ? program : new MIPSprogram();
+			String filename = in.readUTF();
+			if(in.readBoolean())
+				localSymbolTables[i] = readSymbols(in, new SymbolTable(filename), programs[i]);
+			programs[i].setAssembled(filename, localSymbolTables[i], null);
+		}
+		SymbolTable globals = Machine.current().getSymbolTable();
+		globals.clear();
+		readSymbols(in, globals, program);
+		Memory memory = Memory.getInstance();
+		memory.clear();
+		memory.readCheckpoint(in);
+		ArrayList statements = new ArrayList();
+		int statementCount = in.readInt();
+		for(int i = 0; i < statementCount; i++)
+		{
+			int address = in.readInt();
+			int source = in.readInt();
+			int original = in.readInt();
+			ProgramStatement statement;
+			try
+			{
+				statement = memory.getStatementNoNotify(address);
+			}
+			catch(AddressErrorException e)
+			{
+				statement = null;
+			}
+			if(statement == null || source < 0 || source >= programs.length || original >= programs.length)
+				throw new IOException("invalid assembled program");
+			statement.readAssembly(in, programs[source], (original < 0) ? null : programs[original]);
+			statements.add(statement);
+		}
+		program.setAssembled(program.getFilename(), localSymbolTables[lead], statements);
+		SystemIO.resetFiles();
+		return warnings;
+	}
+
+	private static void writeSymbols(DataOutputStream out, SymbolTable table) throws IOException
+	{
+		ArrayList symbols = table.getAllSymbols(true);
+		out.writeInt(symbols.size());
+		for(int i = 0; i < symbols.size(); i++)
+		{
+			Symbol symbol = (Symbol) symbols.get(i);
+			out.writeUTF(symbol.getName());
+			out.writeInt(symbol.getAddress());
+			out.writeBoolean(symbol.getType());
+		}
+	}
+
+	private static SymbolTable readSymbols(DataInputStream in, SymbolTable table, MIPSprogram program) throws IOException
+	{
+		ErrorList errors = new ErrorList();
+		int count = in.readInt();
+		for(int i = 0; i < count; i++)
+		{
+			String name = in.readUTF();
+			int address = in.readInt();
+			table.addSymbol(new Token(TokenTypes.IDENTIFIER, name, program, 0, 0), address, in.readBoolean(), errors);
+		}
+		if(errors.errorsOccurred())
+			throw new IOException("invalid assembled program");
+		return table;
+	}
+
+	// Whether the statement rebuilt from the machine code of this one, as on a hit, is for
+	// the same instruction.  The rest is restored by ProgramStatement.readAssembly().
+	private static boolean decodesTheSame(ProgramStatement statement)
+	{
+		try
+		{
+			return new ProgramStatement(statement.getBinaryStatement(), statement.getAddress()).getInstruction()
+				   == statement.getInstruction();
+		}
+		catch(RuntimeException e)
+		{
+			return false;
+		}
+	}
+
+	private static boolean containsProgram(ArrayList programs, MIPSprogram program)
+	{
+		for(int i = 0; i < programs.size(); i++)
+			if(programs.get(i) == program)
+				return true;
+		return false;
+	}
+
+	private static File directory(File entry)
+	{
+		return entry.getAbsoluteFile().getParentFile();
+	}
+
+	private static byte[] digest(byte[] bytes)
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256").digest(bytes);
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e); // every Java platform has SHA-256
+		}
+	}
+
+	private static String toHex(byte[] bytes)
+	{
+		StringBuffer hex = new StringBuffer();
+		for(int i = 0; i < bytes.length; i++)
+			hex.append(Integer.toHexString((bytes[i] & 0xff) | 0x100).substring(1));
+		return hex.toString();
+	}
+}
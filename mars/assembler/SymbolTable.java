@@ -42,6 +42,14 @@ public class SymbolTable
 	private static String startLabel = "main";
 	private String filename;
 	private ArrayList table;
+	// Indexes over the table, so that label lookups during assembly do not have to
+	// scan it.  Names are unique within a table (addSymbol rejects duplicates), so
+	// the name index maps each name to its Symbol.  Several labels may share an
+	// address, so the address index maps each address to the list of its Symbols in
+	// table order, and lookups by address return the first of them as a scan would.
+	// Symbol addresses must therefore only be changed via fixSymbolTableAddress().
+	private HashMap symbolsByName;
+	private TreeMap symbolsByAddress;
 	// Note -1 is legal 32 bit address (0xFFFFFFFF) but it is the high address in
 	// kernel address space so highly unlikely that any symbol will have this as
 	// its associated address!
@@ -55,7 +63,7 @@ public class SymbolTable
 	public SymbolTable(String filename)
 	{
 		this.filename = filename;
-		this.table = new ArrayList();
+		clear();
 	}
 	/**
 	  *  Adds a Symbol object into the array of Symbols.
@@ -74,6 +82,8 @@ public class SymbolTable
 		{
 			Symbol s = new Symbol(label, address, b);
 			table.add(s);
+			symbolsByName.put(label, s);
+			symbolsAt(address, true).add(s);
 			if(Globals.debug) System.out.println("The symbol " + label + " with address " + address + " has been added to the " + this.filename + " symbol table.");
 		}
 	}
@@ -89,14 +99,15 @@ public class SymbolTable
 	public void removeSymbol(Token token)
 	{
 		String label = token.getValue();
-		for(int i = 0; i < table.size(); i++)
+		Symbol sym = (Symbol) symbolsByName.remove(label);
+		if(sym != null)
 		{
-			if(((Symbol)(table.get(i))).getName().equals(label))
-			{
-				table.remove(i);
-				if(Globals.debug) System.out.println("The symbol " + label + " has been removed from the " + this.filename + " symbol table.");
-				break;
-			}
+			table.remove(sym);
+			ArrayList list = symbolsAt(sym.getAddress(), false);
+			list.remove(sym);
+			if(list.isEmpty())
+				symbolsByAddress.remove(Integer.valueOf(sym.getAddress()));
+			if(Globals.debug) System.out.println("The symbol " + label + " has been removed from the " + this.filename + " symbol table.");
 		}
 		return;
 	}
@@ -109,12 +120,8 @@ public class SymbolTable
 	  **/
 	public int getAddress(String s)
 	{
-		for(int i = 0; i < table.size(); i++)
-		{
-			if(((Symbol)(table.get(i))).getName().equals(s))
-				return((Symbol) table.get(i)).getAddress();
-		}
-		return NOT_FOUND;
+		Symbol sym = (Symbol) symbolsByName.get(s);
+		return (sym == null) ? NOT_FOUND : sym.getAddress();
 	}
 
 	/**
@@ -127,7 +134,7 @@ public class SymbolTable
 	public int getAddressLocalOrGlobal(String s)
 	{
 		int address = this.getAddress(s);
-		return (address == NOT_FOUND) ? Globals.symbolTable.getAddress(s) : address ;
+		return (address == NOT_FOUND) ? Machine.current().getSymbolTable().getAddress(s) : address ;
 	}
 
 
@@ -139,12 +146,7 @@ public class SymbolTable
 
 	public Symbol getSymbol(String s)
 	{
-		for(int i = 0; i < table.size(); i++)
-		{
-			if(((Symbol)(table.get(i))).getName().equals(s))
-				return (Symbol) table.get(i);
-		}
-		return null;
+		return (Symbol) symbolsByName.get(s);
 	}
 
 	/**
@@ -164,12 +166,27 @@ public class SymbolTable
 		{
 			return null;
 		}
-		for(int i = 0; i < table.size(); i++)
+		return getSymbolGivenAddress(address);
+	}
+
+	// First symbol in table order having the given address, or null if none.
+	private Symbol getSymbolGivenAddress(int address)
+	{
+		ArrayList list = symbolsAt(address, false);
+		return (list == null) ? null : (Symbol) list.get(0);
+	}
+
+	// The list of symbols at the given address, in table order.  If there are none,
+	// returns null or, if create is true, a new empty list entered in the index.
+	private ArrayList symbolsAt(int address, boolean create)
+	{
+		ArrayList list = (ArrayList) symbolsByAddress.get(Integer.valueOf(address));
+		if(list == null && create)
 		{
-			if(((Symbol)(table.get(i))).getAddress() == address)
-				return (Symbol) table.get(i);
+			list = new ArrayList();
+			symbolsByAddress.put(Integer.valueOf(address), list);
 		}
-		return null;
+		return list;
 	}
 
 	/**
@@ -181,7 +198,7 @@ public class SymbolTable
 	public Symbol getSymbolGivenAddressLocalOrGlobal(String s)
 	{
 		Symbol sym = this.getSymbolGivenAddress(s);
-		return (sym == null) ? Globals.symbolTable.getSymbolGivenAddress(s) : sym ;
+		return (sym == null) ? Machine.current().getSymbolTable().getSymbolGivenAddress(s) : sym ;
 	}
 
 
@@ -258,6 +275,8 @@ public class SymbolTable
 	public void clear()
 	{
 		table = new ArrayList();
+		symbolsByName = new HashMap();
+		symbolsByAddress = new TreeMap();
 	}
 
 	/**
@@ -271,11 +290,23 @@ public class SymbolTable
 
 	public void fixSymbolTableAddress(int originalAddress, int replacementAddress)
 	{
-		Symbol label = getSymbolGivenAddress(Integer.toString(originalAddress));
-		while(label != null)
+		if(originalAddress == replacementAddress)
+			return;
+		ArrayList moved = (ArrayList) symbolsByAddress.remove(Integer.valueOf(originalAddress));
+		if(moved == null)
+			return;
+		for(int i = 0; i < moved.size(); i++)
+			((Symbol) moved.get(i)).setAddress(replacementAddress);
+		ArrayList list = symbolsAt(replacementAddress, false);
+		if(list == null)
+			symbolsByAddress.put(Integer.valueOf(replacementAddress), moved);
+		else
 		{
-			label.setAddress(replacementAddress);
-			label = getSymbolGivenAddress(Integer.toString(originalAddress));
+			// Both sets of symbols now share the address; restore table order.
+			list.clear();
+			for(int i = 0; i < table.size(); i++)
+				if(((Symbol) table.get(i)).getAddress() == replacementAddress)
+					list.add(table.get(i));
 		}
 		return;
 	}
@@ -296,7 +327,7 @@ public class SymbolTable
 
 	public static int getStartLabelAddr()
 	{
-		int mainAddr = Globals.symbolTable.getAddress(SymbolTable.getStartLabel());
+		int mainAddr = Machine.current().getSymbolTable().getAddress(SymbolTable.getStartLabel());
 		if(mainAddr != NOT_FOUND && (Memory.inTextSegment(mainAddr) || Memory.inKernelTextSegment(mainAddr)))
 			return mainAddr;
 		else
@@ -53,6 +53,7 @@ public class Tokenizer
 	private ErrorList errors;
 	private MIPSprogram sourceMIPSprogram;
 	private HashMap<String, String> equivalents; // DPS 11-July-2012
+	private ArrayList<String> includedFiles = new ArrayList<String>(); // read by the last tokenize()
 	// The 8 escaped characters are: single quote, double quote, backslash, newline (linefeed),
 	// tab, backspace, return, form feed.  The characters and their corresponding decimal codes:
 	private static final String escapedCharacters = "'\"\\ntbrf0";
@@ -90,6 +91,7 @@ public class Tokenizer
 	{
 		sourceMIPSprogram = p;
 		equivalents = new HashMap<String, String>(); // DPS 11-July-2012
+		includedFiles = new ArrayList<String>();
 		ArrayList tokenList = new ArrayList();
 		//ArrayList source = p.getSourceList();
 		ArrayList<SourceLine> source = processIncludes(p, new HashMap<String, String>()); // DPS 9-Jan-2013
@@ -114,6 +116,18 @@ public class Tokenizer
 		return tokenList;
 	}
 
+	/**
+	 * Get the names of the files brought in by .include directives, directly or from
+	 * other included files, during the last tokenize(), in the order they were read.
+	 * Every one counts, whether or not it holds any statements.
+	 *
+	 * @return list of included file names, as Strings
+	 */
+	public ArrayList<String> getIncludedFiles()
+	{
+		return includedFiles;
+	}
+
 
 
 	// pre-pre-processing pass through source code to process any ".include" directives.
@@ -152,6 +166,7 @@ public class Tokenizer
 						throw new ProcessingException(errors);
 					}
 					inclFiles.put(filename, filename);
+					includedFiles.add(filename);
 					MIPSprogram incl = new MIPSprogram();
 					try
 					{
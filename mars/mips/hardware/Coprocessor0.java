@@ -1,5 +1,6 @@
 package mars.mips.hardware;
 import mars.Globals;
+import mars.Machine;
 import java.util.*;
 
 /*
@@ -50,14 +51,46 @@ public class Coprocessor0
 	// bit 1 (exception level) not set, bit 0 (interrupt enable) set.
 	public static final int DEFAULT_STATUS_VALUE = 0x0000FF11;
 
-	private static Register [] registers =
+	// List position of each register number, -1 for non-implemented registers.
+	private static final int [] positions = new int[32];
+	static
 	{
-		new Register("$8 (vaddr)", 8, 0),
-		new Register("$12 (status)", 12, DEFAULT_STATUS_VALUE),
-		new Register("$13 (cause)", 13, 0),
-		new Register("$14 (epc)", 14, 0)
+		Arrays.fill(positions, -1);
+		positions[VADDR] = 0;
+		positions[STATUS] = 1;
+		positions[CAUSE] = 2;
+		positions[EPC] = 3;
+	}
+
+	// Register values, in list position order (see getRegisterPosition).  The
+	// Register objects below keep their values here, and the simulator reads and
+	// writes them directly unless the Register has an observer.
+	private final int [] values = new int[4];
+
+	private final Register [] registers =
+	{
+		new Register("$8 (vaddr)", VADDR, 0, values, 0),
+		new Register("$12 (status)", STATUS, DEFAULT_STATUS_VALUE, values, 1),
+		new Register("$13 (cause)", CAUSE, 0, values, 2),
+		new Register("$14 (epc)", EPC, 0, values, 3)
 	};
 
+	/**
+	 *  Create a set of coprocessor 0 registers holding their reset values.  Each
+	 *  Machine has its own; the static methods below work on that of the current
+	 *  Machine (see Machine.current()).
+	 **/
+
+	public Coprocessor0()
+	{
+	}
+
+	// The registers of the machine being simulated by the calling thread.
+	private static Coprocessor0 current()
+	{
+		return Machine.current().getCoprocessor0();
+	}
+
 
 	/**
 	  *  Method for displaying the register values for debugging.
@@ -65,6 +98,7 @@ public class Coprocessor0
 
 	public static void showRegisters()
 	{
+		Register [] registers = current().registers;
 		for(int i = 0; i < registers.length; i++)
 		{
 			System.out.println("Name: " + registers[i].getName());
@@ -83,6 +117,7 @@ public class Coprocessor0
 
 	public static int updateRegister(String n, int val)
 	{
+		Register [] registers = current().registers;
 		int oldValue = 0;
 		for(int i = 0; i < registers.length; i++)
 		{
@@ -104,17 +139,23 @@ public class Coprocessor0
 	  **/
 	public static int updateRegister(int num, int val)
 	{
-		int old = 0;
-		for(int i = 0; i < registers.length; i++)
+		Coprocessor0 current = current();
+		Register [] registers = current.registers;
+		int [] values = current.values;
+		if(num < 0 || num >= positions.length || positions[num] < 0)
+			return 0;
+		int i = positions[num];
+		Register reg = registers[i];
+		int old;
+		if(reg.isObserved())
+			old = reg.setValue(val);
+		else
 		{
-			if(registers[i].getNumber() == num)
-			{
-				old = (Globals.getSettings().getBackSteppingEnabled())
-					  ? Globals.program.getBackStepper().addCoprocessor0Restore(num, registers[i].setValue(val))
-					  : registers[i].setValue(val);
-				break;
-			}
+			old = values[i];
+			values[i] = val;
 		}
+		if(Globals.getSettings().getBackSteppingEnabled())
+			Machine.current().getProgram().getBackStepper().addCoprocessor0Restore(num, old);
 		return old;
 	}
 
@@ -127,12 +168,13 @@ public class Coprocessor0
 
 	public static int getValue(int num)
 	{
-		for(int i = 0; i < registers.length; i++)
-		{
-			if(registers[i].getNumber() == num)
-				return registers[i].getValue();
-		}
-		return 0;
+		Coprocessor0 current = current();
+		Register [] registers = current.registers;
+		int [] values = current.values;
+		if(num < 0 || num >= positions.length || positions[num] < 0)
+			return 0;
+		int i = positions[num];
+		return registers[i].isObserved() ? registers[i].getValue() : values[i];
 	}
 
 	/**
@@ -143,6 +185,7 @@ public class Coprocessor0
 
 	public static int getNumber(String n)
 	{
+		Register [] registers = current().registers;
 		for(int i = 0; i < registers.length; i++)
 		{
 			if(("$" + registers[i].getNumber()).equals(n) || registers[i].getName().equals(n))
@@ -158,6 +201,7 @@ public class Coprocessor0
 
 	public static Register[] getRegisters()
 	{
+		Register [] registers = current().registers;
 		return registers;
 	}
 
@@ -172,6 +216,7 @@ public class Coprocessor0
 
 	public static int getRegisterPosition(Register r)
 	{
+		Register [] registers = current().registers;
 		for(int i = 0; i < registers.length; i++)
 		{
 			if(registers[i] == r)
@@ -188,6 +233,7 @@ public class Coprocessor0
 
 	public static Register getRegister(String rname)
 	{
+		Register [] registers = current().registers;
 		for(int i = 0; i < registers.length; i++)
 		{
 			if(("$" + registers[i].getNumber()).equals(rname) || registers[i].getName().equals(rname))
@@ -203,6 +249,7 @@ public class Coprocessor0
 
 	public static void resetRegisters()
 	{
+		Register [] registers = current().registers;
 		for(int i = 0; i < registers.length; i++)
 			registers[i].resetValue();
 	}
@@ -213,6 +260,7 @@ public class Coprocessor0
 	*/
 	public static void addRegistersObserver(Observer observer)
 	{
+		Register [] registers = current().registers;
 		for(int i = 0; i < registers.length; i++)
 			registers[i].addObserver(observer);
 	}
@@ -223,6 +271,7 @@ public class Coprocessor0
 	*/
 	public static void deleteRegistersObserver(Observer observer)
 	{
+		Register [] registers = current().registers;
 		for(int i = 0; i < registers.length; i++)
 			registers[i].deleteObserver(observer);
 	}
@@ -1,6 +1,7 @@
 package mars.mips.hardware;
 import mars.util.*;
 import mars.Globals;
+import mars.Machine;
 import java.util.*;
 
 /*
@@ -49,36 +50,59 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 public  class Coprocessor1
 {
+	// Register values, indexed by register number, followed by the condition flags.
+	// The Register objects below keep their values here, and the FPU instructions
+	// read and write them directly unless the Register has an observer.
+	private static final int CONDITION = 32;
+	private final int [] values = new int[CONDITION + 1];
+
 	// JB: allow registers without stupid dollar signs
-	private static Register [] registers =
-	{
-		new Register("f0", 0, 0),  new Register("f1", 1, 0),
-		new Register("f2", 2, 0),  new Register("f3", 3, 0),
-		new Register("f4", 4, 0),  new Register("f5", 5, 0),
-		new Register("f6", 6, 0),  new Register("f7", 7, 0),
-		new Register("f8", 8, 0),  new Register("f9", 9, 0),
-		new Register("f10", 10, 0), new Register("f11", 11, 0),
-		new Register("f12", 12, 0), new Register("f13", 13, 0),
-		new Register("f14", 14, 0), new Register("f15", 15, 0),
-		new Register("f16", 16, 0), new Register("f17", 17, 0),
-		new Register("f18", 18, 0), new Register("f19", 19, 0),
-		new Register("f20", 20, 0), new Register("f21", 21, 0),
-		new Register("f22", 22, 0), new Register("f23", 23, 0),
-		new Register("f24", 24, 0), new Register("f25", 25, 0),
-		new Register("f26", 26, 0), new Register("f27", 27, 0),
-		new Register("f28", 28, 0), new Register("f29", 29, 0),
-		new Register("f30", 30, 0), new Register("f31", 31, 0)
+	private final Register [] registers =
+	{
+		new Register("f0", 0, 0, values, 0),  new Register("f1", 1, 0, values, 1),
+		new Register("f2", 2, 0, values, 2),  new Register("f3", 3, 0, values, 3),
+		new Register("f4", 4, 0, values, 4),  new Register("f5", 5, 0, values, 5),
+		new Register("f6", 6, 0, values, 6),  new Register("f7", 7, 0, values, 7),
+		new Register("f8", 8, 0, values, 8),  new Register("f9", 9, 0, values, 9),
+		new Register("f10", 10, 0, values, 10), new Register("f11", 11, 0, values, 11),
+		new Register("f12", 12, 0, values, 12), new Register("f13", 13, 0, values, 13),
+		new Register("f14", 14, 0, values, 14), new Register("f15", 15, 0, values, 15),
+		new Register("f16", 16, 0, values, 16), new Register("f17", 17, 0, values, 17),
+		new Register("f18", 18, 0, values, 18), new Register("f19", 19, 0, values, 19),
+		new Register("f20", 20, 0, values, 20), new Register("f21", 21, 0, values, 21),
+		new Register("f22", 22, 0, values, 22), new Register("f23", 23, 0, values, 23),
+		new Register("f24", 24, 0, values, 24), new Register("f25", 25, 0, values, 25),
+		new Register("f26", 26, 0, values, 26), new Register("f27", 27, 0, values, 27),
+		new Register("f28", 28, 0, values, 28), new Register("f29", 29, 0, values, 29),
+		new Register("f30", 30, 0, values, 30), new Register("f31", 31, 0, values, 31)
 	};
 	// The 8 condition flags will be stored in bits 0-7 for flags 0-7.
-	private static Register condition = new Register("cf", 32, 0);
+	private final Register condition = new Register("cf", 32, 0, values, CONDITION);
 	private static int numConditionFlags = 8;
 
+	/**
+	 *  Create a set of floating point registers and condition flags, all zero.  Each
+	 *  Machine has its own; the static methods below work on that of the current
+	 *  Machine (see Machine.current()).
+	 **/
+
+	public Coprocessor1()
+	{
+	}
+
+	// The registers of the machine being simulated by the calling thread.
+	private static Coprocessor1 current()
+	{
+		return Machine.current().getCoprocessor1();
+	}
+
 	/**
 	  *  Method for displaying the register values for debugging.
 	  **/
 
 	public static void showRegisters()
 	{
+		Register [] registers = current().registers;
 		for(int i = 0; i < registers.length; i++)
 		{
 
@@ -109,8 +133,8 @@ public  class Coprocessor1
 
 	public static void setRegisterToFloat(int reg, float val)
 	{
-		if(reg >= 0 && reg < registers.length)
-			registers[reg].setValue(Float.floatToRawIntBits(val));
+		if(reg >= 0 && reg < CONDITION)
+			set(reg, Float.floatToRawIntBits(val));
 	}
 
 	/**
@@ -135,8 +159,8 @@ public  class Coprocessor1
 
 	public static void setRegisterToInt(int reg, int val)
 	{
-		if(reg >= 0 && reg < registers.length)
-			registers[reg].setValue(val);
+		if(reg >= 0 && reg < CONDITION)
+			set(reg, val);
 	}
 
 
@@ -155,8 +179,8 @@ public  class Coprocessor1
 		if(reg % 2 != 0)
 			throw new InvalidRegisterAccessException();
 		long bits = Double.doubleToRawLongBits(val);
-		registers[reg + 1].setValue(Binary.highOrderLongToInt(bits)); // high order 32 bits
-		registers[reg].setValue(Binary.lowOrderLongToInt(bits)); // low order 32 bits
+		set(reg + 1, Binary.highOrderLongToInt(bits)); // high order 32 bits
+		set(reg, Binary.lowOrderLongToInt(bits)); // low order 32 bits
 	}
 
 
@@ -190,8 +214,8 @@ public  class Coprocessor1
 	{
 		if(reg % 2 != 0)
 			throw new InvalidRegisterAccessException();
-		registers[reg + 1].setValue(Binary.highOrderLongToInt(val)); // high order 32 bits
-		registers[reg].setValue(Binary.lowOrderLongToInt(val)); // low order 32 bits
+		set(reg + 1, Binary.highOrderLongToInt(val)); // high order 32 bits
+		set(reg, Binary.lowOrderLongToInt(val)); // low order 32 bits
 	}
 
 
@@ -221,8 +245,8 @@ public  class Coprocessor1
 	public static float getFloatFromRegister(int reg)
 	{
 		float result = 0F;
-		if(reg >= 0 && reg < registers.length)
-			result = Float.intBitsToFloat(registers[reg].getValue());
+		if(reg >= 0 && reg < CONDITION)
+			result = Float.intBitsToFloat(get(reg));
 		return result;
 	}
 
@@ -248,8 +272,8 @@ public  class Coprocessor1
 	public static int getIntFromRegister(int reg)
 	{
 		int result = 0;
-		if(reg >= 0 && reg < registers.length)
-			result = registers[reg].getValue();
+		if(reg >= 0 && reg < CONDITION)
+			result = get(reg);
 		return result;
 	}
 
@@ -279,7 +303,7 @@ public  class Coprocessor1
 		double result = 0.0;
 		if(reg % 2 != 0)
 			throw new InvalidRegisterAccessException();
-		long bits = Binary.twoIntsToLong(registers[reg + 1].getValue(), registers[reg].getValue());
+		long bits = Binary.twoIntsToLong(get(reg + 1), get(reg));
 		return Double.longBitsToDouble(bits);
 	}
 
@@ -312,7 +336,7 @@ public  class Coprocessor1
 		double result = 0.0;
 		if(reg % 2 != 0)
 			throw new InvalidRegisterAccessException();
-		return Binary.twoIntsToLong(registers[reg + 1].getValue(), registers[reg].getValue());
+		return Binary.twoIntsToLong(get(reg + 1), get(reg));
 	}
 
 
@@ -340,17 +364,11 @@ public  class Coprocessor1
 
 	public static int updateRegister(int num, int val)
 	{
-		int old = 0;
-		for(int i = 0; i < registers.length; i++)
-		{
-			if(registers[i].getNumber() == num)
-			{
-				old = (Globals.getSettings().getBackSteppingEnabled())
-					  ? Globals.program.getBackStepper().addCoprocessor1Restore(num, registers[i].setValue(val))
-					  : registers[i].setValue(val);
-				break;
-			}
-		}
+		if(num < 0 || num >= CONDITION)
+			return 0;
+		int old = set(num, val);
+		if(Globals.getSettings().getBackSteppingEnabled())
+			Machine.current().getProgram().getBackStepper().addCoprocessor1Restore(num, old);
 		return old;
 	}
 
@@ -364,7 +382,7 @@ public  class Coprocessor1
 
 	public static int getValue(int num)
 	{
-		return registers[num].getValue();
+		return get(num);
 	}
 
 	/**
@@ -375,6 +393,7 @@ public  class Coprocessor1
 
 	public static int getRegisterNumber(String n)
 	{
+		Register [] registers = current().registers;
 		if(n.startsWith("$"))
 			n = n.substring(1);
 
@@ -397,7 +416,7 @@ public  class Coprocessor1
 
 	public static Register[] getRegisters()
 	{
-		return registers;
+		return current().registers;
 	}
 
 	/**
@@ -408,6 +427,7 @@ public  class Coprocessor1
 
 	public static Register getRegister(String rName)
 	{
+		Register [] registers = current().registers;
 		Register reg = null;
 		if(rName.charAt(0) == '$')
 			rName = rName.substring(1);
@@ -435,6 +455,7 @@ public  class Coprocessor1
 
 	public static void resetRegisters()
 	{
+		Register [] registers = current().registers;
 		for(int i = 0; i < registers.length; i++)
 			registers[i].resetValue();
 		clearConditionFlags();
@@ -447,6 +468,7 @@ public  class Coprocessor1
 	*/
 	public static void addRegistersObserver(Observer observer)
 	{
+		Register [] registers = current().registers;
 		for(int i = 0; i < registers.length; i++)
 			registers[i].addObserver(observer);
 	}
@@ -458,6 +480,7 @@ public  class Coprocessor1
 	*/
 	public static void deleteRegistersObserver(Observer observer)
 	{
+		Register [] registers = current().registers;
 		for(int i = 0; i < registers.length; i++)
 			registers[i].deleteObserver(observer);
 	}
@@ -474,12 +497,12 @@ public  class Coprocessor1
 		if(flag >= 0 && flag < numConditionFlags)
 		{
 			old = getConditionFlag(flag);
-			condition.setValue(Binary.setBit(condition.getValue(), flag));
+			set(CONDITION, Binary.setBit(get(CONDITION), flag));
 			if(Globals.getSettings().getBackSteppingEnabled())
 				if(old == 0)
-					Globals.program.getBackStepper().addConditionFlagClear(flag);
+					Machine.current().getProgram().getBackStepper().addConditionFlagClear(flag);
 				else
-					Globals.program.getBackStepper().addConditionFlagSet(flag);
+					Machine.current().getProgram().getBackStepper().addConditionFlagSet(flag);
 		}
 		return old;
 	}
@@ -496,12 +519,12 @@ public  class Coprocessor1
 		if(flag >= 0 && flag < numConditionFlags)
 		{
 			old = getConditionFlag(flag);
-			condition.setValue(Binary.clearBit(condition.getValue(), flag));
+			set(CONDITION, Binary.clearBit(get(CONDITION), flag));
 			if(Globals.getSettings().getBackSteppingEnabled())
 				if(old == 0)
-					Globals.program.getBackStepper().addConditionFlagClear(flag);
+					Machine.current().getProgram().getBackStepper().addConditionFlagClear(flag);
 				else
-					Globals.program.getBackStepper().addConditionFlagSet(flag);
+					Machine.current().getProgram().getBackStepper().addConditionFlagSet(flag);
 		}
 		return old;
 	}
@@ -517,7 +540,7 @@ public  class Coprocessor1
 	{
 		if(flag < 0 || flag >= numConditionFlags)
 			flag = 0;
-		return Binary.bitValue(condition.getValue(), flag);
+		return Binary.bitValue(get(CONDITION), flag);
 	}
 
 
@@ -528,7 +551,7 @@ public  class Coprocessor1
 	 */
 	public static int getConditionFlags()
 	{
-		return condition.getValue();
+		return get(CONDITION);
 	}
 
 
@@ -538,7 +561,7 @@ public  class Coprocessor1
 	 */
 	public static void clearConditionFlags()
 	{
-		condition.setValue(0);  // sets all 32 bits to 0.
+		set(CONDITION, 0);  // sets all 32 bits to 0.
 	}
 
 	/**
@@ -547,7 +570,7 @@ public  class Coprocessor1
 	*/
 	public static void setConditionFlags()
 	{
-		condition.setValue(-1);  // sets all 32 bits to 1.
+		set(CONDITION, -1);  // sets all 32 bits to 1.
 	}
 
 	/**
@@ -559,4 +582,29 @@ public  class Coprocessor1
 	{
 		return numConditionFlags;
 	}
+
+	// Read or write a register (or the condition flags) by position, going through
+	// the Register object only when it has observers to notify.
+	private static int get(int num)
+	{
+		Coprocessor1 current = current();
+		Register reg = current.register(num);
+		return reg.isObserved() ? reg.getValue() : current.values[num];
+	}
+
+	private static int set(int num, int val)
+	{
+		Coprocessor1 current = current();
+		Register reg = current.register(num);
+		if(reg.isObserved())
+			return reg.setValue(val);
+		int old = current.values[num];
+		current.values[num] = val;
+		return old;
+	}
+
+	private Register register(int num)
+	{
+		return (num == CONDITION) ? condition : registers[num];
+	}
 }
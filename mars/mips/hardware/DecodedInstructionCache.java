@@ -0,0 +1,212 @@
+package mars.mips.hardware;
+import mars.*;
+import mars.mips.instructions.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Dense, word-indexed copy of the user and kernel text segments, used by the
+ * simulator to fetch the next instruction with a single array index.  Each
+ * entry pairs the ProgramStatement (whose operands are already unpacked) with
+ * the SimulationCode of its BasicInstruction, so the fetch/execute loop does not
+ * have to go through Memory's segment checks, block table and observer
+ * notification, nor cast and dereference the instruction on every step.
+ * <p>
+ * The cache is owned by Memory and is kept in step with the text block tables:
+ * every statement stored there (by the assembler or by a self-modifying write)
+ * replaces the matching entry, and the whole cache is dropped when memory is
+ * cleared.  While any memory observer covers a text address the cache reports
+ * a miss for everything, so that instruction fetches still go through Memory and
+ * notify observers (instruction counters and the like) exactly as before.
+ *
+ * @version October 2026
+ */
+
+public class DecodedInstructionCache
+{
+	/**
+	 * One pre-decoded instruction: the statement and the code that simulates it.
+	 */
+	public static final class Entry
+	{
+		public final ProgramStatement statement;
+		public final SimulationCode code;
+
+		private Entry(ProgramStatement statement, SimulationCode code)
+		{
+			this.statement = statement;
+			this.code = code;
+		}
+	}
+
+	private static final int INITIAL_LENGTH = 256;
+
+	private final int maxLength;
+	private Entry[] text;
+	private Entry[] kernelText;
+	private int textBase;
+	private int kernelTextBase;
+	private volatile boolean enabled;
+	private int modificationCount = 0;
+	// Set while text and kernelText may be shared with another cache (see copyFrom()),
+	// so they are copied before an entry is stored.
+	private boolean shared;
+
+	/**
+	 * Create an empty cache.
+	 * @param maxLength capacity of each text segment, in words.
+	 */
+	DecodedInstructionCache(int maxLength)
+	{
+		this.maxLength = maxLength;
+		this.enabled = true;
+		reset();
+	}
+
+	/**
+	 * Drop every entry and pick up the current text segment base addresses.
+	 * Called whenever memory itself is cleared.
+	 */
+	void reset()
+	{
+		text = new Entry[0];
+		kernelText = new Entry[0];
+		shared = false;
+		textBase = Memory.textBaseAddress;
+		kernelTextBase = Memory.kernelTextBaseAddress;
+		modificationCount++;
+	}
+
+	/**
+	 * Replace every entry with those of the given cache.  Entries are immutable and
+	 * are shared, and so are the tables of them until either cache stores an entry.
+	 * Called when memory is snapshot or restored.
+	 */
+	void copyFrom(DecodedInstructionCache source)
+	{
+		text = source.text;
+		kernelText = source.kernelText;
+		shared = source.shared = true;
+		textBase = source.textBase;
+		kernelTextBase = source.kernelTextBase;
+		modificationCount++;
+	}
+
+	/**
+	 * Enable or disable lookups.  Memory disables them while an observer is
+	 * watching any part of the text segments.
+	 */
+	void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+		modificationCount++;
+	}
+
+	/**
+	 * Record the statement just stored at the given text address, replacing
+	 * (and thereby invalidating) whatever was decoded there before.  The address
+	 * has already been validated by Memory.
+	 */
+	void store(int address, ProgramStatement statement, boolean kernel)
+	{
+		int index = (address - (kernel ? kernelTextBase : textBase)) >>> 2;
+		if(index >= maxLength)
+			return;
+		if(shared)
+		{
+			text = text.clone();
+			kernelText = kernelText.clone();
+			shared = false;
+		}
+		Entry[] table = kernel ? kernelText : text;
+		if(index >= table.length)
+		{
+			if(statement == null)
+				return;
+			int length = Math.max(INITIAL_LENGTH, table.length * 2);
+			while(length <= index)
+				length *= 2;
+			Entry[] grown = new Entry[Math.min(length, maxLength)];
+			System.arraycopy(table, 0, grown, 0, table.length);
+			table = grown;
+			if(kernel)
+				kernelText = table;
+			else
+				text = table;
+		}
+		table[index] = decode(statement);
+		modificationCount++;
+	}
+
+	/**
+	 * Returns a number that changes whenever an entry is stored, the cache is reset
+	 * or copied, or lookups are enabled or disabled, so that anything derived from the
+	 * entries (see mars.simulator.BlockTranslator) can tell it is out of date.
+	 *
+	 * @return the modification count
+	 */
+	public int getModificationCount()
+	{
+		return modificationCount;
+	}
+
+	/**
+	 * Returns the pre-decoded instruction at the given address, or null if there is
+	 * none, if the address is not a word-aligned text segment address, or if the
+	 * cache is disabled.  A null result means "ask Memory", never "no instruction".
+	 *
+	 * @param address instruction address, normally the program counter
+	 * @return the decoded entry or null
+	 */
+	public Entry lookup(int address)
+	{
+		if(!enabled)
+			return null;
+		int offset = address - textBase;
+		Entry[] table = text;
+		if((offset & 3) == 0 && (offset >>>= 2) < table.length)
+			return table[offset];
+		offset = address - kernelTextBase;
+		table = kernelText;
+		if((offset & 3) == 0 && (offset >>>= 2) < table.length)
+			return table[offset];
+		return null;
+	}
+
+	// Only statements with a basic instruction get an entry.  Anything else (no
+	// statement, or a word that does not decode to an instruction) is left to the
+	// simulator's regular path so that it reports the same errors it always has.
+	private static Entry decode(ProgramStatement statement)
+	{
+		if(statement == null || !(statement.getInstruction() instanceof BasicInstruction))
+			return null;
+		BasicInstruction instruction = (BasicInstruction) statement.getInstruction();
+		return new Entry(statement, instruction.getSimulationCode());
+	}
+}
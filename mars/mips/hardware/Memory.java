@@ -4,6 +4,8 @@ import mars.util.*;
 import mars.simulator.*;
 import mars.mips.instructions.*;
 import java.util.*;
+import java.io.*;
+import java.nio.*;
 
 /*
 Copyright (c) 2003-2009,  Pete Sanderson and Kenneth Vollmar
@@ -90,7 +92,7 @@ public class Memory extends Observable
 	/** Current setting for endian (default LITTLE_ENDIAN) **/
 	private static boolean byteOrder = LITTLE_ENDIAN;
 
-	public static int heapAddress;
+	public int heapAddress;
 
 	// Memory will maintain a collection of observables.  Each one is associated
 	// with a specific memory address or address range, and each will have at least
@@ -106,6 +108,13 @@ public class Memory extends Observable
 
 	Collection observables = getNewMemoryObserversCollection();
 
+	// Every memory access has to find the observables whose range contains its address.
+	// Rather than search the collection above each time, memory consults an immutable
+	// index of it that is rebuilt whenever an observer is added or removed (which is rare
+	// compared to accesses).  See ObserverIndex below.
+
+	private volatile ObserverIndex observerIndex = ObserverIndex.EMPTY;
+
 	// The data segment is allocated in blocks of 1024 ints (4096 bytes).  Each block is
 	// referenced by a "block table" entry, and the table has 1024 entries.  The capacity
 	// is thus 1024 entries * 4096 bytes = 4 MB.  Should be enough to cover most
@@ -176,6 +185,28 @@ public class Memory extends Observable
 	private ProgramStatement[][] textBlockTable;
 	private ProgramStatement[][] kernelTextBlockTable;
 
+	// Pre-decoded copy of both text segments, indexed directly by word offset.  It is kept
+	// in step with the two tables above by storeProgramStatement() and lets the simulator
+	// fetch an instruction with one array index.  See DecodedInstructionCache.
+
+	private DecodedInstructionCache decodedInstructions;
+
+	// The snapshot last taken or restored, if any.  Its blocks are shared with this
+	// memory until written: any store to a block that is still the snapshot's first
+	// replaces it with a private copy (see writableBlock()), so the snapshot never
+	// changes and restoring it only has to put back the blocks that were replaced.
+
+	private Snapshot snapshot;
+	// While changes are collected (see beginChanges()), the snapshot that was in effect
+	// before, which snapshot is set back to afterwards.
+	private Snapshot snapshotBeforeChanges;
+	private boolean collectingChanges = false;
+
+	// Watchpoints of the running simulation, told of every write, or null.  Only the
+	// simulator thread sets and reads it.
+
+	private Breakpoints watchpoints;
+
 	// Set "top" address boundary to go with each "base" address.  This determines permissable
 	// address range for user program.  Currently limit is 4MB, or 1024 * 1024 * 4 bytes based
 	// on the table structures described above (except memory mapped IO, limited to 64KB by range).
@@ -192,29 +223,24 @@ public class Memory extends Observable
 			BLOCK_LENGTH_WORDS * BLOCK_TABLE_LENGTH * WORD_LENGTH_BYTES;
 	public static int memoryMapLimitAddress   = memoryMapBaseAddress +
 			BLOCK_LENGTH_WORDS * MMIO_TABLE_LENGTH * WORD_LENGTH_BYTES;
-	// This will be a Singleton class, only one instance is ever created.  Since I know the
-	// Memory object is always needed, I'll go ahead and create it at the time of class loading.
-	// (greedy rather than lazy instantiation).  The constructor is private and getInstance()
-	// always returns this instance.
-
-	private static Memory uniqueMemoryInstance = new Memory();
-
-
-	/*
-	 * Private constructor for Memory.  Separate data structures for text and data segments.
+	/**
+	 * Create an empty memory.  Each Machine has its own; separate data structures
+	 * for text and data segments.
 	 **/
-	private Memory()
+	public Memory()
 	{
 		initialize();
 	}
 
 	/**
-	 * Returns the unique Memory instance, which becomes in essence global.
+	 * Returns the Memory of the current Machine (see Machine.current()).  Unless
+	 * called on a MachineThread this is the one memory of the default machine, which
+	 * becomes in essence global.
 	*/
 
 	public static Memory getInstance()
 	{
-		return uniqueMemoryInstance;
+		return Machine.current().getMemory();
 	}
 
 	/**
@@ -225,6 +251,449 @@ public class Memory extends Observable
 	{
 		setConfiguration();
 		initialize();
+		// Worth it for the long-lived memory of the default machine only; other machines
+		// are typically short-lived and their garbage is collected as usual.
+		if(Machine.getDefault().getMemory() == this)
+			System.gc(); // call garbage collector on any Table memory just deallocated.
+	}
+
+	/**
+	 * The contents of a memory at the time a snapshot of it was taken, to be restored
+	 * later by restoreSnapshot(), e.g. to run an assembled program again from the start.
+	 * A snapshot shares the blocks of memory with the memory it was taken of and with
+	 * every memory it is restored into, each of which copies a block only when it first
+	 * writes to it.  It never changes, so it can be restored into several memories, even
+	 * of machines running on different threads.
+	 */
+	public static class Snapshot
+	{
+		private final int heapAddress;
+		private final int[][] dataBlockTable;
+		private final int[][] kernelDataBlockTable;
+		private final int[][] stackBlockTable;
+		private final int[][] memoryMapBlockTable;
+		private final ProgramStatement[][] textBlockTable;
+		private final ProgramStatement[][] kernelTextBlockTable;
+		private final DecodedInstructionCache decodedInstructions;
+
+		private Snapshot(Memory memory)
+		{
+			heapAddress = memory.heapAddress;
+			dataBlockTable = memory.dataBlockTable.clone();
+			kernelDataBlockTable = memory.kernelDataBlockTable.clone();
+			stackBlockTable = memory.stackBlockTable.clone();
+			memoryMapBlockTable = memory.memoryMapBlockTable.clone();
+			textBlockTable = memory.textBlockTable.clone();
+			kernelTextBlockTable = memory.kernelTextBlockTable.clone();
+			decodedInstructions = new DecodedInstructionCache(TEXT_BLOCK_LENGTH_WORDS * TEXT_BLOCK_TABLE_LENGTH);
+			decodedInstructions.copyFrom(memory.decodedInstructions);
+		}
+
+		// Only for comparing the data segments against later, never restored: the block
+		// tables are copied but not the decoded instructions.  The text tables are those
+		// of the given snapshot, if any, so that text blocks are copied on write as before.
+		private Snapshot(Memory memory, Snapshot text)
+		{
+			heapAddress = memory.heapAddress;
+			dataBlockTable = memory.dataBlockTable.clone();
+			kernelDataBlockTable = memory.kernelDataBlockTable.clone();
+			stackBlockTable = memory.stackBlockTable.clone();
+			memoryMapBlockTable = memory.memoryMapBlockTable.clone();
+			textBlockTable = (text != null) ? text.textBlockTable : memory.textBlockTable.clone();
+			kernelTextBlockTable = (text != null) ? text.kernelTextBlockTable : memory.kernelTextBlockTable.clone();
+			decodedInstructions = null;
+		}
+	}
+
+	/**
+	 * Take a snapshot of this memory: every segment, the statements in the text segments
+	 * and the heap allocation point.  No block is copied; from now on this memory copies
+	 * a block when it first writes to it.  Typically taken right after a program has been
+	 * assembled (and its arguments stored), so that it can be run again from the start
+	 * without assembling it again.
+	 *
+	 * @return the snapshot
+	 */
+	public Snapshot takeSnapshot()
+	{
+		snapshot = new Snapshot(this);
+		return snapshot;
+	}
+
+	/**
+	 * Make this memory hold what the memory a snapshot was taken of held at the time.
+	 * Only the blocks written since the snapshot was last taken or restored here are
+	 * discarded; all other blocks are already those of the snapshot.  Observers are not
+	 * notified.  The memory configuration must not have changed since the snapshot was
+	 * taken.
+	 *
+	 * @param snapshot snapshot taken by takeSnapshot() of this or another memory
+	 */
+	public void restoreSnapshot(Snapshot snapshot)
+	{
+		heapAddress = snapshot.heapAddress;
+		restoreBlocks(dataBlockTable, snapshot.dataBlockTable);
+		restoreBlocks(kernelDataBlockTable, snapshot.kernelDataBlockTable);
+		restoreBlocks(stackBlockTable, snapshot.stackBlockTable);
+		restoreBlocks(memoryMapBlockTable, snapshot.memoryMapBlockTable);
+		boolean textChanged = restoreBlocks(textBlockTable, snapshot.textBlockTable);
+		textChanged |= restoreBlocks(kernelTextBlockTable, snapshot.kernelTextBlockTable);
+		if(textChanged || this.snapshot != snapshot)
+			decodedInstructions.copyFrom(snapshot.decodedInstructions);
+		this.snapshot = snapshot;
+		updateDecodedInstructionsEnabled();
+	}
+
+	// Put back the blocks of a snapshot that differ, returning whether any did.
+	private static boolean restoreBlocks(Object[] table, Object[] saved)
+	{
+		boolean changed = false;
+		for(int i = 0; i < table.length; i++)
+		{
+			if(table[i] != saved[i])
+			{
+				table[i] = saved[i];
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Determine whether this memory still holds what it held when a snapshot was taken
+	 * or last restored, apart from the memory mapped I/O segment: true unless one of its
+	 * blocks has been written since or the heap allocation point has moved.
+	 *
+	 * @param snapshot snapshot taken of or restored into this memory
+	 * @return true if no block other than memory mapped I/O has been written since
+	 */
+	public boolean isUnchangedSince(Snapshot snapshot)
+	{
+		return heapAddress == snapshot.heapAddress
+			   && Arrays.equals(dataBlockTable, snapshot.dataBlockTable)
+			   && Arrays.equals(kernelDataBlockTable, snapshot.kernelDataBlockTable)
+			   && Arrays.equals(stackBlockTable, snapshot.stackBlockTable)
+			   && Arrays.equals(textBlockTable, snapshot.textBlockTable)
+			   && Arrays.equals(kernelTextBlockTable, snapshot.kernelTextBlockTable);
+	}
+
+	/**
+	 * Returns the words of the data, kernel data, stack and memory mapped I/O segments
+	 * that hold another value than when a snapshot was taken or last restored, as pairs
+	 * of address and value, for setRawWord().  Only the blocks written since are compared.
+	 *
+	 * @param snapshot snapshot taken of or restored into this memory
+	 * @return address and value of each word changed since
+	 */
+	public int[] getChangesSince(Snapshot snapshot)
+	{
+		int length = 0;
+		int[] changes = null;
+		// Count them, then fill them in.
+		for(int pass = 0; pass < 2; pass++)
+		{
+			length = changedWords(dataBlockTable, snapshot.dataBlockTable, dataSegmentBaseAddress, WORD_LENGTH_BYTES, changes, 0);
+			length = changedWords(kernelDataBlockTable, snapshot.kernelDataBlockTable, kernelDataBaseAddress, WORD_LENGTH_BYTES, changes, length);
+			length = changedWords(stackBlockTable, snapshot.stackBlockTable, stackBaseAddress, -WORD_LENGTH_BYTES, changes, length);
+			length = changedWords(memoryMapBlockTable, snapshot.memoryMapBlockTable, memoryMapBaseAddress, WORD_LENGTH_BYTES, changes, length);
+			if(changes == null)
+				changes = new int[length];
+		}
+		return changes;
+	}
+
+	/**
+	 * Start collecting the words of the data, kernel data, stack and memory mapped I/O
+	 * segments changed from now on, to be returned by endChanges().  Unlike taking a
+	 * snapshot this copies none of the decoded instructions, and afterwards the snapshot
+	 * last taken or restored is still the one blocks are shared with, so only the blocks
+	 * written meanwhile are copied.  Meant for short stretches such as a syscall.
+	 *
+	 * @throws IllegalStateException if changes are already being collected
+	 */
+	public void beginChanges()
+	{
+		if(collectingChanges)
+			throw new IllegalStateException("changes are already being collected");
+		snapshotBeforeChanges = snapshot;
+		snapshot = new Snapshot(this, snapshot);
+		collectingChanges = true;
+	}
+
+	/**
+	 * Stop collecting changes, see beginChanges().
+	 *
+	 * @return address and value of each word changed since beginChanges(), as pairs
+	 * for setRawWord()
+	 * @throws IllegalStateException if changes are not being collected
+	 */
+	public int[] endChanges()
+	{
+		if(!collectingChanges)
+			throw new IllegalStateException("changes are not being collected");
+		int[] changes = getChangesSince(snapshot);
+		snapshot = snapshotBeforeChanges;
+		snapshotBeforeChanges = null;
+		collectingChanges = false;
+		return changes;
+	}
+
+	// Adds the words of the blocks of a table that differ from those saved to changes,
+	// if not null, after the given length, and returns the new length.  The stack table
+	// is indexed backward from its base address, hence the step.
+	private static int changedWords(int[][] table, int[][] saved, int baseAddress, int step, int[] changes, int length)
+	{
+		for(int block = 0; block < table.length; block++)
+		{
+			int[] words = table[block];
+			int[] old = saved[block];
+			if(words == old)
+				continue;
+			for(int i = 0; i < BLOCK_LENGTH_WORDS; i++)
+			{
+				int value = (words == null) ? 0 : words[i];
+				if(value != ((old == null) ? 0 : old[i]))
+				{
+					if(changes != null)
+					{
+						changes[length] = baseAddress + step * (block * BLOCK_LENGTH_WORDS + i);
+						changes[length + 1] = value;
+					}
+					length += 2;
+				}
+			}
+		}
+		return length;
+	}
+
+	// Returns the block of a table to write to, allocating it if needed.  If it is still
+	// the block of the snapshot it is replaced with a copy first.
+	private int[] writableBlock(int[][] blockTable, int block)
+	{
+		int[] words = blockTable[block];
+		if(words == null)
+			words = blockTable[block] = new int[BLOCK_LENGTH_WORDS];
+		else if(snapshot != null && words == snapshotBlock(blockTable, block))
+			words = blockTable[block] = words.clone();
+		return words;
+	}
+
+	// The block of the snapshot in the table corresponding to the given one.
+	private Object snapshotBlock(Object[] blockTable, int block)
+	{
+		Object[] saved;
+		if(blockTable == dataBlockTable)
+			saved = snapshot.dataBlockTable;
+		else if(blockTable == stackBlockTable)
+			saved = snapshot.stackBlockTable;
+		else if(blockTable == kernelDataBlockTable)
+			saved = snapshot.kernelDataBlockTable;
+		else if(blockTable == memoryMapBlockTable)
+			saved = snapshot.memoryMapBlockTable;
+		else if(blockTable == textBlockTable)
+			saved = snapshot.textBlockTable;
+		else
+			saved = snapshot.kernelTextBlockTable;
+		return saved[block];
+	}
+
+	/**
+	 * Write the contents of this memory to a checkpoint: the heap allocation point, then
+	 * the allocated blocks of the data, kernel data, stack and memory mapped I/O segments
+	 * and the statements of both text segments as binary machine code.  Blocks that were
+	 * never allocated are not written.  See mars.simulator.Checkpoint.
+	 *
+	 * @param out destination of the checkpoint
+	 * @throws IOException if it cannot be written
+	 */
+	public void writeCheckpoint(DataOutputStream out) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK_LENGTH_WORDS * WORD_LENGTH_BYTES);
+		out.writeInt(heapAddress);
+		writeBlocks(out, dataBlockTable, buffer);
+		writeBlocks(out, kernelDataBlockTable, buffer);
+		writeBlocks(out, stackBlockTable, buffer);
+		writeBlocks(out, memoryMapBlockTable, buffer);
+		writeStatements(out, textBlockTable, buffer);
+		writeStatements(out, kernelTextBlockTable, buffer);
+	}
+
+	/**
+	 * Replace the contents of this memory with those of a checkpoint written by
+	 * writeCheckpoint().  A statement already in the text segment is kept if its machine
+	 * code is the one restored, so the program keeps its source code when the checkpoint
+	 * is restored over the same program; other statements are decoded from their machine
+	 * code.  Memory is left unchanged if the checkpoint cannot be read.  Observers are
+	 * not notified.
+	 *
+	 * @param in source of the checkpoint
+	 * @throws IOException if it cannot be read or is not valid
+	 */
+	public void readCheckpoint(DataInputStream in) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK_LENGTH_WORDS * WORD_LENGTH_BYTES);
+		int heap = in.readInt();
+		int[][] data = readBlocks(in, BLOCK_TABLE_LENGTH, buffer);
+		int[][] kernelData = readBlocks(in, BLOCK_TABLE_LENGTH, buffer);
+		int[][] stack = readBlocks(in, BLOCK_TABLE_LENGTH, buffer);
+		int[][] memoryMap = readBlocks(in, MMIO_TABLE_LENGTH, buffer);
+		ProgramStatement[][] text = readStatements(in, textBlockTable, textBaseAddress, buffer);
+		ProgramStatement[][] kernelText = readStatements(in, kernelTextBlockTable, kernelTextBaseAddress, buffer);
+		heapAddress = heap;
+		dataBlockTable = data;
+		kernelDataBlockTable = kernelData;
+		stackBlockTable = stack;
+		memoryMapBlockTable = memoryMap;
+		textBlockTable = new ProgramStatement[TEXT_BLOCK_TABLE_LENGTH][];
+		kernelTextBlockTable = new ProgramStatement[TEXT_BLOCK_TABLE_LENGTH][];
+		decodedInstructions.reset();
+		storeStatements(text, textBaseAddress, textBlockTable);
+		storeStatements(kernelText, kernelTextBaseAddress, kernelTextBlockTable);
+		updateDecodedInstructionsEnabled();
+	}
+
+	// Each allocated block is written as its index in the table followed by its words,
+	// after the number of such blocks.
+	private static void writeBlocks(DataOutputStream out, int[][] table, ByteBuffer buffer) throws IOException
+	{
+		out.writeInt(countBlocks(table));
+		for(int i = 0; i < table.length; i++)
+		{
+			if(table[i] != null)
+			{
+				out.writeInt(i);
+				buffer.clear();
+				buffer.asIntBuffer().put(table[i]);
+				out.write(buffer.array());
+			}
+		}
+	}
+
+	private static int[][] readBlocks(DataInputStream in, int tableLength, ByteBuffer buffer) throws IOException
+	{
+		int[][] table = new int[tableLength][];
+		int count = in.readInt();
+		for(int n = 0; n < count; n++)
+		{
+			int i = readBlockIndex(in, tableLength);
+			in.readFully(buffer.array());
+			buffer.clear();
+			table[i] = new int[BLOCK_LENGTH_WORDS];
+			buffer.asIntBuffer().get(table[i]);
+		}
+		return table;
+	}
+
+	// Text blocks are written like data blocks, but with a bit map of the words that hold
+	// a statement ahead of the words themselves, since 0 is a valid instruction (nop).
+	private static void writeStatements(DataOutputStream out, ProgramStatement[][] table, ByteBuffer buffer) throws IOException
+	{
+		out.writeInt(countBlocks(table));
+		for(int i = 0; i < table.length; i++)
+		{
+			if(table[i] != null)
+			{
+				int[] present = new int[TEXT_BLOCK_LENGTH_WORDS / 32];
+				buffer.clear();
+				IntBuffer words = buffer.asIntBuffer();
+				for(int offset = 0; offset < TEXT_BLOCK_LENGTH_WORDS; offset++)
+				{
+					ProgramStatement statement = table[i][offset];
+					if(statement != null)
+						present[offset >> 5] |= 1 << (offset & 31);
+					words.put((statement == null) ? 0 : statement.getBinaryStatement());
+				}
+				out.writeInt(i);
+				for(int n = 0; n < present.length; n++)
+					out.writeInt(present[n]);
+				out.write(buffer.array());
+			}
+		}
+	}
+
+	private static ProgramStatement[][] readStatements(DataInputStream in, ProgramStatement[][] current,
+			int baseAddress, ByteBuffer buffer) throws IOException
+	{
+		ProgramStatement[][] table = new ProgramStatement[TEXT_BLOCK_TABLE_LENGTH][];
+		int count = in.readInt();
+		for(int n = 0; n < count; n++)
+		{
+			int i = readBlockIndex(in, TEXT_BLOCK_TABLE_LENGTH);
+			int[] present = new int[TEXT_BLOCK_LENGTH_WORDS / 32];
+			for(int k = 0; k < present.length; k++)
+				present[k] = in.readInt();
+			in.readFully(buffer.array());
+			buffer.clear();
+			IntBuffer words = buffer.asIntBuffer();
+			table[i] = new ProgramStatement[TEXT_BLOCK_LENGTH_WORDS];
+			for(int offset = 0; offset < TEXT_BLOCK_LENGTH_WORDS; offset++)
+			{
+				int word = words.get();
+				if((present[offset >> 5] & (1 << (offset & 31))) == 0)
+					continue;
+				ProgramStatement statement = (current[i] == null) ? null : current[i][offset];
+				if(statement == null || statement.getBinaryStatement() != word)
+					statement = new ProgramStatement(word, baseAddress + ((i * TEXT_BLOCK_LENGTH_WORDS + offset) << 2));
+				table[i][offset] = statement;
+			}
+		}
+		return table;
+	}
+
+	// Store the statements read into the (empty) text segment table, keeping the decoded
+	// instruction cache in step.
+	private void storeStatements(ProgramStatement[][] statements, int baseAddress, ProgramStatement[][] blockTable)
+	{
+		for(int i = 0; i < statements.length; i++)
+		{
+			if(statements[i] == null)
+				continue;
+			for(int offset = 0; offset < TEXT_BLOCK_LENGTH_WORDS; offset++)
+				if(statements[i][offset] != null)
+					storeProgramStatement(baseAddress + ((i * TEXT_BLOCK_LENGTH_WORDS + offset) << 2),
+										  statements[i][offset], baseAddress, blockTable);
+		}
+	}
+
+	private static int countBlocks(Object[] table)
+	{
+		int count = 0;
+		for(int i = 0; i < table.length; i++)
+			if(table[i] != null)
+				count++;
+		return count;
+	}
+
+	private static int readBlockIndex(DataInputStream in, int tableLength) throws IOException
+	{
+		int i = in.readInt();
+		if(i < 0 || i >= tableLength)
+			throw new IOException("invalid memory block " + i);
+		return i;
+	}
+
+	/**
+	 * Returns the pre-decoded copy of the text segments used by the simulator for
+	 * instruction fetch.  It reports a miss for any address it cannot answer for,
+	 * in which case getStatement() must be used.
+	 *
+	 * @return the decoded instruction cache of this memory
+	 */
+	public DecodedInstructionCache getDecodedInstructionCache()
+	{
+		return decodedInstructions;
+	}
+
+	/**
+	 * Have the given watchpoints told of every write to this memory by set() and
+	 * setRawWord(), which all stores and syscalls go through.  The simulator installs
+	 * them for the duration of a run.
+	 *
+	 * @param watchpoints the breakpoints whose watchpoints to tell, or null for none
+	 */
+	public void setWatchpoints(Breakpoints watchpoints)
+	{
+		this.watchpoints = watchpoints;
 	}
 
 	/**
@@ -299,7 +768,14 @@ public class Memory extends Observable
 		kernelDataBlockTable  = new int[BLOCK_TABLE_LENGTH][];
 		stackBlockTable = new int[BLOCK_TABLE_LENGTH][];
 		memoryMapBlockTable = new int[MMIO_TABLE_LENGTH][];
-		System.gc(); // call garbage collector on any Table memory just deallocated.
+		snapshot = null;
+		snapshotBeforeChanges = null;
+		collectingChanges = false;
+		if(decodedInstructions == null)
+			decodedInstructions = new DecodedInstructionCache(TEXT_BLOCK_LENGTH_WORDS * TEXT_BLOCK_TABLE_LENGTH);
+		else
+			decodedInstructions.reset();
+		updateDecodedInstructionsEnabled();
 	}
 
 	/**
@@ -426,6 +902,8 @@ public class Memory extends Observable
 			throw new AddressErrorException("address out of range ",
 											Exceptions.ADDRESS_EXCEPTION_STORE, address);
 		}
+		if(watchpoints != null)
+			watchpoints.written(address, length);
 		notifyAnyObservers(AccessNotice.WRITE, address, length, value);
 		return oldValue;
 	}
@@ -505,9 +983,11 @@ public class Memory extends Observable
 			throw new AddressErrorException("store address out of range ",
 											Exceptions.ADDRESS_EXCEPTION_STORE,	address);
 		}
+		if(watchpoints != null)
+			watchpoints.written(address, WORD_LENGTH_BYTES);
 		notifyAnyObservers(AccessNotice.WRITE, address, WORD_LENGTH_BYTES, value);
 		if(Globals.getSettings().getBackSteppingEnabled())
-			Globals.program.getBackStepper().addMemoryRestoreRawWord(address, oldValue);
+			Machine.current().getProgram().getBackStepper().addMemoryRestoreRawWord(address, oldValue);
 		return oldValue;
 	}
 
@@ -530,7 +1010,7 @@ public class Memory extends Observable
 				Exceptions.ADDRESS_EXCEPTION_STORE, address);
 		}
 		return (Globals.getSettings().getBackSteppingEnabled())
-			   ? Globals.program.getBackStepper().addMemoryRestoreWord(address, set(address, value, WORD_LENGTH_BYTES))
+			   ? Machine.current().getProgram().getBackStepper().addMemoryRestoreWord(address, set(address, value, WORD_LENGTH_BYTES))
 			   : set(address, value, WORD_LENGTH_BYTES);
 	}
 
@@ -553,7 +1033,7 @@ public class Memory extends Observable
 											Exceptions.ADDRESS_EXCEPTION_STORE, address);
 		}
 		return (Globals.getSettings().getBackSteppingEnabled())
-			   ? Globals.program.getBackStepper().addMemoryRestoreHalf(address, set(address, value, 2))
+			   ? Machine.current().getProgram().getBackStepper().addMemoryRestoreHalf(address, set(address, value, 2))
 			   : set(address, value, 2);
 	}
 
@@ -569,7 +1049,7 @@ public class Memory extends Observable
 	public int setByte(int address, int value) throws AddressErrorException
 	{
 		return (Globals.getSettings().getBackSteppingEnabled())
-			   ? Globals.program.getBackStepper().addMemoryRestoreByte(address, set(address, value, 1))
+			   ? Machine.current().getProgram().getBackStepper().addMemoryRestoreByte(address, set(address, value, 1))
 			   : set(address, value, 1);
 	}
 
@@ -669,8 +1149,9 @@ public class Memory extends Observable
 					                      BLOCK_LENGTH_BYTES - destStartByte);
 
 					if (memoryMapBlockTable[destBlock] != null) {
+						int[] destWords = writableBlock(memoryMapBlockTable, destBlock);
 						System.arraycopy(memoryMapBlockTable[block],     startByte / WORD_LENGTH_BYTES,
-								 memoryMapBlockTable[destBlock], destStartByte / WORD_LENGTH_BYTES,
+								 destWords, destStartByte / WORD_LENGTH_BYTES,
 								 destAmount / WORD_LENGTH_BYTES);
 					}
 
@@ -714,7 +1195,7 @@ public class Memory extends Observable
 				int thisBlockEndByte = block == endBlock ? endByte : BLOCK_LENGTH_BYTES;
 
 				// just assume the addr/length are word-aligned
-				Arrays.fill(memoryMapBlockTable[block],
+				Arrays.fill(writableBlock(memoryMapBlockTable, block),
 					startByte / WORD_LENGTH_BYTES, thisBlockEndByte / WORD_LENGTH_BYTES, 0);
 			}
 
@@ -764,6 +1245,9 @@ public class Memory extends Observable
 			// memory mapped I/O.
 			relativeByteAddress = address - memoryMapBaseAddress;
 			value = fetchBytesFromTable(memoryMapBlockTable, relativeByteAddress, length);
+			// Only the program's loads are its inputs, not those of displays and tools.
+			if(notify && TimeTravel.isAnyRecording())
+				value = TimeTravel.getInstance().memoryMappedLoad(address, length, value);
 		}
 		else if(inTextSegment(address))
 		{
@@ -870,6 +1354,8 @@ public class Memory extends Observable
 			// memory mapped I/O.
 			relative = (address - memoryMapBaseAddress) >> 2;
 			value = fetchWordFromTable(memoryMapBlockTable, relative);
+			if(TimeTravel.isAnyRecording())
+				value = TimeTravel.getInstance().memoryMappedLoad(address, WORD_LENGTH_BYTES, value);
 		}
 		else if(inTextSegment(address))
 		{
@@ -1163,8 +1649,8 @@ public class Memory extends Observable
 	 * Globals.memoryAndRegistersLock when accessing these arrays for obvious reasons.
 	 * I guess you should probably synchronize on that before calling this, too.
 	 *
-	 * NOTE: because the memory blocks get recreated every time you assemble a program,
-	 * you should NOT cache the result of this method. Use it every time you need to
+	 * NOTE: because the memory blocks get recreated every time you assemble a program
+	 * (and may be replaced when a snapshot is restored), you should NOT cache the result of this method. Use it every time you need to
 	 * access the memory page. Otherwise you will end up with stale references.
 	 *
 	 * @param page is the page number [0, 15] of MMIO to get. In the default memory map,
@@ -1178,11 +1664,7 @@ public class Memory extends Observable
 				"invalid page %s (must be in range [0, %s)", page, MMIO_TABLE_LENGTH));
 		}
 
-		if(memoryMapBlockTable[page] == null) {
-			memoryMapBlockTable[page] = new int[BLOCK_LENGTH_WORDS];
-		}
-
-		return memoryMapBlockTable[page];
+		return writableBlock(memoryMapBlockTable, page);
 	}
 
 	/*********************************  THE UTILITIES  *************************************/
@@ -1372,6 +1854,7 @@ public class Memory extends Observable
 		}
 
 		observables.add(new MemoryObservable(obs, startAddr, endAddr));
+		observersChanged();
 	}
 
 	/**
@@ -1397,6 +1880,7 @@ public class Memory extends Observable
 			if(mo.countObservers() == 0)
 				it.remove();
 		}
+		observersChanged();
 	}
 
 	/**
@@ -1406,6 +1890,7 @@ public class Memory extends Observable
 	{
 		// just drop the collection
 		observables = getNewMemoryObserversCollection();
+		observersChanged();
 	}
 
 	/**
@@ -1436,6 +1921,36 @@ public class Memory extends Observable
 		return new Vector();  // Vectors are thread-safe
 	}
 
+	// Rebuild the observer index from the collection of observables, and re-decide
+	// whether instruction fetches may bypass memory.
+	private void observersChanged()
+	{
+		synchronized(observables)
+		{
+			observerIndex = new ObserverIndex(observables);
+		}
+		updateDecodedInstructionsEnabled();
+	}
+
+	// Instruction fetches have to notify any observer of the text segments (instruction
+	// counters and such), so the decoded instruction cache may only short-circuit them
+	// while no observer range overlaps either text segment.
+	private void updateDecodedInstructionsEnabled()
+	{
+		boolean textObserved = false;
+		synchronized(observables)
+		{
+			Iterator it = observables.iterator();
+			while(it.hasNext() && !textObserved)
+			{
+				MemoryObservable mo = (MemoryObservable)it.next();
+				textObserved = mo.overlaps(textBaseAddress, textLimitAddress)
+							   || mo.overlaps(kernelTextBaseAddress, kernelTextLimitAddress);
+			}
+		}
+		decodedInstructions.setEnabled(!textObserved);
+	}
+
 	/////////////////////////////////////////////////////////////////////////
 	// Private class whose objects will represent an observable-observer pair
 	// for a given memory address or range.
@@ -1443,10 +1958,13 @@ public class Memory extends Observable
 	{
 		private int lowAddress, highAddress;
 
+		private Observer observer;
+
 		public MemoryObservable(Observer obs, int startAddr, int endAddr)
 		{
 			lowAddress = startAddr;
 			highAddress = endAddr;
+			observer = obs;
 			this.addObserver(obs);
 		}
 
@@ -1455,10 +1973,20 @@ public class Memory extends Observable
 			return (address >= lowAddress && address <= highAddress - 1 + WORD_LENGTH_BYTES);
 		}
 
+		// True if this range shares any byte with [low, limit).  Addresses are compared
+		// unsigned since kernel addresses are negative ints.
+		public boolean overlaps(int low, int limit)
+		{
+			return Integer.compareUnsigned(lowAddress, limit) < 0
+				   && Integer.compareUnsigned(highAddress - 1 + WORD_LENGTH_BYTES, low) >= 0;
+		}
+
+		// Each observable has exactly the one observer it was created with (it is
+		// dropped once that observer is deleted), so it is called directly rather than
+		// through notifyObservers(), which copies the observer list on every call.
 		public void notifyObserver(MemoryAccessNotice notice)
 		{
-			this.setChanged();
-			this.notifyObservers(notice);
+			observer.update(this, notice);
 		}
 
 		// Useful to have for future refactoring, if it actually becomes worthwhile to sort
@@ -1477,6 +2005,74 @@ public class Memory extends Observable
 	}
 
 
+	/////////////////////////////////////////////////////////////////////////
+	// Immutable interval index over a snapshot of the memory observables.  The
+	// observed ranges' end points cut the address space into elementary intervals,
+	// and every address within one such interval is matched by exactly the same
+	// observables, so each interval is stored with that array of observables (in
+	// the order they were added, which is the order they are notified in).  A lookup
+	// is a bounds check, which rejects most accesses when observers watch only part
+	// of memory, then a binary search.  Addresses compare as signed ints, as in
+	// MemoryObservable.match(); ranges may not cross 0x80000000, and end points are
+	// kept as longs so that the exclusive end of a range ending at 0x7ffffffc or
+	// 0xfffffffc does not overflow.
+	private static class ObserverIndex
+	{
+		private static final MemoryObservable[] NONE = new MemoryObservable[0];
+		static final ObserverIndex EMPTY = new ObserverIndex(new Vector());
+
+		private final long lowest, highest;     // bounds of all ranges, inclusive
+		private final long[] starts;            // first address of each elementary interval
+		private final MemoryObservable[][] covering;
+
+		ObserverIndex(Collection observables)
+		{
+			MemoryObservable[] all = (MemoryObservable[]) observables.toArray(NONE);
+			TreeSet points = new TreeSet();
+			long low = Long.MAX_VALUE, high = Long.MIN_VALUE;
+			for(int i = 0; i < all.length; i++)
+			{
+				points.add(Long.valueOf(all[i].lowAddress));
+				points.add(Long.valueOf(limit(all[i])));
+				low = Math.min(low, all[i].lowAddress);
+				high = Math.max(high, limit(all[i]) - 1);
+			}
+			lowest = low;
+			highest = high;
+			starts = new long[points.size()];
+			covering = new MemoryObservable[starts.length][];
+			Iterator it = points.iterator();
+			ArrayList matching = new ArrayList();
+			for(int i = 0; i < starts.length; i++)
+			{
+				starts[i] = ((Long) it.next()).longValue();
+				matching.clear();
+				for(int j = 0; j < all.length; j++)
+					if(all[j].lowAddress <= starts[i] && starts[i] < limit(all[j]))
+						matching.add(all[j]);
+				covering[i] = (MemoryObservable[]) matching.toArray(NONE);
+			}
+		}
+
+		// One past the last byte of the observed range.
+		private static long limit(MemoryObservable mo)
+		{
+			return (long) mo.highAddress + WORD_LENGTH_BYTES;
+		}
+
+		// Returns the observables whose range includes the given address, or null if none.
+		MemoryObservable[] lookup(int address)
+		{
+			if(address < lowest || address > highest)
+				return null;
+			int i = Arrays.binarySearch(starts, address);
+			if(i < 0)
+				i = -i - 2;  // interval that begins before the address
+			return (covering[i].length == 0) ? null : covering[i];
+		}
+	}
+
+
 	/*********************************  THE HELPERS  *************************************/
 
 
@@ -1485,19 +2081,16 @@ public class Memory extends Observable
 	// Method to notify any observers of memory operation that has just occurred.
 	//
 	// The "|| Globals.getGui()==null" is a hack added 19 July 2012 DPS.  IF MIPS simulation
-	// is from command mode, Globals.program is null but still want ability to observe.
+	// is from command mode, the program is null but still want ability to observe.
 	private void notifyAnyObservers(int type, int address, int length, int value)
 	{
-		if((Globals.program != null || Globals.getGui() == null) && this.observables.size() > 0)
+		MemoryObservable[] matching = observerIndex.lookup(address);
+		if(matching != null && (Machine.current().getProgram() != null || Globals.getGui() == null))
 		{
-			Iterator it = this.observables.iterator();
-			MemoryObservable mo;
-			while(it.hasNext())
-			{
-				mo = (MemoryObservable)it.next();
-				if(mo.match(address))
-					mo.notifyObserver(new MemoryAccessNotice(type, address, length, value));
-			}
+			// Notices are immutable, so all the matching observers can share one.
+			MemoryAccessNotice notice = new MemoryAccessNotice(type, address, length, value);
+			for(int i = 0; i < matching.length; i++)
+				matching[i].notifyObserver(notice);
 		}
 	}
 
@@ -1515,6 +2108,26 @@ public class Memory extends Observable
 	private int storeBytesInTable(int [][] blockTable,
 								  int relativeByteAddress, int length, int value)
 	{
+		if(byteOrder == LITTLE_ENDIAN)
+		{
+			int position = bytePositionInWord(blockTable, relativeByteAddress);
+			if(alignedWithinWord(position, length))
+			{
+				int word = wordIndexInTable(blockTable, relativeByteAddress);
+				int[] block = writableBlock(blockTable, word >> BLOCK_LENGTH_SHIFT);
+				word &= BLOCK_LENGTH_WORDS - 1;
+				int oldWord = block[word];
+				if(length == WORD_LENGTH_BYTES)
+				{
+					block[word] = value;
+					return oldWord;
+				}
+				int shift = position << 3;
+				int mask = ((1 << (length << 3)) - 1) << shift;
+				block[word] = (oldWord & ~mask) | ((value << shift) & mask);
+				return (oldWord & mask) >>> shift;
+			}
+		}
 		return storeOrFetchBytesInTable(blockTable, relativeByteAddress, length, value, STORE);
 	}
 
@@ -1528,9 +2141,55 @@ public class Memory extends Observable
 
 	private int fetchBytesFromTable(int[][] blockTable, int relativeByteAddress, int length)
 	{
+		if(byteOrder == LITTLE_ENDIAN)
+		{
+			int position = bytePositionInWord(blockTable, relativeByteAddress);
+			if(alignedWithinWord(position, length))
+			{
+				int word = wordIndexInTable(blockTable, relativeByteAddress);
+				int[] block = blockTable[word >> BLOCK_LENGTH_SHIFT];
+				if(block == null)
+					return 0;
+				int value = block[word & (BLOCK_LENGTH_WORDS - 1)];
+				if(length == WORD_LENGTH_BYTES)
+					return value;
+				return (value >>> (position << 3)) & ((1 << (length << 3)) - 1);
+			}
+		}
 		return storeOrFetchBytesInTable(blockTable, relativeByteAddress, length, 0, FETCH);
 	}
 
+	////////////////////////////////////////////////////////////////////////////////
+	//
+	// Word-granular fast path for the two helpers above.  An aligned byte, halfword
+	// or word lies entirely within one table word, and in little-endian order the
+	// byte at position k of that word (its address mod 4) is held in bits 8k..8k+7.
+	// So aligned little-endian accesses need only one block lookup and a shift and
+	// mask, instead of the byte-at-a-time loop in storeOrFetchBytesInTable().  The
+	// stack table is indexed by stackBaseAddress - address, a word-aligned base, so
+	// its word is found by rounding the relative address up rather than down (the
+	// same correction the loop makes), and the byte position is the negated relative
+	// address mod 4.  All segment base addresses are word-aligned, so in both cases
+	// the byte position equals the address mod 4.
+	//
+
+	private static final int BLOCK_LENGTH_SHIFT = 10; // log2(BLOCK_LENGTH_WORDS)
+
+	private int bytePositionInWord(int[][] blockTable, int relativeByteAddress)
+	{
+		return (blockTable == stackBlockTable) ? -relativeByteAddress & 3 : relativeByteAddress & 3;
+	}
+
+	private int wordIndexInTable(int[][] blockTable, int relativeByteAddress)
+	{
+		return (blockTable == stackBlockTable) ? (relativeByteAddress + 3) >> 2 : relativeByteAddress >> 2;
+	}
+
+	private static boolean alignedWithinWord(int position, int length)
+	{
+		return (length == WORD_LENGTH_BYTES || length == 2 || length == 1) && (position & (length - 1)) == 0;
+	}
+
 	////////////////////////////////////////////////////////////////////////////////
 	//
 	// The helper's helper.  Works for either storing or fetching, little or big endian.
@@ -1539,7 +2198,12 @@ public class Memory extends Observable
 	// client using STORE or FETCH in last arg.
 	// Modified 29 Dec 2005 to return old value of replaced bytes, for STORE.
 	//
-	private synchronized int storeOrFetchBytesInTable(int [][] blockTable,
+	// This and the word helpers below used to be synchronized.  Every caller that writes
+	// MIPS memory while a program runs already holds Globals.memoryAndRegistersLock (the
+	// simulator itself, for a batch of instructions at a time), so the extra monitor on
+	// each access bought nothing.
+	//
+	private int storeOrFetchBytesInTable(int [][] blockTable,
 			int relativeByteAddress, int length, int value, boolean op)
 	{
 		int relativeWordAddress, block, offset, bytePositionInMemory, bytePositionInValue;
@@ -1564,13 +2228,10 @@ public class Memory extends Observable
 			relativeWordAddress = relativeByteAddress >> 2;
 			block = relativeWordAddress / BLOCK_LENGTH_WORDS;  // Block number
 			offset = relativeWordAddress % BLOCK_LENGTH_WORDS; // Word within that block
-			if(blockTable[block] == null)
-			{
-				if(op == STORE)
-					blockTable[block] = new int[BLOCK_LENGTH_WORDS];
-				else
-					return 0;
-			}
+			if(op == STORE)
+				writableBlock(blockTable, block);
+			else if(blockTable[block] == null)
+				return 0;
 			if(byteOrder == LITTLE_ENDIAN) bytePositionInMemory = 3 - bytePositionInMemory;
 			if(op == STORE)
 			{
@@ -1597,18 +2258,15 @@ public class Memory extends Observable
 	// and block size.  Assumes address is word aligned, no endian processing.
 	// Modified 29 Dec 2005 to return overwritten value.
 
-	private synchronized int storeWordInTable(int[][] blockTable, int relative, int value)
+	private int storeWordInTable(int[][] blockTable, int relative, int value)
 	{
 		int  block, offset, oldValue;
 		block = relative / BLOCK_LENGTH_WORDS;
 		offset = relative % BLOCK_LENGTH_WORDS;
-		if(blockTable[block] == null)
-		{
-			// First time writing to this block, so allocate the space.
-			blockTable[block] = new int[BLOCK_LENGTH_WORDS];
-		}
-		oldValue = blockTable[block][offset];
-		blockTable[block][offset] = value;
+		// Allocated the first time this block is written to.
+		int[] words = writableBlock(blockTable, block);
+		oldValue = words[offset];
+		words[offset] = value;
 		return oldValue;
 	}
 
@@ -1620,7 +2278,7 @@ public class Memory extends Observable
 	// and block size.  Assumes word alignment, no endian processing.
 	//
 
-	private synchronized int fetchWordFromTable(int[][] blockTable, int relative)
+	private int fetchWordFromTable(int[][] blockTable, int relative)
 	{
 		int value = 0;
 		int block, offset;
@@ -1648,7 +2306,7 @@ public class Memory extends Observable
 	// by Greg Gibeling of UC Berkeley, fall 2007.
 	//
 
-	private synchronized Integer fetchWordOrNullFromTable(int[][] blockTable, int relative)
+	private Integer fetchWordOrNullFromTable(int[][] blockTable, int relative)
 	{
 		int value = 0;
 		int block, offset;
@@ -1707,7 +2365,13 @@ public class Memory extends Observable
 				// No instructions are stored in this block, so allocate the block.
 				blockTable[block] = new ProgramStatement[BLOCK_LENGTH_WORDS];
 			}
+			else if(snapshot != null && blockTable[block] == snapshotBlock(blockTable, block))
+			{
+				// Still shared with the snapshot, so copy it first.
+				blockTable[block] = blockTable[block].clone();
+			}
 			blockTable[block][offset] = statement;
+			decodedInstructions.store(address, statement, blockTable == kernelTextBlockTable);
 		}
 	}
 
@@ -40,11 +40,24 @@ public class Register extends Observable
 {
 	private String name;
 	private int number, resetValue;
-	// volatile should be enough to allow safe multi-threaded access
-	// w/o the use of synchronized methods.  getValue and setValue
-	// are the only methods here used by the register collection
-	// (RegisterFile, Coprocessor0, Coprocessor1) methods.
-	private volatile int value;
+	// The value lives in a slot of an int array shared by all registers of the
+	// same register collection (RegisterFile, Coprocessor0, Coprocessor1), so
+	// that the collection can read and write it by index without going through
+	// this object.  Writers other than the simulator hold
+	// Globals.memoryAndRegistersLock, and readers on other threads either hold it too
+	// or copy values through Globals.memoryAndRegistersSequence (see updateRegisters()
+	// of the register windows), either of which also makes the simulator's writes
+	// visible to them.  So no method here is synchronized and the array is plain.
+	private final int[] values;
+	private final int index;
+	// True while at least one Observer is registered.  Kept up to date by the
+	// Observable overrides below so that the common, unobserved case need not
+	// call the synchronized countObservers() on every access.
+	private volatile boolean observed;
+	// The last notice of each access type sent to observers.  Notices are immutable
+	// and only record the type, the register name and the accessing thread, so the
+	// same one is sent again for every access of that type from that thread.
+	private volatile RegisterAccessNotice readNotice, writeNotice;
 
 	/**
 	   *  Creates a new register with specified name, number, and value.
@@ -54,11 +67,28 @@ public class Register extends Observable
 	   */
 
 	public Register(String n, int num, int val)
+	{
+		this(n, num, val, new int[1], 0);
+	}
+
+	/**
+	   *  Creates a new register whose value is kept in the given slot of an array
+	   *  shared with other registers.
+	   *   @param n The name of the register.
+	   *   @param num The number of the register.
+	   *   @param val The inital (and reset) value of the register.
+	   *   @param values The array holding the register's value.
+	   *   @param index The register's position in values.
+	   */
+
+	Register(String n, int num, int val, int[] values, int index)
 	{
 		name = n;
 		number = num;
-		value = val;
 		resetValue = val;
+		this.values = values;
+		this.index = index;
+		values[index] = val;
 	}
 
 	/**
@@ -77,10 +107,10 @@ public class Register extends Observable
 	*   @return value The value of the Register.
 	*/
 
-	public synchronized int getValue()
+	public int getValue()
 	{
 		notifyAnyObservers(AccessNotice.READ);
-		return value;
+		return values[index];
 	}
 
 
@@ -90,9 +120,9 @@ public class Register extends Observable
 	*   @return value The value of the Register.
 	*/
 
-	public synchronized int getValueNoNotify()
+	public int getValueNoNotify()
 	{
-		return value;
+		return values[index];
 	}
 
 
@@ -122,10 +152,10 @@ public class Register extends Observable
 	  *   @return previous value of register
 	  */
 
-	public synchronized int setValue(int val)
+	public int setValue(int val)
 	{
-		int old = value;
-		value = val;
+		int old = values[index];
+		values[index] = val;
 		notifyAnyObservers(AccessNotice.WRITE);
 		return old;
 	}
@@ -135,9 +165,9 @@ public class Register extends Observable
 	  *  Observers are not notified.
 	  */
 
-	public synchronized void resetValue()
+	public void resetValue()
 	{
-		value = resetValue;
+		values[index] = resetValue;
 	}
 
 	/**
@@ -145,21 +175,65 @@ public class Register extends Observable
 	 *  set when <tt>resetValue()</tt> is called.
 	 */
 
-	public synchronized void changeResetValue(int reset)
+	public void changeResetValue(int reset)
 	{
 		resetValue = reset;
 	}
 
+	/**
+	 *  Returns true if any Observer is registered with this register.  The register
+	 *  collections use this to bypass the Register object, and its notification,
+	 *  when no one is watching.
+	 *  @return true if the register has at least one Observer.
+	 */
+
+	public boolean isObserved()
+	{
+		return observed;
+	}
+
+	public synchronized void addObserver(Observer o)
+	{
+		super.addObserver(o);
+		observed = countObservers() > 0;
+	}
+
+	public synchronized void deleteObserver(Observer o)
+	{
+		super.deleteObserver(o);
+		observed = countObservers() > 0;
+	}
+
+	public synchronized void deleteObservers()
+	{
+		super.deleteObservers();
+		observed = false;
+	}
+
 	//
 	// Method to notify any observers of register operation that has just occurred.
 	//
 	private void notifyAnyObservers(int type)
 	{
-		if(this.countObservers() > 0)  // && Globals.program != null) && Globals.program.inSteppedExecution()) {
+		if(observed)  // && Globals.program != null) && Globals.program.inSteppedExecution()) {
 		{
 			this.setChanged();
-			this.notifyObservers(new RegisterAccessNotice(type, this.name));
+			this.notifyObservers(notice(type));
+		}
+	}
+
+	private RegisterAccessNotice notice(int type)
+	{
+		RegisterAccessNotice notice = (type == AccessNotice.READ) ? readNotice : writeNotice;
+		if(notice == null || notice.getThread() != Thread.currentThread())
+		{
+			notice = new RegisterAccessNotice(type, this.name);
+			if(type == AccessNotice.READ)
+				readNotice = notice;
+			else
+				writeNotice = notice;
 		}
+		return notice;
 	}
 
 
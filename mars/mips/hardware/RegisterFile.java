@@ -3,6 +3,7 @@ package mars.mips.hardware;
 import java.util.Observer;
 
 import mars.Globals;
+import mars.Machine;
 import mars.assembler.SymbolTable;
 import mars.mips.instructions.Instruction;
 import mars.util.Binary;
@@ -47,31 +48,64 @@ public  class RegisterFile
 	public static final int GLOBAL_POINTER_REGISTER = 28;
 	public static final int STACK_POINTER_REGISTER = 29;
 
-	private static Register [] regFile =
+	private static final int PROGRAM_COUNTER = 32;
+	private static final int HI = 33;
+	private static final int LO = 34;
+
+	// Register values, indexed by register number: 0-31 are the general purpose
+	// registers, then the program counter, hi and lo.  The Register objects below
+	// keep their values here, and the simulator reads and writes them directly
+	// unless the Register has an observer that must be notified.
+	private final int [] values = new int[LO + 1];
+
+	private final Register [] regFile =
 		// JB: allow registers without stupid dollar signs
 	{
-		new Register("zero", 0, 0), new Register("at", 1, 0),
-		new Register("v0", 2, 0), new Register("v1", 3, 0),
-		new Register("a0", 4, 0), new Register("a1", 5, 0),
-		new Register("a2", 6, 0), new Register("a3", 7, 0),
-		new Register("t0", 8, 0), new Register("t1", 9, 0),
-		new Register("t2", 10, 0), new Register("t3", 11, 0),
-		new Register("t4", 12, 0), new Register("t5", 13, 0),
-		new Register("t6", 14, 0), new Register("t7", 15, 0),
-		new Register("s0", 16, 0), new Register("s1", 17, 0),
-		new Register("s2", 18, 0), new Register("s3", 19, 0),
-		new Register("s4", 20, 0), new Register("s5", 21, 0),
-		new Register("s6", 22, 0), new Register("s7", 23, 0),
-		new Register("t8", 24, 0), new Register("t9", 25, 0),
-		new Register("k0", 26, 0), new Register("k1", 27, 0),
-		new Register("gp", GLOBAL_POINTER_REGISTER, Memory.globalPointer),
-		new Register("sp", STACK_POINTER_REGISTER, Memory.stackPointer),
-		new Register("fp", 30, 0), new Register("ra", 31, 0)
+		new Register("zero", 0, 0, values, 0), new Register("at", 1, 0, values, 1),
+		new Register("v0", 2, 0, values, 2), new Register("v1", 3, 0, values, 3),
+		new Register("a0", 4, 0, values, 4), new Register("a1", 5, 0, values, 5),
+		new Register("a2", 6, 0, values, 6), new Register("a3", 7, 0, values, 7),
+		new Register("t0", 8, 0, values, 8), new Register("t1", 9, 0, values, 9),
+		new Register("t2", 10, 0, values, 10), new Register("t3", 11, 0, values, 11),
+		new Register("t4", 12, 0, values, 12), new Register("t5", 13, 0, values, 13),
+		new Register("t6", 14, 0, values, 14), new Register("t7", 15, 0, values, 15),
+		new Register("s0", 16, 0, values, 16), new Register("s1", 17, 0, values, 17),
+		new Register("s2", 18, 0, values, 18), new Register("s3", 19, 0, values, 19),
+		new Register("s4", 20, 0, values, 20), new Register("s5", 21, 0, values, 21),
+		new Register("s6", 22, 0, values, 22), new Register("s7", 23, 0, values, 23),
+		new Register("t8", 24, 0, values, 24), new Register("t9", 25, 0, values, 25),
+		new Register("k0", 26, 0, values, 26), new Register("k1", 27, 0, values, 27),
+		new Register("gp", GLOBAL_POINTER_REGISTER, Memory.globalPointer, values, GLOBAL_POINTER_REGISTER),
+		new Register("sp", STACK_POINTER_REGISTER, Memory.stackPointer, values, STACK_POINTER_REGISTER),
+		new Register("fp", 30, 0, values, 30), new Register("ra", 31, 0, values, 31)
 	};
 
-	private static Register programCounter = new Register("pc", 32, Memory.textBaseAddress);
-	private static Register hi = new Register("hi", 33, 0); //this is an internal register with arbitrary number
-	private static Register lo = new Register("lo", 34, 0); // this is an internal register with arbitrary number
+	private final Register programCounter = new Register("pc", PROGRAM_COUNTER, Memory.textBaseAddress, values, PROGRAM_COUNTER);
+	private final Register hi = new Register("hi", HI, 0, values, HI); //this is an internal register with arbitrary number
+	private final Register lo = new Register("lo", LO, 0, values, LO); // this is an internal register with arbitrary number
+
+	// All of the above, indexed by register number.
+	private final Register [] registers = new Register[LO + 1];
+
+	/**
+	  *  Create a set of registers holding their reset values.  Each Machine has its
+	  *  own; the static methods below work on that of the current Machine (see
+	  *  Machine.current()).
+	  **/
+
+	public RegisterFile()
+	{
+		System.arraycopy(regFile, 0, registers, 0, regFile.length);
+		registers[PROGRAM_COUNTER] = programCounter;
+		registers[HI] = hi;
+		registers[LO] = lo;
+	}
+
+	// The registers of the machine being simulated by the calling thread.
+	private static RegisterFile current()
+	{
+		return Machine.current().getRegisterFile();
+	}
 
 
 	/**
@@ -80,6 +114,7 @@ public  class RegisterFile
 
 	public static void showRegisters()
 	{
+		Register [] regFile = current().regFile;
 		for(int i = 0; i < regFile.length; i++)
 		{
 			System.out.println("Name: " + regFile[i].getName());
@@ -99,36 +134,24 @@ public  class RegisterFile
 
 	public static int updateRegister(int num, int val)
 	{
-		int old = 0;
-		if(num == 0)
-		{
-			//System.out.println("You can not change the value of the zero register.");
-		}
+		RegisterFile current = current();
+		int [] values = current.values;
+		Register [] registers = current.registers;
+		// The zero register and the program counter are not changed here, nor
+		// are numbers that name no register.
+		if(num <= 0 || num >= values.length || num == PROGRAM_COUNTER)
+			return 0;
+		Register reg = registers[num];
+		int old;
+		if(reg.isObserved())
+			old = reg.setValue(val);
 		else
 		{
-			for(int i = 0; i < regFile.length; i++)
-			{
-				if(regFile[i].getNumber() == num)
-				{
-					old = (Globals.getSettings().getBackSteppingEnabled())
-						  ? Globals.program.getBackStepper().addRegisterFileRestore(num, regFile[i].setValue(val))
-						  : regFile[i].setValue(val);
-					break;
-				}
-			}
-		}
-		if(num == 33) //updates the hi register
-		{
-			old = (Globals.getSettings().getBackSteppingEnabled())
-				  ? Globals.program.getBackStepper().addRegisterFileRestore(num, hi.setValue(val))
-				  : hi.setValue(val);
-		}
-		else if(num == 34) // updates the low register
-		{
-			old = (Globals.getSettings().getBackSteppingEnabled())
-				  ? Globals.program.getBackStepper().addRegisterFileRestore(num, lo.setValue(val))
-				  : lo.setValue(val);
+			old = values[num];
+			values[num] = val;
 		}
+		if(Globals.getSettings().getBackSteppingEnabled())
+			Machine.current().getProgram().getBackStepper().addRegisterFileRestore(num, old);
 		return old;
 	}
 
@@ -140,6 +163,7 @@ public  class RegisterFile
 
 	public static void updateRegister(String reg, int val)
 	{
+		Register [] regFile = current().regFile;
 		if(reg.equals("zero"))
 		{
 			//System.out.println("You can not change the value of the zero register.");
@@ -165,13 +189,11 @@ public  class RegisterFile
 
 	public static int getValue(int num)
 	{
-		if(num == 33)
-			return hi.getValue();
-		else if(num == 34)
-			return lo.getValue();
-		else
-			return regFile[num].getValue();
-
+		RegisterFile current = current();
+		int [] values = current.values;
+		Register [] registers = current.registers;
+		Register reg = registers[num];
+		return reg.isObserved() ? reg.getValue() : values[num];
 	}
 
 	/**
@@ -183,6 +205,7 @@ public  class RegisterFile
 
 	public static int getNumber(String n)
 	{
+		Register [] regFile = current().regFile;
 		int j = -1;
 		for(int i = 0; i < regFile.length; i++)
 		{
@@ -202,6 +225,7 @@ public  class RegisterFile
 
 	public static Register[] getRegisters()
 	{
+		Register [] regFile = current().regFile;
 		return regFile;
 	}
 
@@ -213,6 +237,9 @@ public  class RegisterFile
 
 	public static Register getUserRegister(String Rname)
 	{
+		RegisterFile current = current();
+		Register [] regFile = current.regFile;
+		Register [] registers = current.registers;
 		Register reg = null;
 		if(Rname.charAt(0) == '$')
 		{
@@ -251,6 +278,7 @@ public  class RegisterFile
 
 	public static void initializeProgramCounter(int value)
 	{
+		Register programCounter = current().programCounter;
 		programCounter.setValue(value);
 	}
 
@@ -265,6 +293,7 @@ public  class RegisterFile
 
 	public static void initializeProgramCounter(boolean startAtMain)
 	{
+		Register programCounter = current().programCounter;
 		if(startAtMain)
 			initializeProgramCounter(SymbolTable.getStartLabelAddr());
 		else
@@ -280,13 +309,38 @@ public  class RegisterFile
 
 	public static int setProgramCounter(int value)
 	{
-		int old = programCounter.getValue();
-		programCounter.setValue(value);
+		RegisterFile current = current();
+		int [] values = current.values;
+		Register programCounter = current.programCounter;
+		int old;
+		if(programCounter.isObserved())
+		{
+			old = programCounter.getValue();
+			programCounter.setValue(value);
+		}
+		else
+		{
+			old = values[PROGRAM_COUNTER];
+			values[PROGRAM_COUNTER] = value;
+		}
 		if(Globals.getSettings().getBackSteppingEnabled())
-			Globals.program.getBackStepper().addPCRestore(old);
+			Machine.current().getProgram().getBackStepper().addPCRestore(old);
 		return old;
 	}
 
+	/**
+	 *  Returns the array the register values are kept in, indexed by register number,
+	 *  then the program counter (32), hi (33) and lo (34).  For code that simulates
+	 *  instructions in bulk (see mars.simulator.BlockTranslator): writes to it notify
+	 *  no observers and record no back-steps, and must never change register 0.
+	 *  @return The register values of the current machine.
+	 **/
+
+	public static int[] getValueArray()
+	{
+		return current().values;
+	}
+
 	/**
 	 *  For returning the program counters value.
 	 *  @return The program counters value as an int.
@@ -294,7 +348,10 @@ public  class RegisterFile
 
 	public static int getProgramCounter()
 	{
-		return programCounter.getValue();
+		RegisterFile current = current();
+		int [] values = current.values;
+		Register programCounter = current.programCounter;
+		return programCounter.isObserved() ? programCounter.getValue() : values[PROGRAM_COUNTER];
 	}
 
 	/**
@@ -303,6 +360,7 @@ public  class RegisterFile
 	*/
 	public static Register getProgramCounterRegister()
 	{
+		Register programCounter = current().programCounter;
 		return programCounter;
 	}
 
@@ -313,6 +371,7 @@ public  class RegisterFile
 
 	public static int getInitialProgramCounter()
 	{
+		Register programCounter = current().programCounter;
 		return programCounter.getResetValue();
 	}
 
@@ -327,6 +386,11 @@ public  class RegisterFile
 
 	public static void resetRegisters()
 	{
+		RegisterFile current = current();
+		Register [] regFile = current.regFile;
+		Register programCounter = current.programCounter;
+		Register hi = current.hi;
+		Register lo = current.lo;
 		for(int i = 0; i < regFile.length; i++)
 			regFile[i].resetValue();
 		initializeProgramCounter(Globals .getSettings().getStartAtMain());// replaces "programCounter.resetValue()", DPS 3/3/09
@@ -340,7 +404,13 @@ public  class RegisterFile
 
 	public static void incrementPC()
 	{
-		programCounter.setValue(programCounter.getValue() + Instruction.INSTRUCTION_LENGTH);
+		RegisterFile current = current();
+		int [] values = current.values;
+		Register programCounter = current.programCounter;
+		if(programCounter.isObserved())
+			programCounter.setValue(programCounter.getValue() + Instruction.INSTRUCTION_LENGTH);
+		else
+			values[PROGRAM_COUNTER] += Instruction.INSTRUCTION_LENGTH;
 	}
 
 	/**
@@ -350,6 +420,10 @@ public  class RegisterFile
 	*/
 	public static void addRegistersObserver(Observer observer)
 	{
+		RegisterFile current = current();
+		Register [] regFile = current.regFile;
+		Register hi = current.hi;
+		Register lo = current.lo;
 		for(int i = 0; i < regFile.length; i++)
 			regFile[i].addObserver(observer);
 		hi.addObserver(observer);
@@ -363,6 +437,10 @@ public  class RegisterFile
 	*/
 	public static void deleteRegistersObserver(Observer observer)
 	{
+		RegisterFile current = current();
+		Register [] regFile = current.regFile;
+		Register hi = current.hi;
+		Register lo = current.lo;
 		for(int i = 0; i < regFile.length; i++)
 			regFile[i].deleteObserver(observer);
 		hi.deleteObserver(observer);
@@ -46,6 +46,7 @@ public class BasicInstruction extends Instruction
 
 	private int opcodeMask;  // integer with 1's where constants required (0/1 become 1, f/s/t become 0)
 	private int opcodeMatch; // integer matching constants required (0/1 become 0/1, f/s/t become 0)
+	private int index = -1;  // position among the basic instructions, set by InstructionSet.populate()
 	/**
 	 * BasicInstruction constructor.
 	 *
@@ -146,4 +147,21 @@ public class BasicInstruction extends Instruction
 	{
 		return this.opcodeMatch;
 	}
+
+	/**
+	 * Gets the position of this instruction among the basic instructions of the
+	 * instruction set, from 0 up to (but not including) the instruction set's
+	 * getBasicInstructionCount().  Useful for keeping per-instruction data in arrays.
+	 *
+	 * @return the index of this instruction, -1 if it is not in the instruction set
+	 */
+	public int getIndex()
+	{
+		return this.index;
+	}
+
+	void setIndex(int index)
+	{
+		this.index = index;
+	}
 }
@@ -403,11 +403,11 @@ public class ExtendedInstruction extends Instruction
 
 				// HACKY: tell the assembler to give an error if a pseudo-load is being
 				// given a bad address (e.g. "lw t0, CONSTANT")
-				if(!Globals.memory.usingCompactMemoryConfiguration() && (
+				if(!Memory.getInstance().usingCompactMemoryConfiguration() && (
 					instruction.startsWith("lw") ||
 					instruction.startsWith("lb") ||
 					instruction.startsWith("lh"))) {
-					if(val >= 0 && val < Globals.memory.dataSegmentBaseAddress)
+					if(val >= 0 && val < Memory.getInstance().dataSegmentBaseAddress)
 						return "<LOAD BAD ADDRESS>";
 				}
 
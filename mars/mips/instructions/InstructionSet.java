@@ -47,7 +47,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 public class InstructionSet
 {
 	private ArrayList instructionList;
-	private ArrayList opcodeMatchMaps;
+	private DecodeTable decodeTable;
+	private int basicInstructionCount;
+	// Instructions by lower case mnemonic, and by every lower case prefix of a mnemonic
+	// (including the empty one), each list in instruction list order and unmodifiable,
+	// as it is handed out.  Built once by populate() for matchOperator() and
+	// prefixMatchOperator().
+	private HashMap instructionsByName;
+	private HashMap instructionsByPrefix;
 	private SyscallLoader syscallLoader;
 	/**
 	 * Creates a new InstructionSet object.
@@ -65,6 +72,30 @@ public class InstructionSet
 		return instructionList;
 
 	}
+	/**
+	 * Returns the number of basic instructions in the set, one more than the largest
+	 * BasicInstruction.getIndex().
+	 */
+	public int getBasicInstructionCount()
+	{
+		return basicInstructionCount;
+	}
+	/**
+	 * Returns the syscall services, by increasing service number.  Counts by syscall
+	 * (see ExecutionCounts.getCountsBySyscall()) are indexed like this array.
+	 */
+	public Syscall[] getSyscalls()
+	{
+		return (Syscall[]) syscallLoader.getSyscalls().clone();
+	}
+	/**
+	 * Returns the index in getSyscalls() of the syscall service with the given number,
+	 * or -1 if there is none.
+	 */
+	public int getSyscallIndex(int number)
+	{
+		return syscallLoader.findSyscallIndex(number);
+	}
 	/**
 	 * Adds all instructions to the set.  A given extended instruction may have
 	 * more than one Instruction object, depending on how many formats it can have.
@@ -657,7 +688,7 @@ public class InstructionSet
 				try
 				{
 					RegisterFile.updateRegister(operands[0],
-												Globals.memory.getWord(
+												Memory.getInstance().getWord(
 													RegisterFile.getValue(operands[2]) + operands[1]));
 				}
 				catch(AddressErrorException e)
@@ -687,7 +718,7 @@ public class InstructionSet
 				try
 				{
 					RegisterFile.updateRegister(operands[0],
-												Globals.memory.getWord(
+												Memory.getInstance().getWord(
 													RegisterFile.getValue(operands[2]) + operands[1]));
 				}
 				catch(AddressErrorException e)
@@ -710,8 +741,8 @@ public class InstructionSet
 				{
 					int address = RegisterFile.getValue(operands[2]) + operands[1];
 					int result = RegisterFile.getValue(operands[0]);
-					for(int i = 0; i <= address % Globals.memory.WORD_LENGTH_BYTES; i++)
-						result = Binary.setByte(result, 3 - i, Globals.memory.getByte(address - i));
+					for(int i = 0; i <= address % Memory.getInstance().WORD_LENGTH_BYTES; i++)
+						result = Binary.setByte(result, 3 - i, Memory.getInstance().getByte(address - i));
 					RegisterFile.updateRegister(operands[0], result);
 				}
 				catch(AddressErrorException e)
@@ -734,8 +765,8 @@ public class InstructionSet
 				{
 					int address = RegisterFile.getValue(operands[2]) + operands[1];
 					int result = RegisterFile.getValue(operands[0]);
-					for(int i = 0; i <= 3 - (address % Globals.memory.WORD_LENGTH_BYTES); i++)
-						result = Binary.setByte(result, i, Globals.memory.getByte(address + i));
+					for(int i = 0; i <= 3 - (address % Memory.getInstance().WORD_LENGTH_BYTES); i++)
+						result = Binary.setByte(result, i, Memory.getInstance().getByte(address + i));
 					RegisterFile.updateRegister(operands[0], result);
 				}
 				catch(AddressErrorException e)
@@ -756,7 +787,7 @@ public class InstructionSet
 				int[] operands = statement.getOperands();
 				try
 				{
-					Globals.memory.setWord(
+					Memory.getInstance().setWord(
 						RegisterFile.getValue(operands[2]) + operands[1],
 						RegisterFile.getValue(operands[0]));
 				}
@@ -780,7 +811,7 @@ public class InstructionSet
 				int[] operands = statement.getOperands();
 				try
 				{
-					Globals.memory.setWord(
+					Memory.getInstance().setWord(
 						RegisterFile.getValue(operands[2]) + operands[1],
 						RegisterFile.getValue(operands[0]));
 				}
@@ -805,8 +836,8 @@ public class InstructionSet
 				{
 					int address = RegisterFile.getValue(operands[2]) + operands[1];
 					int source = RegisterFile.getValue(operands[0]);
-					for(int i = 0; i <= address % Globals.memory.WORD_LENGTH_BYTES; i++)
-						Globals.memory.setByte(address - i, Binary.getByte(source, 3 - i));
+					for(int i = 0; i <= address % Memory.getInstance().WORD_LENGTH_BYTES; i++)
+						Memory.getInstance().setByte(address - i, Binary.getByte(source, 3 - i));
 				}
 				catch(AddressErrorException e)
 				{
@@ -828,8 +859,8 @@ public class InstructionSet
 				{
 					int address = RegisterFile.getValue(operands[2]) + operands[1];
 					int source = RegisterFile.getValue(operands[0]);
-					for(int i = 0; i <= 3 - (address % Globals.memory.WORD_LENGTH_BYTES); i++)
-						Globals.memory.setByte(address + i, Binary.getByte(source, i));
+					for(int i = 0; i <= 3 - (address % Memory.getInstance().WORD_LENGTH_BYTES); i++)
+						Memory.getInstance().setByte(address + i, Binary.getByte(source, i));
 				}
 				catch(AddressErrorException e)
 				{
@@ -909,6 +940,7 @@ public class InstructionSet
 				{
 					// the "and link" part
 					processReturnAddress(31);//RegisterFile.updateRegister("$ra",RegisterFile.getProgramCounter());
+					processCall(31, RegisterFile.getProgramCounter() + (operands[1] << 2));
 					processBranch(operands[1]);
 				}
 			}
@@ -969,6 +1001,7 @@ public class InstructionSet
 				{
 					// the "and link" part
 					processReturnAddress(31);//RegisterFile.updateRegister("$ra",RegisterFile.getProgramCounter());
+					processCall(31, RegisterFile.getProgramCounter() + (operands[1] << 2));
 					processBranch(operands[1]);
 				}
 			}
@@ -1209,6 +1242,8 @@ public class InstructionSet
 			public void simulate(ProgramStatement statement) throws ProcessingException
 			{
 				int[] operands = statement.getOperands();
+				if(operands[0] == 31)
+					processSubroutineReturn(RegisterFile.getValue(31));
 				processJump(statement, RegisterFile.getValue(operands[0]));
 			}
 		}));
@@ -1222,10 +1257,10 @@ public class InstructionSet
 			public void simulate(ProgramStatement statement) throws ProcessingException
 			{
 				int[] operands = statement.getOperands();
+				int target = (RegisterFile.getProgramCounter() & 0xF0000000) | (operands[0] << 2);
 				processReturnAddress(31);// RegisterFile.updateRegister(31, RegisterFile.getProgramCounter());
-				processJump(statement,
-					(RegisterFile.getProgramCounter() & 0xF0000000)
-					| (operands[0] << 2));
+				processJump(statement, target);
+				processCall(31, target);
 			}
 		}));
 		instructionList.add(
@@ -1239,7 +1274,9 @@ public class InstructionSet
 			{
 				int[] operands = statement.getOperands();
 				processReturnAddress(operands[0]);//RegisterFile.updateRegister(operands[0], RegisterFile.getProgramCounter());
-				processJump(statement, RegisterFile.getValue(operands[1]));
+				int target = RegisterFile.getValue(operands[1]);
+				processJump(statement, target);
+				processCall(operands[0], target);
 			}
 		}));
 		instructionList.add(
@@ -1253,7 +1290,9 @@ public class InstructionSet
 			{
 				int[] operands = statement.getOperands();
 				processReturnAddress(31);//RegisterFile.updateRegister(31, RegisterFile.getProgramCounter());
-				processJump(statement, RegisterFile.getValue(operands[0]));
+				int target = RegisterFile.getValue(operands[0]);
+				processJump(statement, target);
+				processCall(31, target);
 			}
 		}));
 		instructionList.add(
@@ -1269,7 +1308,7 @@ public class InstructionSet
 				try
 				{
 					RegisterFile.updateRegister(operands[0],
-												Globals.memory.getByte(
+												Memory.getInstance().getByte(
 													RegisterFile.getValue(operands[2])
 													+ (operands[1] << 16 >> 16))
 												<< 24
@@ -1294,7 +1333,7 @@ public class InstructionSet
 				try
 				{
 					RegisterFile.updateRegister(operands[0],
-												Globals.memory.getHalf(
+												Memory.getInstance().getHalf(
 													RegisterFile.getValue(operands[2])
 													+ (operands[1] << 16 >> 16))
 												<< 16
@@ -1320,7 +1359,7 @@ public class InstructionSet
 				{
 					// offset is sign-extended and loaded halfword value is zero-extended
 					RegisterFile.updateRegister(operands[0],
-												Globals.memory.getHalf(
+												Memory.getInstance().getHalf(
 													RegisterFile.getValue(operands[2])
 													+ (operands[1] << 16 >> 16))
 												& 0x0000ffff);
@@ -1344,7 +1383,7 @@ public class InstructionSet
 				try
 				{
 					RegisterFile.updateRegister(operands[0],
-												Globals.memory.getByte(
+												Memory.getInstance().getByte(
 													RegisterFile.getValue(operands[2])
 													+ (operands[1] << 16 >> 16))
 												& 0x000000ff);
@@ -1367,7 +1406,7 @@ public class InstructionSet
 				int[] operands = statement.getOperands();
 				try
 				{
-					Globals.memory.setByte(
+					Memory.getInstance().setByte(
 						RegisterFile.getValue(operands[2])
 						+ (operands[1] << 16 >> 16),
 						RegisterFile.getValue(operands[0])
@@ -1391,7 +1430,7 @@ public class InstructionSet
 				int[] operands = statement.getOperands();
 				try
 				{
-					Globals.memory.setHalf(
+					Memory.getInstance().setHalf(
 						RegisterFile.getValue(operands[2])
 						+ (operands[1] << 16 >> 16),
 						RegisterFile.getValue(operands[0])
@@ -2682,7 +2721,7 @@ public class InstructionSet
 				try
 				{
 					Coprocessor1.updateRegister(operands[0],
-												Globals.memory.getWord(
+												Memory.getInstance().getWord(
 													RegisterFile.getValue(operands[2]) + operands[1]));
 				}
 				catch(AddressErrorException e)
@@ -2704,7 +2743,7 @@ public class InstructionSet
 				if(operands[0] % 2 == 1)
 					throw new ProcessingException(statement, "first register must be even-numbered");
 				// IF statement added by DPS 13-July-2011.
-				if(!Globals.memory.doublewordAligned(RegisterFile.getValue(operands[2]) + operands[1]))
+				if(!Memory.getInstance().doublewordAligned(RegisterFile.getValue(operands[2]) + operands[1]))
 				{
 					throw new ProcessingException(statement,
 												  new AddressErrorException("address not aligned on doubleword boundary ",
@@ -2714,10 +2753,10 @@ public class InstructionSet
 				try
 				{
 					Coprocessor1.updateRegister(operands[0],
-												Globals.memory.getWord(
+												Memory.getInstance().getWord(
 													RegisterFile.getValue(operands[2]) + operands[1]));
 					Coprocessor1.updateRegister(operands[0] + 1,
-												Globals.memory.getWord(
+												Memory.getInstance().getWord(
 													RegisterFile.getValue(operands[2]) + operands[1] + 4));
 				}
 				catch(AddressErrorException e)
@@ -2738,7 +2777,7 @@ public class InstructionSet
 				int[] operands = statement.getOperands();
 				try
 				{
-					Globals.memory.setWord(
+					Memory.getInstance().setWord(
 						RegisterFile.getValue(operands[2]) + operands[1],
 						Coprocessor1.getValue(operands[0]));
 				}
@@ -2761,7 +2800,7 @@ public class InstructionSet
 				if(operands[0] % 2 == 1)
 					throw new ProcessingException(statement, "first register must be even-numbered");
 				// IF statement added by DPS 13-July-2011.
-				if(!Globals.memory.doublewordAligned(RegisterFile.getValue(operands[2]) + operands[1]))
+				if(!Memory.getInstance().doublewordAligned(RegisterFile.getValue(operands[2]) + operands[1]))
 				{
 					throw new ProcessingException(statement,
 												  new AddressErrorException("address not aligned on doubleword boundary ",
@@ -2769,10 +2808,10 @@ public class InstructionSet
 				}
 				try
 				{
-					Globals.memory.setWord(
+					Memory.getInstance().setWord(
 						RegisterFile.getValue(operands[2]) + operands[1],
 						Coprocessor1.getValue(operands[0]));
-					Globals.memory.setWord(
+					Memory.getInstance().setWord(
 						RegisterFile.getValue(operands[2]) + operands[1] + 4,
 						Coprocessor1.getValue(operands[0] + 1));
 				}
@@ -3040,6 +3079,7 @@ public class InstructionSet
 			if(rawInstr instanceof BasicInstruction)
 			{
 				BasicInstruction basic = (BasicInstruction) rawInstr;
+				basic.setIndex(basicInstructionCount++);
 				Integer mask = Integer.valueOf(basic.getOpcodeMask());
 				Integer match = Integer.valueOf(basic.getOpcodeMatch());
 				HashMap matchMap = (HashMap) maskMap.get(mask);
@@ -3053,19 +3093,52 @@ public class InstructionSet
 			}
 		}
 		Collections.sort(matchMaps);
-		this.opcodeMatchMaps = matchMaps;
+		this.decodeTable = new DecodeTable(matchMaps);
+
+		instructionsByName = new HashMap();
+		instructionsByPrefix = new HashMap();
+		for(int i = 0; i < instructionList.size(); i++)
+		{
+			Instruction inst = (Instruction) instructionList.get(i);
+			String name = inst.getName().toLowerCase(Locale.ROOT);
+			addToIndex(instructionsByName, name, inst);
+			for(int length = 0; length <= name.length(); length++)
+				addToIndex(instructionsByPrefix, name.substring(0, length), inst);
+		}
+		freezeIndex(instructionsByName);
+		freezeIndex(instructionsByPrefix);
 	}
 
-	public BasicInstruction findByBinaryCode(int binaryInstr)
+	private static void freezeIndex(HashMap index)
 	{
-		ArrayList matchMaps = this.opcodeMatchMaps;
-		for(int i = 0; i < matchMaps.size(); i++)
+		Iterator it = index.entrySet().iterator();
+		while(it.hasNext())
 		{
-			MatchMap map = (MatchMap) matchMaps.get(i);
-			BasicInstruction ret = map.find(binaryInstr);
-			if(ret != null) return ret;
+			Map.Entry entry = (Map.Entry) it.next();
+			entry.setValue(Collections.unmodifiableList((List) entry.getValue()));
 		}
-		return null;
+	}
+
+	private static void addToIndex(HashMap index, String key, Instruction inst)
+	{
+		ArrayList list = (ArrayList) index.get(key);
+		if(list == null)
+		{
+			list = new ArrayList();
+			index.put(key, list);
+		}
+		list.add(inst);
+	}
+
+	/**
+	 * Find the basic instruction that a 32-bit machine code word encodes.  When
+	 * several instructions match, the one with the most specific opcode mask wins.
+	 * @param binaryInstr the machine code
+	 * @return the matching instruction, or null if the word encodes none
+	 */
+	public BasicInstruction findByBinaryCode(int binaryInstr)
+	{
+		return decodeTable.find(binaryInstr);
 	}
 
 	/*  METHOD TO ADD PSEUDO-INSTRUCTIONS
@@ -3149,14 +3222,23 @@ public class InstructionSet
 
 	/**
 	 *  Given an operator mnemonic, will return the corresponding Instruction object(s)
-	 *  from the instruction set.  Uses straight linear search technique.
+	 *  from the instruction set.  Case-insensitive.  Uses a hash table built by populate().
+	 *  The list returned is shared and cannot be modified.
 	 *  @param name operator mnemonic (e.g. addi, sw,...)
 	 *  @return list of corresponding Instruction object(s), or null if not found.
 	 */
-	public ArrayList matchOperator(String name)
+	public List matchOperator(String name)
+	{
+		if(instructionsByName == null)
+			return linearMatchOperator(name);
+		return (name == null) ? null : (List) instructionsByName.get(name.toLowerCase(Locale.ROOT));
+	}
+
+	// Used while populate() is still building the instruction list: tokenizing the
+	// pseudo-instruction templates looks up the operators added so far.
+	private ArrayList linearMatchOperator(String name)
 	{
 		ArrayList matchingInstructions = null;
-		// Linear search for now....
 		for(int i = 0; i < instructionList.size(); i++)
 		{
 			if(((Instruction) instructionList.get(i)).getName().equalsIgnoreCase(name))
@@ -3173,42 +3255,37 @@ public class InstructionSet
 	/**
 	 *  Given a string, will return the Instruction object(s) from the instruction
 	 *  set whose operator mnemonic prefix matches it.  Case-insensitive.  For example
-	 *  "s" will match "sw", "sh", "sb", etc.  Uses straight linear search technique.
+	 *  "s" will match "sw", "sh", "sb", etc.  Uses a hash table of all mnemonic
+	 *  prefixes built by populate().  The list returned is shared and cannot be modified.
 	 *  @param name a string
 	 *  @return list of matching Instruction object(s), or null if none match.
 	 */
-	public ArrayList prefixMatchOperator(String name)
+	public List prefixMatchOperator(String name)
 	{
-		ArrayList matchingInstructions = null;
-		// Linear search for now....
-		if(name != null)
-		{
-			for(int i = 0; i < instructionList.size(); i++)
-			{
-				if(((Instruction) instructionList.get(i)).getName().toLowerCase().startsWith(name.toLowerCase()))
-				{
-					if(matchingInstructions == null)
-						matchingInstructions = new ArrayList();
-					matchingInstructions.add(instructionList.get(i));
-				}
-			}
-		}
-		return matchingInstructions;
+		if(instructionsByPrefix == null)
+			return null;
+		return (name == null) ? null : (List) instructionsByPrefix.get(name.toLowerCase(Locale.ROOT));
 	}
 
 	/*
 	 * Method to find and invoke a syscall given its service number.  Each syscall
-	 * function is represented by an object in an array list.  Each object is of
-	 * a class that implements Syscall or extends AbstractSyscall.
+	 * function is represented by an object of a class that implements Syscall or
+	 * extends AbstractSyscall, found through the dispatch table of the loader, and
+	 * each invocation is counted (see ExecutionCounts.getCountsBySyscall()).
 	 */
 
 	private void findAndSimulateSyscall(int number, ProgramStatement statement)
 	throws ProcessingException
 	{
-		Syscall service = syscallLoader.findSyscall(number);
-		if(service != null)
-		{
-			service.simulate(statement);
+		int index = syscallLoader.findSyscallIndex(number);
+		if(index >= 0)
+		{
+			Syscall service = syscallLoader.getSyscall(index);
+			ExecutionCounts.getInstance().countSyscall(index);
+			if(TimeTravel.isAnyRecording())
+				TimeTravel.getInstance().simulateSyscall(service, statement);
+			else
+				service.simulate(statement);
 			return;
 		}
 		throw new ProcessingException(statement,
@@ -3234,7 +3311,7 @@ public class InstructionSet
 
 	private void processBranch(int displacement)
 	{
-		if(Globals.getSettings().getDelayedBranchingEnabled())
+		if(DelayedBranch.isEnabled())
 		{
 			// Register the branch target address (absolute byte address).
 			DelayedBranch.register(RegisterFile.getProgramCounter() + (displacement << 2));
@@ -3266,7 +3343,7 @@ public class InstructionSet
 		if(targetAddress == 0)
 			throw new ProcessingException(statement, "attempting to jump to address 0");
 
-		if(Globals.getSettings().getDelayedBranchingEnabled())
+		if(DelayedBranch.isEnabled())
 			DelayedBranch.register(targetAddress);
 		else
 			RegisterFile.setProgramCounter(targetAddress);
@@ -3287,10 +3364,30 @@ public class InstructionSet
 	private void processReturnAddress(int register)
 	{
 		RegisterFile.updateRegister(register, RegisterFile.getProgramCounter() +
-									((Globals.getSettings().getDelayedBranchingEnabled()) ?
+									(DelayedBranch.isEnabled() ?
 									 Instruction.INSTRUCTION_LENGTH : 0));
 	}
 
+	/*
+	 * Methods to keep the shadow call stack of the call sampler up to date while it
+	 * is sampling.  processCall() is used by the "and link" instructions, after
+	 * processReturnAddress(), with the register holding the return address and the
+	 * address of the subroutine called.  processSubroutineReturn() is used by
+	 * "jr $ra" with the address returned to.
+	 */
+
+	private void processCall(int register, int targetAddress)
+	{
+		if(CallSampler.isAnySampling())
+			CallSampler.getInstance().call(RegisterFile.getValue(register), targetAddress);
+	}
+
+	private void processSubroutineReturn(int returnAddress)
+	{
+		if(CallSampler.isAnySampling())
+			CallSampler.getInstance().returnTo(returnAddress);
+	}
+
 	private static class MatchMap implements Comparable
 	{
 		private int mask;
@@ -3324,11 +3421,129 @@ public class InstructionSet
 			if(d == 0) d = this.mask - o.mask;
 			return d;
 		}
+	}
+
+	// Two-level table that findByBinaryCode() decodes with, built from the sorted match
+	// maps.  The first level is indexed by the primary opcode (bits 31-26).  Each opcode
+	// then selects on whichever of the funct (bits 5-0), rt (bits 20-16) or rs/fmt (bits
+	// 25-21) fields every one of its instructions fixes, choosing the one that best tells
+	// them apart (e.g. funct for SPECIAL, rt for REGIMM, fmt for COP1).  That leaves a
+	// handful of candidates, usually one, which are tried in match map order so the
+	// result is the same as trying each match map in turn.
+	private static class DecodeTable
+	{
+		private static final int OPCODE_SHIFT = 26;
+		private static final int OPCODE_MASK = 0xFC000000;
+		private static final int[] FIELD_SHIFTS = {0, 16, 21};
+		private static final int[] FIELD_MASKS = {0x3F, 0x1F, 0x1F};
+
+		private final int[] fieldShift = new int[64];
+		private final int[] fieldMask = new int[64];
+		private final Candidates[][] candidates = new Candidates[64][];
+
+		// The instructions that a word can be, with their masks and matches, in the
+		// order they must be tried.
+		private static class Candidates
+		{
+			private final int[] masks, matches;
+			private final BasicInstruction[] instructions;
+
+			private Candidates(ArrayList list)
+			{
+				masks = new int[list.size()];
+				matches = new int[list.size()];
+				instructions = new BasicInstruction[list.size()];
+				for(int i = 0; i < list.size(); i++)
+				{
+					Object[] candidate = (Object[]) list.get(i);
+					masks[i] = ((Integer) candidate[0]).intValue();
+					matches[i] = ((Integer) candidate[1]).intValue();
+					instructions[i] = (BasicInstruction) candidate[2];
+				}
+			}
+		}
+
+		public DecodeTable(ArrayList matchMaps)
+		{
+			// Flatten the match maps into {mask, match, instruction} triples, most
+			// specific mask first.
+			ArrayList all = new ArrayList();
+			for(int i = 0; i < matchMaps.size(); i++)
+			{
+				MatchMap map = (MatchMap) matchMaps.get(i);
+				Iterator it = map.matchMap.entrySet().iterator();
+				while(it.hasNext())
+				{
+					Map.Entry entry = (Map.Entry) it.next();
+					all.add(new Object[] {Integer.valueOf(map.mask), entry.getKey(), entry.getValue()});
+				}
+			}
+			for(int opcode = 0; opcode < 64; opcode++)
+			{
+				ArrayList forOpcode = select(all, opcode << OPCODE_SHIFT, OPCODE_MASK);
+				if(forOpcode.isEmpty())
+					continue;
+				int common = -1;
+				for(int i = 0; i < forOpcode.size(); i++)
+					common &= ((Integer)((Object[]) forOpcode.get(i))[0]).intValue();
+				// Pick the field that separates this opcode's instructions best; if
+				// none is fixed by all of them there is just the one set of candidates.
+				int best = -1, bestCount = 1;
+				for(int f = 0; f < FIELD_SHIFTS.length; f++)
+				{
+					int field = FIELD_MASKS[f] << FIELD_SHIFTS[f];
+					if((common & field) != field)
+						continue;
+					HashSet values = new HashSet();
+					for(int i = 0; i < forOpcode.size(); i++)
+						values.add(Integer.valueOf(((Integer)((Object[]) forOpcode.get(i))[1]).intValue() & field));
+					if(values.size() > bestCount)
+					{
+						best = f;
+						bestCount = values.size();
+					}
+				}
+				fieldShift[opcode] = (best < 0) ? 0 : FIELD_SHIFTS[best];
+				fieldMask[opcode] = (best < 0) ? 0 : FIELD_MASKS[best];
+				candidates[opcode] = new Candidates[fieldMask[opcode] + 1];
+				for(int value = 0; value <= fieldMask[opcode]; value++)
+				{
+					ArrayList forValue = select(forOpcode, value << fieldShift[opcode],
+												fieldMask[opcode] << fieldShift[opcode]);
+					if(!forValue.isEmpty())
+						candidates[opcode][value] = new Candidates(forValue);
+				}
+			}
+		}
+
+		// The triples that could match a word having the given bits in the given field.
+		private static ArrayList select(ArrayList triples, int bits, int field)
+		{
+			ArrayList selected = new ArrayList();
+			for(int i = 0; i < triples.size(); i++)
+			{
+				Object[] triple = (Object[]) triples.get(i);
+				int mask = ((Integer) triple[0]).intValue();
+				int match = ((Integer) triple[1]).intValue();
+				if(((bits ^ match) & mask & field) == 0)
+					selected.add(triple);
+			}
+			return selected;
+		}
 
 		public BasicInstruction find(int instr)
 		{
-			int match = Integer.valueOf(instr & mask);
-			return (BasicInstruction) matchMap.get(match);
+			int opcode = instr >>> OPCODE_SHIFT;
+			Candidates[] row = candidates[opcode];
+			if(row == null)
+				return null;
+			Candidates c = row[(instr >>> fieldShift[opcode]) & fieldMask[opcode]];
+			if(c == null)
+				return null;
+			for(int i = 0; i < c.masks.length; i++)
+				if((instr & c.masks[i]) == c.matches[i])
+					return c.instructions[i];
+			return null;
 		}
 	}
 }
@@ -50,7 +50,16 @@ class SyscallLoader
 	private static final String SYSCALL_ABSTRACT = "AbstractSyscall.class";
 	private static final String CLASS_EXTENSION = "class";
 
+	// Service numbers below this index the dispatch table directly; any others, such
+	// as large numbers given by an override in the config file, go through a map.
+	private static final int DISPATCH_TABLE_LIMIT = 1024;
+
 	private ArrayList syscallList;
+	// Built from syscallList once loaded: all syscalls by increasing service number,
+	// and their indexes in that array by service number (-1 for none).
+	private Syscall[] syscalls;
+	private int[] indexByNumber;
+	private HashMap indexByLargeNumber;  // Integer service number -> Integer index
 
 	/*
 	   *  Dynamically loads Syscalls into an ArrayList.  This method is adapted from
@@ -61,6 +70,7 @@ class SyscallLoader
 	void loadSyscalls()
 	{
 		syscallList = new ArrayList();
+		syscalls = null;
 		// grab all class files in the same directory as Syscall
 		ArrayList candidates = FilenameFinder.getFilenameList(this.getClass().getClassLoader(),
 							   SYSCALLS_DIRECTORY_PATH, CLASS_EXTENSION);
@@ -101,9 +111,46 @@ class SyscallLoader
 			}
 		}
 		syscallList = processSyscallNumberOverrides(syscallList);
+		buildDispatchTable();
 		return;
 	}
 
+	// Index the syscalls by service number, see findSyscallIndex().
+	private void buildDispatchTable()
+	{
+		Syscall[] sorted = (Syscall[]) syscallList.toArray(new Syscall[syscallList.size()]);
+		Arrays.sort(sorted, new Comparator()
+		{
+			public int compare(Object o1, Object o2)
+			{
+				int n1 = ((Syscall) o1).getNumber();
+				int n2 = ((Syscall) o2).getNumber();
+				return (n1 < n2) ? -1 : ((n1 == n2) ? 0 : 1);
+			}
+		});
+		int tableLength = 0;
+		for(int i = 0; i < sorted.length; i++)
+		{
+			int number = sorted[i].getNumber();
+			if(number >= 0 && number < DISPATCH_TABLE_LIMIT)
+				tableLength = number + 1;
+		}
+		int[] table = new int[tableLength];
+		Arrays.fill(table, -1);
+		HashMap large = new HashMap();
+		for(int i = 0; i < sorted.length; i++)
+		{
+			int number = sorted[i].getNumber();
+			if(number >= 0 && number < DISPATCH_TABLE_LIMIT)
+				table[number] = i;
+			else
+				large.put(new Integer(number), new Integer(i));
+		}
+		syscalls = sorted;
+		indexByNumber = table;
+		indexByLargeNumber = large;
+	}
+
 	// Will get any syscall number override specifications from MARS config file and
 	// process them.  This will alter syscallList entry for affected names.
 	private ArrayList processSyscallNumberOverrides(ArrayList syscallList)
@@ -165,16 +212,49 @@ class SyscallLoader
 	 */
 	Syscall findSyscall(int number)
 	{
-		// linear search is OK since number of syscalls is small.
-		Syscall service, match = null;
 		if(syscallList == null)
 			loadSyscalls();
-		for(int index = 0; index < syscallList.size(); index++)
+		if(syscalls == null)
 		{
-			service = (Syscall) syscallList.get(index);
-			if(service.getNumber() == number)
-				match = service;
+			// still loading: linear search is OK since number of syscalls is small.
+			for(int index = 0; index < syscallList.size(); index++)
+			{
+				Syscall service = (Syscall) syscallList.get(index);
+				if(service.getNumber() == number)
+					return service;
+			}
+			return null;
 		}
-		return match;
+		int index = findSyscallIndex(number);
+		return (index < 0) ? null : syscalls[index];
+	}
+
+	/*
+	 * Returns the index in getSyscalls() of the syscall with the given service number,
+	 * or -1 if there is none.
+	 */
+	int findSyscallIndex(int number)
+	{
+		if(number >= 0 && number < indexByNumber.length)
+			return indexByNumber[number];
+		Integer index = (Integer) indexByLargeNumber.get(new Integer(number));
+		return (index == null) ? -1 : index.intValue();
+	}
+
+	/*
+	 * Returns the syscall at the given index, see findSyscallIndex().
+	 */
+	Syscall getSyscall(int index)
+	{
+		return syscalls[index];
+	}
+
+	/*
+	 * Returns all syscalls, by increasing service number.  The array is shared
+	 * and must not be modified.
+	 */
+	Syscall[] getSyscalls()
+	{
+		return syscalls;
 	}
 }
@@ -1,4 +1,5 @@
 package mars.mips.instructions.syscalls;
+import mars.Machine;
 import java.util.HashMap;
 
 /*
@@ -31,14 +32,26 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 
 /**
- * This small class serves only to hold a static HashMap for storing
+ * This small class serves only to hold a HashMap for storing
  * random number generators for use by all the random number generator
- * syscalls.
+ * syscalls.  Each Machine has its own, so that a seeded stream gives the
+ * same numbers however many programs run at once.
  */
 
 public class RandomStreams
 {
 	/** Collection of pseudorandom number streams available for use in Rand-type syscalls.
 	 * The streams are by default not seeded. */
-	static final HashMap randomStreams = new HashMap();
+	private final HashMap randomStreams = new HashMap();
+
+	/** Create an empty collection of streams, for a new Machine. */
+	public RandomStreams()
+	{
+	}
+
+	/** The streams of the machine being simulated by the calling thread. */
+	static HashMap current()
+	{
+		return Machine.current().getRandomStreams().randomStreams;
+	}
 }
\ No newline at end of file
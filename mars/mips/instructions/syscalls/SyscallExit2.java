@@ -56,7 +56,7 @@ public class SyscallExit2 extends AbstractSyscall
 	public void simulate(ProgramStatement statement) throws ProcessingException
 	{
 		if(Globals.getGui() == null)
-			Globals.exitCode = RegisterFile.getValue(4);
+			Machine.current().setExitCode(RegisterFile.getValue(4));
 		throw new ProcessingException(); // empty error list
 	}
 }
\ No newline at end of file
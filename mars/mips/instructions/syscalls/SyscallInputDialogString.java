@@ -72,12 +72,12 @@ public class SyscallInputDialogString extends AbstractSyscall
 			char ch[] = { ' '}; // Need an array to convert to String
 			try
 			{
-				ch[0] = (char) Globals.memory.getByte(byteAddress);
+				ch[0] = (char) Memory.getInstance().getByte(byteAddress);
 				while(ch[0] != 0)  // only uses single location ch[0]
 				{
 					message = message.concat(new String(ch)); // parameter to String constructor is a char[] array
 					byteAddress++;
-					ch[0] = (char) Globals.memory.getByte(byteAddress);
+					ch[0] = (char) Memory.getInstance().getByte(byteAddress);
 				}
 			}
 			catch(AddressErrorException e)
@@ -110,14 +110,14 @@ public class SyscallInputDialogString extends AbstractSyscall
 					// Copy the input data to buffer as space permits
 					for(int index = 0; (index < inputString.length()) && (index < maxLength - 1); index++)
 					{
-						Globals.memory.setByte(byteAddress + index,
+						Memory.getInstance().setByte(byteAddress + index,
 											   inputString.charAt(index));
 					}
 					if(inputString.length() < maxLength - 1)
 					{
-						Globals.memory.setByte(byteAddress + (int)Math.min(inputString.length(), maxLength - 2), '\n'); // newline at string end
+						Memory.getInstance().setByte(byteAddress + (int)Math.min(inputString.length(), maxLength - 2), '\n'); // newline at string end
 					}
-					Globals.memory.setByte(byteAddress + (int)Math.min((inputString.length() + 1), maxLength - 1), 0); // null char to end string
+					Memory.getInstance().setByte(byteAddress + (int)Math.min((inputString.length() + 1), maxLength - 1), 0); // null char to end string
 
 					if(inputString.length() > maxLength - 1)
 					{
@@ -56,22 +56,22 @@ public class SyscallPrintString extends AbstractSyscall
 
 		try
 		{
-			if(Globals.memory.inDataSegment(byteAddress))
+			if(Memory.getInstance().inDataSegment(byteAddress))
 			{
 				// common case of printing a string from the data segment
-				String str = Globals.memory.getAsciizFromDataSegment(byteAddress);
+				String str = Memory.getInstance().getAsciizFromDataSegment(byteAddress);
 				SystemIO.printString(str);
 			}
 			else
 			{
 				// fall back to slow path
-				char ch = (char) Globals.memory.getByte(byteAddress);
+				char ch = (char) Memory.getInstance().getByte(byteAddress);
 				// won't stop until NULL byte reached!
 				while(ch != 0)
 				{
 					SystemIO.printString(new Character(ch).toString());
 					byteAddress++;
-					ch = (char) Globals.memory.getByte(byteAddress);
+					ch = (char) Memory.getInstance().getByte(byteAddress);
 				}
 			}
 		}
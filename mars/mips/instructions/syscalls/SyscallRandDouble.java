@@ -60,11 +60,11 @@ public class SyscallRandDouble extends AbstractSyscall
 		// Return: $f0 = the next pseudorandom, uniformly distributed double value between 0.0 and 1.0
 		// from this random number generator's sequence.
 		Integer index = new Integer(RegisterFile.getValue(4));
-		Random stream = (Random) RandomStreams.randomStreams.get(index);
+		Random stream = (Random) RandomStreams.current().get(index);
 		if(stream == null)
 		{
 			stream = new Random(); // create a non-seeded stream
-			RandomStreams.randomStreams.put(index, stream);
+			RandomStreams.current().put(index, stream);
 		}
 		try
 		{
@@ -59,9 +59,9 @@ public class SyscallRandSeed extends AbstractSyscall
 		// Result: No values are returned. Sets the seed of the underlying Java pseudorandom number generator.
 
 		Integer index = new Integer(RegisterFile.getValue(4));
-		Random stream = (Random) RandomStreams.randomStreams.get(index);
+		Random stream = (Random) RandomStreams.current().get(index);
 		if(stream == null)
-			RandomStreams.randomStreams.put(index, new Random(RegisterFile.getValue(5)));
+			RandomStreams.current().put(index, new Random(RegisterFile.getValue(5)));
 		else
 			stream.setSeed(RegisterFile.getValue(5));
 	}
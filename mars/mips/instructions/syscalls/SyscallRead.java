@@ -85,7 +85,7 @@ public class SyscallRead extends AbstractSyscall
 		{
 			while(index < retLength)
 			{
-				Globals.memory.setByte(byteAddress++,
+				Memory.getInstance().setByte(byteAddress++,
 									   myBuffer[index++]);
 			}
 		}
@@ -65,13 +65,13 @@ public class SyscallWrite extends AbstractSyscall
 		byte myBuffer[] = new byte[RegisterFile.getValue(6) + 1]; // specified length plus null termination
 		try
 		{
-			b = (byte) Globals.memory.getByte(byteAddress);
+			b = (byte) Memory.getInstance().getByte(byteAddress);
 			while(index < reqLength)  // Stop at requested length. Null bytes are included.
 				// while (index < reqLength && b != 0) // Stop at requested length OR null byte
 			{
 				myBuffer[index++] = b;
 				byteAddress++;
-				b = (byte) Globals.memory.getByte(byteAddress);
+				b = (byte) Memory.getInstance().getByte(byteAddress);
 			}
 
 			myBuffer[index] = 0; // Add string termination
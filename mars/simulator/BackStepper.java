@@ -55,19 +55,15 @@ public class BackStepper
 	private static final int COPROC1_CONDITION_SET = 9;
 	private static final int DO_NOTHING = 10;  // instruction does not write anything.
 
-	// Flag to mark BackStep object as prepresenting specific situation: user manipulates
-	// memory/register value via GUI after assembling program but before running it.
-	private static final int NOT_PC_VALUE = -1;
+	// Flag of a back step recorded while an instruction executed in the delay slot.
+	private static final int IN_DELAY_SLOT = 1;
 
 	private boolean engaged;
 	private BackstepStack backSteps;
 
-	// One can argue using java.util.Stack, given its clumsy implementation.
-	// A homegrown linked implementation will be more streamlined, but
-	// I anticipate that backstepping will only be used during timed
-	// (currently max 30 instructions/second) or stepped execution, where
-	// performance is not an issue.  Its Vector implementation may result
-	// in quicker garbage collection than a pure linked list implementation.
+	// Back steps are recorded for every register or memory write of every instruction
+	// executed while backstepping is enabled, which includes running flat out in the
+	// IDE.  So the stack keeps them in arrays of primitives, see BackstepStack below.
 
 	/**
 	* Create a fresh BackStepper.  It is enabled, which means all
@@ -98,6 +94,15 @@ public class BackStepper
 		engaged = state;
 	}
 
+	/**
+	* Discard all steps recorded so far, e.g. when the machine state they would undo
+	* has been replaced by a checkpoint.
+	*/
+	public void clear()
+	{
+		backSteps.clear();
+	}
+
 	/**
 	* Test whether there are steps that can be undone.
 	* @return true if there are no steps to be undone, false otherwise.
@@ -116,7 +121,7 @@ public class BackStepper
 	// Added 25 June 2007
 	public boolean inDelaySlot()
 	{
-		return !empty() && backSteps.peek().inDelaySlot;
+		return !empty() && (backSteps.flags[backSteps.top] & IN_DELAY_SLOT) != 0;
 	}
 
 	/**
@@ -129,57 +134,61 @@ public class BackStepper
 	// all store their result in register pairs which results in two store operations.
 	// Both must be undone transparently, so we need to detect that multiple steps happen
 	// together and carry out all of them here.
-	// Use a do-while loop based on the backstep's program statement reference.
+	// Use a do-while loop based on the backstep's program counter: the steps of one
+	// instruction execution are recorded with the same one.
 
 	public void backStep()
 	{
 		if(engaged && !backSteps.empty())
 		{
-			ProgramStatement statement = ((BackStep)backSteps.peek()).ps;
+			int statementPC = backSteps.pc[backSteps.top];
+			// Steps recorded when the user changes memory or registers through the GUI before
+			// the program runs (or after backstepping all the way to the start) are not
+			// associated with any instruction: their PC has no statement.  They are carried
+			// out, but the PC is left alone.  The statement is only looked up here, as
+			// back steps are recorded far more often than they are undone.
+			boolean setPC = hasStatement(statementPC);
 			engaged = false; // GOTTA DO THIS SO METHOD CALL IN SWITCH WILL NOT RESULT IN NEW ACTION ON STACK!
 			do
 			{
-				BackStep step = (BackStep) backSteps.pop();
-				/*
-					System.out.println("backstep POP: action "+step.action+" pc "+mars.util.Binary.intToHexString(step.pc)+
-					                   " source "+((step.ps==null)? "none":step.ps.getSource())+
-											 " parm1 "+step.param1+" parm2 "+step.param2);
-				*/
-				if(step.pc != NOT_PC_VALUE)
-					RegisterFile.setProgramCounter(step.pc);
+				int step = backSteps.pop();
+				int param1 = backSteps.param1[step];
+				int param2 = backSteps.param2[step];
+				if(setPC)
+					RegisterFile.setProgramCounter(backSteps.pc[step]);
 				try
 				{
-					switch(step.action)
+					switch(backSteps.action[step])
 					{
 						case MEMORY_RESTORE_RAW_WORD :
-							Globals.memory.setRawWord(step.param1, step.param2);
+							Memory.getInstance().setRawWord(param1, param2);
 							break;
 						case MEMORY_RESTORE_WORD :
-							Globals.memory.setWord(step.param1, step.param2);
+							Memory.getInstance().setWord(param1, param2);
 							break;
 						case MEMORY_RESTORE_HALF :
-							Globals.memory.setHalf(step.param1, step.param2);
+							Memory.getInstance().setHalf(param1, param2);
 							break;
 						case MEMORY_RESTORE_BYTE :
-							Globals.memory.setByte(step.param1, step.param2);
+							Memory.getInstance().setByte(param1, param2);
 							break;
 						case REGISTER_RESTORE :
-							RegisterFile.updateRegister(step.param1, step.param2);
+							RegisterFile.updateRegister(param1, param2);
 							break;
 						case PC_RESTORE :
-							RegisterFile.setProgramCounter(step.param1);
+							RegisterFile.setProgramCounter(param1);
 							break;
 						case COPROC0_REGISTER_RESTORE :
-							Coprocessor0.updateRegister(step.param1, step.param2);
+							Coprocessor0.updateRegister(param1, param2);
 							break;
 						case COPROC1_REGISTER_RESTORE :
-							Coprocessor1.updateRegister(step.param1, step.param2);
+							Coprocessor1.updateRegister(param1, param2);
 							break;
 						case COPROC1_CONDITION_CLEAR :
-							Coprocessor1.clearConditionFlag(step.param1);
+							Coprocessor1.clearConditionFlag(param1);
 							break;
 						case COPROC1_CONDITION_SET :
-							Coprocessor1.setConditionFlag(step.param1);
+							Coprocessor1.setConditionFlag(param1);
 							break;
 						case DO_NOTHING :
 							break;
@@ -192,11 +201,26 @@ public class BackStepper
 					System.exit(0);
 				}
 			}
-			while(!backSteps.empty() && statement == ((BackStep)backSteps.peek()).ps);
+			while(!backSteps.empty() && statementPC == backSteps.pc[backSteps.top]);
 			engaged = true;  // RESET IT (was disabled at top of loop -- see comment)
 		}
 	}
 
+	// Whether there is a program statement at the given address.  Want the program
+	// statement but do not want observers notified.
+	private static boolean hasStatement(int address)
+	{
+		try
+		{
+			Memory.getInstance().getStatementNoNotify(address);
+			return true;
+		}
+		catch(Exception e)
+		{
+			return false;
+		}
+	}
+
 
 	/* Convenience method called below to get program counter value.  If it needs to be
 	* be modified (e.g. to subtract 4) that can be done here in one place.
@@ -348,89 +372,53 @@ public class BackStepper
 	*/
 	public int addDoNothing(int pc)
 	{
-		if(backSteps.empty() || backSteps.peek().pc != pc)
+		if(backSteps.empty() || backSteps.pc[backSteps.top] != pc)
 			backSteps.push(DO_NOTHING, pc);
 		return 0;
 	}
 
 
-	// Represents a "back step" (undo action) on the stack.
-	private class BackStep
-	{
-		private int action;  // what do do MEMORY_RESTORE_WORD, etc
-		private int pc;      // program counter value when original step occurred
-		private ProgramStatement ps;   // statement whose action is being "undone" here
-		private int param1;  // first parameter required by that action
-		private int param2;  // optional second parameter required by that action
-		private boolean inDelaySlot; // true if instruction executed in "delay slot" (delayed branching enabled)
-
-		// it is critical that BackStep object get its values by calling this method
-		// rather than assigning to individual members, because of the technique used
-		// to set its ps member (and possibly pc).
-		private void assign(int act, int programCounter, int parm1, int parm2)
-		{
-			action = act;
-			pc     = programCounter;
-			try
-			{
-				// Client does not have direct access to program statement, and rather than making all
-				// of them go through the methods below to obtain it, we will do it here.
-				// Want the program statement but do not want observers notified.
-				ps = Globals.memory.getStatementNoNotify(programCounter);
-			}
-			catch(Exception e)
-			{
-				// The only situation causing this so far: user modifies memory or register
-				// contents through direct manipulation on the GUI, after assembling the program but
-				// before starting to run it (or after backstepping all the way to the start).
-				// The action will not be associated with any instruction, but will be carried out
-				// when popped.
-				ps = null;
-				pc = NOT_PC_VALUE; // Backstep method above will see this as flag to not set PC
-			}
-			param1 = parm1;
-			param2 = parm2;
-			inDelaySlot = Simulator.inDelaySlot(); // ADDED 25 June 2007
-			/*
-			   System.out.println("backstep PUSH: action "+action+" pc "+mars.util.Binary.intToHexString(pc)+
-					                   " source "+((ps==null)? "none":ps.getSource())+
-											 " parm1 "+param1+" parm2 "+param2);
-			*/
-		}
-	}
-
 	// *****************************************************************************
 	// special purpose stack class for backstepping.  You've heard of circular queues
 	// implemented with an array, right?  This is a circular stack!  When full, the
 	// newly-pushed item overwrites the oldest item, with circular top!  All operations
 	// are constant time.  It's synchronized too, to be safe (is used by both the
 	// simulation thread and the GUI thread for the back-step button).
-	// Upon construction, it is filled with newly-created empty BackStep objects which
-	// will exist for the life of the stack.  Push does not create a BackStep object
-	// but instead overwrites the contents of the existing one.  Thus during MIPS
-	// program (simulated) execution, BackStep objects are never created or junked
-	// regardless of how many steps are executed.  This will speed things up a bit
-	// and make life easier for the garbage collector.
+	// Each back step is an index into parallel arrays holding its action, the program
+	// counter value when the original step occurred, the parameters of the action and
+	// its flags, so pushing one neither creates nor fills in an object, and the garbage
+	// collector has next to nothing to look at however large the stack is.  The arrays
+	// start small and grow up to the capacity as steps are pushed, so a program that
+	// runs briefly does not pay for a capacity of millions.
 
 	private class BackstepStack
 	{
+		private static final int INITIAL_LENGTH = 1024;
+
 		private int capacity;
 		private int size;
 		private int top;
-		private BackStep[] stack;
+		private byte[] action; // what do do MEMORY_RESTORE_WORD, etc
+		private int[] pc;      // program counter value when original step occurred
+		private int[] param1;  // first parameter required by that action
+		private int[] param2;  // optional second parameter required by that action
+		private byte[] flags;  // IN_DELAY_SLOT if instruction executed in "delay slot"
 
-		// Stack is created upon successful assembly or reset.  The one-time overhead of
-		// creating all the BackStep objects will not be noticed by the user, and enhances
-		// runtime performance by not having to create or recycle them during MIPS
-		// program execution.
 		private BackstepStack(int capacity)
 		{
-			this.capacity = capacity;
+			this.capacity = Math.max(capacity, 1);
 			this.size = 0;
 			this.top = -1;
-			this.stack = new BackStep[capacity];
-			for(int i = 0; i < capacity; i++)
-				this.stack[i] = new BackStep();
+			allocate(Math.min(this.capacity, INITIAL_LENGTH));
+		}
+
+		private void allocate(int length)
+		{
+			action = (action == null) ? new byte[length] : Arrays.copyOf(action, length);
+			pc = (pc == null) ? new int[length] : Arrays.copyOf(pc, length);
+			param1 = (param1 == null) ? new int[length] : Arrays.copyOf(param1, length);
+			param2 = (param2 == null) ? new int[length] : Arrays.copyOf(param2, length);
+			flags = (flags == null) ? new byte[length] : Arrays.copyOf(flags, length);
 		}
 
 		private synchronized boolean empty()
@@ -438,23 +426,32 @@ public class BackStepper
 			return size == 0;
 		}
 
+		private synchronized void clear()
+		{
+			size = 0;
+			top = -1;
+		}
+
 		private synchronized void push(int act, int programCounter, int parm1, int parm2)
 		{
-			if(size == 0)
+			if(++top == pc.length)
 			{
-				top = 0;
-				size++;
+				if(pc.length < capacity)
+				{
+					// Not full, so the steps are at 0 to top - 1: room for more at the end.
+					allocate((int) Math.min((long) pc.length * 2, capacity));
+				}
+				else
+					top = 0;
 			}
-			else if(size < capacity)
-			{
-				top = (top + 1) % capacity;
+			if(size < capacity)
 				size++;
-			}
-			else   // size == capacity.  The top moves up one, replacing oldest entry (goodbye!)
-				top = (top + 1) % capacity;
-			// We'll re-use existing objects rather than create/discard each time.
-			// Must use assign() method rather than series of assignment statements!
-			stack[top].assign(act, programCounter, parm1, parm2);
+			// else size == capacity.  The top moves up one, replacing oldest entry (goodbye!)
+			action[top] = (byte) act;
+			pc[top] = programCounter;
+			param1[top] = parm1;
+			param2[top] = parm2;
+			flags[top] = (byte) (Simulator.inDelaySlot() ? IN_DELAY_SLOT : 0); // ADDED 25 June 2007
 		}
 
 		private synchronized void push(int act, int programCounter, int parm1)
@@ -468,26 +465,19 @@ public class BackStepper
 		}
 
 		// NO PROTECTION.  This class is used only within this file so there is no excuse
-		// for trying to pop from empty stack.
-		private synchronized BackStep pop()
+		// for trying to pop from empty stack.  Returns the index of the popped step,
+		// whose contents remain until the next push.
+		private synchronized int pop()
 		{
-			BackStep bs;
-			bs = stack[top];
+			int step = top;
 			if(size == 1)
 				top = -1;
-			else
-				top = (top + capacity - 1) % capacity;
+			else if(--top < 0)
+				top = pc.length - 1;
 			size--;
-			return bs;
-		}
-
-		// NO PROTECTION.  This class is used only within this file so there is no excuse
-		// for trying to peek from empty stack.
-		private synchronized BackStep peek()
-		{
-			return stack[top];
+			return step;
 		}
 
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,695 @@
+package mars.simulator;
+import mars.*;
+import mars.mips.hardware.*;
+import mars.mips.instructions.*;
+import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Translates frequently executed runs of MIPS instructions into Java bytecode, for the
+ * "jit" command-line option.  The simulator offers each address it is about to
+ * execute to execute().  Every address in the user text segment gets a counter, and
+ * once an address has been reached HOT_THRESHOLD times the run of instructions
+ * starting there is translated: straight-line integer, load/store and multiply
+ * instructions up to and including the first branch or jump, or up to the first
+ * instruction that is not translated (syscalls, floating point, traps, eret and so
+ * on).  The translation is a class implementing CompiledBlock, generated by
+ * ClassFileWriter and defined by a class loader of its own, that works on the
+ * register values array directly and calls Memory for loads and stores.  A block
+ * that branches back to its own start loops inside the generated code.
+ * <p>
+ * Each generated instruction does what the SimulationCode in InstructionSet does for
+ * it.  Whenever that would raise an exception (an address error, arithmetic overflow,
+ * a jump to address 0) the block stops just before the instruction and the
+ * interpreter simulates it instead, so errors are reported exactly as without
+ * translation.  Translation is only used when delayed branching, self-modifying code
+ * and back-stepping are off, and nothing observes the text segment or the registers,
+ * because the generated code neither notifies register observers nor records
+ * back-steps.  All blocks are dropped if the decoded instruction cache changes.
+ *
+ * @version October 2026
+ */
+
+class BlockTranslator implements InstructionRunner
+{
+	// Times an address must be reached before the block starting there is translated.
+	private static final int HOT_THRESHOLD = 50;
+	private static final int MAX_BLOCK_LENGTH = 200;
+	private static final int PC = 32, HI = 33, LO = 34;
+	private static final int NO_ADDRESS = 1; // never a valid instruction address
+
+	private static final String BLOCK_INTERFACE = "mars/simulator/CompiledBlock";
+	private static final String MEMORY_CLASS = "mars/mips/hardware/Memory";
+	private static final String ADDRESS_ERROR_CLASS = "mars/mips/hardware/AddressErrorException";
+	private static final String RUN_DESCRIPTOR = "([IL" + MEMORY_CLASS + ";I)I";
+
+	// Locals of the generated run method.
+	private static final int REGISTERS = 1, MEMORY = 2, BUDGET = 3, EXECUTED = 4,
+							 PRODUCT = 5, FIRST = 7, SECOND = 8, RESULT = 9;
+
+	/**
+	 * A translated block, or NONE where the instruction cannot start one.
+	 */
+	private static final class Block
+	{
+		final CompiledBlock code;
+		final int length;
+		final int lastAddress;
+
+		Block(CompiledBlock code, int length, int lastAddress)
+		{
+			this.code = code;
+			this.length = length;
+			this.lastAddress = lastAddress;
+		}
+	}
+
+	private static final Block NONE = new Block(null, Integer.MAX_VALUE, 0);
+
+	private static final class BlockLoader extends ClassLoader
+	{
+		BlockLoader()
+		{
+			super(CompiledBlock.class.getClassLoader());
+		}
+
+		Class define(String name, byte[] classFile)
+		{
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+
+	private final DecodedInstructionCache instructions;
+	private final Memory memory;
+	private final int[] registers;
+	private final int textBase;
+	private final int textWords;
+	private int modificationCount;
+	private BlockLoader loader;
+	private int classCount = 0;
+	private Block[] blocks = new Block[0];
+	private int[] counts = new int[0];
+	private int bailAddress = NO_ADDRESS;
+	private int lastAddress;
+	private final ExecutionCounts executionCounts;
+
+	/**
+	 * Create a translator for the current machine, which must not change while it is used.
+	 *
+	 * @param instructions the decoded instructions of the machine's memory
+	 * @param memory the machine's memory
+	 */
+	BlockTranslator(DecodedInstructionCache instructions, Memory memory)
+	{
+		this.instructions = instructions;
+		this.memory = memory;
+		this.registers = RegisterFile.getValueArray();
+		this.textBase = Memory.textBaseAddress;
+		this.textWords = (Memory.textLimitAddress - Memory.textBaseAddress) >>> 2;
+		this.modificationCount = instructions.getModificationCount();
+		this.executionCounts = ExecutionCounts.getInstance();
+	}
+
+	/**
+	 * Simulate the block starting at the given address if it has been translated,
+	 * translating it first if it has just become hot.
+	 */
+	public int execute(int address, int budget)
+	{
+		if(address == bailAddress)
+		{
+			bailAddress = NO_ADDRESS;
+			return -1;
+		}
+		int index = (address - textBase) >>> 2;
+		if((address & 3) != 0 || index >= textWords)
+			return -1;
+		if(instructions.getModificationCount() != modificationCount)
+			flush();
+		if(index >= counts.length && !grow(index))
+			return -1;
+		Block block = blocks[index];
+		if(block == null)
+		{
+			if(++counts[index] < HOT_THRESHOLD)
+				return -1;
+			block = translate(address);
+			blocks[index] = block;
+		}
+		if(block.length > budget)
+			return -1;
+		int executed = block.code.run(registers, memory, budget);
+		// Counted by address a block at a time, for the profile.
+		long[] byAddress = executionCounts.byAddress;
+		if(byAddress != null)
+			executionCounts.countBlock(byAddress, address, block.length, (executed < 0) ? ~executed : executed);
+		if(executed < 0)
+		{
+			bailAddress = registers[PC];
+			lastAddress = bailAddress - Instruction.INSTRUCTION_LENGTH;
+			return ~executed;
+		}
+		lastAddress = block.lastAddress;
+		return executed;
+	}
+
+	public int getLastAddress()
+	{
+		return lastAddress;
+	}
+
+	// Make room for the given index if it holds an instruction.
+	private boolean grow(int index)
+	{
+		if(instructions.lookup(textBase + (index << 2)) == null)
+			return false;
+		int length = Math.max(256, counts.length * 2);
+		while(length <= index)
+			length *= 2;
+		length = Math.min(length, textWords);
+		counts = Arrays.copyOf(counts, length);
+		blocks = Arrays.copyOf(blocks, length);
+		return true;
+	}
+
+	private void flush()
+	{
+		Arrays.fill(counts, 0);
+		Arrays.fill(blocks, null);
+		loader = null;
+		modificationCount = instructions.getModificationCount();
+	}
+
+	// Collect the statements of the block starting at the given address and generate
+	// its class.
+	private Block translate(int start)
+	{
+		ArrayList statements = new ArrayList();
+		int address = start;
+		while(statements.size() < MAX_BLOCK_LENGTH)
+		{
+			DecodedInstructionCache.Entry entry = instructions.lookup(address);
+			int operation = (entry == null) ? 0 : Operations.of(entry.statement, address);
+			if(operation == 0)
+				break;
+			statements.add(entry.statement);
+			if(Operations.isTransfer(operation))
+				break;
+			address += Instruction.INSTRUCTION_LENGTH;
+		}
+		if(statements.isEmpty())
+			return NONE;
+		if(loader == null)
+			loader = new BlockLoader();
+		String name = "mars/simulator/translated/Block" + Integer.toHexString(start) + "_" + (++classCount);
+		byte[] classFile = generate(name, start, statements);
+		try
+		{
+			Class blockClass = loader.define(name.replace('/', '.'), classFile);
+			CompiledBlock code = (CompiledBlock) blockClass.getDeclaredConstructor().newInstance();
+			return new Block(code, statements.size(),
+							 start + (statements.size() - 1) * Instruction.INSTRUCTION_LENGTH);
+		}
+		catch(ReflectiveOperationException e)
+		{
+			throw new IllegalStateException("cannot load translated block: " + e);
+		}
+	}
+
+	private static byte[] generate(String name, int start, ArrayList statements)
+	{
+		ClassFileWriter classFile = new ClassFileWriter(name, "java/lang/Object", new String[] {BLOCK_INTERFACE});
+		ClassFileWriter.Method run = classFile.addMethod("run", RUN_DESCRIPTOR);
+		run.setLimits(8, RESULT + 1);
+		ClassFileWriter.Label top = new ClassFileWriter.Label();
+		ClassFileWriter.Label end = new ClassFileWriter.Label();
+		ClassFileWriter.Label handler = new ClassFileWriter.Label();
+		int length = statements.size();
+		run.push(0);
+		run.local(ClassFileWriter.ISTORE, EXECUTED);
+		run.mark(top);
+		int address = start;
+		boolean transferred = false;
+		for(int i = 0; i < length; i++)
+		{
+			ProgramStatement statement = (ProgramStatement) statements.get(i);
+			int operation = Operations.of(statement, address);
+			int[] operands = statement.getOperands();
+			if(Operations.isTransfer(operation))
+			{
+				generateTransfer(run, operation, operands, start, address, length, top);
+				transferred = true;
+			}
+			else
+				generateInstruction(run, operation, operands, address, i);
+			address += Instruction.INSTRUCTION_LENGTH;
+		}
+		if(!transferred)
+			finish(run, length, address);
+		run.mark(end);
+		// An address error: the program counter was set to the failing instruction.
+		run.mark(handler);
+		run.op(ClassFileWriter.POP);
+		run.local(ClassFileWriter.ILOAD, EXECUTED);
+		load(run, PC);
+		run.push(start);
+		run.op(ClassFileWriter.ISUB);
+		run.push(2);
+		run.op(ClassFileWriter.IUSHR);
+		run.op(ClassFileWriter.IADD);
+		run.push(-1);
+		run.op(ClassFileWriter.IXOR);
+		run.op(ClassFileWriter.IRETURN);
+		run.setHandler(top, end, handler, ADDRESS_ERROR_CLASS);
+		return classFile.toByteArray();
+	}
+
+	private static void generateInstruction(ClassFileWriter.Method run, int operation, int[] operands,
+											int address, int index)
+	{
+		switch(operation)
+		{
+		case Operations.ADD:
+		case Operations.SUB:
+		case Operations.ADDI:
+			load(run, operands[1]);
+			run.local(ClassFileWriter.ISTORE, FIRST);
+			if(operation == Operations.ADDI)
+				run.push(operands[2] << 16 >> 16);
+			else
+				load(run, operands[2]);
+			run.local(ClassFileWriter.ISTORE, SECOND);
+			run.local(ClassFileWriter.ILOAD, FIRST);
+			run.local(ClassFileWriter.ILOAD, SECOND);
+			run.op(operation == Operations.SUB ? ClassFileWriter.ISUB : ClassFileWriter.IADD);
+			run.local(ClassFileWriter.ISTORE, RESULT);
+			// Overflow if the result's sign differs from that of both addends, or for
+			// a subtraction from that of the minuend when the operands' signs differ.
+			ClassFileWriter.Label noOverflow = new ClassFileWriter.Label();
+			run.local(ClassFileWriter.ILOAD, FIRST);
+			run.local(ClassFileWriter.ILOAD, operation == Operations.SUB ? SECOND : RESULT);
+			run.op(ClassFileWriter.IXOR);
+			run.local(ClassFileWriter.ILOAD, operation == Operations.SUB ? FIRST : SECOND);
+			run.local(ClassFileWriter.ILOAD, RESULT);
+			run.op(ClassFileWriter.IXOR);
+			run.op(ClassFileWriter.IAND);
+			run.branch(ClassFileWriter.IFGE, noOverflow);
+			bail(run, address, index);
+			run.mark(noOverflow);
+			beginStore(run, operands[0]);
+			run.local(ClassFileWriter.ILOAD, RESULT);
+			endStore(run, operands[0]);
+			break;
+		case Operations.ADDU:
+		case Operations.SUBU:
+		case Operations.AND:
+		case Operations.OR:
+		case Operations.XOR:
+		case Operations.NOR:
+		case Operations.SLLV:
+		case Operations.SRLV:
+		case Operations.SRAV:
+			beginStore(run, operands[0]);
+			load(run, operands[1]);
+			load(run, operands[2]);
+			if(operation == Operations.SLLV || operation == Operations.SRLV || operation == Operations.SRAV)
+			{
+				run.push(0x1F);
+				run.op(ClassFileWriter.IAND);
+			}
+			run.op(operation == Operations.ADDU ? ClassFileWriter.IADD
+				   : operation == Operations.SUBU ? ClassFileWriter.ISUB
+				   : operation == Operations.AND ? ClassFileWriter.IAND
+				   : operation == Operations.XOR ? ClassFileWriter.IXOR
+				   : operation == Operations.SLLV ? ClassFileWriter.ISHL
+				   : operation == Operations.SRLV ? ClassFileWriter.IUSHR
+				   : operation == Operations.SRAV ? ClassFileWriter.ISHR
+				   : ClassFileWriter.IOR);
+			if(operation == Operations.NOR)
+			{
+				run.push(-1);
+				run.op(ClassFileWriter.IXOR);
+			}
+			endStore(run, operands[0]);
+			break;
+		case Operations.ADDIU:
+		case Operations.ANDI:
+		case Operations.ORI:
+		case Operations.XORI:
+		case Operations.SLL:
+		case Operations.SRL:
+		case Operations.SRA:
+			beginStore(run, operands[0]);
+			load(run, operands[1]);
+			run.push(operation == Operations.ADDIU ? operands[2] << 16 >> 16
+					 : (operation == Operations.SLL || operation == Operations.SRL || operation == Operations.SRA) ? operands[2]
+					 : operands[2] & 0x0000FFFF);
+			run.op(operation == Operations.ADDIU ? ClassFileWriter.IADD
+				   : operation == Operations.ANDI ? ClassFileWriter.IAND
+				   : operation == Operations.ORI ? ClassFileWriter.IOR
+				   : operation == Operations.XORI ? ClassFileWriter.IXOR
+				   : operation == Operations.SLL ? ClassFileWriter.ISHL
+				   : operation == Operations.SRL ? ClassFileWriter.IUSHR
+				   : ClassFileWriter.ISHR);
+			endStore(run, operands[0]);
+			break;
+		case Operations.SLT:
+		case Operations.SLTU:
+		case Operations.SLTI:
+		case Operations.SLTIU:
+			beginStore(run, operands[0]);
+			load(run, operands[1]);
+			if(operation == Operations.SLTU || operation == Operations.SLTIU)
+			{
+				run.push(Integer.MIN_VALUE);
+				run.op(ClassFileWriter.IXOR);
+			}
+			if(operation == Operations.SLT || operation == Operations.SLTU)
+				load(run, operands[2]);
+			else
+				run.push(operands[2] << 16 >> 16);
+			if(operation == Operations.SLTU || operation == Operations.SLTIU)
+			{
+				run.push(Integer.MIN_VALUE);
+				run.op(ClassFileWriter.IXOR);
+			}
+			ClassFileWriter.Label notLess = new ClassFileWriter.Label();
+			ClassFileWriter.Label done = new ClassFileWriter.Label();
+			run.branch(ClassFileWriter.IF_ICMPGE, notLess);
+			run.push(1);
+			run.branch(ClassFileWriter.GOTO, done);
+			run.mark(notLess);
+			run.push(0);
+			run.mark(done);
+			endStore(run, operands[0]);
+			break;
+		case Operations.LUI:
+			beginStore(run, operands[0]);
+			run.push(operands[1] << 16);
+			endStore(run, operands[0]);
+			break;
+		case Operations.MULT:
+		case Operations.MULTU:
+		case Operations.MUL:
+			int first = (operation == Operations.MUL) ? operands[1] : operands[0];
+			int second = (operation == Operations.MUL) ? operands[2] : operands[1];
+			load(run, first);
+			run.op(ClassFileWriter.I2L);
+			if(operation == Operations.MULTU)
+				zeroExtend(run);
+			load(run, second);
+			run.op(ClassFileWriter.I2L);
+			if(operation == Operations.MULTU)
+				zeroExtend(run);
+			run.op(ClassFileWriter.LMUL);
+			run.local(ClassFileWriter.LSTORE, PRODUCT);
+			if(operation == Operations.MUL)
+			{
+				beginStore(run, operands[0]);
+				run.local(ClassFileWriter.LLOAD, PRODUCT);
+				run.op(ClassFileWriter.L2I);
+				endStore(run, operands[0]);
+			}
+			beginStore(run, HI);
+			run.local(ClassFileWriter.LLOAD, PRODUCT);
+			run.push(32);
+			run.op(ClassFileWriter.LSHR);
+			run.op(ClassFileWriter.L2I);
+			endStore(run, HI);
+			beginStore(run, LO);
+			run.local(ClassFileWriter.LLOAD, PRODUCT);
+			run.op(ClassFileWriter.L2I);
+			endStore(run, LO);
+			break;
+		case Operations.MFHI:
+		case Operations.MFLO:
+			beginStore(run, operands[0]);
+			load(run, operation == Operations.MFHI ? HI : LO);
+			endStore(run, operands[0]);
+			break;
+		case Operations.MTHI:
+		case Operations.MTLO:
+			beginStore(run, operation == Operations.MTHI ? HI : LO);
+			load(run, operands[0]);
+			endStore(run, operation == Operations.MTHI ? HI : LO);
+			break;
+		case Operations.MOVN:
+		case Operations.MOVZ:
+			ClassFileWriter.Label skip = new ClassFileWriter.Label();
+			load(run, operands[2]);
+			run.branch(operation == Operations.MOVN ? ClassFileWriter.IFEQ : ClassFileWriter.IFNE, skip);
+			beginStore(run, operands[0]);
+			load(run, operands[1]);
+			endStore(run, operands[0]);
+			run.mark(skip);
+			break;
+		case Operations.NOP:
+			break;
+		case Operations.LW:
+		case Operations.LH:
+		case Operations.LHU:
+		case Operations.LB:
+		case Operations.LBU:
+			setProgramCounter(run, address);
+			beginStore(run, operands[0]);
+			run.local(ClassFileWriter.ALOAD, MEMORY);
+			load(run, operands[2]);
+			run.push(operation == Operations.LW ? operands[1] : operands[1] << 16 >> 16);
+			run.op(ClassFileWriter.IADD);
+			run.invoke(ClassFileWriter.INVOKEVIRTUAL, MEMORY_CLASS,
+					   operation == Operations.LW ? "getWord" : (operation == Operations.LB || operation == Operations.LBU) ? "getByte" : "getHalf",
+					   "(I)I");
+			if(operation == Operations.LH || operation == Operations.LB)
+			{
+				int shift = (operation == Operations.LH) ? 16 : 24;
+				run.push(shift);
+				run.op(ClassFileWriter.ISHL);
+				run.push(shift);
+				run.op(ClassFileWriter.ISHR);
+			}
+			else if(operation == Operations.LHU || operation == Operations.LBU)
+			{
+				run.push(operation == Operations.LHU ? 0x0000ffff : 0x000000ff);
+				run.op(ClassFileWriter.IAND);
+			}
+			endStore(run, operands[0]);
+			break;
+		case Operations.SW:
+		case Operations.SH:
+		case Operations.SB:
+			setProgramCounter(run, address);
+			run.local(ClassFileWriter.ALOAD, MEMORY);
+			load(run, operands[2]);
+			run.push(operation == Operations.SW ? operands[1] : operands[1] << 16 >> 16);
+			run.op(ClassFileWriter.IADD);
+			load(run, operands[0]);
+			if(operation != Operations.SW)
+			{
+				run.push(operation == Operations.SH ? 0x0000ffff : 0x000000ff);
+				run.op(ClassFileWriter.IAND);
+			}
+			run.invoke(ClassFileWriter.INVOKEVIRTUAL, MEMORY_CLASS,
+					   operation == Operations.SW ? "setWord" : operation == Operations.SH ? "setHalf" : "setByte", "(II)I");
+			run.op(ClassFileWriter.POP);
+			break;
+		default:
+			throw new IllegalArgumentException("not a translated instruction: " + operation);
+		}
+	}
+
+	// The branch or jump that ends a block.
+	private static void generateTransfer(ClassFileWriter.Method run, int operation, int[] operands,
+										 int start, int address, int length, ClassFileWriter.Label top)
+	{
+		int next = address + Instruction.INSTRUCTION_LENGTH;
+		ClassFileWriter.Label notTaken = new ClassFileWriter.Label();
+		switch(operation)
+		{
+		case Operations.BEQ:
+		case Operations.BNE:
+			load(run, operands[0]);
+			load(run, operands[1]);
+			run.branch(operation == Operations.BEQ ? ClassFileWriter.IF_ICMPNE : ClassFileWriter.IF_ICMPEQ, notTaken);
+			jump(run, next + (operands[2] << 2), start, length, top);
+			run.mark(notTaken);
+			finish(run, length, next);
+			break;
+		case Operations.BLEZ:
+		case Operations.BGTZ:
+		case Operations.BLTZ:
+		case Operations.BGEZ:
+			load(run, operands[0]);
+			run.branch(operation == Operations.BLEZ ? ClassFileWriter.IFGT
+					   : operation == Operations.BGTZ ? ClassFileWriter.IFLE
+					   : operation == Operations.BLTZ ? ClassFileWriter.IFGE
+					   : ClassFileWriter.IFLT, notTaken);
+			jump(run, next + (operands[1] << 2), start, length, top);
+			run.mark(notTaken);
+			finish(run, length, next);
+			break;
+		case Operations.J:
+		case Operations.JAL:
+			if(operation == Operations.JAL)
+			{
+				beginStore(run, 31);
+				run.push(next);
+				endStore(run, 31);
+			}
+			jump(run, ((next & 0xF0000000) | (operands[0] << 2)), start, length, top);
+			break;
+		case Operations.JR:
+		case Operations.JALR:
+			int link = (operation == Operations.JR) ? 0 : (operands.length == 1) ? 31 : operands[0];
+			int target = (operation == Operations.JALR && operands.length > 1) ? operands[1] : operands[0];
+			if(link != 0 && link == target)
+			{
+				// The target is read after the return address is written.
+				beginStore(run, link);
+				run.push(next);
+				endStore(run, link);
+				finish(run, length, next);
+				break;
+			}
+			ClassFileWriter.Label nonZero = new ClassFileWriter.Label();
+			load(run, target);
+			run.local(ClassFileWriter.ISTORE, RESULT);
+			run.local(ClassFileWriter.ILOAD, RESULT);
+			run.branch(ClassFileWriter.IFNE, nonZero);
+			bail(run, address, length - 1);
+			run.mark(nonZero);
+			if(link != 0)
+			{
+				beginStore(run, link);
+				run.push(next);
+				endStore(run, link);
+			}
+			beginStore(run, PC);
+			run.local(ClassFileWriter.ILOAD, RESULT);
+			endStore(run, PC);
+			run.local(ClassFileWriter.ILOAD, EXECUTED);
+			run.push(length);
+			run.op(ClassFileWriter.IADD);
+			run.op(ClassFileWriter.IRETURN);
+			break;
+		default:
+			throw new IllegalArgumentException("not a translated branch or jump: " + operation);
+		}
+	}
+
+	// A taken branch or jump to the given address: loop back to the top if it is the
+	// start of the block and the budget allows another pass, otherwise return.
+	private static void jump(ClassFileWriter.Method run, int target, int start, int length,
+							 ClassFileWriter.Label top)
+	{
+		if(target != start)
+		{
+			finish(run, length, target);
+			return;
+		}
+		ClassFileWriter.Label exit = new ClassFileWriter.Label();
+		run.increment(EXECUTED, length);
+		run.local(ClassFileWriter.ILOAD, EXECUTED);
+		run.push(length);
+		run.op(ClassFileWriter.IADD);
+		run.local(ClassFileWriter.ILOAD, BUDGET);
+		run.branch(ClassFileWriter.IF_ICMPGT, exit);
+		run.branch(ClassFileWriter.GOTO, top);
+		run.mark(exit);
+		setProgramCounter(run, start);
+		run.local(ClassFileWriter.ILOAD, EXECUTED);
+		run.op(ClassFileWriter.IRETURN);
+	}
+
+	// Return normally, all instructions of this pass done, continuing at the given address.
+	private static void finish(ClassFileWriter.Method run, int length, int next)
+	{
+		setProgramCounter(run, next);
+		run.local(ClassFileWriter.ILOAD, EXECUTED);
+		run.push(length);
+		run.op(ClassFileWriter.IADD);
+		run.op(ClassFileWriter.IRETURN);
+	}
+
+	// Return, leaving the instruction at the given address (the index'th of the block)
+	// to the interpreter.
+	private static void bail(ClassFileWriter.Method run, int address, int index)
+	{
+		setProgramCounter(run, address);
+		run.local(ClassFileWriter.ILOAD, EXECUTED);
+		run.push(index);
+		run.op(ClassFileWriter.IADD);
+		run.push(-1);
+		run.op(ClassFileWriter.IXOR);
+		run.op(ClassFileWriter.IRETURN);
+	}
+
+	private static void setProgramCounter(ClassFileWriter.Method run, int address)
+	{
+		run.local(ClassFileWriter.ALOAD, REGISTERS);
+		run.push(PC);
+		run.push(address);
+		run.op(ClassFileWriter.IASTORE);
+	}
+
+	// Register 0 always reads as 0, and is never written.
+	private static void load(ClassFileWriter.Method run, int register)
+	{
+		if(register == 0)
+		{
+			run.push(0);
+			return;
+		}
+		run.local(ClassFileWriter.ALOAD, REGISTERS);
+		run.push(register);
+		run.op(ClassFileWriter.IALOAD);
+	}
+
+	private static void beginStore(ClassFileWriter.Method run, int register)
+	{
+		if(register != 0)
+		{
+			run.local(ClassFileWriter.ALOAD, REGISTERS);
+			run.push(register);
+		}
+	}
+
+	private static void endStore(ClassFileWriter.Method run, int register)
+	{
+		run.op(register != 0 ? ClassFileWriter.IASTORE : ClassFileWriter.POP);
+	}
+
+	private static void zeroExtend(ClassFileWriter.Method run)
+	{
+		run.push(32);
+		run.op(ClassFileWriter.LSHL);
+		run.push(32);
+		run.op(ClassFileWriter.LUSHR);
+	}
+}
@@ -0,0 +1,760 @@
+package mars.simulator;
+import mars.*;
+import mars.assembler.*;
+import mars.mips.hardware.*;
+import mars.util.*;
+import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * The places a run stops at: breakpoints, instruction addresses at which execution
+ * pauses before the instruction there is executed, and watchpoints, ranges of memory
+ * execution pauses after any instruction (or syscall) has written to.  A breakpoint
+ * may have a condition, such as <tt>$t0 == 5 &amp;&amp; [8($sp)] &gt;= 100</tt>, and
+ * then execution pauses there only when it holds.
+ * <p>
+ * The simulator asks after every instruction whether to stop (see shouldStop()), so
+ * that has to be cheap.  Breakpoints in the text and kernel text segments are kept in
+ * a bitmap with one bit per instruction word; any elsewhere (self-modifying code run
+ * from the data segment, say) in a sorted array.  Conditions are parsed when they are
+ * set, into a tree of comparisons that is only evaluated when the bit of its address
+ * is set.  Memory tells the watchpoints of every write, see Memory.setWatchpoints(),
+ * and they first check one bit per 4K page before they look for the range written.
+ * <p>
+ * Conditions compare operands with <tt>== != &lt; &lt;= &gt; &gt;=</tt> (as signed
+ * integers) and combine comparisons with <tt>&amp;&amp;</tt>, <tt>||</tt> and
+ * parentheses.  An operand is a register (<tt>$t0</tt>, <tt>$8</tt>, <tt>$f2</tt>,
+ * <tt>hi</tt>, <tt>lo</tt> or <tt>pc</tt>), an integer, or the word in memory at an
+ * address in brackets: <tt>[0x10010000]</tt>, <tt>[count]</tt>, <tt>[$a0]</tt>,
+ * <tt>[-4($fp)]</tt> or <tt>[buffer($t1)]</tt>.  An operand standing alone holds if
+ * it is not zero.  A condition that reads a word it cannot (out of range or not
+ * aligned) holds, so execution pauses and the problem can be looked at.
+ *
+ * @version October 2026
+ */
+
+public class Breakpoints
+{
+	private static final int PAGE_SHIFT = 12;  // watchpoints are checked by 4K page first
+
+	private final int textBase = Memory.textBaseAddress;
+	private final int kernelTextBase = Memory.kernelTextBaseAddress;
+	private final int textLimit = Memory.textLimitAddress;
+	private final int kernelTextLimit = Memory.kernelTextLimitAddress;
+	// One bit per word from the base of each text segment, as far as the highest
+	// breakpoint in it.
+	private long[] text = new long[0];
+	private long[] kernelText = new long[0];
+	private int[] others = new int[0];  // sorted
+	private int count = 0;
+	private HashMap conditions = new HashMap();  // Integer address -> Condition
+	private ArrayList symbolTables = new ArrayList();
+
+	// Watched ranges, first and last byte address of each, and one bit per page
+	// any of them covers.  The bitmap is only allocated once something is watched.
+	private int[] watchFirst = new int[0];
+	private int[] watchLast = new int[0];
+	private long[] watchedPages;
+	private boolean watchTriggered = false;
+	private boolean stoppedByWatchpoint = false;
+	private int watchedAddress;
+
+	/**
+	 * Create an empty set of breakpoints and watchpoints.
+	 */
+	public Breakpoints()
+	{
+	}
+
+	/**
+	 * Create breakpoints without conditions at the given addresses.
+	 *
+	 * @param addresses the instruction addresses, or null for none
+	 */
+	public Breakpoints(int[] addresses)
+	{
+		if(addresses != null)
+			for(int i = 0; i < addresses.length; i++)
+				add(addresses[i]);
+	}
+
+	/**
+	 * Have labels in conditions and in define() be looked up in the given symbol table,
+	 * after those added before it.  Without any, the global symbol table of the current
+	 * machine is used.
+	 *
+	 * @param symbolTable a symbol table of the program
+	 */
+	public void addSymbolTable(SymbolTable symbolTable)
+	{
+		symbolTables.add(symbolTable);
+	}
+
+	/**
+	 * Add a breakpoint without a condition.  If there already is one at the address,
+	 * its condition is removed.
+	 *
+	 * @param address the instruction address
+	 */
+	public void add(int address)
+	{
+		conditions.remove(new Integer(address));
+		if(isSet(address))
+			return;
+		if((address & 3) == 0 && inText(address))
+			text = setBit(text, (address - textBase) >>> 2);
+		else if((address & 3) == 0 && inKernelText(address))
+			kernelText = setBit(kernelText, (address - kernelTextBase) >>> 2);
+		else
+		{
+			int[] grown = new int[others.length + 1];
+			System.arraycopy(others, 0, grown, 0, others.length);
+			grown[others.length] = address;
+			Arrays.sort(grown);
+			others = grown;
+		}
+		count++;
+	}
+
+	/**
+	 * Add a breakpoint that execution only pauses at when the given condition holds,
+	 * see the description of the class for what it may say.
+	 *
+	 * @param address the instruction address
+	 * @param condition the condition
+	 * @throws IllegalArgumentException if the condition cannot be parsed
+	 */
+	public void add(int address, String condition) throws IllegalArgumentException
+	{
+		Condition parsed = new Parser(condition).parseCondition();
+		add(address);
+		conditions.put(new Integer(address), parsed);
+	}
+
+	/**
+	 * Watch the given range of memory: execution pauses after any instruction that
+	 * writes a byte of it.
+	 *
+	 * @param address the address of its first byte
+	 * @param length its length in bytes, at least 1
+	 * @throws IllegalArgumentException if the length is not positive or the range
+	 * runs past the end of the address space
+	 */
+	public void watch(int address, int length) throws IllegalArgumentException
+	{
+		if(length < 1)
+			throw new IllegalArgumentException("watched length must be positive");
+		int last = address + length - 1;
+		if(Integer.compareUnsigned(last, address) < 0)
+			throw new IllegalArgumentException("watched range runs past the end of memory");
+		watchFirst = append(watchFirst, address);
+		watchLast = append(watchLast, last);
+		if(watchedPages == null)
+			watchedPages = new long[1 << (32 - PAGE_SHIFT - 6)];
+		for(int page = address >>> PAGE_SHIFT; ; page++)
+		{
+			watchedPages[page >>> 6] |= 1L << page;
+			if(page == last >>> PAGE_SHIFT)
+				break;
+		}
+	}
+
+	/**
+	 * Define a breakpoint or watchpoint from a line of text, one of
+	 * <pre>
+	 *   break <i>address</i>
+	 *   break <i>address</i> if <i>condition</i>
+	 *   watch <i>address</i>
+	 *   watch <i>address</i> <i>length</i>
+	 * </pre>
+	 * where the address is an integer or a label, and a watched length defaults to a
+	 * word.  Blank lines and lines starting with # are ignored.
+	 *
+	 * @param line the definition
+	 * @throws IllegalArgumentException if the line cannot be parsed
+	 */
+	public void define(String line) throws IllegalArgumentException
+	{
+		Parser parser = new Parser(line);
+		if(parser.atEnd() || parser.peek().startsWith("#"))
+			return;
+		String command = parser.next();
+		if(command.equals("break"))
+		{
+			int address = parser.parseAddress();
+			if(parser.atEnd())
+				add(address);
+			else
+			{
+				parser.expect("if");
+				Condition condition = parser.parseCondition();
+				add(address);
+				conditions.put(new Integer(address), condition);
+			}
+		}
+		else if(command.equals("watch"))
+		{
+			int address = parser.parseAddress();
+			int length = Memory.WORD_LENGTH_BYTES;
+			if(!parser.atEnd())
+				length = parser.parseInteger();
+			parser.expectEnd();
+			watch(address, length);
+		}
+		else
+			throw new IllegalArgumentException("\"" + command + "\" is not break or watch");
+	}
+
+	/**
+	 * @return true if there are neither breakpoints nor watchpoints
+	 */
+	public boolean isEmpty()
+	{
+		return count == 0 && watchFirst.length == 0;
+	}
+
+	/**
+	 * @return true if any memory is watched
+	 */
+	public boolean hasWatchpoints()
+	{
+		return watchFirst.length != 0;
+	}
+
+	/**
+	 * Returns whether there is a breakpoint, with or without a condition, at the address.
+	 *
+	 * @param address an instruction address
+	 * @return true if there is a breakpoint there
+	 */
+	public boolean isSet(int address)
+	{
+		if((address & 3) == 0 && inText(address))
+			return testBit(text, (address - textBase) >>> 2);
+		if((address & 3) == 0 && inKernelText(address))
+			return testBit(kernelText, (address - kernelTextBase) >>> 2);
+		return others.length != 0 && Arrays.binarySearch(others, address) >= 0;
+	}
+
+	/**
+	 * Called by Memory for every write while these watchpoints are installed.
+	 *
+	 * @param address the address written
+	 * @param length the number of bytes written
+	 */
+	public void written(int address, int length)
+	{
+		int page = address >>> PAGE_SHIFT;
+		if((watchedPages[page >>> 6] & (1L << page)) == 0)
+			return;
+		int last = address + length - 1;
+		for(int i = 0; i < watchFirst.length; i++)
+		{
+			if(Integer.compareUnsigned(address, watchLast[i]) <= 0
+					&& Integer.compareUnsigned(last, watchFirst[i]) >= 0)
+			{
+				watchTriggered = true;
+				watchedAddress = address;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the last stop the simulator asked about was because of a write
+	 * to watched memory, rather than a breakpoint.
+	 *
+	 * @return true if a watchpoint stopped execution
+	 */
+	public boolean isStoppedByWatchpoint()
+	{
+		return stoppedByWatchpoint;
+	}
+
+	/**
+	 * @return the address of the write that last stopped execution at a watchpoint
+	 */
+	public int getWatchedAddress()
+	{
+		return watchedAddress;
+	}
+
+	/*
+	 * Called by the simulator after each instruction with the address of the next one.
+	 * Returns true if watched memory was written or there is a breakpoint at pc whose
+	 * condition, if any, holds.
+	 */
+	boolean shouldStop(int pc)
+	{
+		if(watchTriggered)
+		{
+			watchTriggered = false;
+			stoppedByWatchpoint = true;
+			return true;
+		}
+		if(!isSet(pc))
+			return false;
+		stoppedByWatchpoint = false;
+		if(conditions.isEmpty())
+			return true;
+		Condition condition = (Condition) conditions.get(new Integer(pc));
+		try
+		{
+			return condition == null || condition.holds();
+		}
+		catch(AddressErrorException e)
+		{
+			return true;
+		}
+	}
+
+	// Whether the address is in the text segments as they were when this was created,
+	// the bitmaps count words from those bases.  Compared unsigned, the kernel segment
+	// is above 0x80000000.
+	private boolean inText(int address)
+	{
+		return Integer.compareUnsigned(address - textBase, textLimit - textBase) < 0;
+	}
+
+	private boolean inKernelText(int address)
+	{
+		return Integer.compareUnsigned(address - kernelTextBase, kernelTextLimit - kernelTextBase) < 0;
+	}
+
+	private static boolean testBit(long[] bits, int index)
+	{
+		return index >>> 6 < bits.length && (bits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	private static long[] setBit(long[] bits, int index)
+	{
+		if(index >>> 6 >= bits.length)
+		{
+			long[] grown = new long[(index >>> 6) + 1];
+			System.arraycopy(bits, 0, grown, 0, bits.length);
+			bits = grown;
+		}
+		bits[index >>> 6] |= 1L << index;
+		return bits;
+	}
+
+	private static int[] append(int[] values, int value)
+	{
+		int[] grown = new int[values.length + 1];
+		System.arraycopy(values, 0, grown, 0, values.length);
+		grown[values.length] = value;
+		return grown;
+	}
+
+	/*
+	 * Looks a label up in the symbol tables given, or else in the global one of the
+	 * current machine.
+	 */
+	private int addressOf(String label)
+	{
+		ArrayList tables = symbolTables;
+		if(tables.isEmpty())
+		{
+			tables = new ArrayList();
+			tables.add(Machine.current().getSymbolTable());
+		}
+		for(int i = 0; i < tables.size(); i++)
+		{
+			int address = ((SymbolTable) tables.get(i)).getAddress(label);
+			if(address != SymbolTable.NOT_FOUND)
+				return address;
+		}
+		throw new IllegalArgumentException("label \"" + label + "\" not found");
+	}
+
+
+	//////////////////////////////////////////////////////////////////////////////////
+	// The parsed form of conditions.  Registers are kept by number and looked up
+	// when evaluated, in the registers of the machine being simulated.
+
+	private static abstract class Operand
+	{
+		abstract int value() throws AddressErrorException;
+	}
+
+	private static abstract class Condition
+	{
+		abstract boolean holds() throws AddressErrorException;
+	}
+
+	private static class Constant extends Operand
+	{
+		private final int value;
+
+		Constant(int value)
+		{
+			this.value = value;
+		}
+
+		int value()
+		{
+			return value;
+		}
+	}
+
+	private static class CpuRegister extends Operand
+	{
+		private final int number;  // 32 to 34 are pc, hi and lo
+
+		CpuRegister(int number)
+		{
+			this.number = number;
+		}
+
+		int value()
+		{
+			return RegisterFile.getValue(number);
+		}
+	}
+
+	private static class FloatingPointRegister extends Operand
+	{
+		private final int number;
+
+		FloatingPointRegister(int number)
+		{
+			this.number = number;
+		}
+
+		int value()
+		{
+			return Coprocessor1.getValue(number);
+		}
+	}
+
+	// The word at a constant offset from a base register, if any.
+	private static class MemoryWord extends Operand
+	{
+		private final int offset;
+		private final Operand base;
+
+		MemoryWord(int offset, Operand base)
+		{
+			this.offset = offset;
+			this.base = base;
+		}
+
+		int value() throws AddressErrorException
+		{
+			int address = (base == null) ? offset : offset + base.value();
+			return Memory.getInstance().getWordNoNotify(address);
+		}
+	}
+
+	private static class Comparison extends Condition
+	{
+		private final int operator;  // index in OPERATORS
+		private final Operand left, right;
+
+		Comparison(Operand left, int operator, Operand right)
+		{
+			this.left = left;
+			this.operator = operator;
+			this.right = right;
+		}
+
+		boolean holds() throws AddressErrorException
+		{
+			int a = left.value();
+			if(right == null)
+				return a != 0;
+			int b = right.value();
+			switch(operator)
+			{
+				case 0 : return a == b;
+				case 1 : return a != b;
+				case 2 : return a <= b;
+				case 3 : return a >= b;
+				case 4 : return a < b;
+				default : return a > b;
+			}
+		}
+	}
+
+	private static class Junction extends Condition
+	{
+		private final boolean and;
+		private final Condition left, right;
+
+		Junction(Condition left, boolean and, Condition right)
+		{
+			this.left = left;
+			this.and = and;
+			this.right = right;
+		}
+
+		boolean holds() throws AddressErrorException
+		{
+			return and ? left.holds() && right.holds() : left.holds() || right.holds();
+		}
+	}
+
+
+	//////////////////////////////////////////////////////////////////////////////////
+	// Recursive descent parser for definitions and conditions.
+	//
+	//   condition  := conjunction ( "||" conjunction )*
+	//   conjunction := comparison ( "&&" comparison )*
+	//   comparison := "(" condition ")" | operand [ operator operand ]
+	//   operand    := register | integer | "[" address "]"
+	//   address    := register | ( integer | label ) [ "(" register ")" ]
+
+	// The six comparisons come first, and each two character token before its prefix.
+	private static final String[] OPERATORS = {"==", "!=", "<=", ">=", "<", ">", "&&", "||"};
+
+	private class Parser
+	{
+		private final ArrayList tokens = new ArrayList();
+		private int position = 0;
+
+		Parser(String text)
+		{
+			int i = 0;
+			while(i < text.length())
+			{
+				char c = text.charAt(i);
+				if(Character.isWhitespace(c))
+				{
+					i++;
+					continue;
+				}
+				String operator = null;
+				for(int k = 0; k < OPERATORS.length && operator == null; k++)
+					if(text.startsWith(OPERATORS[k], i))
+						operator = OPERATORS[k];
+				if(operator != null)
+				{
+					tokens.add(operator);
+					i += operator.length();
+				}
+				else if("[]()".indexOf(c) >= 0)
+				{
+					tokens.add(String.valueOf(c));
+					i++;
+				}
+				else
+				{
+					int start = i;
+					while(i < text.length() && !Character.isWhitespace(text.charAt(i))
+							&& "[]()=!<>&|".indexOf(text.charAt(i)) < 0)
+						i++;
+					if(i == start)
+						throw new IllegalArgumentException("unexpected \"" + c + "\"");
+					tokens.add(text.substring(start, i));
+				}
+			}
+		}
+
+		boolean atEnd()
+		{
+			return position == tokens.size();
+		}
+
+		String peek()
+		{
+			return atEnd() ? "" : (String) tokens.get(position);
+		}
+
+		String next()
+		{
+			if(atEnd())
+				throw new IllegalArgumentException("unexpected end");
+			return (String) tokens.get(position++);
+		}
+
+		void expect(String token)
+		{
+			String found = next();
+			if(!found.equals(token))
+				throw new IllegalArgumentException("expected \"" + token + "\" but found \"" + found + "\"");
+		}
+
+		void expectEnd()
+		{
+			if(!atEnd())
+				throw new IllegalArgumentException("unexpected \"" + peek() + "\"");
+		}
+
+		Condition parseCondition()
+		{
+			Condition condition = parseDisjunction();
+			expectEnd();
+			return condition;
+		}
+
+		private Condition parseDisjunction()
+		{
+			Condition condition = parseConjunction();
+			while(peek().equals("||"))
+			{
+				next();
+				condition = new Junction(condition, false, parseConjunction());
+			}
+			return condition;
+		}
+
+		private Condition parseConjunction()
+		{
+			Condition condition = parseComparison();
+			while(peek().equals("&&"))
+			{
+				next();
+				condition = new Junction(condition, true, parseComparison());
+			}
+			return condition;
+		}
+
+		private Condition parseComparison()
+		{
+			if(peek().equals("("))
+			{
+				next();
+				Condition condition = parseDisjunction();
+				expect(")");
+				return condition;
+			}
+			Operand left = parseOperand();
+			for(int k = 0; k < 6; k++)
+			{
+				if(peek().equals(OPERATORS[k]))
+				{
+					next();
+					return new Comparison(left, k, parseOperand());
+				}
+			}
+			return new Comparison(left, -1, null);
+		}
+
+		private Operand parseOperand()
+		{
+			String token = next();
+			if(token.equals("["))
+			{
+				Operand word;
+				Operand register = register(peek());
+				if(register != null)
+				{
+					next();
+					word = new MemoryWord(0, register);
+				}
+				else
+				{
+					int offset = addressOrInteger(next());
+					Operand base = null;
+					if(peek().equals("("))
+					{
+						next();
+						base = register(next());
+						if(base == null)
+							throw new IllegalArgumentException("expected a register in \"(...)\"");
+						expect(")");
+					}
+					word = new MemoryWord(offset, base);
+				}
+				expect("]");
+				return word;
+			}
+			Operand register = register(token);
+			if(register != null)
+				return register;
+			try
+			{
+				return new Constant(Binary.stringToInt(token));
+			}
+			catch(NumberFormatException e)
+			{
+				throw new IllegalArgumentException("\"" + token + "\" is not a register, integer or [address]");
+			}
+		}
+
+		int parseAddress()
+		{
+			return addressOrInteger(next());
+		}
+
+		int parseInteger()
+		{
+			String token = next();
+			try
+			{
+				return Binary.stringToInt(token);
+			}
+			catch(NumberFormatException e)
+			{
+				throw new IllegalArgumentException("\"" + token + "\" is not an integer");
+			}
+		}
+
+		private int addressOrInteger(String token)
+		{
+			try
+			{
+				return Binary.stringToInt(token);
+			}
+			catch(NumberFormatException e)
+			{
+				return addressOf(token);
+			}
+		}
+
+		// Returns the operand for the register named by token, or null if it names none.
+		private Operand register(String token)
+		{
+			if(token.length() < 2)
+				return null;
+			if(token.equals("pc"))
+				return new CpuRegister(RegisterFile.getProgramCounterRegister().getNumber());
+			if(token.equals("hi"))
+				return new CpuRegister(33);
+			if(token.equals("lo"))
+				return new CpuRegister(34);
+			if((token.charAt(0) == '$' && !token.startsWith("$f")) || token.equals("$fp"))
+			{
+				Register register = RegisterFile.getUserRegister(token);
+				if(register == null)
+					throw new IllegalArgumentException("\"" + token + "\" is not a register");
+				return new CpuRegister(register.getNumber());
+			}
+			if(token.startsWith("$f"))
+			{
+				Register register = Coprocessor1.getRegister(token);
+				if(register == null)
+					throw new IllegalArgumentException("\"" + token + "\" is not a register");
+				return new FloatingPointRegister(register.getNumber());
+			}
+			return null;
+		}
+	}
+}
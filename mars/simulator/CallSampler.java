@@ -0,0 +1,270 @@
+package mars.simulator;
+import mars.*;
+import mars.assembler.*;
+import mars.mips.hardware.*;
+import mars.util.*;
+import java.io.*;
+import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Call-graph sampling profiler.  While sampling, the machine keeps a shadow call
+ * stack: the "and link" instructions (jal, jalr, bltzal, bgezal) push the subroutine
+ * they call, and <tt>jr $ra</tt> pops back to the frame it returns to.  Every so many
+ * instructions the simulator records a snapshot of that stack.  The samples can be
+ * written in the collapsed-stack format read by flame graph tools, one line per
+ * distinct stack, e.g. <tt>main;qsort;qsort;partition 42</tt>.
+ * <p>
+ * The stack only knows about calls made while sampling; its bottom frame stands for
+ * the code that was running when sampling started.  The turbo loop's block translator
+ * and compact interpreter do not keep the stack, so they are not used while sampling.
+ * Each Machine has its own sampler.
+ *
+ * @version October 2026
+ */
+
+public class CallSampler
+{
+	/** Number of instructions between samples unless told otherwise. */
+	public static final int DEFAULT_INTERVAL = 1000;
+
+	// Number of machines sampling.  Lets the "and link" instructions skip the lookup
+	// of the current machine's sampler in the common case.
+	private static int samplersRunning = 0;
+
+	private boolean sampling = false;
+	private int interval = DEFAULT_INTERVAL;
+	long nextSample;  // instruction count of ExecutionCounts at which to take the next sample
+	private int rootAddress;
+	// The shadow call stack: subroutine addresses, and the return address of each call.
+	private int[] subroutines = new int[64];
+	private int[] returnAddresses = new int[64];
+	private int depth = 0;
+	// Sample count (a long[1]) by Stack.
+	private HashMap samples = new HashMap();
+
+	/**
+	 * Returns the sampler of the machine of the calling thread, see Machine.current().
+	 *
+	 * @return the call sampler of the current machine
+	 */
+	public static CallSampler getInstance()
+	{
+		return Machine.current().getCallSampler();
+	}
+
+	/**
+	 * @return true if the sampler of any machine is sampling
+	 */
+	public static boolean isAnySampling()
+	{
+		return samplersRunning > 0;
+	}
+
+	/**
+	 * Start sampling, discarding earlier samples.  The bottom frame of the call stack
+	 * is the code at the program counter of the machine, normally the entry point of
+	 * the program when called before it runs.
+	 *
+	 * @param interval number of instructions between samples, at least 1
+	 */
+	public void start(int interval)
+	{
+		synchronized(CallSampler.class)
+		{
+			if(!sampling)
+				samplersRunning++;
+		}
+		synchronized(this)
+		{
+			this.interval = Math.max(interval, 1);
+			this.rootAddress = RegisterFile.getProgramCounter();
+			this.depth = 0;
+			this.samples = new HashMap();
+			this.nextSample = ExecutionCounts.getInstance().getTotal() + this.interval;
+			this.sampling = true;
+		}
+	}
+
+	/**
+	 * Stop sampling.  The samples taken are kept until sampling is started again.
+	 */
+	public void stop()
+	{
+		synchronized(CallSampler.class)
+		{
+			if(sampling)
+				samplersRunning--;
+		}
+		sampling = false;
+	}
+
+	/**
+	 * @return true if sampling
+	 */
+	public boolean isSampling()
+	{
+		return sampling;
+	}
+
+	/**
+	 * @return number of samples taken since sampling was started
+	 */
+	public synchronized long getSampleCount()
+	{
+		long count = 0;
+		Iterator values = samples.values().iterator();
+		while(values.hasNext())
+			count += ((long[]) values.next())[0];
+		return count;
+	}
+
+	/**
+	 * Record a call of the subroutine at the given address, to return to the given
+	 * return address.  Called by the "and link" instructions.
+	 *
+	 * @param returnAddress address the subroutine is expected to return to
+	 * @param subroutine address of the subroutine
+	 */
+	public void call(int returnAddress, int subroutine)
+	{
+		if(!sampling)
+			return;
+		if(depth == subroutines.length)
+		{
+			subroutines = Arrays.copyOf(subroutines, depth * 2);
+			returnAddresses = Arrays.copyOf(returnAddresses, depth * 2);
+		}
+		subroutines[depth] = subroutine;
+		returnAddresses[depth] = returnAddress;
+		depth++;
+	}
+
+	/**
+	 * Record a return to the given address.  Called by <tt>jr $ra</tt>.  Pops the
+	 * innermost frame that was to return there, with any frames above it; a return
+	 * to an address no frame expects, e.g. <tt>jr $ra</tt> used as a computed jump,
+	 * leaves the stack as it is.
+	 *
+	 * @param address the address returned to
+	 */
+	public void returnTo(int address)
+	{
+		if(!sampling)
+			return;
+		for(int frame = depth - 1; frame >= 0; frame--)
+			if(returnAddresses[frame] == address)
+			{
+				depth = frame;
+				return;
+			}
+	}
+
+	/*
+	 * Take a sample of the current call stack.  Called by the simulator before the
+	 * instruction that brings the instruction count to nextSample.
+	 */
+	synchronized void sample()
+	{
+		nextSample += interval;
+		Stack stack = new Stack(Arrays.copyOf(subroutines, depth));
+		long[] count = (long[]) samples.get(stack);
+		if(count == null)
+			samples.put(stack, new long[] {1});
+		else
+			count[0]++;
+	}
+
+	/**
+	 * Write the samples in collapsed-stack format: for each distinct call stack, the
+	 * names of its frames from the outermost, separated by semicolons, then a space
+	 * and the number of samples.  A frame is named by the text label of its
+	 * subroutine, or by its address if it has none.  Labels are looked up in the
+	 * memory and symbol tables of the current machine.
+	 *
+	 * @param out where to write the samples
+	 */
+	public synchronized void writeCollapsedStacks(PrintStream out)
+	{
+		TextLabels labels = new TextLabels();
+		labels.addProgramAt(rootAddress);
+		Iterator stacks = samples.keySet().iterator();
+		while(stacks.hasNext())
+		{
+			int[] frames = ((Stack) stacks.next()).frames;
+			for(int i = 0; i < frames.length; i++)
+				labels.addProgramAt(frames[i]);
+		}
+		ArrayList lines = new ArrayList();
+		Iterator entries = samples.entrySet().iterator();
+		while(entries.hasNext())
+		{
+			Map.Entry entry = (Map.Entry) entries.next();
+			int[] frames = ((Stack) entry.getKey()).frames;
+			StringBuffer line = new StringBuffer(frameName(labels, rootAddress));
+			for(int i = 0; i < frames.length; i++)
+				line.append(';').append(frameName(labels, frames[i]));
+			line.append(' ').append(((long[]) entry.getValue())[0]);
+			lines.add(line.toString());
+		}
+		Collections.sort(lines);
+		for(int i = 0; i < lines.size(); i++)
+			out.println(lines.get(i));
+	}
+
+	private static String frameName(TextLabels labels, int address)
+	{
+		Symbol label = labels.labelOf(address);
+		return (label == null) ? Binary.intToHexString(address) : label.getName();
+	}
+
+	// A snapshot of the call stack, usable as a hash key.
+	private static final class Stack
+	{
+		final int[] frames;
+		private final int hash;
+
+		Stack(int[] frames)
+		{
+			this.frames = frames;
+			this.hash = Arrays.hashCode(frames);
+		}
+
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		public boolean equals(Object o)
+		{
+			return o instanceof Stack && Arrays.equals(frames, ((Stack) o).frames);
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package mars.simulator;
+import mars.*;
+import mars.mips.hardware.*;
+import mars.util.*;
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.zip.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Saves the complete state of the current machine (see Machine.current()) to a file and
+ * restores it, to resume a program later without running it from the start: e.g. to
+ * skip the expensive setup phase of a long test program, or to go on after the step
+ * limit has been extended.  A checkpoint holds the general purpose, coprocessor 0 and
+ * coprocessor 1 registers, the program counter and a pending delayed branch, the
+ * allocated 4K blocks of every memory segment, the text segments as machine code, the
+ * heap allocation point and the files the program has open (by name and position).
+ * The random number streams and the counts of executed instructions are not saved.
+ * <p>
+ * The file starts with a magic number and a format version, followed by the memory
+ * configuration the checkpoint was taken with; it can only be restored under the same
+ * one.  It may be written compressed with GZIP, which restore() detects by itself.
+ * Both methods must not be called while the simulator of the machine is running.
+ *
+ * @version October 2026
+ */
+
+public class Checkpoint
+{
+	private static final int MAGIC = 0x4d434b50; // "MCKP"
+	private static final int VERSION = 1;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Save the state of the current machine to a file, replacing any it held.
+	 *
+	 * @param file the file to write
+	 * @param compressed whether to compress the checkpoint with GZIP
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void save(File file, boolean compressed) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+											   StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		OutputStream stream = Channels.newOutputStream(channel);
+		if(compressed)
+			stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+		try
+		{
+			synchronized(Machine.current().getLock())
+			{
+				write(out);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Replace the state of the current machine with that saved in a file by save().
+	 * Nothing is changed if the file is not a valid checkpoint for the current memory
+	 * configuration.  Any back-steps recorded for the program are discarded.
+	 *
+	 * @param file the file to read
+	 * @throws IOException if the file cannot be read, is not a valid checkpoint, or
+	 * a file the program had open cannot be reopened
+	 */
+	public static void restore(File file) throws IOException
+	{
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		InputStream stream = new ByteArrayInputStream(bytes);
+		if(bytes.length >= 2 && (bytes[0] & 0xff) == 0x1f && (bytes[1] & 0xff) == 0x8b)
+			stream = new BufferedInputStream(new GZIPInputStream(stream, BUFFER_SIZE), BUFFER_SIZE);
+		DataInputStream in = new DataInputStream(stream);
+		try
+		{
+			synchronized(Machine.current().getLock())
+			{
+				read(in);
+			}
+		}
+		catch(EOFException e)
+		{
+			throw new IOException("checkpoint is truncated");
+		}
+		catch(IllegalArgumentException e)
+		{
+			throw new IOException(e.getMessage());
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	private static void write(DataOutputStream out) throws IOException
+	{
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		int[] configuration = getConfiguration();
+		for(int i = 0; i < configuration.length; i++)
+			out.writeInt(configuration[i]);
+		for(int i = 0; i < 32; i++)
+			out.writeInt(RegisterFile.getValue(i));
+		out.writeInt(RegisterFile.getProgramCounter());
+		out.writeInt(RegisterFile.getValue(33));
+		out.writeInt(RegisterFile.getValue(34));
+		Register[] registers = Coprocessor0.getRegisters();
+		out.writeInt(registers.length);
+		for(int i = 0; i < registers.length; i++)
+		{
+			out.writeInt(registers[i].getNumber());
+			out.writeInt(registers[i].getValue());
+		}
+		for(int i = 0; i < 32; i++)
+			out.writeInt(Coprocessor1.getValue(i));
+		out.writeInt(Coprocessor1.getConditionFlags());
+		out.writeInt(DelayedBranch.getState());
+		out.writeInt(DelayedBranch.getBranchTargetAddress());
+		Memory.getInstance().writeCheckpoint(out);
+		SystemIO.writeCheckpoint(out);
+	}
+
+	// Everything ahead of memory is read before anything is changed, and memory is
+	// only changed once it has been read completely, so a bad checkpoint leaves the
+	// machine as it was unless it fails while reopening files.
+	private static void read(DataInputStream in) throws IOException
+	{
+		if(in.readInt() != MAGIC)
+			throw new IOException("not a MARS checkpoint");
+		int version = in.readInt();
+		if(version != VERSION)
+			throw new IOException("unsupported checkpoint version " + version);
+		int[] configuration = getConfiguration();
+		for(int i = 0; i < configuration.length; i++)
+			if(in.readInt() != configuration[i])
+				throw new IOException("checkpoint was saved with a different memory configuration");
+		int[] values = new int[32];
+		for(int i = 0; i < values.length; i++)
+			values[i] = in.readInt();
+		int pc = in.readInt();
+		int hi = in.readInt();
+		int lo = in.readInt();
+		int count = in.readInt();
+		if(count < 0 || count > Coprocessor0.getRegisters().length)
+			throw new IOException("invalid coprocessor 0 register count " + count);
+		int[] numbers0 = new int[count];
+		int[] values0 = new int[count];
+		for(int i = 0; i < count; i++)
+		{
+			numbers0[i] = in.readInt();
+			values0[i] = in.readInt();
+		}
+		int[] values1 = new int[32];
+		for(int i = 0; i < values1.length; i++)
+			values1[i] = in.readInt();
+		int conditionFlags = in.readInt();
+		int branchState = in.readInt();
+		int branchTarget = in.readInt();
+		Memory.getInstance().readCheckpoint(in);
+
+		for(int i = 1; i < values.length; i++)
+			RegisterFile.updateRegister(i, values[i]);
+		RegisterFile.setProgramCounter(pc);
+		RegisterFile.updateRegister(33, hi);
+		RegisterFile.updateRegister(34, lo);
+		for(int i = 0; i < count; i++)
+			Coprocessor0.updateRegister(numbers0[i], values0[i]);
+		for(int i = 0; i < values1.length; i++)
+			Coprocessor1.updateRegister(i, values1[i]);
+		Coprocessor1.clearConditionFlags();
+		for(int flag = 0; flag < Coprocessor1.getConditionFlagCount(); flag++)
+			if((conditionFlags & (1 << flag)) != 0)
+				Coprocessor1.setConditionFlag(flag);
+		DelayedBranch.setState(branchState, branchTarget);
+		MIPSprogram program = Machine.current().getProgram();
+		if(program != null && program.getBackStepper() != null)
+			program.getBackStepper().clear();
+		SystemIO.readCheckpoint(in);
+	}
+
+	// The segment addresses a checkpoint depends on.
+	private static int[] getConfiguration()
+	{
+		return new int[] {
+			Memory.textBaseAddress, Memory.dataSegmentBaseAddress, Memory.heapBaseAddress,
+			Memory.stackBaseAddress, Memory.kernelTextBaseAddress, Memory.kernelDataBaseAddress,
+			Memory.memoryMapBaseAddress
+		};
+	}
+}
@@ -0,0 +1,483 @@
+package mars.simulator;
+import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Just enough of a Java class file writer for BlockTranslator: a public class with a
+ * public no-argument constructor and methods whose code is appended one JVM
+ * instruction at a time.  Branches go to Labels, which are patched when the method
+ * is finished, and each method may have one exception handler.
+ * <p>
+ * Classes are written in the Java 5 format (version 49), which the JVM still verifies
+ * by type inference, so no stack map frames have to be computed.  Branch offsets are
+ * 16 bits, so a method must stay under 32K bytes of code.
+ *
+ * @version October 2026
+ */
+
+final class ClassFileWriter
+{
+	// Opcodes used by the translator.
+	static final int ICONST_0 = 0x03;
+	static final int BIPUSH = 0x10;
+	static final int SIPUSH = 0x11;
+	static final int LDC = 0x12;
+	static final int LDC_W = 0x13;
+	static final int ILOAD = 0x15;
+	static final int LLOAD = 0x16;
+	static final int ALOAD = 0x19;
+	static final int IALOAD = 0x2e;
+	static final int ISTORE = 0x36;
+	static final int LSTORE = 0x37;
+	static final int IASTORE = 0x4f;
+	static final int POP = 0x57;
+	static final int IADD = 0x60;
+	static final int ISUB = 0x64;
+	static final int LMUL = 0x69;
+	static final int ISHL = 0x78;
+	static final int LSHL = 0x79;
+	static final int ISHR = 0x7a;
+	static final int LSHR = 0x7b;
+	static final int IUSHR = 0x7c;
+	static final int LUSHR = 0x7d;
+	static final int IAND = 0x7e;
+	static final int IOR = 0x80;
+	static final int IXOR = 0x82;
+	static final int IINC = 0x84;
+	static final int I2L = 0x85;
+	static final int L2I = 0x88;
+	static final int IFEQ = 0x99;
+	static final int IFNE = 0x9a;
+	static final int IFLT = 0x9b;
+	static final int IFGE = 0x9c;
+	static final int IFGT = 0x9d;
+	static final int IFLE = 0x9e;
+	static final int IF_ICMPEQ = 0x9f;
+	static final int IF_ICMPNE = 0xa0;
+	static final int IF_ICMPLT = 0xa1;
+	static final int IF_ICMPGE = 0xa2;
+	static final int IF_ICMPGT = 0xa3;
+	static final int IF_ICMPLE = 0xa4;
+	static final int GOTO = 0xa7;
+	static final int IRETURN = 0xac;
+	static final int RETURN = 0xb1;
+	static final int INVOKEVIRTUAL = 0xb6;
+	static final int INVOKESPECIAL = 0xb7;
+
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+	private static final int CLASS_VERSION = 49;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	/**
+	 * A position in the code of a method, possibly not yet known.
+	 */
+	static final class Label
+	{
+		private int position = -1;
+		// Pairs of (offset of branch opcode, offset of its 16-bit operand).
+		private final ArrayList branches = new ArrayList();
+	}
+
+	/**
+	 * The code of one method under construction.
+	 */
+	final class Method
+	{
+		private final int nameIndex;
+		private final int descriptorIndex;
+		private final ArrayList labels = new ArrayList();
+		private byte[] code = new byte[256];
+		private int length = 0;
+		private int maxStack = 0;
+		private int maxLocals = 0;
+		private Label tryStart, tryEnd, handler;
+		private int catchType;
+
+		private Method(String name, String descriptor)
+		{
+			this.nameIndex = utf8(name);
+			this.descriptorIndex = utf8(descriptor);
+		}
+
+		/**
+		 * Set the limits the verifier checks the code against.
+		 */
+		void setLimits(int maxStack, int maxLocals)
+		{
+			this.maxStack = maxStack;
+			this.maxLocals = maxLocals;
+		}
+
+		/**
+		 * Append an instruction without operands.
+		 */
+		void op(int opcode)
+		{
+			u1(opcode);
+		}
+
+		/**
+		 * Append an instruction that takes a local variable index.
+		 */
+		void local(int opcode, int index)
+		{
+			u1(opcode);
+			u1(index);
+		}
+
+		/**
+		 * Append an iinc of the given local variable.
+		 */
+		void increment(int index, int amount)
+		{
+			if(amount < -128 || amount > 127)
+			{
+				local(ILOAD, index);
+				push(amount);
+				op(IADD);
+				local(ISTORE, index);
+				return;
+			}
+			u1(IINC);
+			u1(index);
+			u1(amount);
+		}
+
+		/**
+		 * Append whichever instruction pushes the given int constant most compactly.
+		 */
+		void push(int value)
+		{
+			if(value >= -1 && value <= 5)
+				u1(ICONST_0 + value);
+			else if(value >= -128 && value <= 127)
+			{
+				u1(BIPUSH);
+				u1(value);
+			}
+			else if(value >= -32768 && value <= 32767)
+			{
+				u1(SIPUSH);
+				u2(value);
+			}
+			else
+			{
+				int index = constant(value);
+				if(index < 256)
+				{
+					u1(LDC);
+					u1(index);
+				}
+				else
+				{
+					u1(LDC_W);
+					u2(index);
+				}
+			}
+		}
+
+		/**
+		 * Append an invokevirtual or invokespecial of the given method.
+		 */
+		void invoke(int opcode, String owner, String name, String descriptor)
+		{
+			u1(opcode);
+			u2(methodRef(owner, name, descriptor));
+		}
+
+		/**
+		 * Append a conditional or unconditional branch to the given label.
+		 */
+		void branch(int opcode, Label target)
+		{
+			if(!labels.contains(target))
+				labels.add(target);
+			target.branches.add(new int[] {length, length + 1});
+			u1(opcode);
+			u2(0);
+		}
+
+		/**
+		 * Place the given label at the current end of the code.
+		 */
+		void mark(Label label)
+		{
+			if(!labels.contains(label))
+				labels.add(label);
+			label.position = length;
+		}
+
+		/**
+		 * Catch exceptions of the given class thrown by the code between two labels,
+		 * continuing at the handler label with the exception on the stack.
+		 */
+		void setHandler(Label start, Label end, Label handler, String exceptionClass)
+		{
+			this.tryStart = start;
+			this.tryEnd = end;
+			this.handler = handler;
+			this.catchType = classRef(exceptionClass);
+		}
+
+		/**
+		 * @return number of bytes of code so far
+		 */
+		int size()
+		{
+			return length;
+		}
+
+		private void u1(int value)
+		{
+			if(length == code.length)
+				code = Arrays.copyOf(code, code.length * 2);
+			code[length++] = (byte) value;
+		}
+
+		private void u2(int value)
+		{
+			u1(value >> 8);
+			u1(value);
+		}
+
+		private void write(Output out)
+		{
+			for(int i = 0; i < labels.size(); i++)
+			{
+				Label label = (Label) labels.get(i);
+				for(int j = 0; j < label.branches.size(); j++)
+				{
+					int[] site = (int[]) label.branches.get(j);
+					int offset = label.position - site[0];
+					if(label.position < 0 || offset != (short) offset)
+						throw new IllegalStateException("branch target out of range");
+					code[site[1]] = (byte)(offset >> 8);
+					code[site[1] + 1] = (byte) offset;
+				}
+			}
+			out.u2(ACC_PUBLIC);
+			out.u2(nameIndex);
+			out.u2(descriptorIndex);
+			out.u2(1);
+			out.u2(codeAttributeName);
+			int handlers = (handler == null) ? 0 : 1;
+			out.u4(12 + length + 8 * handlers);
+			out.u2(maxStack);
+			out.u2(maxLocals);
+			out.u4(length);
+			out.bytes(code, length);
+			out.u2(handlers);
+			if(handler != null)
+			{
+				out.u2(tryStart.position);
+				out.u2(tryEnd.position);
+				out.u2(handler.position);
+				out.u2(catchType);
+			}
+			out.u2(0);
+		}
+	}
+
+	private static final class Output
+	{
+		private byte[] bytes = new byte[1024];
+		private int length = 0;
+
+		void u1(int value)
+		{
+			if(length == bytes.length)
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			bytes[length++] = (byte) value;
+		}
+
+		void u2(int value)
+		{
+			u1(value >> 8);
+			u1(value);
+		}
+
+		void u4(int value)
+		{
+			u2(value >> 16);
+			u2(value);
+		}
+
+		void bytes(byte[] source, int count)
+		{
+			for(int i = 0; i < count; i++)
+				u1(source[i]);
+		}
+
+		byte[] toByteArray()
+		{
+			return Arrays.copyOf(bytes, length);
+		}
+	}
+
+	private final Output constants = new Output();
+	private final HashMap constantIndexes = new HashMap();
+	private int constantCount = 1;
+	private final ArrayList methods = new ArrayList();
+	private final int thisClass;
+	private final int superClass;
+	private final int[] interfaces;
+	private final int codeAttributeName;
+
+	/**
+	 * Start a public final class.  Names are internal names, e.g. "java/lang/Object".
+	 *
+	 * @param name name of the class
+	 * @param superName name of its superclass
+	 * @param interfaceNames names of the interfaces it implements
+	 */
+	ClassFileWriter(String name, String superName, String[] interfaceNames)
+	{
+		thisClass = classRef(name);
+		superClass = classRef(superName);
+		interfaces = new int[interfaceNames.length];
+		for(int i = 0; i < interfaceNames.length; i++)
+			interfaces[i] = classRef(interfaceNames[i]);
+		codeAttributeName = utf8("Code");
+		Method constructor = addMethod("<init>", "()V");
+		constructor.local(ALOAD, 0);
+		constructor.invoke(INVOKESPECIAL, superName, "<init>", "()V");
+		constructor.op(RETURN);
+		constructor.setLimits(1, 1);
+	}
+
+	/**
+	 * Add a public method, whose code is then appended to the returned Method.
+	 */
+	Method addMethod(String name, String descriptor)
+	{
+		Method method = new Method(name, descriptor);
+		methods.add(method);
+		return method;
+	}
+
+	/**
+	 * @return the finished class file
+	 */
+	byte[] toByteArray()
+	{
+		Output out = new Output();
+		out.u4(0xCAFEBABE);
+		out.u2(0);
+		out.u2(CLASS_VERSION);
+		out.u2(constantCount);
+		out.bytes(constants.bytes, constants.length);
+		out.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+		out.u2(thisClass);
+		out.u2(superClass);
+		out.u2(interfaces.length);
+		for(int i = 0; i < interfaces.length; i++)
+			out.u2(interfaces[i]);
+		out.u2(0);
+		out.u2(methods.size());
+		for(int i = 0; i < methods.size(); i++)
+			((Method) methods.get(i)).write(out);
+		out.u2(0);
+		return out.toByteArray();
+	}
+
+	// Constant pool entries are shared by key, e.g. "C:java/lang/Object".
+	private int utf8(String value)
+	{
+		String key = "U:" + value;
+		Integer index = (Integer) constantIndexes.get(key);
+		if(index != null)
+			return index.intValue();
+		constants.u1(CONSTANT_UTF8);
+		constants.u2(value.length());
+		for(int i = 0; i < value.length(); i++)
+			constants.u1(value.charAt(i));   // names and descriptors here are plain ASCII
+		return newConstant(key);
+	}
+
+	private int constant(int value)
+	{
+		String key = "I:" + value;
+		Integer index = (Integer) constantIndexes.get(key);
+		if(index != null)
+			return index.intValue();
+		constants.u1(CONSTANT_INTEGER);
+		constants.u4(value);
+		return newConstant(key);
+	}
+
+	private int classRef(String name)
+	{
+		String key = "C:" + name;
+		Integer index = (Integer) constantIndexes.get(key);
+		if(index != null)
+			return index.intValue();
+		int nameIndex = utf8(name);
+		constants.u1(CONSTANT_CLASS);
+		constants.u2(nameIndex);
+		return newConstant(key);
+	}
+
+	private int methodRef(String owner, String name, String descriptor)
+	{
+		String key = "M:" + owner + "." + name + descriptor;
+		Integer index = (Integer) constantIndexes.get(key);
+		if(index != null)
+			return index.intValue();
+		int ownerIndex = classRef(owner);
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		Integer nameAndType = (Integer) constantIndexes.get("N:" + name + descriptor);
+		if(nameAndType == null)
+		{
+			constants.u1(CONSTANT_NAME_AND_TYPE);
+			constants.u2(nameIndex);
+			constants.u2(descriptorIndex);
+			nameAndType = new Integer(newConstant("N:" + name + descriptor));
+		}
+		constants.u1(CONSTANT_METHODREF);
+		constants.u2(ownerIndex);
+		constants.u2(nameAndType.intValue());
+		return newConstant(key);
+	}
+
+	private int newConstant(String key)
+	{
+		int index = constantCount++;
+		constantIndexes.put(key, new Integer(index));
+		return index;
+	}
+}
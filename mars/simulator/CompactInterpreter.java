@@ -0,0 +1,521 @@
+package mars.simulator;
+import mars.mips.hardware.*;
+import mars.mips.instructions.*;
+import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Interpreter for the common integer instructions that runs as one loop around one
+ * switch, for the "compact" command-line option.  The general simulator calls each
+ * instruction's SimulationCode through the same call site, which sees dozens of
+ * classes and so is never inlined by the JVM.  Here each instruction is decoded once,
+ * when first reached, into four ints of a packed array: its id from Operations and
+ * three operands with immediates already extended and branch targets already
+ * computed.  Registers are read and written in the register values array directly.
+ * <p>
+ * Each case does what the SimulationCode in InstructionSet does for the instruction,
+ * which remains the reference: bench/InterpreterCheck compares the two on whole
+ * programs.  Instructions without an id, and any instruction that would raise an
+ * exception (an address error, arithmetic overflow, a jump to address 0), are left
+ * to the simulator, so errors are reported exactly as usual.  Like BlockTranslator
+ * it is only used without delayed branching, self-modifying code, back-stepping and
+ * observers, and it decodes everything again if the decoded instruction cache changes.
+ *
+ * @version October 2026
+ */
+
+class CompactInterpreter implements InstructionRunner
+{
+	private static final int PC = 32, HI = 33, LO = 34;
+	private static final int NO_ADDRESS = 1; // never a valid instruction address
+	// Ints per decoded instruction: id, then operands a, b and c.
+	private static final int FIELDS = 4;
+	// Ids of an instruction not decoded yet, and of one left to the simulator.
+	private static final int UNDECODED = 0, OTHER = -1;
+
+	private final DecodedInstructionCache instructions;
+	private final Memory memory;
+	private final int[] registers;
+	private final int textBase;
+	private final int textWords;
+	private int modificationCount;
+	private int[] code = new int[0];
+	private int bailAddress = NO_ADDRESS;
+	private int lastAddress;
+	private final ExecutionCounts executionCounts;
+
+	/**
+	 * Create an interpreter for the current machine, which must not change while it is used.
+	 *
+	 * @param instructions the decoded instructions of the machine's memory
+	 * @param memory the machine's memory
+	 */
+	CompactInterpreter(DecodedInstructionCache instructions, Memory memory)
+	{
+		this.instructions = instructions;
+		this.memory = memory;
+		this.registers = RegisterFile.getValueArray();
+		this.textBase = Memory.textBaseAddress;
+		this.textWords = (Memory.textLimitAddress - Memory.textBaseAddress) >>> 2;
+		this.modificationCount = instructions.getModificationCount();
+		this.executionCounts = ExecutionCounts.getInstance();
+	}
+
+	public int execute(int address, int budget)
+	{
+		if(address == bailAddress)
+		{
+			bailAddress = NO_ADDRESS;
+			return -1;
+		}
+		if(instructions.getModificationCount() != modificationCount)
+		{
+			Arrays.fill(code, UNDECODED);
+			modificationCount = instructions.getModificationCount();
+		}
+		int index = (address - textBase) >>> 2;
+		int operation = ((address & 3) == 0 && (index << 2) < code.length) ? code[index << 2] : UNDECODED;
+		if(operation == UNDECODED)
+			operation = decode(address);
+		if(operation == OTHER)
+			return -1;
+		final int[] r = registers;
+		final Memory memory = this.memory;
+		int[] code = this.code;
+		long[] byAddress = executionCounts.byAddress;  // for the profile, usually null
+		int pc = address;
+		int last = address - Instruction.INSTRUCTION_LENGTH;
+		int executed = 0;
+		try
+		{
+			while(executed < budget)
+			{
+				index = (pc - textBase) >>> 2;
+				int k = index << 2;
+				operation = ((pc & 3) == 0 && k < code.length) ? code[k] : UNDECODED;
+				if(operation == UNDECODED)
+				{
+					operation = decode(pc);
+					code = this.code;
+				}
+				if(operation == OTHER)
+					break;
+				int a = code[k + 1];
+				int b = code[k + 2];
+				int c = code[k + 3];
+				int next = pc + Instruction.INSTRUCTION_LENGTH;
+				switch(operation)
+				{
+				case Operations.ADD:
+				case Operations.ADDI:
+				case Operations.SUB:
+					int first = r[b];
+					int second = (operation == Operations.ADDI) ? c : r[c];
+					int result = (operation == Operations.SUB) ? first - second : first + second;
+					// Overflow if the result's sign differs from that of both addends, or for
+					// a subtraction from that of the minuend when the operands' signs differ.
+					if((operation == Operations.SUB ? (first ^ second) & (first ^ result)
+							: (first ^ result) & (second ^ result)) < 0)
+						return bail(pc, last, executed);
+					if(a != 0)
+						r[a] = result;
+					break;
+				case Operations.ADDU:
+					r[a] = r[b] + r[c];
+					break;
+				case Operations.SUBU:
+					r[a] = r[b] - r[c];
+					break;
+				case Operations.ADDIU:
+					r[a] = r[b] + c;
+					break;
+				case Operations.AND:
+					r[a] = r[b] & r[c];
+					break;
+				case Operations.OR:
+					r[a] = r[b] | r[c];
+					break;
+				case Operations.XOR:
+					r[a] = r[b] ^ r[c];
+					break;
+				case Operations.NOR:
+					r[a] = ~(r[b] | r[c]);
+					break;
+				case Operations.ANDI:
+					r[a] = r[b] & c;
+					break;
+				case Operations.ORI:
+					r[a] = r[b] | c;
+					break;
+				case Operations.XORI:
+					r[a] = r[b] ^ c;
+					break;
+				case Operations.SLT:
+					r[a] = (r[b] < r[c]) ? 1 : 0;
+					break;
+				case Operations.SLTU:
+					r[a] = ((r[b] ^ Integer.MIN_VALUE) < (r[c] ^ Integer.MIN_VALUE)) ? 1 : 0;
+					break;
+				case Operations.SLTI:
+					r[a] = (r[b] < c) ? 1 : 0;
+					break;
+				case Operations.SLTIU:
+					r[a] = ((r[b] ^ Integer.MIN_VALUE) < (c ^ Integer.MIN_VALUE)) ? 1 : 0;
+					break;
+				case Operations.LUI:
+					r[a] = c;
+					break;
+				case Operations.SLL:
+					r[a] = r[b] << c;
+					break;
+				case Operations.SRL:
+					r[a] = r[b] >>> c;
+					break;
+				case Operations.SRA:
+					r[a] = r[b] >> c;
+					break;
+				case Operations.SLLV:
+					r[a] = r[b] << (r[c] & 0x1F);
+					break;
+				case Operations.SRLV:
+					r[a] = r[b] >>> (r[c] & 0x1F);
+					break;
+				case Operations.SRAV:
+					r[a] = r[b] >> (r[c] & 0x1F);
+					break;
+				case Operations.MULT:
+				case Operations.MULTU:
+				case Operations.MUL:
+					long product = (operation == Operations.MULTU)
+								   ? (r[b] & 0xFFFFFFFFL) * (r[c] & 0xFFFFFFFFL)
+								   : (long) r[b] * (long) r[c];
+					if(operation == Operations.MUL && a != 0)
+						r[a] = (int) product;
+					r[HI] = (int)(product >> 32);
+					r[LO] = (int) product;
+					break;
+				case Operations.MFHI:
+					r[a] = r[HI];
+					break;
+				case Operations.MFLO:
+					r[a] = r[LO];
+					break;
+				case Operations.MTHI:
+					r[HI] = r[b];
+					break;
+				case Operations.MTLO:
+					r[LO] = r[b];
+					break;
+				case Operations.MOVN:
+					if(r[c] != 0)
+						r[a] = r[b];
+					break;
+				case Operations.MOVZ:
+					if(r[c] == 0)
+						r[a] = r[b];
+					break;
+				case Operations.NOP:
+					break;
+				case Operations.LW:
+					result = memory.getWord(r[b] + c);
+					if(a != 0)
+						r[a] = result;
+					break;
+				case Operations.LH:
+					result = memory.getHalf(r[b] + c) << 16 >> 16;
+					if(a != 0)
+						r[a] = result;
+					break;
+				case Operations.LHU:
+					result = memory.getHalf(r[b] + c) & 0x0000ffff;
+					if(a != 0)
+						r[a] = result;
+					break;
+				case Operations.LB:
+					result = memory.getByte(r[b] + c) << 24 >> 24;
+					if(a != 0)
+						r[a] = result;
+					break;
+				case Operations.LBU:
+					result = memory.getByte(r[b] + c) & 0x000000ff;
+					if(a != 0)
+						r[a] = result;
+					break;
+				case Operations.SW:
+					memory.setWord(r[b] + c, r[a]);
+					break;
+				case Operations.SH:
+					memory.setHalf(r[b] + c, r[a] & 0x0000ffff);
+					break;
+				case Operations.SB:
+					memory.setByte(r[b] + c, r[a] & 0x000000ff);
+					break;
+				case Operations.BEQ:
+					if(r[a] == r[b])
+						next = c;
+					break;
+				case Operations.BNE:
+					if(r[a] != r[b])
+						next = c;
+					break;
+				case Operations.BLEZ:
+					if(r[a] <= 0)
+						next = c;
+					break;
+				case Operations.BGTZ:
+					if(r[a] > 0)
+						next = c;
+					break;
+				case Operations.BLTZ:
+					if(r[a] < 0)
+						next = c;
+					break;
+				case Operations.BGEZ:
+					if(r[a] >= 0)
+						next = c;
+					break;
+				case Operations.J:
+					next = c;
+					break;
+				case Operations.JAL:
+					r[31] = next;
+					next = c;
+					break;
+				case Operations.JR:
+				case Operations.JALR:
+					// The target is read after the return address is written.
+					int target = (a != 0 && a == b) ? next : r[b];
+					if(target == 0)
+						return bail(pc, last, executed);
+					if(a != 0)
+						r[a] = next;
+					next = target;
+					break;
+				default:
+					throw new IllegalStateException("not an interpreted instruction: " + operation);
+				}
+				if(byAddress != null)
+					byAddress = executionCounts.countByAddress(byAddress, pc);
+				last = pc;
+				pc = next;
+				executed++;
+			}
+		}
+		catch(AddressErrorException e)
+		{
+			return bail(pc, last, executed);
+		}
+		r[PC] = pc;
+		lastAddress = last;
+		return executed;
+	}
+
+	public int getLastAddress()
+	{
+		return lastAddress;
+	}
+
+	// Stop before the instruction at the given address, leaving it to the simulator.
+	private int bail(int pc, int last, int executed)
+	{
+		registers[PC] = pc;
+		bailAddress = pc;
+		lastAddress = last;
+		return executed;
+	}
+
+	// Decode the instruction at the given address into the code array.  Operand a is
+	// the register written, b and c the registers read or the immediate, which for
+	// loads and stores is the offset and for branches and jumps is the target.  An
+	// instruction without side effects that writes register 0 becomes a nop.
+	private int decode(int address)
+	{
+		int index = (address - textBase) >>> 2;
+		if((address & 3) != 0 || index >= textWords)
+			return OTHER;
+		DecodedInstructionCache.Entry entry = instructions.lookup(address);
+		if(entry == null)
+			return OTHER;
+		int k = index << 2;
+		if(k >= code.length)
+		{
+			int length = Math.max(256 * FIELDS, code.length * 2);
+			while(length <= k)
+				length *= 2;
+			code = Arrays.copyOf(code, Math.min(length, textWords * FIELDS));
+		}
+		int operation = Operations.of(entry.statement, address);
+		int[] operands = entry.statement.getOperands();
+		int a = 0, b = 0, c = 0;
+		switch(operation)
+		{
+		case Operations.ADD:
+		case Operations.SUB:
+		case Operations.MUL:
+		case Operations.ADDU:
+		case Operations.SUBU:
+		case Operations.AND:
+		case Operations.OR:
+		case Operations.XOR:
+		case Operations.NOR:
+		case Operations.SLT:
+		case Operations.SLTU:
+		case Operations.SLLV:
+		case Operations.SRLV:
+		case Operations.SRAV:
+		case Operations.MOVN:
+		case Operations.MOVZ:
+		case Operations.SLL:
+		case Operations.SRL:
+		case Operations.SRA:
+			a = operands[0];
+			b = operands[1];
+			c = operands[2];
+			break;
+		case Operations.ADDI:
+		case Operations.ADDIU:
+		case Operations.SLTI:
+		case Operations.SLTIU:
+			a = operands[0];
+			b = operands[1];
+			c = operands[2] << 16 >> 16;
+			break;
+		case Operations.ANDI:
+		case Operations.ORI:
+		case Operations.XORI:
+			a = operands[0];
+			b = operands[1];
+			c = operands[2] & 0x0000FFFF;
+			break;
+		case Operations.LUI:
+			a = operands[0];
+			c = operands[1] << 16;
+			break;
+		case Operations.MULT:
+		case Operations.MULTU:
+			b = operands[0];
+			c = operands[1];
+			break;
+		case Operations.MFHI:
+		case Operations.MFLO:
+			a = operands[0];
+			break;
+		case Operations.MTHI:
+		case Operations.MTLO:
+		case Operations.JR:
+			b = operands[0];
+			break;
+		case Operations.NOP:
+			break;
+		case Operations.LW:
+		case Operations.SW:
+			a = operands[0];
+			b = operands[2];
+			c = operands[1];
+			break;
+		case Operations.LH:
+		case Operations.LHU:
+		case Operations.LB:
+		case Operations.LBU:
+		case Operations.SH:
+		case Operations.SB:
+			a = operands[0];
+			b = operands[2];
+			c = operands[1] << 16 >> 16;
+			break;
+		case Operations.BEQ:
+		case Operations.BNE:
+			a = operands[0];
+			b = operands[1];
+			c = Operations.branchTarget(address, operands[2]);
+			break;
+		case Operations.BLEZ:
+		case Operations.BGTZ:
+		case Operations.BLTZ:
+		case Operations.BGEZ:
+			a = operands[0];
+			c = Operations.branchTarget(address, operands[1]);
+			break;
+		case Operations.J:
+		case Operations.JAL:
+			c = Operations.jumpTarget(entry.statement, address);
+			break;
+		case Operations.JALR:
+			a = (operands.length == 1) ? 31 : operands[0];
+			b = (operands.length == 1) ? operands[0] : operands[1];
+			break;
+		default:
+			operation = OTHER;
+			break;
+		}
+		if(a == 0 && writesOnlyOperandA(operation))
+			operation = Operations.NOP;
+		code[k] = operation;
+		code[k + 1] = a;
+		code[k + 2] = b;
+		code[k + 3] = c;
+		return operation;
+	}
+
+	private static boolean writesOnlyOperandA(int operation)
+	{
+		switch(operation)
+		{
+		case Operations.ADDU:
+		case Operations.SUBU:
+		case Operations.ADDIU:
+		case Operations.AND:
+		case Operations.OR:
+		case Operations.XOR:
+		case Operations.NOR:
+		case Operations.ANDI:
+		case Operations.ORI:
+		case Operations.XORI:
+		case Operations.SLT:
+		case Operations.SLTU:
+		case Operations.SLTI:
+		case Operations.SLTIU:
+		case Operations.LUI:
+		case Operations.SLL:
+		case Operations.SRL:
+		case Operations.SRA:
+		case Operations.SLLV:
+		case Operations.SRLV:
+		case Operations.SRAV:
+		case Operations.MFHI:
+		case Operations.MFLO:
+		case Operations.MOVN:
+		case Operations.MOVZ:
+			return true;
+		default:
+			return false;
+		}
+	}
+}
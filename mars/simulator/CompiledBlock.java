@@ -0,0 +1,57 @@
+package mars.simulator;
+import mars.mips.hardware.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * A run of MIPS instructions translated to Java bytecode by BlockTranslator.  The
+ * generated classes implement this interface, which is public only so that they can:
+ * they are defined by their own class loader and so are outside this package.
+ *
+ * @version October 2026
+ */
+
+public interface CompiledBlock
+{
+	/**
+	 * Simulate the block, repeatedly if it branches back to its own start and the
+	 * budget allows.  On return the program counter, registers[32], holds the address
+	 * of the next instruction to simulate.  If an instruction could not be completed
+	 * here (it raised an address error, overflowed, or jumped to address 0) the
+	 * program counter holds its address instead, and it is left for the interpreter
+	 * to simulate and report.
+	 *
+	 * @param registers register values as returned by RegisterFile.getValueArray()
+	 * @param memory memory of the machine being simulated
+	 * @param budget maximum number of instructions to simulate, at least the length of the block
+	 * @return number of instructions simulated, or its one's complement (~count, a negative
+	 * number) if the instruction at the program counter is to be left to the interpreter
+	 */
+	public int run(int[] registers, Memory memory, int budget);
+}
@@ -1,4 +1,6 @@
 package mars.simulator;
+import mars.Globals;
+import mars.Machine;
 
 /*
 Copyright (c) 2003-2007,  Pete Sanderson and Kenneth Vollmar
@@ -52,8 +54,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  * would hope) but in the meantime the first statement following the sequence
  * of successful branches will constitute the delay slot and will be executed!
  *
- * Since only one pending delayed branch can be taken at a time, everything
- * here is done with statics.  The class itself represents the potential branch.
+ * Since only one pending delayed branch can be taken at a time, each Machine has
+ * just one of these and everything here is done with statics that work on the
+ * one belonging to the current Machine.  An instance represents the potential branch.
  *
  * @author Pete Sanderson
  * @version June 2007
@@ -68,8 +71,46 @@ public class DelayedBranch
 
 	// Initially nothing is happening.
 
-	private static int state = CLEARED;
-	private static int branchTargetAddress = 0;
+	private int state = CLEARED;
+	private int branchTargetAddress = 0;
+	// Copy of the delayed branching setting, taken at the start of each run of the
+	// machine.  The setting cannot be changed while a program is running, and branches
+	// and jumps are far too frequent to consult Settings every time.
+	private boolean enabled = false;
+
+	/**
+	 *  Create a cleared delayed branch, for a new Machine.
+	 */
+	public DelayedBranch()
+	{
+	}
+
+	// The delayed branch of the machine being simulated by the calling thread.
+	private static DelayedBranch current()
+	{
+		return Machine.current().getDelayedBranch();
+	}
+
+	/**
+	 *  Capture the delayed branching setting for the run the current machine is about
+	 *  to start.  Called by the simulator at the start of every run.  This method has
+	 *  package visibility.
+	 */
+	static void prepareForSimulation()
+	{
+		current().enabled = Globals.getSettings().getDelayedBranchingEnabled();
+	}
+
+	/**
+	 *  Return whether branches and jumps of the current run of the current machine are
+	 *  delayed, as the delayed branching setting was when the run started.
+	 *
+	 *  @return true if delayed branching is enabled for the run
+	 */
+	public static boolean isEnabled()
+	{
+		return current().enabled;
+	}
 
 	/**
 	*  Register the fact that a successful branch is to occur.  This is called in
@@ -84,14 +125,15 @@ public class DelayedBranch
 	 */
 	public static void register(int targetAddress)
 	{
+		DelayedBranch branch = current();
 		// About as clean as a switch statement can be!
-		switch(state)
+		switch(branch.state)
 		{
 			case CLEARED    :
-				branchTargetAddress = targetAddress;
+				branch.branchTargetAddress = targetAddress;
 			case REGISTERED :
 			case TRIGGERED  :
-				state = REGISTERED;
+				branch.state = REGISTERED;
 		}
 	}
 
@@ -109,12 +151,13 @@ public class DelayedBranch
 	 */
 	static void trigger()
 	{
+		DelayedBranch branch = current();
 		// About as clean as a switch statement can be!
-		switch(state)
+		switch(branch.state)
 		{
 			case REGISTERED :
 			case TRIGGERED  :
-				state = TRIGGERED;
+				branch.state = TRIGGERED;
 			case CLEARED    :
 		}
 	}
@@ -125,8 +168,9 @@ public class DelayedBranch
 	 */
 	static void clear()
 	{
-		state = CLEARED;
-		branchTargetAddress = 0;
+		DelayedBranch branch = current();
+		branch.state = CLEARED;
+		branch.branchTargetAddress = 0;
 	}
 
 	/**
@@ -139,7 +183,7 @@ public class DelayedBranch
 
 	static boolean isRegistered()
 	{
-		return state == REGISTERED;
+		return current().state == REGISTERED;
 	}
 
 	/**
@@ -151,7 +195,7 @@ public class DelayedBranch
 
 	static boolean isTriggered()
 	{
-		return state == TRIGGERED;
+		return current().state == TRIGGERED;
 	}
 
 
@@ -165,7 +209,35 @@ public class DelayedBranch
 	*/
 	static int getBranchTargetAddress()
 	{
-		return branchTargetAddress;
+		return current().branchTargetAddress;
+	}
+
+	/**
+	 *  Return the state (cleared, registered or triggered), to be saved in a checkpoint
+	 *  along with the branch target address.  This method has package visibility.
+	 *
+	 *  @return the state of the delayed branch
+	 */
+	static int getState()
+	{
+		return current().state;
+	}
+
+	/**
+	 *  Restore the state and branch target address saved in a checkpoint.  This method
+	 *  has package visibility.
+	 *
+	 *  @param state the state, as returned by getState()
+	 *  @param targetAddress the branch target address
+	 *  @throws IllegalArgumentException if the state is not valid
+	 */
+	static void setState(int state, int targetAddress)
+	{
+		if(state != CLEARED && state != REGISTERED && state != TRIGGERED)
+			throw new IllegalArgumentException("invalid delayed branch state " + state);
+		DelayedBranch branch = current();
+		branch.state = state;
+		branch.branchTargetAddress = targetAddress;
 	}
 
 }  // DelayedBranch
\ No newline at end of file
@@ -0,0 +1,289 @@
+package mars.simulator;
+import mars.*;
+import mars.mips.hardware.*;
+import mars.mips.instructions.*;
+import mars.mips.instructions.syscalls.*;
+import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Counts of the instructions a machine has executed, kept by the simulator loop
+ * itself.  The total is always maintained and costs one addition per instruction;
+ * counts by basic instruction are only kept while at least one client has asked
+ * for them (see startCountingByInstruction()), from which any per-category count,
+ * e.g. by instruction format, is a sum.  Likewise counts by address, for each word
+ * of the user text segment, are kept on request (see startCountingByAddress()) to
+ * profile where a program spends its time.  Invocations of each syscall service are
+ * always counted, as syscalls are dispatched (see getCountsBySyscall()).  Each
+ * Machine has its own counts.
+ * <p>
+ * An instruction is counted when the simulator starts executing it, so one that
+ * raises an exception is counted too.  The counts are never reset: to count the
+ * instructions of a run, subtract the value taken before it.  Only the total goes
+ * back, with the program, when TimeTravel takes it back.  They are written by
+ * the simulator thread without synchronization, so read them between runs, from a
+ * SimulatorNotice, or while holding the machine's lock.
+ *
+ * @version October 2026
+ */
+
+public class ExecutionCounts
+{
+	// Updated directly by the simulator loops.
+	long total;
+	long[] byInstruction;
+	long[] byAddress;
+	private long[] bySyscall;  // allocated at the first syscall
+	private int byInstructionClients;
+	private int byAddressClients;
+
+	/**
+	 * Returns the counts of the machine of the calling thread, see Machine.current().
+	 *
+	 * @return the execution counts of the current machine
+	 */
+	public static ExecutionCounts getInstance()
+	{
+		return Machine.current().getExecutionCounts();
+	}
+
+	/**
+	 * @return number of instructions the machine has executed
+	 */
+	public long getTotal()
+	{
+		return total;
+	}
+
+	/**
+	 * Start keeping counts by basic instruction, unless already kept for another
+	 * client.  Each call must be matched by a call to stopCountingByInstruction().
+	 * Instructions executed before the first call are not counted.
+	 */
+	public synchronized void startCountingByInstruction()
+	{
+		if(byInstructionClients++ == 0)
+			byInstruction = new long[Globals.instructionSet.getBasicInstructionCount()];
+	}
+
+	/**
+	 * Stop keeping counts by basic instruction once no other client wants them.
+	 */
+	public synchronized void stopCountingByInstruction()
+	{
+		if(byInstructionClients > 0 && --byInstructionClients == 0)
+			byInstruction = null;
+	}
+
+	/**
+	 * @return true if counts by basic instruction are being kept
+	 */
+	public boolean isCountingByInstruction()
+	{
+		return byInstruction != null;
+	}
+
+	/**
+	 * Returns the number of times the given instruction has been executed since
+	 * counts by instruction were started.
+	 *
+	 * @param instruction a basic instruction of the instruction set
+	 * @return its count, 0 if counts by instruction are not being kept
+	 */
+	public long getCount(BasicInstruction instruction)
+	{
+		long[] counts = byInstruction;
+		return (counts == null) ? 0 : counts[instruction.getIndex()];
+	}
+
+	/**
+	 * Returns the counts by basic instruction, indexed by BasicInstruction.getIndex().
+	 *
+	 * @return a copy of the counts, or null if they are not being kept
+	 */
+	public long[] getCountsByInstruction()
+	{
+		long[] counts = byInstruction;
+		return (counts == null) ? null : (long[]) counts.clone();
+	}
+
+	/**
+	 * Start keeping counts by address in the user text segment, unless already kept
+	 * for another client.  Each call must be matched by a call to
+	 * stopCountingByAddress().  Instructions executed before the first call are not
+	 * counted.
+	 */
+	public synchronized void startCountingByAddress()
+	{
+		if(byAddressClients++ == 0)
+			byAddress = new long[INITIAL_ADDRESS_WORDS];
+	}
+
+	/**
+	 * Stop keeping counts by address once no other client wants them.
+	 */
+	public synchronized void stopCountingByAddress()
+	{
+		if(byAddressClients > 0 && --byAddressClients == 0)
+			byAddress = null;
+	}
+
+	/**
+	 * @return true if counts by address are being kept
+	 */
+	public boolean isCountingByAddress()
+	{
+		return byAddress != null;
+	}
+
+	/**
+	 * Returns the counts by address in the user text segment.  Element i is the count
+	 * of the instruction at <tt>Memory.textBaseAddress + 4 * i</tt>; the array only
+	 * extends as far as instructions have been executed.
+	 *
+	 * @return a copy of the counts, or null if they are not being kept
+	 */
+	public long[] getCountsByAddress()
+	{
+		long[] counts = byAddress;
+		return (counts == null) ? null : (long[]) counts.clone();
+	}
+
+	/**
+	 * Returns the number of times the given syscall service has been invoked.
+	 *
+	 * @param syscall a syscall service of the instruction set
+	 * @return its count
+	 */
+	public long getCount(Syscall syscall)
+	{
+		long[] counts = bySyscall;
+		int index = Globals.instructionSet.getSyscallIndex(syscall.getNumber());
+		return (counts == null || index < 0) ? 0 : counts[index];
+	}
+
+	/**
+	 * Returns the counts by syscall service, indexed like InstructionSet.getSyscalls().
+	 *
+	 * @return a copy of the counts
+	 */
+	public long[] getCountsBySyscall()
+	{
+		long[] counts = bySyscall;
+		return (counts == null) ? new long[Globals.instructionSet.getSyscalls().length] : (long[]) counts.clone();
+	}
+
+	/**
+	 * Count an invocation of the syscall service at the given index in
+	 * InstructionSet.getSyscalls().  Called by the instruction set as it dispatches
+	 * each syscall.
+	 *
+	 * @param index index of the syscall service
+	 */
+	public void countSyscall(int index)
+	{
+		if(bySyscall == null)
+			bySyscall = new long[Globals.instructionSet.getSyscalls().length];
+		bySyscall[index]++;
+	}
+
+	private static final int INITIAL_ADDRESS_WORDS = 1024;
+
+	/*
+	 * Count the execution of the given statement by instruction.  Only called when
+	 * the byInstruction array passed in is non-null, which keeps the test out of this
+	 * method for the common case.
+	 */
+	static void countByInstruction(long[] counts, ProgramStatement statement)
+	{
+		Instruction instruction = statement.getInstruction();
+		if(instruction instanceof BasicInstruction)
+			counts[((BasicInstruction) instruction).getIndex()]++;
+	}
+
+	/*
+	 * Count the execution of the instruction at the given address in the given counts
+	 * by address, and return the array to count in from now on: the array grows to
+	 * take in higher addresses.  Instructions outside the user text segment are not
+	 * counted.
+	 */
+	long[] countByAddress(long[] counts, int address)
+	{
+		int index = (address - Memory.textBaseAddress) >> 2;
+		if(index >= 0 && index < counts.length)
+		{
+			counts[index]++;
+			return counts;
+		}
+		if(address < Memory.textBaseAddress || address > Memory.textLimitAddress)
+			return counts;
+		counts = grow(counts, index);
+		if(index < counts.length)
+			counts[index]++;
+		return counts;
+	}
+
+	/*
+	 * Count the executions of a straight-line run of instructions by address, as for
+	 * countByAddress(): the given number of instructions were executed from its start,
+	 * going round the whole run as often as they cover it.  Used by the block translator,
+	 * whose blocks only ever loop back to their own start.
+	 */
+	long[] countBlock(long[] counts, int address, int length, int executed)
+	{
+		int first = (address - Memory.textBaseAddress) >> 2;
+		if(first < 0 || address > Memory.textLimitAddress || executed <= 0)
+			return counts;
+		if(first + length > counts.length)
+		{
+			counts = grow(counts, first + length - 1);
+			if(first + length > counts.length)
+				return counts;
+		}
+		long times = executed / length;
+		int rest = executed % length;
+		for(int i = 0; i < length; i++)
+			counts[first + i] += (i < rest) ? times + 1 : times;
+		return counts;
+	}
+
+	// Replaces the array with one that takes in the given index, unless counting was
+	// stopped or restarted meanwhile.
+	private synchronized long[] grow(long[] counts, int index)
+	{
+		if(counts != byAddress)
+			return counts;
+		int length = counts.length * 2;
+		while(length <= index)
+			length *= 2;
+		byAddress = Arrays.copyOf(counts, length);
+		return byAddress;
+	}
+}
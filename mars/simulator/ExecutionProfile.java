@@ -0,0 +1,293 @@
+package mars.simulator;
+import mars.*;
+import mars.assembler.*;
+import mars.mips.hardware.*;
+import mars.mips.instructions.*;
+import mars.mips.instructions.syscalls.*;
+import mars.util.*;
+import java.io.*;
+import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Where a program spent its time: the counts by address kept by ExecutionCounts,
+ * summed up by source line, by text label and by basic instruction mnemonic, each
+ * as a hot list sorted by decreasing count.  An instruction counts towards the
+ * closest text label at or before its address, normally the function or loop it
+ * belongs to.  Macro-generated labels are left out.  Given counts by syscall, the
+ * syscall services invoked make a fourth hot list.
+ * <p>
+ * A profile is taken on the thread of the machine that ran the program, whose memory
+ * and symbol tables tell what was executed.
+ *
+ * @version October 2026
+ */
+
+public class ExecutionProfile
+{
+	/**
+	 * One line of a hot list.
+	 */
+	public static class Entry
+	{
+		private final String name;
+		private final String detail;
+		private long count;
+
+		Entry(String name, String detail)
+		{
+			this.name = name;
+			this.detail = detail;
+		}
+
+		/**
+		 * @return what was counted: a file name and line number, a label or a mnemonic
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * @return more about it, e.g. the source code of a line, or an empty string
+		 */
+		public String getDetail()
+		{
+			return detail;
+		}
+
+		/**
+		 * @return number of instructions executed for it
+		 */
+		public long getCount()
+		{
+			return count;
+		}
+	}
+
+	private long total = 0;
+	private final ArrayList lines;
+	private final ArrayList labels;
+	private final ArrayList mnemonics;
+	private final ArrayList syscalls = new ArrayList();
+
+	/**
+	 * Sum up the given counts by address, looking the instructions up in the memory
+	 * and symbol tables of the current machine.
+	 *
+	 * @param countsByAddress counts as returned by ExecutionCounts.getCountsByAddress()
+	 */
+	public ExecutionProfile(long[] countsByAddress)
+	{
+		this(countsByAddress, null);
+	}
+
+	/**
+	 * Sum up the given counts by address, looking the instructions up in the memory
+	 * and symbol tables of the current machine, and list the syscall services invoked.
+	 *
+	 * @param countsByAddress counts as returned by ExecutionCounts.getCountsByAddress()
+	 * @param countsBySyscall counts as returned by ExecutionCounts.getCountsBySyscall(), or null
+	 */
+	public ExecutionProfile(long[] countsByAddress, long[] countsBySyscall)
+	{
+		Memory memory = Memory.getInstance();
+		ProgramStatement[] statements = new ProgramStatement[countsByAddress.length];
+		TextLabels textLabels = new TextLabels();
+		for(int i = 0; i < countsByAddress.length; i++)
+		{
+			if(countsByAddress[i] == 0)
+				continue;
+			try
+			{
+				statements[i] = memory.getStatementNoNotify(Memory.textBaseAddress + (i << 2));
+			}
+			catch(AddressErrorException e)
+			{
+				continue;
+			}
+			textLabels.addProgramOf(statements[i]);
+		}
+
+		HashMap byLine = new HashMap();
+		HashMap byLabel = new HashMap();
+		HashMap byMnemonic = new HashMap();
+		for(int i = 0; i < countsByAddress.length; i++)
+		{
+			long count = countsByAddress[i];
+			if(count == 0)
+				continue;
+			int address = Memory.textBaseAddress + (i << 2);
+			ProgramStatement statement = statements[i];
+			total += count;
+			if(statement == null || statement.getSourceLine() <= 0)
+				add(byLine, Binary.intToHexString(address), "", count);
+			else
+				add(byLine, new File(statement.getSourceFile()).getName() + ":" + statement.getSourceLine(),
+					statement.getSource().trim().replace('\t', ' '), count);
+			Symbol label = textLabels.labelOf(address);
+			add(byLabel, (label == null) ? "(no label)" : label.getName(),
+				(label == null) ? "" : Binary.intToHexString(label.getAddress()), count);
+			Instruction instruction = (statement == null) ? null : statement.getInstruction();
+			add(byMnemonic, (instruction == null) ? "(none)" : instruction.getName(), "", count);
+		}
+		lines = sorted(byLine);
+		labels = sorted(byLabel);
+		mnemonics = sorted(byMnemonic);
+
+		if(countsBySyscall != null)
+		{
+			Syscall[] services = Globals.instructionSet.getSyscalls();
+			HashMap bySyscall = new HashMap();
+			for(int i = 0; i < countsBySyscall.length && i < services.length; i++)
+				if(countsBySyscall[i] != 0)
+					add(bySyscall, services[i].getName(), Integer.toString(services[i].getNumber()), countsBySyscall[i]);
+			syscalls.addAll(sorted(bySyscall));
+		}
+	}
+
+	/**
+	 * @return number of instructions profiled
+	 */
+	public long getTotal()
+	{
+		return total;
+	}
+
+	/**
+	 * @return hot list of source lines, as Entry objects
+	 */
+	public ArrayList getLines()
+	{
+		return lines;
+	}
+
+	/**
+	 * @return hot list of text labels, as Entry objects
+	 */
+	public ArrayList getLabels()
+	{
+		return labels;
+	}
+
+	/**
+	 * @return hot list of basic instruction mnemonics, as Entry objects
+	 */
+	public ArrayList getMnemonics()
+	{
+		return mnemonics;
+	}
+
+	/**
+	 * @return hot list of syscall services, as Entry objects, empty unless counts by
+	 * syscall were given
+	 */
+	public ArrayList getSyscalls()
+	{
+		return syscalls;
+	}
+
+	/**
+	 * Print the three hot lists, and that of syscalls if there is one.
+	 *
+	 * @param out where to print
+	 * @param limit number of entries to print from each list, 0 for all
+	 */
+	public void print(PrintStream out, int limit)
+	{
+		out.print(format("Source line", lines, limit));
+		out.println();
+		out.print(format("Label", labels, limit));
+		out.println();
+		out.print(format("Instruction", mnemonics, limit));
+		if(!syscalls.isEmpty())
+		{
+			out.println();
+			out.print(format("Syscall", syscalls, limit));
+		}
+	}
+
+	/**
+	 * Format a hot list as a table: count, percentage of the profiled instructions,
+	 * name and detail of each entry, one entry per line.
+	 *
+	 * @param heading heading of the name column
+	 * @param entries the hot list
+	 * @param limit number of entries to format, 0 for all
+	 * @return the table
+	 */
+	public String format(String heading, ArrayList entries, int limit)
+	{
+		int count = (limit <= 0) ? entries.size() : Math.min(limit, entries.size());
+		int width = heading.length();
+		for(int i = 0; i < count; i++)
+			width = Math.max(width, ((Entry) entries.get(i)).getName().length());
+		StringBuffer table = new StringBuffer();
+		table.append(String.format("%12s %7s  %s%n", "count", "%", heading));
+		for(int i = 0; i < count; i++)
+		{
+			Entry entry = (Entry) entries.get(i);
+			String line = String.format("%12d %6.2f%%  %-" + width + "s  %s", entry.getCount(),
+										(total == 0) ? 0.0 : 100.0 * entry.getCount() / total,
+										entry.getName(), entry.getDetail());
+			table.append(line.replaceAll("\\s+$", "")).append(String.format("%n"));
+		}
+		return table.toString();
+	}
+
+	private static void add(HashMap entries, String name, String detail, long count)
+	{
+		Entry entry = (Entry) entries.get(name);
+		if(entry == null)
+		{
+			entry = new Entry(name, detail);
+			entries.put(name, entry);
+		}
+		entry.count += count;
+	}
+
+	// Entries by decreasing count, ties by name.
+	private static ArrayList sorted(HashMap entries)
+	{
+		ArrayList list = new ArrayList(entries.values());
+		Collections.sort(list, new Comparator()
+		{
+			public int compare(Object o1, Object o2)
+			{
+				Entry e1 = (Entry) o1;
+				Entry e2 = (Entry) o2;
+				if(e1.count != e2.count)
+					return (e1.count > e2.count) ? -1 : 1;
+				return e1.name.compareTo(e2.name);
+			}
+		});
+		return list;
+	}
+}
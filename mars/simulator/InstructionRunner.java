@@ -0,0 +1,56 @@
+package mars.simulator;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * A way for the turbo simulation loop to simulate a run of instructions at once
+ * instead of calling their SimulationCode one by one: BlockTranslator or
+ * CompactInterpreter.  Either may decline any instruction, which the loop then
+ * simulates as usual.
+ *
+ * @version October 2026
+ */
+
+interface InstructionRunner
+{
+	/**
+	 * Simulate instructions starting with the one at the given address.
+	 *
+	 * @param address address of the next instruction, the program counter
+	 * @param budget maximum number of instructions to simulate
+	 * @return number of instructions simulated, possibly 0, or -1 if the caller is
+	 * to simulate the instruction at the address
+	 */
+	public int execute(int address, int budget);
+
+	/**
+	 * @return address of the last instruction simulated by execute()
+	 */
+	public int getLastAddress();
+}
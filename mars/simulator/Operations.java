@@ -0,0 +1,120 @@
+package mars.simulator;
+import mars.*;
+import mars.mips.instructions.*;
+import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Small integer ids for the basic instructions that BlockTranslator and
+ * CompactInterpreter simulate themselves rather than through their SimulationCode,
+ * which remains the reference for what each one does.  Instructions are identified
+ * by mnemonic; every other instruction has id 0 and is left to its SimulationCode.
+ * The branches and jumps, which end a block, have the highest ids, from BEQ up.
+ *
+ * @version October 2026
+ */
+
+final class Operations
+{
+	static final int ADD = 1, ADDU = 2, SUB = 3, SUBU = 4, ADDI = 5, ADDIU = 6,
+					 AND = 7, OR = 8, XOR = 9, NOR = 10, ANDI = 11, ORI = 12, XORI = 13,
+					 SLT = 14, SLTU = 15, SLTI = 16, SLTIU = 17, LUI = 18,
+					 SLL = 19, SRL = 20, SRA = 21, SLLV = 22, SRLV = 23, SRAV = 24,
+					 MULT = 25, MULTU = 26, MUL = 27, MFHI = 28, MFLO = 29, MTHI = 30, MTLO = 31,
+					 MOVN = 32, MOVZ = 33, NOP = 34,
+					 LW = 35, LH = 36, LHU = 37, LB = 38, LBU = 39, SW = 40, SH = 41, SB = 42,
+					 BEQ = 43, BNE = 44, BLEZ = 45, BGTZ = 46, BLTZ = 47, BGEZ = 48,
+					 J = 49, JAL = 50, JR = 51, JALR = 52;
+
+	private static final HashMap operations = new HashMap();
+	static
+	{
+		String[] names = {"add", "addu", "sub", "subu", "addi", "addiu",
+						  "and", "or", "xor", "nor", "andi", "ori", "xori",
+						  "slt", "sltu", "slti", "sltiu", "lui",
+						  "sll", "srl", "sra", "sllv", "srlv", "srav",
+						  "mult", "multu", "mul", "mfhi", "mflo", "mthi", "mtlo",
+						  "movn", "movz", "nop",
+						  "lw", "lh", "lhu", "lb", "lbu", "sw", "sh", "sb",
+						  "beq", "bne", "blez", "bgtz", "bltz", "bgez",
+						  "j", "jal", "jr", "jalr"
+						 };
+		for(int i = 0; i < names.length; i++)
+			operations.put(names[i], new Integer(ADD + i));
+	}
+
+	private Operations()
+	{
+	}
+
+	/**
+	 * Returns the id of the given statement, 0 if it is not one of the above.  A j or
+	 * jal to address 0 also gets 0, since it always fails with an error of its own.
+	 *
+	 * @param statement a statement with a basic instruction
+	 * @param address address of the statement
+	 * @return the operation id, or 0
+	 */
+	static int of(ProgramStatement statement, int address)
+	{
+		Integer operation = (Integer) operations.get(statement.getInstruction().getName());
+		if(operation == null)
+			return 0;
+		if((operation.intValue() == J || operation.intValue() == JAL)
+				&& jumpTarget(statement, address) == 0)
+			return 0;
+		return operation.intValue();
+	}
+
+	/**
+	 * @return true if the operation is a branch or jump
+	 */
+	static boolean isTransfer(int operation)
+	{
+		return operation >= BEQ;
+	}
+
+	/**
+	 * Returns the target of a j or jal statement at the given address.
+	 */
+	static int jumpTarget(ProgramStatement statement, int address)
+	{
+		return ((address + Instruction.INSTRUCTION_LENGTH) & 0xF0000000) | (statement.getOperands()[0] << 2);
+	}
+
+	/**
+	 * Returns the target of a taken branch at the given address with the given displacement
+	 * in words.
+	 */
+	static int branchTarget(int address, int displacement)
+	{
+		return address + Instruction.INSTRUCTION_LENGTH + (displacement << 2);
+	}
+}
@@ -45,7 +45,6 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 public class Simulator extends Observable
 {
 	private SimThread simulatorThread;
-	private static Simulator simulator = null;  // Singleton object
 	private static Runnable interactiveGUIUpdater = null;
 	// Others can set this true to indicate external interrupt.  Initially used
 	// to simulate keyboard and display interrupts.  The device is identified
@@ -60,9 +59,13 @@ public class Simulator extends Observable
 	public static final int NORMAL_TERMINATION = 4;
 	public static final int CLIFF_TERMINATION = 5; // run off bottom of program
 	public static final int PAUSE_OR_STOP = 6;
+	// Number of instructions simulated per acquisition of Globals.memoryAndRegistersLock when
+	// execution is not throttled for display.  Small enough that tools and the GUI, which take
+	// the lock to update MIPS state, are never held up noticeably.
+	private static final int EXCLUSIVE_BATCH_LENGTH = 1024;
 
 	/**
-	* Returns the Simulator object
+	* Returns the Simulator object of the current Machine (see Machine.current()).
 	*
 	* @return the Simulator object in use
 	*/
@@ -72,9 +75,10 @@ public class Simulator extends Observable
 		// Its constructor looks for the GUI, which at load time is not created yet,
 		// and incorrectly leaves interactiveGUIUpdater null!  This causes runtime
 		// exceptions while running in timed mode.
-		if(simulator == null)
-			simulator = new Simulator();
-		return simulator;
+		Machine machine = Machine.current();
+		if(machine.getSimulator() == null)
+			machine.setSimulator(new Simulator());
+		return machine.getSimulator();
 	}
 
 	private Simulator()
@@ -107,15 +111,17 @@ public class Simulator extends Observable
 	 * @param p The MIPSprogram to be simulated.
 	 * @param pc address of first instruction to simulate; this goes into program counter
 	 * @param maxSteps maximum number of steps to perform before returning false (0 or less means no max)
-	 * @param breakPoints array of breakpoint program counter values, use null if none
+	 * @param breakpoints breakpoints and watchpoints to pause at, use null if none
 	 * @param actor the GUI component responsible for this call, usually GO or STEP.  null if none.
 	 * @return true if execution completed, false otherwise
 	 * @throws ProcessingException Throws exception if run-time exception occurs.
+	 * @throws RuntimeException if the simulator itself failed, when actor is null (the
+	 *   exception is otherwise reported by the simulation thread)
 	 **/
 
-	public boolean simulate(MIPSprogram p, int pc, int maxSteps, int[] breakPoints, AbstractAction actor) throws ProcessingException
+	public boolean simulate(MIPSprogram p, int pc, int maxSteps, Breakpoints breakpoints, AbstractAction actor) throws ProcessingException
 	{
-		simulatorThread = new SimThread(p, pc, maxSteps, breakPoints, actor);
+		simulatorThread = new SimThread(p, pc, maxSteps, breakpoints, actor);
 		simulatorThread.start();
 
 		// Condition should only be true if run from command-line instead of GUI.
@@ -124,11 +130,14 @@ public class Simulator extends Observable
 		{
 			Object dun = simulatorThread.get(); // this should emulate join()
 			ProcessingException pe = simulatorThread.pe;
+			RuntimeException failure = simulatorThread.failure;
 			boolean done = simulatorThread.done;
 			if(done) SystemIO.resetFiles();  // close any files opened in MIPS progra
 			this.simulatorThread = null;
 			if(pe != null)
 				throw pe;
+			if(failure != null)
+				throw failure;
 			return done;
 		}
 		return true;
@@ -192,6 +201,9 @@ public class Simulator extends Observable
 
 	private void notifyObserversOfExecutionStop(int maxSteps, int programCounter)
 	{
+		TimeTravel.getInstance().runStopped();
+		Memory.getInstance().setWatchpoints(null);
+		SystemIO.flushOutput();
 		this.setChanged();
 		this.notifyObservers(new SimulatorNotice(SimulatorNotice.SIMULATOR_STOP,
 							 maxSteps, RunSpeedPanel.getInstance().getRunSpeed(), programCounter));
@@ -212,13 +224,15 @@ public class Simulator extends Observable
 	{
 		private MIPSprogram p;
 		private int pc, maxSteps;
-		private int[] breakPoints;
+		private Breakpoints breakpoints;
 		private boolean done;
 		private ProcessingException pe;
+		private RuntimeException failure;  // thrown by a run without a starter, see construct()
 		private volatile boolean stop = false;
 		private volatile AbstractAction stopper;
 		private AbstractAction starter;
 		private int constructReturnReason;
+		private int stopProgramCounter;  // for the stop notice, see construct()
 
 
 		/**
@@ -227,16 +241,16 @@ public class Simulator extends Observable
 		*  @param p  the MIPSprogram to be simulated
 		*  @param pc address in text segment of first instruction to simulate
 		*  @param maxSteps  maximum number of instruction steps to simulate.  Default of -1 means no maximum
-		*  @param breakPoints  array of breakpoints (instruction addresses) specified by user
+		*  @param breakpoints  breakpoints and watchpoints specified by user, or null
 		*  @param starter the GUI component responsible for this call, usually GO or STEP.  null if none.
 		*/
-		SimThread(MIPSprogram p, int pc, int maxSteps, int[] breakPoints, AbstractAction starter)
+		SimThread(MIPSprogram p, int pc, int maxSteps, Breakpoints breakpoints, AbstractAction starter)
 		{
 			super(Globals.getGui() != null);
 			this.p = p;
 			this.pc = pc;
 			this.maxSteps = maxSteps;
-			this.breakPoints = breakPoints;
+			this.breakpoints = breakpoints;
 			this.done = false;
 			this.pe = null;
 			this.starter = starter;
@@ -266,6 +280,31 @@ public class Simulator extends Observable
 		 */
 
 		public Object construct()
+		{
+			try
+			{
+				// The loops only decide why the run is over and return.  Files are closed
+				// and observers told once the machine's lock and sequence are released,
+				// as that takes them a while and may need to read MIPS state.
+				Object result = this.execute();
+				if(done)
+					SystemIO.resetFiles(); // close any files opened in MIPS program
+				Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, stopProgramCounter);
+				return result;
+			}
+			catch(RuntimeException e)
+			{
+				// Without a starter the run was asked for from the command line or a batch,
+				// by a thread that waits for it in simulate() and rethrows the failure there.
+				// In the GUI it is left to this thread's uncaught exception handler.
+				if(starter != null)
+					throw e;
+				failure = e;
+				return new Boolean(false);
+			}
+		}
+
+		private Object execute()
 		{
 			// The next two statements are necessary for GUI to be consistently updated
 			// before the simulation gets underway.  Without them, this happens only intermittently,
@@ -274,38 +313,56 @@ public class Simulator extends Observable
 			Thread.currentThread().setPriority(Thread.NORM_PRIORITY - 1);
 			Thread.yield();  // let the main thread run a bit to finish updating the GUI
 
-			if(breakPoints == null || breakPoints.length == 0)
-				breakPoints = null;
-			else
-			{
-				Arrays.sort(breakPoints);  // must be pre-sorted for binary search
-			}
+			if(breakpoints != null && breakpoints.isEmpty())
+				breakpoints = null;
 
 			Simulator.getInstance().notifyObserversOfExecutionStart(maxSteps, pc);
 
+			// This thread was started by (and so works on the machine of) the thread that
+			// asked for the simulation; only the default machine's state is shown in the GUI.
+			Machine machine = Machine.current();
+			Memory memory = machine.getMemory();
+			Object lock = machine.getLock();
+			SequenceLock sequence = machine.getSequence();
 			RegisterFile.initializeProgramCounter(pc);
+			DelayedBranch.prepareForSimulation();
+			TimeTravel travel = machine.getTimeTravel();
+			travel.runStarting();
+			if(breakpoints != null && breakpoints.hasWatchpoints())
+				memory.setWatchpoints(breakpoints);
+			// Instructions are normally fetched through the decoded instruction cache, which
+			// hands back the statement together with its simulation code.  When it misses (an
+			// observer is watching the text segment, self-modifying code is executing from the
+			// data segment, or we've dropped off the end) the statement comes from memory instead
+			// and entry stays null.
+			DecodedInstructionCache decodedInstructions = memory.getDecodedInstructionCache();
+			DecodedInstructionCache.Entry entry = null;
 			ProgramStatement statement = null;
 			try
 			{
-				statement = Globals.memory.getStatement(RegisterFile.getProgramCounter());
+				entry = decodedInstructions.lookup(RegisterFile.getProgramCounter());
+				statement = (entry != null) ? entry.statement
+							: memory.getStatement(RegisterFile.getProgramCounter());
 			}
 			catch(AddressErrorException e)
 			{
-				ErrorList el = new ErrorList();
-				el.add(new ErrorMessage((MIPSprogram)null, 0, 0, "invalid program counter value: " + Binary.intToHexString(RegisterFile.getProgramCounter())));
-				this.pe = new ProcessingException(el, e);
-				// Next statement is a hack.  Previous statement sets EPC register to ProgramCounter-4
-				// because it assumes the bad address comes from an operand so the ProgramCounter has already been
-				// incremented.  In this case, bad address is the instruction fetch itself so Program Counter has
-				// not yet been incremented.  We'll set the EPC directly here.  DPS 8-July-2013
-				Coprocessor0.updateRegister(Coprocessor0.EPC, RegisterFile.getProgramCounter());
-				this.constructReturnReason = EXCEPTION;
-				this.done = true;
-				SystemIO.resetFiles(); // close any files opened in MIPS program
-				Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-				return new Boolean(done);
+				return this.instructionFetchFailed(e, pc);
 			}
-			int steps = 0;
+
+			// The "turbo" loop is the one used for batch runs from the command line.  Without a
+			// GUI, run speed control, back-stepping or breakpoints, none of the checks made by
+			// the general loop below can change their outcome during the run, so it settles
+			// them once here.  External interrupts are not polled either: they come only from
+			// tools, and none can be attached to a command-line run.
+			if(Globals.turboExecution && Globals.getGui() == null && breakpoints == null
+					&& !Globals.getSettings().getBackSteppingEnabled() && !travel.isRecording()
+					&& RunSpeedPanel.getInstance().getRunSpeed() >= RunSpeedPanel.UNLIMITED_SPEED)
+				return this.turboLoop(statement, entry, decodedInstructions);
+
+			// The step limit is checked against the machine's count of executed instructions.
+			ExecutionCounts counts = machine.getExecutionCounts();
+			final long stepLimit = counts.total + maxSteps;
+			CallSampler sampler = machine.getCallSampler();
 
 			// *******************  PS addition 26 July 2006  **********************
 			// A couple statements below were added for the purpose of assuring that when
@@ -341,127 +398,127 @@ public class Simulator extends Observable
 
 			while(statement != null)
 			{
-				pc = RegisterFile.getProgramCounter(); // added: 7/26/06 (explanation above)
-				RegisterFile.incrementPC();
+				// When running slowly (timed execution, possibly with the GUI being updated after
+				// every instruction) the MIPS state is locked for one instruction at a time and
+				// the display work is done between instructions, outside the lock.  Otherwise the
+				// simulator keeps the state for a whole batch of instructions, publishing the end
+				// of each batch through memoryAndRegistersSequence (see SequenceLock), which saves
+				// a monitor enter/exit per instruction.
+				boolean throttled = maxSteps != 1
+									&& (interactiveGUIUpdater != null || Globals.getGui() != null || Globals.runSpeedPanelExists)
+									&& RunSpeedPanel.getInstance().getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED;
+				int batch = (throttled || !Globals.exclusiveExecution) ? 1 : EXCLUSIVE_BATCH_LENGTH;
+
 				// Perform the MIPS instruction in synchronized block.  If external threads agree
 				// to access MIPS memory and registers only through synchronized blocks on same
 				// lock variable, then full (albeit heavy-handed) protection of MIPS memory and
 				// registers is assured.  Not as critical for reading from those resources.
-				synchronized(Globals.memoryAndRegistersLock)
+				synchronized(lock)
 				{
+					sequence.beginWrite();
 					try
 					{
-						if(Simulator.externalInterruptingDevice != NO_DEVICE)
+						long[] byInstruction = counts.byInstruction;
+						long[] byAddress = counts.byAddress;
+						boolean sampling = sampler.isSampling();
+						boolean travelling = travel.isRecording();
+						for(; batch > 0 && statement != null; batch--)
 						{
-							int deviceInterruptCode = externalInterruptingDevice;
-							Simulator.externalInterruptingDevice = NO_DEVICE;
-							throw new ProcessingException(statement, "External Interrupt", deviceInterruptCode);
-						}
-						BasicInstruction instruction = (BasicInstruction)statement.getInstruction();
-						if(instruction == null)
-						{
-							throw new ProcessingException(statement,
-														  "undefined instruction (" + Binary.intToHexString(statement.getBinaryStatement()) + ")",
-														  Exceptions.RESERVED_INSTRUCTION_EXCEPTION);
-						}
-						// THIS IS WHERE THE INSTRUCTION EXECUTION IS ACTUALLY SIMULATED!
-						instruction.getSimulationCode().simulate(statement);
+							pc = RegisterFile.getProgramCounter(); // added: 7/26/06 (explanation above)
+							RegisterFile.incrementPC();
+							counts.total++;
+							if(byInstruction != null)
+								ExecutionCounts.countByInstruction(byInstruction, statement);
+							if(byAddress != null)
+								byAddress = counts.countByAddress(byAddress, pc);
+							if(sampling && counts.total >= sampler.nextSample)
+								sampler.sample();
+							try
+							{
+								if(Simulator.externalInterruptingDevice != NO_DEVICE)
+								{
+									int deviceInterruptCode = externalInterruptingDevice;
+									Simulator.externalInterruptingDevice = NO_DEVICE;
+									if(travelling)
+										travel.interruptRaised(deviceInterruptCode);
+									throw new ProcessingException(statement, "External Interrupt", deviceInterruptCode);
+								}
+								// THIS IS WHERE THE INSTRUCTION EXECUTION IS ACTUALLY SIMULATED!
+								if(entry != null)
+									entry.code.simulate(statement);
+								else
+									simulateUndecoded(statement);
+
+								// IF statement added 7/26/06 (explanation above)
+								if(Globals.getSettings().getBackSteppingEnabled())
+									machine.getProgram().getBackStepper().addDoNothing(pc);
+							}
+							catch(ProcessingException pe)
+							{
+								Object result = this.processingExceptionRaised(pe, pc);
+								if(result != null)
+									return result;
+							}
 
-						// IF statement added 7/26/06 (explanation above)
-						if(Globals.getSettings().getBackSteppingEnabled())
-							Globals.program.getBackStepper().addDoNothing(pc);
-					}
-					catch(ProcessingException pe)
-					{
-						if(pe.errors() == null)
-						{
-							if(pe.isBreakpoint())
+							///////// DPS 15 June 2007.  Handle delayed branching if it occurs./////
+							if(DelayedBranch.isTriggered())
+							{
+								RegisterFile.setProgramCounter(DelayedBranch.getBranchTargetAddress());
+								DelayedBranch.clear();
+							}
+							else if(DelayedBranch.isRegistered())
+								DelayedBranch.trigger();
+							//////////////////////////////////////////////////////////////////////
+
+							// Points to take and recorded inputs to replay, see TimeTravel.
+							if(travelling && counts.total >= travel.nextEvent)
+								travel.eventReached();
+
+							// Volatile variable initialized false but can be set true by the main thread.
+							// Used to stop or pause a running MIPS program.  See stopSimulation() above.
+							if(stop == true)
+							{
+								return this.stopped(pc);
+							}
+							//	Return if we've reached a breakpoint or written to watched memory.
+							if(breakpoints != null && breakpoints.shouldStop(RegisterFile.getProgramCounter()))
+							{
 								return this.breakpointHit(pc);
-							else {
-								this.constructReturnReason = NORMAL_TERMINATION;
-								this.done = true;
-								SystemIO.resetFiles(); // close any files opened in MIPS program
-								Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-								return new Boolean(done); // execution completed without error.
 							}
-						}
-						else
-						{
-							// See if an exception handler is present.  Assume this is the case
-							// if and only if memory location Memory.exceptionHandlerAddress
-							// (e.g. 0x80000180) contains an instruction.  If so, then set the
-							// program counter there and continue.  Otherwise terminate the
-							// MIPS program with appropriate error message.
-							ProgramStatement exceptionHandler = null;
+							// Check number of MIPS instructions executed.  Return if at limit (-1 is no limit).
+							if(maxSteps > 0 && counts.total >= stepLimit)
+							{
+								return this.maxStepsReached(pc);
+							}
+
+							// Get next instruction in preparation for next iteration.
+
 							try
 							{
-								exceptionHandler = Globals.memory.getStatement(Memory.exceptionHandlerAddress);
+								entry = decodedInstructions.lookup(RegisterFile.getProgramCounter());
+								statement = (entry != null) ? entry.statement
+											: memory.getStatement(RegisterFile.getProgramCounter());
 							}
-							catch(AddressErrorException aee) { }  // will not occur with this well-known addres
-							if(exceptionHandler != null)
-								RegisterFile.setProgramCounter(Memory.exceptionHandlerAddress);
-							else
+							catch(AddressErrorException e)
 							{
-								this.constructReturnReason = EXCEPTION;
-								this.pe = pe;
-								this.done = true;
-								SystemIO.resetFiles(); // close any files opened in MIPS program
-								Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-								return new Boolean(done);
+								return this.instructionFetchFailed(e, pc);
 							}
 						}
 					}
-				}// end synchronized block
-
-				///////// DPS 15 June 2007.  Handle delayed branching if it occurs./////
-				if(DelayedBranch.isTriggered())
-				{
-					RegisterFile.setProgramCounter(DelayedBranch.getBranchTargetAddress());
-					DelayedBranch.clear();
-				}
-				else if(DelayedBranch.isRegistered())
-					DelayedBranch.trigger();
-				//////////////////////////////////////////////////////////////////////
-
-				// Volatile variable initialized false but can be set true by the main thread.
-				// Used to stop or pause a running MIPS program.  See stopSimulation() above.
-				if(stop == true)
-				{
-					this.constructReturnReason = PAUSE_OR_STOP;
-					this.done = false;
-					Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-					return new Boolean(done);
-				}
-				//	Return if we've reached a breakpoint.
-				if((breakPoints != null) &&
-						(Arrays.binarySearch(breakPoints, RegisterFile.getProgramCounter()) >= 0))
-				{
-					return this.breakpointHit(pc);
-				}
-				// Check number of MIPS instructions executed.  Return if at limit (-1 is no limit).
-				if(maxSteps > 0)
-				{
-					steps++;
-					if(steps >= maxSteps)
+					finally
 					{
-						this.constructReturnReason = MAX_STEPS;
-						this.done = false;
-						Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-						return new Boolean(done);// false;
+						sequence.endWrite();
 					}
-				}
+				}// end synchronized block
 
-				// schedule GUI update only if: there is in fact a GUI! AND
-				//                              using Run,  not Step (maxSteps > 1) AND
-				//                              running slowly enough for GUI to keep up
-				//if (Globals.getGui() != null && maxSteps != 1 &&
-				if(interactiveGUIUpdater != null && maxSteps != 1 &&
-						RunSpeedPanel.getInstance().getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED)
-					SwingUtilities.invokeLater(interactiveGUIUpdater);
-				if(Globals.getGui() != null || Globals.runSpeedPanelExists)    // OR added by DPS 24 July 2008 to enable speed control by stand-alone tool
+				if(throttled)
 				{
-					if(maxSteps != 1 &&
-							RunSpeedPanel.getInstance().getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED)
+					// schedule GUI update only if: there is in fact a GUI! AND
+					//                              using Run,  not Step (maxSteps > 1) AND
+					//                              running slowly enough for GUI to keep up
+					if(interactiveGUIUpdater != null)
+						SwingUtilities.invokeLater(interactiveGUIUpdater);
+					if(Globals.getGui() != null || Globals.runSpeedPanelExists)    // OR added by DPS 24 July 2008 to enable speed control by stand-alone tool
 					{
 						try
 						{
@@ -470,31 +527,208 @@ public class Simulator extends Observable
 						catch(InterruptedException e) {}
 					}
 				}
+				else if(sequence.hasWaitingReaders())
+					Thread.yield();
+			}
+			return this.cliffTermination(pc);
+		}
 
-
-				// Get next instruction in preparation for next iteration.
-
-				try
+		/*
+		 * Same fetch/execute cycle as construct(), specialized for a headless run at unlimited
+		 * speed with no back-stepping and no breakpoints.  The delayed branching setting is read
+		 * once; everything that cannot happen in this mode is simply not checked.  Stop requests
+		 * and the step limit are still honored.
+		 */
+		private Object turboLoop(ProgramStatement statement, DecodedInstructionCache.Entry entry,
+								 DecodedInstructionCache decodedInstructions)
+		{
+			final boolean delayedBranching = DelayedBranch.isEnabled();
+			final int batchLength = Globals.exclusiveExecution ? EXCLUSIVE_BATCH_LENGTH : 1;
+			final Memory memory = Memory.getInstance();
+			final Object lock = Machine.current().getLock();
+			final SequenceLock sequence = Machine.current().getSequence();
+			// Translated blocks and the compact interpreter simulate many instructions at a
+			// time and do not handle delay slots or writes to the text segment.
+			InstructionRunner runner = null;
+			if(!delayedBranching && !Globals.getSettings().getBooleanSetting(Settings.SELF_MODIFYING_CODE_ENABLED))
+			{
+				if(Globals.blockTranslation)
+					runner = new BlockTranslator(decodedInstructions, memory);
+				else if(Globals.compactInterpretation)
+					runner = new CompactInterpreter(decodedInstructions, memory);
+			}
+			final ExecutionCounts counts = Machine.current().getExecutionCounts();
+			final long stepLimit = counts.total + maxSteps;
+			final CallSampler sampler = Machine.current().getCallSampler();
+			int pc = 0;
+			while(statement != null)
+			{
+				synchronized(lock)
 				{
-					statement = Globals.memory.getStatement(RegisterFile.getProgramCounter());
+					sequence.beginWrite();
+					try
+					{
+						// Runners count by address themselves, but not by instruction, nor
+						// keep the call sampler's stack, so they sit out while either is wanted.
+						long[] byInstruction = counts.byInstruction;
+						long[] byAddress = counts.byAddress;
+						boolean sampling = sampler.isSampling();
+						for(int batch = batchLength; batch > 0 && statement != null; batch--)
+						{
+							pc = RegisterFile.getProgramCounter();
+							int executed = -1;
+							if(runner != null && byInstruction == null && !sampling)
+							{
+								int budget = Math.max(batch, 1);
+								if(maxSteps > 0)
+									budget = (int) Math.min(budget, stepLimit - counts.total);
+								executed = runner.execute(pc, budget);
+							}
+							if(executed >= 0)
+							{
+								counts.total += executed;
+								pc = runner.getLastAddress();
+								batch -= executed - 1;
+								if(byAddress != null)
+									byAddress = counts.byAddress;  // the runner may have grown it
+							}
+							else
+							{
+								counts.total++;
+								if(byInstruction != null)
+									ExecutionCounts.countByInstruction(byInstruction, statement);
+								if(byAddress != null)
+									byAddress = counts.countByAddress(byAddress, pc);
+								if(sampling && counts.total >= sampler.nextSample)
+									sampler.sample();
+								RegisterFile.incrementPC();
+								try
+								{
+									if(entry != null)
+										entry.code.simulate(statement);
+									else
+										simulateUndecoded(statement);
+								}
+								catch(ProcessingException pe)
+								{
+									Object result = this.processingExceptionRaised(pe, pc);
+									if(result != null)
+										return result;
+								}
+								if(delayedBranching)
+								{
+									if(DelayedBranch.isTriggered())
+									{
+										RegisterFile.setProgramCounter(DelayedBranch.getBranchTargetAddress());
+										DelayedBranch.clear();
+									}
+									else if(DelayedBranch.isRegistered())
+										DelayedBranch.trigger();
+								}
+							}
+							if(stop)
+								return this.stopped(pc);
+							if(maxSteps > 0 && counts.total >= stepLimit)
+								return this.maxStepsReached(pc);
+							try
+							{
+								entry = decodedInstructions.lookup(RegisterFile.getProgramCounter());
+								statement = (entry != null) ? entry.statement
+											: memory.getStatement(RegisterFile.getProgramCounter());
+							}
+							catch(AddressErrorException e)
+							{
+								return this.instructionFetchFailed(e, pc);
+							}
+						}
+					}
+					finally
+					{
+						sequence.endWrite();
+					}
 				}
-				catch(AddressErrorException e)
-				{
-					ErrorList el = new ErrorList();
-					el.add(new ErrorMessage((MIPSprogram)null, 0, 0, "invalid program counter value: " + Binary.intToHexString(RegisterFile.getProgramCounter())));
-					this.pe = new ProcessingException(el, e);
-					// Next statement is a hack.  Previous statement sets EPC register to ProgramCounter-4
-					// because it assumes the bad address comes from an operand so the ProgramCounter has already been
-					// incremented.  In this case, bad address is the instruction fetch itself so Program Counter has
-					// not yet been incremented.  We'll set the EPC directly here.  DPS 8-July-2013
-					Coprocessor0.updateRegister(Coprocessor0.EPC, RegisterFile.getProgramCounter());
-					this.constructReturnReason = EXCEPTION;
+				if(sequence.hasWaitingReaders())
+					Thread.yield();
+			}
+			return this.cliffTermination(pc);
+		}
+
+		/*
+		 * Simulate a statement that did not come from the decoded instruction cache.  The
+		 * statement may not hold a basic instruction at all, e.g. a data word being executed
+		 * as self-modifying code.
+		 */
+		private void simulateUndecoded(ProgramStatement statement) throws ProcessingException
+		{
+			BasicInstruction instruction = (BasicInstruction)statement.getInstruction();
+			if(instruction == null)
+			{
+				throw new ProcessingException(statement,
+											  "undefined instruction (" + Binary.intToHexString(statement.getBinaryStatement()) + ")",
+											  Exceptions.RESERVED_INSTRUCTION_EXCEPTION);
+			}
+			instruction.getSimulationCode().simulate(statement);
+		}
+
+		/*
+		 * Deal with a ProcessingException thrown while simulating the instruction at pc.
+		 * Returns the value for construct() to return if execution is over, or null if
+		 * execution continues in the exception handler.
+		 */
+		private Object processingExceptionRaised(ProcessingException pe, int pc)
+		{
+			if(pe.errors() == null)
+			{
+				if(pe.isBreakpoint())
+					return this.breakpointHit(pc);
+				else {
+					this.constructReturnReason = NORMAL_TERMINATION;
 					this.done = true;
-					SystemIO.resetFiles(); // close any files opened in MIPS program
-					Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-					return  new Boolean(done);
+					this.stopProgramCounter = pc;
+					return new Boolean(done); // execution completed without error.
 				}
 			}
+			// See if an exception handler is present.  Assume this is the case
+			// if and only if memory location Memory.exceptionHandlerAddress
+			// (e.g. 0x80000180) contains an instruction.  If so, then set the
+			// program counter there and continue.  Otherwise terminate the
+			// MIPS program with appropriate error message.
+			ProgramStatement exceptionHandler = null;
+			try
+			{
+				exceptionHandler = Memory.getInstance().getStatement(Memory.exceptionHandlerAddress);
+			}
+			catch(AddressErrorException aee) { }  // will not occur with this well-known addres
+			if(exceptionHandler != null)
+			{
+				RegisterFile.setProgramCounter(Memory.exceptionHandlerAddress);
+				return null;
+			}
+			this.constructReturnReason = EXCEPTION;
+			this.pe = pe;
+			this.done = true;
+			this.stopProgramCounter = pc;
+			return new Boolean(done);
+		}
+
+		private Object instructionFetchFailed(AddressErrorException e, int pc)
+		{
+			ErrorList el = new ErrorList();
+			el.add(new ErrorMessage((MIPSprogram)null, 0, 0, "invalid program counter value: " + Binary.intToHexString(RegisterFile.getProgramCounter())));
+			this.pe = new ProcessingException(el, e);
+			// Next statement is a hack.  Previous statement sets EPC register to ProgramCounter-4
+			// because it assumes the bad address comes from an operand so the ProgramCounter has already been
+			// incremented.  In this case, bad address is the instruction fetch itself so Program Counter has
+			// not yet been incremented.  We'll set the EPC directly here.  DPS 8-July-2013
+			Coprocessor0.updateRegister(Coprocessor0.EPC, RegisterFile.getProgramCounter());
+			this.constructReturnReason = EXCEPTION;
+			this.done = true;
+			this.stopProgramCounter = pc;
+			return new Boolean(done);
+		}
+
+		private Object cliffTermination(int pc)
+		{
 			// DPS July 2007.  This "if" statement is needed for correct program
 			// termination if delayed branching on and last statement in
 			// program is a branch/jump.  Program will terminate rather than branch,
@@ -502,19 +736,33 @@ public class Simulator extends Observable
 			if(DelayedBranch.isTriggered() || DelayedBranch.isRegistered())
 				DelayedBranch.clear();
 			// If we got here it was due to null statement, which means program
-			// counter "fell off the end" of the program.  NOTE: Assumes the
-			// "while" loop contains no "break;" statements.
+			// counter "fell off the end" of the program.
 			this.constructReturnReason = CLIFF_TERMINATION;
 			this.done = true;
-			SystemIO.resetFiles(); // close any files opened in MIPS program
-			Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
+			this.stopProgramCounter = pc;
 			return new Boolean(done); // true;  // execution completed
 		}
 
+		private Object stopped(int pc)
+		{
+			this.constructReturnReason = PAUSE_OR_STOP;
+			this.done = false;
+			this.stopProgramCounter = pc;
+			return new Boolean(done);
+		}
+
+		private Object maxStepsReached(int pc)
+		{
+			this.constructReturnReason = MAX_STEPS;
+			this.done = false;
+			this.stopProgramCounter = pc;
+			return new Boolean(done);// false;
+		}
+
 		private Object breakpointHit(int pc) {
 			this.constructReturnReason = BREAKPOINT;
 			this.done = false;
-			Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
+			this.stopProgramCounter = pc;
 			return new Boolean(done); // false;
 		}
 
@@ -1,4 +1,6 @@
 package mars.simulator;
+import mars.Machine;
+import mars.MachineThread;
 import javax.swing.SwingUtilities;
 
 /*-----------------------------------------------------
@@ -149,8 +151,9 @@ public abstract class SwingWorker
 			}
 		};
 
-		// Thread that represents executing MIPS program...
-		Thread t = new Thread(doConstruct, "MIPS");
+		// Thread that represents executing MIPS program, on the machine of the thread
+		// that created the worker...
+		Thread t = new MachineThread(doConstruct, "MIPS", Machine.current());
 
 		//t.setPriority(Thread.NORM_PRIORITY-1);//******************
 
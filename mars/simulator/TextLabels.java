@@ -0,0 +1,129 @@
+package mars.simulator;
+import mars.*;
+import mars.assembler.*;
+import mars.mips.hardware.*;
+import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Finds the text label an instruction belongs to: the closest label at or before
+ * its address, among the global symbols of the current machine and the local
+ * symbols of the programs added.  Macro-generated labels are left out.  Used to
+ * name the functions and loops of profiles.
+ *
+ * @version October 2026
+ */
+
+final class TextLabels
+{
+	private final Memory memory = Memory.getInstance();
+	private final ArrayList symbolTables = new ArrayList();
+	private Symbol[] labels = null;
+
+	TextLabels()
+	{
+		symbolTables.add(Machine.current().getSymbolTable());
+	}
+
+	/*
+	 * Include the local labels of the program the statement comes from.
+	 */
+	void addProgramOf(ProgramStatement statement)
+	{
+		if(statement == null || statement.getSourceMIPSprogram() == null)
+			return;
+		SymbolTable local = statement.getSourceMIPSprogram().getLocalSymbolTable();
+		if(local != null && !symbolTables.contains(local))
+		{
+			symbolTables.add(local);
+			labels = null;
+		}
+	}
+
+	/*
+	 * Include the local labels of the program the instruction at the address comes from.
+	 */
+	void addProgramAt(int address)
+	{
+		try
+		{
+			addProgramOf(memory.getStatementNoNotify(address));
+		}
+		catch(AddressErrorException e)
+		{
+			// no statement, so no program to add
+		}
+	}
+
+	/*
+	 * The label closest at or before the address, or null.
+	 */
+	Symbol labelOf(int address)
+	{
+		if(labels == null)
+			labels = sortedLabels();
+		int low = 0;
+		int high = labels.length - 1;
+		Symbol found = null;
+		while(low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			if(labels[middle].getAddress() <= address)
+			{
+				found = labels[middle];
+				low = middle + 1;
+			}
+			else
+				high = middle - 1;
+		}
+		return found;
+	}
+
+	// Text labels by increasing address.  Of several labels at one address the first
+	// found is kept, global ones coming first.
+	private Symbol[] sortedLabels()
+	{
+		ArrayList list = new ArrayList();
+		for(int i = 0; i < symbolTables.size(); i++)
+			list.addAll(((SymbolTable) symbolTables.get(i)).getTextSymbols(false));
+		Collections.sort(list, new Comparator()
+		{
+			public int compare(Object o1, Object o2)
+			{
+				return Integer.compare(((Symbol) o1).getAddress(), ((Symbol) o2).getAddress());
+			}
+		});
+		ArrayList distinct = new ArrayList();
+		for(int i = 0; i < list.size(); i++)
+			if(i == 0 || ((Symbol) list.get(i)).getAddress() != ((Symbol) list.get(i - 1)).getAddress())
+				distinct.add(list.get(i));
+		return (Symbol[]) distinct.toArray(new Symbol[distinct.size()]);
+	}
+}
@@ -0,0 +1,876 @@
+package mars.simulator;
+import mars.*;
+import mars.mips.hardware.*;
+import mars.mips.instructions.*;
+import mars.mips.instructions.syscalls.*;
+import mars.util.*;
+import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Reverse execution as far back as the program has run.  While recording, a point is
+ * kept every so many instructions: a snapshot of memory (see Memory.Snapshot, which
+ * shares every block not written since the previous one) and the registers.  The
+ * inputs that can make one run differ from another are recorded as well: what each
+ * syscall changed, what loads from the memory mapped I/O segment saw, and when
+ * external interrupts were taken.  To go back to an instruction, the nearest point
+ * before it is restored and the program runs forward from there, with the recorded
+ * inputs replayed instead of being asked for again.  Running the program forward in
+ * the simulator replays them the same way, as far as it has run before.
+ * <p>
+ * When there are too many points every other one is dropped and they are taken twice
+ * as far apart, so memory grows with the blocks written rather than with the number
+ * of instructions executed, and going back re-executes at most one interval.  Changes
+ * made to registers or memory while paused are an input too: they are kept as a point
+ * that replay puts back when it gets there.  Whatever was recorded after such a
+ * change, or after an instruction that comes out differently when replayed, is
+ * discarded.  Files the program opened or wrote and the random number streams are not
+ * taken back.  Each Machine has its own recorder; the IDE records while backstepping
+ * is enabled.
+ *
+ * @version October 2026
+ */
+
+public class TimeTravel
+{
+	/** Number of instructions between points until there have been too many. */
+	public static final int DEFAULT_INTERVAL = 100000;
+
+	// Each point holds its own copy of the block tables, some 24K references.
+	private static final int MAXIMUM_POINTS = 256;
+
+	// Positions in the register values of a point, see captureRegisters().
+	private static final int PC = 32, HI = 33, LO = 34, COPROCESSOR0 = 35;
+
+	// Number of machines recording.  Lets syscalls and memory mapped I/O loads skip the
+	// lookup of the current machine's recorder in the common case.
+	private static int recordersRunning = 0;
+
+	private boolean recording = false;
+	private int interval = DEFAULT_INTERVAL;
+	long nextEvent = Long.MAX_VALUE;  // instruction count at which the simulator calls eventReached()
+	private long nextPoint;
+	// Number of instructions executed when the program had run furthest.  Up to there
+	// its inputs are replayed from the recording.
+	private long frontier;
+	// The thread running the program, whose memory mapped I/O loads are recorded.
+	private Thread executor;
+	private ArrayList points = new ArrayList();  // Point, by count
+	private Point pausePoint;  // the state the program was paused in
+	private ArrayList syscalls = new ArrayList();  // SyscallEffect, by count
+	private int syscallCursor;  // next syscall to replay
+	private ArrayList interrupts = new ArrayList();  // Interrupt, by count
+	// Loads from the memory mapped I/O segment, in parallel arrays by count.  One is kept
+	// only when it saw another value than the previous load of the same address and length.
+	private long[] loadCounts = new long[64];
+	private long[] loadKeys = new long[64];
+	private int[] loadValues = new int[64];
+	private int loadTotal = 0;
+	private int loadCursor = 0;  // next load to replay
+	private HashMap lastLoads = new HashMap();  // Long key -> Integer value, up to loadCursor
+
+	// Something recorded at a number of instructions executed.
+	private static class Event
+	{
+		final long count;
+
+		Event(long count)
+		{
+			this.count = count;
+		}
+	}
+
+	// The state of the machine after count instructions.  An edit point holds changes
+	// made while the program was paused there, which replay puts back.
+	private static final class Point extends Event
+	{
+		final boolean edit;
+		final int[] registers;
+		final Memory.Snapshot memory;
+		final HashMap loads;
+
+		Point(long count, boolean edit, int[] registers, Memory.Snapshot memory, HashMap loads)
+		{
+			super(count);
+			this.edit = edit;
+			this.registers = registers;
+			this.memory = memory;
+			this.loads = loads;
+		}
+
+		// Whether the machine is still in this state, apart from the memory mapped I/O
+		// segment, which devices write to at any time.
+		boolean isCurrent()
+		{
+			return Arrays.equals(registers, captureRegisters()) && Memory.getInstance().isUnchangedSince(memory);
+		}
+	}
+
+	// What a syscall did: the registers it changed (pairs of position, see
+	// captureRegisters(), and value), the memory words it changed (pairs of address and
+	// value), the heap allocation point after it, and the exception it ended with.
+	private static final class SyscallEffect extends Event
+	{
+		final int[] registers;
+		final int[] words;
+		final int heapAddress;
+		final ProcessingException exception;
+
+		SyscallEffect(long count, int[] registers, int[] words, int heapAddress, ProcessingException exception)
+		{
+			super(count);
+			this.registers = registers;
+			this.words = words;
+			this.heapAddress = heapAddress;
+			this.exception = exception;
+		}
+
+		void replay() throws ProcessingException
+		{
+			for(int i = 0; i < registers.length; i += 2)
+				setRegister(registers[i], registers[i + 1]);
+			Memory memory = Memory.getInstance();
+			for(int i = 0; i < words.length; i += 2)
+			{
+				try
+				{
+					memory.setRawWord(words[i], words[i + 1]);
+				}
+				catch(AddressErrorException e) { }  // will not occur, the addresses came from memory
+			}
+			memory.heapAddress = heapAddress;
+			if(exception != null)
+				throw exception;
+		}
+	}
+
+	// An external interrupt taken by the instruction after count.
+	private static final class Interrupt extends Event
+	{
+		final int device;
+
+		Interrupt(long count, int device)
+		{
+			super(count);
+			this.device = device;
+		}
+	}
+
+	/**
+	 * Returns the recorder of the machine of the calling thread, see Machine.current().
+	 *
+	 * @return the time travel recorder of the current machine
+	 */
+	public static TimeTravel getInstance()
+	{
+		return Machine.current().getTimeTravel();
+	}
+
+	/**
+	 * @return true if the recorder of any machine is recording
+	 */
+	public static boolean isAnyRecording()
+	{
+		return recordersRunning > 0;
+	}
+
+	/**
+	 * Start recording with points DEFAULT_INTERVAL instructions apart, see start(int).
+	 */
+	public void start()
+	{
+		start(DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Start recording, discarding any earlier recording.  The program can be taken back
+	 * as far as the state it is in now, normally right after it was assembled or reset.
+	 * Called while it is not running.
+	 *
+	 * @param interval number of instructions between points to begin with, at least 1
+	 */
+	public void start(int interval)
+	{
+		synchronized(TimeTravel.class)
+		{
+			if(!recording)
+				recordersRunning++;
+		}
+		discardRecording();
+		this.interval = Math.max(interval, 1);
+		recording = true;
+		Point point = takePoint(false);
+		points.add(point);
+		pausePoint = point;
+		frontier = point.count;
+		nextPoint = point.count + interval;
+	}
+
+	/**
+	 * Stop recording and discard the recording.
+	 */
+	public void stop()
+	{
+		synchronized(TimeTravel.class)
+		{
+			if(recording)
+				recordersRunning--;
+		}
+		recording = false;
+		discardRecording();
+	}
+
+	private void discardRecording()
+	{
+		points = new ArrayList();
+		pausePoint = null;
+		syscalls = new ArrayList();
+		syscallCursor = 0;
+		interrupts = new ArrayList();
+		loadTotal = 0;
+		loadCursor = 0;
+		lastLoads = new HashMap();
+		nextEvent = Long.MAX_VALUE;
+	}
+
+	/**
+	 * @return true if recording
+	 */
+	public boolean isRecording()
+	{
+		return recording;
+	}
+
+	/**
+	 * @return true if recording and the program has executed instructions since the
+	 * earliest state that is kept
+	 */
+	public boolean canGoBack()
+	{
+		return recording && !points.isEmpty()
+			   && ((Point) points.get(0)).count < ExecutionCounts.getInstance().total;
+	}
+
+	/**
+	 * Take the program back the given number of instructions, or to the earliest state
+	 * that is kept if it has not executed that many since.  See travelTo().
+	 *
+	 * @param steps number of instructions to go back
+	 * @return true if the program was taken back
+	 */
+	public boolean stepBack(long steps)
+	{
+		if(!canGoBack())
+			return false;
+		long earliest = ((Point) points.get(0)).count;
+		return travelTo(Math.max(ExecutionCounts.getInstance().total - steps, earliest));
+	}
+
+	/**
+	 * Bring the program to the state it was in when it had executed the given number of
+	 * instructions, which may be anywhere between the earliest state kept and the
+	 * furthest the program has run.  Called while the program is paused.  Observers of
+	 * memory and registers are notified of the replayed instructions only, so a display
+	 * of them should be updated afterwards.
+	 *
+	 * @param count number of instructions executed, see ExecutionCounts.getTotal()
+	 * @return true if the program was brought to that state, false if not recording or
+	 * that state cannot be reached
+	 */
+	public boolean travelTo(long count)
+	{
+		if(!recording || points.isEmpty() || count < ((Point) points.get(0)).count || count > frontier)
+			return false;
+		synchronized(Machine.current().getLock())
+		{
+			BackStepper backStepper = suspendBackStepper();
+			try
+			{
+				replayFrom(latestPoint(count), count, null);
+			}
+			finally
+			{
+				resumeBackStepper(backStepper);
+			}
+			pausePoint = takePoint(false);
+		}
+		return true;
+	}
+
+	/**
+	 * Take the program back to the last time it was about to execute the instruction at
+	 * one of the given addresses, as when it stops at a breakpoint running forward, or
+	 * to the earliest state kept if it never was.  Called while the program is paused.
+	 * See travelTo().
+	 *
+	 * @param breakPoints instruction addresses, possibly none
+	 * @return true if the program was taken back to one of the addresses
+	 */
+	public boolean runBackward(int[] breakPoints)
+	{
+		if(!canGoBack())
+			return false;
+		int[] addresses = (breakPoints == null) ? new int[0] : (int[]) breakPoints.clone();
+		Arrays.sort(addresses);
+		synchronized(Machine.current().getLock())
+		{
+			BackStepper backStepper = suspendBackStepper();
+			long hit = -1;
+			try
+			{
+				// Replay the intervals between points, latest first, until one reaches an address.
+				long end = ExecutionCounts.getInstance().total;
+				for(int i = points.size() - 1; i >= 0 && hit < 0 && addresses.length > 0; i--)
+				{
+					Point point = (Point) points.get(i);
+					if(point.count >= end)
+						continue;
+					hit = replayFrom(point, end, addresses);
+					end = point.count;
+				}
+				long count = (hit < 0) ? ((Point) points.get(0)).count : hit;
+				replayFrom(latestPoint(count), count, null);
+			}
+			finally
+			{
+				resumeBackStepper(backStepper);
+			}
+			pausePoint = takePoint(false);
+			return hit >= 0;
+		}
+	}
+
+	/*
+	 * Called by the simulator when a run starts.  If registers or memory were changed
+	 * while the program was paused, the changes are kept as an edit point, and what
+	 * was recorded after them no longer applies.
+	 */
+	void runStarting()
+	{
+		if(!recording)
+			return;
+		executor = Thread.currentThread();
+		long count = ExecutionCounts.getInstance().total;
+		if(pausePoint == null || pausePoint.count != count || !pausePoint.isCurrent())
+		{
+			if(count < frontier)
+				diverged(count);
+			addPoint(takePoint(true));
+		}
+		pausePoint = null;
+		schedule(count);
+	}
+
+	/*
+	 * Called by the simulator when a run stops, for whatever reason.
+	 */
+	void runStopped()
+	{
+		if(!recording)
+			return;
+		executor = null;
+		nextEvent = Long.MAX_VALUE;
+		frontier = Math.max(frontier, ExecutionCounts.getInstance().total);
+		pausePoint = takePoint(false);
+	}
+
+	/*
+	 * Called by the simulator between instructions once the instruction count reaches
+	 * nextEvent.  May replace the state of the machine, including the program counter.
+	 */
+	void eventReached()
+	{
+		long count = ExecutionCounts.getInstance().total;
+		if(count < frontier)
+		{
+			Point edit = null;
+			for(int i = firstAfter(points, count - 1); i < points.size() && ((Point) points.get(i)).count == count; i++)
+				if(((Point) points.get(i)).edit)
+					edit = (Point) points.get(i);
+			if(edit != null)
+				restore(edit);
+			else
+				raiseRecordedInterrupt(count);
+		}
+		else if(count > frontier && count >= nextPoint)
+		{
+			nextPoint = count + interval;
+			addPoint(takePoint(false));
+		}
+		schedule(count);
+	}
+
+	/**
+	 * Simulate a syscall.  If the program has been this far before its effect is
+	 * replayed from the recording, otherwise it is carried out and recorded.  Called
+	 * for every syscall while any machine is recording.
+	 *
+	 * @param service the syscall
+	 * @param statement the syscall instruction
+	 * @throws ProcessingException if the syscall ends the program or fails
+	 */
+	public void simulateSyscall(Syscall service, ProgramStatement statement) throws ProcessingException
+	{
+		if(!recording)
+		{
+			service.simulate(statement);
+			return;
+		}
+		long count = ExecutionCounts.getInstance().total;
+		if(count <= frontier)
+		{
+			if(syscallCursor < syscalls.size())
+			{
+				SyscallEffect effect = (SyscallEffect) syscalls.get(syscallCursor);
+				if(effect.count == count)
+				{
+					syscallCursor++;
+					effect.replay();
+					return;
+				}
+			}
+			diverged(count - 1);
+		}
+		int[] registers = captureRegisters();
+		Memory memory = Memory.getInstance();
+		// Not a snapshot: that would replace the one of the last point, and every block
+		// written afterwards would be copied again.
+		memory.beginChanges();
+		ProcessingException exception = null;
+		int[] changes;
+		try
+		{
+			service.simulate(statement);
+		}
+		catch(ProcessingException e)
+		{
+			exception = e;
+		}
+		finally
+		{
+			changes = memory.endChanges();
+		}
+		syscalls.add(new SyscallEffect(count, changedRegisters(registers, captureRegisters()),
+									   changes, memory.heapAddress, exception));
+		syscallCursor = syscalls.size();
+		if(exception != null)
+			throw exception;
+	}
+
+	/**
+	 * Returns the value a load the program makes from the memory mapped I/O segment is
+	 * to see.  If the program has been this far before it is the value seen then,
+	 * otherwise the value in memory, which is recorded.  Called by Memory for every
+	 * such load while any machine is recording.
+	 *
+	 * @param address address loaded from
+	 * @param length number of bytes loaded
+	 * @param value value in memory
+	 * @return the value the load is to see
+	 */
+	public int memoryMappedLoad(int address, int length, int value)
+	{
+		if(!recording || Thread.currentThread() != executor)
+			return value;
+		long count = ExecutionCounts.getInstance().total;
+		long key = ((long) length << 32) | (address & 0xffffffffL);
+		if(count <= frontier)
+		{
+			catchUpLoads(count);
+			Integer recorded = (Integer) lastLoads.get(new Long(key));
+			if(recorded != null)
+				return recorded.intValue();
+			diverged(count - 1);
+		}
+		Integer last = (Integer) lastLoads.get(new Long(key));
+		if(last == null || last.intValue() != value)
+		{
+			if(loadTotal == loadCounts.length)
+			{
+				loadCounts = Arrays.copyOf(loadCounts, 2 * loadTotal);
+				loadKeys = Arrays.copyOf(loadKeys, 2 * loadTotal);
+				loadValues = Arrays.copyOf(loadValues, 2 * loadTotal);
+			}
+			loadCounts[loadTotal] = count;
+			loadKeys[loadTotal] = key;
+			loadValues[loadTotal] = value;
+			loadTotal++;
+			lastLoads.put(new Long(key), new Integer(value));
+		}
+		loadCursor = loadTotal;
+		return value;
+	}
+
+	/*
+	 * Called by the simulator when the instruction it is executing takes an external
+	 * interrupt.
+	 */
+	void interruptRaised(int device)
+	{
+		if(!recording)
+			return;
+		long count = ExecutionCounts.getInstance().total - 1;
+		if(count < frontier)
+		{
+			int i = firstAfter(interrupts, count - 1);
+			if(i < interrupts.size() && ((Interrupt) interrupts.get(i)).count == count
+					&& ((Interrupt) interrupts.get(i)).device == device)
+				return;
+			diverged(count);
+		}
+		interrupts.add(new Interrupt(count, device));
+	}
+
+	// The program came out differently than recorded after the given number of
+	// instructions: discard what was recorded after them.
+	private void diverged(long count)
+	{
+		points.subList(firstAfter(points, count), points.size()).clear();
+		syscalls.subList(firstAfter(syscalls, count), syscalls.size()).clear();
+		syscallCursor = Math.min(syscallCursor, syscalls.size());
+		interrupts.subList(firstAfter(interrupts, count - 1), interrupts.size()).clear();
+		loadTotal = firstLoadAfter(count);
+		loadCursor = Math.min(loadCursor, loadTotal);
+		frontier = count;
+		schedule(ExecutionCounts.getInstance().total);
+	}
+
+	// Set nextEvent to the first instruction count after the given one at which there
+	// is a point to take, an edit to put back or an interrupt to raise.
+	private void schedule(long count)
+	{
+		long next = Math.max(nextPoint, frontier + 1);
+		for(int i = firstAfter(points, count); i < points.size(); i++)
+		{
+			Point point = (Point) points.get(i);
+			if(point.count >= Math.min(next, frontier))
+				break;
+			if(point.edit)
+			{
+				next = point.count;
+				break;
+			}
+		}
+		int i = firstAfter(interrupts, count);
+		if(i < interrupts.size())
+			next = Math.min(next, ((Interrupt) interrupts.get(i)).count);
+		nextEvent = next;
+	}
+
+	private void addPoint(Point point)
+	{
+		points.add(point);
+		if(points.size() <= MAXIMUM_POINTS)
+			return;
+		// Keep every other point other than the edits, starting with the first, and take
+		// them twice as far apart from now on.
+		ArrayList kept = new ArrayList(MAXIMUM_POINTS);
+		boolean keep = true;
+		for(int i = 0; i < points.size(); i++)
+		{
+			Point p = (Point) points.get(i);
+			if(p.edit || keep)
+				kept.add(p);
+			if(!p.edit)
+				keep = !keep;
+		}
+		points = kept;
+		interval *= 2;
+	}
+
+	// The latest point at or before the given number of instructions.
+	private Point latestPoint(long count)
+	{
+		return (Point) points.get(firstAfter(points, count) - 1);
+	}
+
+	private Point takePoint(boolean edit)
+	{
+		long count = ExecutionCounts.getInstance().total;
+		catchUpLoads(count);
+		return new Point(count, edit, captureRegisters(), Memory.getInstance().takeSnapshot(),
+						 (HashMap) lastLoads.clone());
+	}
+
+	private void restore(Point point)
+	{
+		Memory.getInstance().restoreSnapshot(point.memory);
+		restoreRegisters(point.registers);
+		ExecutionCounts.getInstance().total = point.count;
+		lastLoads = (HashMap) point.loads.clone();
+		loadCursor = firstLoadAfter(point.count);
+		syscallCursor = firstAfter(syscalls, point.count);
+		Simulator.externalInterruptingDevice = Simulator.NO_DEVICE;
+		raiseRecordedInterrupt(point.count);
+		schedule(point.count);
+	}
+
+	private void raiseRecordedInterrupt(long count)
+	{
+		int i = firstAfter(interrupts, count - 1);
+		if(i < interrupts.size() && ((Interrupt) interrupts.get(i)).count == count)
+			Simulator.externalInterruptingDevice = ((Interrupt) interrupts.get(i)).device;
+	}
+
+	private void catchUpLoads(long count)
+	{
+		for(; loadCursor < loadTotal && loadCounts[loadCursor] <= count; loadCursor++)
+			lastLoads.put(new Long(loadKeys[loadCursor]), new Integer(loadValues[loadCursor]));
+	}
+
+	// Index of the first event of the list recorded after the given count.
+	private static int firstAfter(ArrayList events, long count)
+	{
+		int low = 0;
+		int high = events.size();
+		while(low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if(((Event) events.get(middle)).count <= count)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	private int firstLoadAfter(long count)
+	{
+		int low = 0;
+		int high = loadTotal;
+		while(low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if(loadCounts[middle] <= count)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	// Restore a point and run the program from there until it has executed count
+	// instructions, returning the last count at which it was about to execute the
+	// instruction at one of the breakpoints, or -1.
+	private long replayFrom(Point point, long count, int[] breakPoints)
+	{
+		executor = Thread.currentThread();
+		try
+		{
+			restore(point);
+			DelayedBranch.prepareForSimulation();
+			return replay(count, breakPoints);
+		}
+		finally
+		{
+			executor = null;
+		}
+	}
+
+	// The fetch/execute cycle of the simulator, without its observers, stops and limits.
+	// Ends early if the program terminates.
+	private long replay(long count, int[] breakPoints)
+	{
+		Memory memory = Memory.getInstance();
+		DecodedInstructionCache decodedInstructions = memory.getDecodedInstructionCache();
+		ExecutionCounts counts = ExecutionCounts.getInstance();
+		long hit = -1;
+		while(counts.total < count)
+		{
+			int pc = RegisterFile.getProgramCounter();
+			if(breakPoints != null && Arrays.binarySearch(breakPoints, pc) >= 0)
+				hit = counts.total;
+			DecodedInstructionCache.Entry entry = decodedInstructions.lookup(pc);
+			ProgramStatement statement;
+			try
+			{
+				statement = (entry != null) ? entry.statement : memory.getStatementNoNotify(pc);
+			}
+			catch(AddressErrorException e)
+			{
+				break;
+			}
+			if(statement == null)
+				break;
+			RegisterFile.incrementPC();
+			counts.total++;
+			try
+			{
+				if(Simulator.externalInterruptingDevice != Simulator.NO_DEVICE)
+				{
+					int device = Simulator.externalInterruptingDevice;
+					Simulator.externalInterruptingDevice = Simulator.NO_DEVICE;
+					throw new ProcessingException(statement, "External Interrupt", device);
+				}
+				if(entry != null)
+					entry.code.simulate(statement);
+				else if(statement.getInstruction() instanceof BasicInstruction)
+					((BasicInstruction) statement.getInstruction()).getSimulationCode().simulate(statement);
+				else
+					throw new ProcessingException(statement,
+												  "undefined instruction (" + Binary.intToHexString(statement.getBinaryStatement()) + ")",
+												  Exceptions.RESERVED_INSTRUCTION_EXCEPTION);
+			}
+			catch(ProcessingException pe)
+			{
+				if(pe.errors() == null)
+				{
+					if(!pe.isBreakpoint())
+						break;
+				}
+				else if(hasExceptionHandler(memory))
+					RegisterFile.setProgramCounter(Memory.exceptionHandlerAddress);
+				else
+					break;
+			}
+			if(DelayedBranch.isTriggered())
+			{
+				RegisterFile.setProgramCounter(DelayedBranch.getBranchTargetAddress());
+				DelayedBranch.clear();
+			}
+			else if(DelayedBranch.isRegistered())
+				DelayedBranch.trigger();
+			if(counts.total >= nextEvent)
+				eventReached();
+		}
+		return hit;
+	}
+
+	private static boolean hasExceptionHandler(Memory memory)
+	{
+		try
+		{
+			return memory.getStatementNoNotify(Memory.exceptionHandlerAddress) != null;
+		}
+		catch(AddressErrorException e)
+		{
+			return false;
+		}
+	}
+
+	// Restoring points and replaying are not steps for the backstepper to undo, and
+	// the steps it has recorded no longer apply afterwards.
+	private static BackStepper suspendBackStepper()
+	{
+		MIPSprogram program = Machine.current().getProgram();
+		BackStepper backStepper = (program == null) ? null : program.getBackStepper();
+		if(backStepper == null || !backStepper.enabled())
+			return null;
+		backStepper.setEnabled(false);
+		return backStepper;
+	}
+
+	private static void resumeBackStepper(BackStepper backStepper)
+	{
+		if(backStepper != null)
+		{
+			backStepper.clear();
+			backStepper.setEnabled(true);
+		}
+	}
+
+	// The registers of the CPU, coprocessors 0 and 1 and the pending delayed branch:
+	// general purpose registers at 0 to 31, then the program counter, hi and lo, the
+	// registers of coprocessor 0, those of coprocessor 1, its condition flags, and the
+	// state and target address of the delayed branch.
+	private static int[] captureRegisters()
+	{
+		Register[] registers0 = Coprocessor0.getRegisters();
+		int coprocessor1 = COPROCESSOR0 + registers0.length;
+		int[] values = new int[coprocessor1 + 32 + 3];
+		for(int i = 0; i < 32; i++)
+			values[i] = RegisterFile.getValue(i);
+		values[PC] = RegisterFile.getProgramCounter();
+		values[HI] = RegisterFile.getValue(33);
+		values[LO] = RegisterFile.getValue(34);
+		for(int i = 0; i < registers0.length; i++)
+			values[COPROCESSOR0 + i] = registers0[i].getValue();
+		for(int i = 0; i < 32; i++)
+			values[coprocessor1 + i] = Coprocessor1.getValue(i);
+		values[coprocessor1 + 32] = Coprocessor1.getConditionFlags();
+		values[coprocessor1 + 33] = DelayedBranch.getState();
+		values[coprocessor1 + 34] = DelayedBranch.getBranchTargetAddress();
+		return values;
+	}
+
+	private static void restoreRegisters(int[] values)
+	{
+		int branch = values.length - 2;
+		for(int i = 1; i < branch; i++)
+			setRegister(i, values[i]);
+		DelayedBranch.setState(values[branch], values[branch + 1]);
+	}
+
+	// Pairs of position and value of the registers that differ.
+	private static int[] changedRegisters(int[] before, int[] after)
+	{
+		int length = 0;
+		for(int i = 0; i < after.length; i++)
+			if(before[i] != after[i])
+				length += 2;
+		int[] changes = new int[length];
+		length = 0;
+		for(int i = 0; i < after.length; i++)
+		{
+			if(before[i] != after[i])
+			{
+				changes[length++] = i;
+				changes[length++] = after[i];
+			}
+		}
+		return changes;
+	}
+
+	// Set the register at the given position of captureRegisters().
+	private static void setRegister(int position, int value)
+	{
+		Register[] registers0 = Coprocessor0.getRegisters();
+		int coprocessor1 = COPROCESSOR0 + registers0.length;
+		if(position < 32 || position == HI || position == LO)
+			RegisterFile.updateRegister(position, value);
+		else if(position == PC)
+			RegisterFile.setProgramCounter(value);
+		else if(position < coprocessor1)
+			Coprocessor0.updateRegister(registers0[position - COPROCESSOR0].getNumber(), value);
+		else if(position < coprocessor1 + 32)
+			Coprocessor1.updateRegister(position - coprocessor1, value);
+		else if(position == coprocessor1 + 32)
+		{
+			Coprocessor1.clearConditionFlags();
+			for(int flag = 0; flag < Coprocessor1.getConditionFlagCount(); flag++)
+				if((value & (1 << flag)) != 0)
+					Coprocessor1.setConditionFlag(flag);
+		}
+		else if(position == coprocessor1 + 33)
+			DelayedBranch.setState(value, DelayedBranch.getBranchTargetAddress());
+		else
+			DelayedBranch.setState(DelayedBranch.getState(), value);
+	}
+}
@@ -0,0 +1,180 @@
+package mars.tools;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import mars.simulator.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Execution profiler: shows where the running program spends its time, as hot lists
+ * of source lines, text labels (functions and loops) and instruction mnemonics, from
+ * the counts by address the simulator keeps while the tool is connected.  The lists
+ * cover the instructions executed since the tool was connected or last reset.
+ *
+ * @version October 2026
+ */
+public class ExecutionProfiler extends AbstractMarsToolAndApplication
+{
+	private static String name    = "Execution Profiler";
+	private static String version = "Version 1.0";
+	private static String heading = "Where the program spends its time";
+
+	private static final int REFRESH_INTERVAL = 500; // milliseconds
+	private static final int ENTRIES = 50; // entries shown in each list
+
+	private JTextArea linesArea;
+	private JTextArea labelsArea;
+	private JTextArea mnemonicsArea;
+
+	// Counts by address when connected or last reset, null while not connected.
+	private long[] countsAtReset;
+	// Instructions executed when last refreshed, to refresh only when there are new ones.
+	private long totalAtRefresh = -1;
+
+	private Timer refreshTimer = new Timer(REFRESH_INTERVAL,
+		new ActionListener()
+	{
+		public void actionPerformed(ActionEvent e)
+		{
+			refresh();
+		}
+	});
+
+	/**
+	 * Simple constructor, likely used to run a stand-alone profiler.
+	 * @param title String containing title for title bar
+	 * @param heading String containing text for heading shown in upper part of window.
+	 */
+	public ExecutionProfiler(String title, String heading)
+	{
+		super(title, heading);
+	}
+
+	/**
+	 * Simple constructor, likely used by the MARS Tools menu mechanism.
+	 */
+	public ExecutionProfiler()
+	{
+		super(name + ", " + version, heading);
+	}
+
+	/**
+	 * Main provided for pure stand-alone use.
+	 */
+	public static void main(String[] args)
+	{
+		new ExecutionProfiler(name + ", " + version, heading).go();
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	protected JComponent buildMainDisplayArea()
+	{
+		linesArea = createListArea();
+		labelsArea = createListArea();
+		mnemonicsArea = createListArea();
+		JTabbedPane tabs = new JTabbedPane();
+		tabs.addTab("Source lines", new JScrollPane(linesArea));
+		tabs.addTab("Labels", new JScrollPane(labelsArea));
+		tabs.addTab("Instructions", new JScrollPane(mnemonicsArea));
+		tabs.setPreferredSize(new Dimension(560, 320));
+		return tabs;
+	}
+
+	private JTextArea createListArea()
+	{
+		JTextArea area = new JTextArea();
+		area.setEditable(false);
+		area.setFont(new Font("Monospaced", Font.PLAIN, 12));
+		return area;
+	}
+
+	/**
+	 * Asks the simulator to count executed instructions by address, and starts
+	 * refreshing the lists from those counts.
+	 */
+	protected void addAsObserver()
+	{
+		if(countsAtReset != null)
+			return;
+		ExecutionCounts.getInstance().startCountingByAddress();
+		countsAtReset = ExecutionCounts.getInstance().getCountsByAddress();
+		totalAtRefresh = -1;
+		refreshTimer.start();
+	}
+
+	/**
+	 * Refreshes the lists one last time and tells the simulator that the counts by
+	 * address are no longer needed.
+	 */
+	protected void deleteAsObserver()
+	{
+		if(countsAtReset == null)
+			return;
+		refreshTimer.stop();
+		refresh();
+		ExecutionCounts.getInstance().stopCountingByAddress();
+		countsAtReset = null;
+	}
+
+	protected void reset()
+	{
+		linesArea.setText("");
+		labelsArea.setText("");
+		mnemonicsArea.setText("");
+		if(countsAtReset != null)
+			countsAtReset = ExecutionCounts.getInstance().getCountsByAddress();
+		totalAtRefresh = -1;
+		refresh();
+	}
+
+	// Rebuild the lists from the counts since connected or reset.  The profile looks up
+	// statements and labels, so it is only redone when instructions have been executed.
+	private void refresh()
+	{
+		long total = ExecutionCounts.getInstance().getTotal();
+		long[] counts = ExecutionCounts.getInstance().getCountsByAddress();
+		if(counts == null || countsAtReset == null || total == totalAtRefresh)
+			return;
+		totalAtRefresh = total;
+		for(int i = 0; i < Math.min(counts.length, countsAtReset.length); i++)
+			counts[i] -= countsAtReset[i];
+		ExecutionProfile profile = new ExecutionProfile(counts);
+		linesArea.setText(profile.format("Source line", profile.getLines(), ENTRIES));
+		labelsArea.setText(profile.format("Label", profile.getLabels(), ENTRIES));
+		mnemonicsArea.setText(profile.format("Instruction", profile.getMnemonics(), ENTRIES));
+		linesArea.setCaretPosition(0);
+		labelsArea.setCaretPosition(0);
+		mnemonicsArea.setCaretPosition(0);
+	}
+}
@@ -29,21 +29,21 @@ package mars.tools;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
-import java.util.Observable;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
 
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JTextField;
+import javax.swing.Timer;
 
-import mars.ProgramStatement;
-import mars.mips.hardware.AccessNotice;
-import mars.mips.hardware.AddressErrorException;
-import mars.mips.hardware.Memory;
-import mars.mips.hardware.MemoryAccessNotice;
+import mars.Globals;
 import mars.mips.instructions.BasicInstruction;
 import mars.mips.instructions.BasicInstructionFormat;
+import mars.simulator.ExecutionCounts;
 
 /**
  *
@@ -65,37 +65,51 @@ public class InstructionCounter extends AbstractMarsToolAndApplication
 	/**
 	 * Number of instructions executed until now.
 	 */
-	protected int counter = 0;
+	protected long counter = 0;
 	private JTextField counterField;
 
 	/**
 	 * Number of instructions of type R.
 	 */
-	protected int counterR = 0;
+	protected long counterR = 0;
 	private JTextField counterRField;
 	private JProgressBar progressbarR;
 
 	/**
 	 * Number of instructions of type I.
 	 */
-	protected int counterI = 0;
+	protected long counterI = 0;
 	private JTextField counterIField;
 	private JProgressBar progressbarI;
 
 	/**
 	 * Number of instructions of type J.
 	 */
-	protected int counterJ = 0;
+	protected long counterJ = 0;
 	private JTextField counterJField;
 	private JProgressBar progressbarJ;
 
 
 	/**
-	 * The last address we saw. We ignore it because the only way for a
-	 * program to execute twice the same instruction is to enter an infinite
-	 * loop, which is not insteresting in the POV of counting instructions.
+	 * Counts by instruction of the simulator when the tool was connected or last
+	 * reset, null while not connected.  The counts shown are those since then.
 	 */
-	protected int lastAddress = -1;
+	private long[] countsAtReset;
+
+	private static final int REFRESH_INTERVAL = 100; // milliseconds
+
+	/**
+	 * Refreshes the counts while connected.  The simulator keeps the counts itself,
+	 * so the tool does not need to observe every instruction fetch.
+	 */
+	private Timer refreshTimer = new Timer(REFRESH_INTERVAL,
+		new ActionListener()
+	{
+		public void actionPerformed(ActionEvent e)
+		{
+			refresh();
+		}
+	});
 
 	/**
 	 * Simple constructor, likely used to run a stand-alone memory reference visualizer.
@@ -204,37 +218,57 @@ public class InstructionCounter extends AbstractMarsToolAndApplication
 //	@Override
 	protected void addAsObserver()
 	{
-		addAsObserver(Memory.textBaseAddress, Memory.textLimitAddress);
+		if(countsAtReset != null)
+			return;
+		ExecutionCounts.getInstance().startCountingByInstruction();
+		countsAtReset = ExecutionCounts.getInstance().getCountsByInstruction();
+		refreshTimer.start();
 	}
 
 //	@Override
-	protected void processMIPSUpdate(Observable resource, AccessNotice notice)
+	protected void deleteAsObserver()
+	{
+		if(countsAtReset == null)
+			return;
+		refreshTimer.stop();
+		refresh();
+		ExecutionCounts.getInstance().stopCountingByInstruction();
+		countsAtReset = null;
+	}
+
+	/**
+	 * Recomputes the counters from the simulator's counts by instruction, and
+	 * updates the display if they changed.
+	 */
+	protected void refresh()
 	{
-		if(!notice.accessIsFromMIPS()) return;
-		if(notice.getAccessType() != AccessNotice.READ) return;
-		MemoryAccessNotice m = (MemoryAccessNotice) notice;
-		int a = m.getAddress();
-		if(a == lastAddress) return;
-		lastAddress = a;
-		counter++;
-		try
+		long[] counts = ExecutionCounts.getInstance().getCountsByInstruction();
+		if(counts == null || countsAtReset == null)
+			return;
+		long total = 0, r = 0, i = 0, j = 0;
+		ArrayList instructions = Globals.instructionSet.getInstructionList();
+		for(int k = 0; k < instructions.size(); k++)
 		{
-			ProgramStatement stmt = Memory.getInstance().getStatement(a);
-			BasicInstruction instr = (BasicInstruction) stmt.getInstruction();
+			if(!(instructions.get(k) instanceof BasicInstruction))
+				continue;
+			BasicInstruction instr = (BasicInstruction) instructions.get(k);
+			long count = counts[instr.getIndex()] - countsAtReset[instr.getIndex()];
 			BasicInstructionFormat format = instr.getInstructionFormat();
+			total += count;
 			if(format == BasicInstructionFormat.R_FORMAT)
-				counterR++;
+				r += count;
 			else if(format == BasicInstructionFormat.I_FORMAT
 					|| format == BasicInstructionFormat.I_BRANCH_FORMAT)
-				counterI++;
+				i += count;
 			else if(format == BasicInstructionFormat.J_FORMAT)
-				counterJ++;
-		}
-		catch(AddressErrorException e)
-		{
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+				j += count;
 		}
+		if(total == counter && r == counterR && i == counterI && j == counterJ)
+			return;
+		counter = total;
+		counterR = r;
+		counterI = i;
+		counterJ = j;
 		updateDisplay();
 	}
 
@@ -242,14 +276,14 @@ public class InstructionCounter extends AbstractMarsToolAndApplication
 	protected void initializePreGUI()
 	{
 		counter = counterR = counterI = counterJ = 0;
-		lastAddress = -1;
 	}
 
 // @Override
 	protected void reset()
 	{
 		counter = counterR = counterI = counterJ = 0;
-		lastAddress = -1;
+		if(countsAtReset != null)
+			countsAtReset = ExecutionCounts.getInstance().getCountsByInstruction();
 		updateDisplay();
 	}
 
@@ -257,30 +291,20 @@ public class InstructionCounter extends AbstractMarsToolAndApplication
 	protected void updateDisplay()
 	{
 		counterField.setText(String.valueOf(counter));
-
 		counterRField.setText(String.valueOf(counterR));
-		progressbarR.setMaximum(counter);
-		progressbarR.setValue(counterR);
-
 		counterIField.setText(String.valueOf(counterI));
-		progressbarI.setMaximum(counter);
-		progressbarI.setValue(counterI);
-
 		counterJField.setText(String.valueOf(counterJ));
-		progressbarJ.setMaximum(counter);
-		progressbarJ.setValue(counterJ);
+		showPercentage(progressbarR, counterR);
+		showPercentage(progressbarI, counterI);
+		showPercentage(progressbarJ, counterJ);
+	}
 
-		if(counter == 0)
-		{
-			progressbarR.setString("0%");
-			progressbarI.setString("0%");
-			progressbarJ.setString("0%");
-		}
-		else
-		{
-			progressbarR.setString((counterR * 100) / counter + "%");
-			progressbarI.setString((counterI * 100) / counter + "%");
-			progressbarJ.setString((counterJ * 100) / counter + "%");
-		}
+	// The counts may not fit an int, so the bars show percentages.
+	private void showPercentage(JProgressBar progressbar, long count)
+	{
+		int percentage = (counter == 0) ? 0 : (int)((count * 100) / counter);
+		progressbar.setMaximum(100);
+		progressbar.setValue(percentage);
+		progressbar.setString(percentage + "%");
 	}
 }
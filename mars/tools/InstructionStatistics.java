@@ -30,19 +30,21 @@ package mars.tools;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
-import java.util.Observable;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
 
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JTextField;
+import javax.swing.Timer;
 
+import mars.Globals;
 import mars.ProgramStatement;
-import mars.mips.hardware.AccessNotice;
-import mars.mips.hardware.AddressErrorException;
-import mars.mips.hardware.Memory;
-import mars.mips.hardware.MemoryAccessNotice;
+import mars.mips.instructions.BasicInstruction;
+import mars.simulator.ExecutionCounts;
 
 
 /**
@@ -101,23 +103,30 @@ public class InstructionStatistics extends AbstractMarsToolAndApplication
 
 
 	/** counter for the total number of instructions processed */
-	private int m_totalCounter = 0;
+	private long m_totalCounter = 0;
 
 	/** array of counter variables - one for each instruction category */
-	private int m_counters[] = new int[MAX_CATEGORY];
+	private long m_counters[] = new long[MAX_CATEGORY];
 
 	/** names of the instruction categories as array */
 	private String m_categoryLabels[] = { "ALU", "Jump", "Branch", "Memory", "Other" };
 
 
-	// From Felipe Lessa's instruction counter.  Prevent double-counting of instructions
-	// which happens because 2 read events are generated.
-	/**
-	 * The last address we saw. We ignore it because the only way for a
-	 * program to execute twice the same instruction is to enter an infinite
-	 * loop, which is not insteresting in the POV of counting instructions.
-	 */
-	protected int lastAddress = -1;
+	/** counts by instruction of the simulator when connected or last reset, null while not connected */
+	private long m_countsAtReset[];
+
+	/** interval in milliseconds at which the counters are refreshed while connected */
+	private static final int REFRESH_INTERVAL = 100;
+
+	/** timer refreshing the counters from the simulator's counts by instruction */
+	private Timer m_refreshTimer = new Timer(REFRESH_INTERVAL,
+		new ActionListener()
+	{
+		public void actionPerformed(ActionEvent e)
+		{
+			refresh();
+		}
+	});
 
 	/**
 	 * Simple constructor, likely used to run a stand-alone enhanced instruction counter.
@@ -207,12 +216,33 @@ public class InstructionStatistics extends AbstractMarsToolAndApplication
 
 
 	/**
-	 * registers the tool as observer for the text segment of the MIPS program
+	 * asks the simulator to count executed instructions by instruction, and starts
+	 * refreshing the counters from those counts
 	 *
 	 */
 	protected void addAsObserver()
 	{
-		addAsObserver(Memory.textBaseAddress, Memory.textLimitAddress);
+		if(m_countsAtReset != null)
+			return;
+		ExecutionCounts.getInstance().startCountingByInstruction();
+		m_countsAtReset = ExecutionCounts.getInstance().getCountsByInstruction();
+		m_refreshTimer.start();
+	}
+
+
+	/**
+	 * stops refreshing the counters, after a last refresh, and tells the simulator
+	 * that the counts by instruction are no longer needed
+	 *
+	 */
+	protected void deleteAsObserver()
+	{
+		if(m_countsAtReset == null)
+			return;
+		m_refreshTimer.stop();
+		refresh();
+		ExecutionCounts.getInstance().stopCountingByInstruction();
+		m_countsAtReset = null;
 	}
 
 
@@ -231,10 +261,23 @@ public class InstructionStatistics extends AbstractMarsToolAndApplication
 	 * @see InstructionStatistics#CATEGORY_OTHER
 	 */
 	protected int getInstructionCategory(ProgramStatement stmt)
+	{
+		return getInstructionCategory(stmt.getBinaryStatement());
+	}
+
+
+	/**
+	 * determines the category of an instruction from its 32-bit machine code, or
+	 * from the fixed bits of a basic instruction (see BasicInstruction.getOpcodeMatch())
+	 *
+	 * @param binaryStatement the machine code of the instruction
+	 * @return the category of the instruction
+	 */
+	protected int getInstructionCategory(int binaryStatement)
 	{
 
-		int opCode = stmt.getBinaryStatement() >>> (32 - 6);
-		int funct = stmt.getBinaryStatement() & 0x1F;
+		int opCode = binaryStatement >>> (32 - 6);
+		int funct = binaryStatement & 0x1F;
 
 		if(opCode == 0x00)
 		{
@@ -274,55 +317,35 @@ public class InstructionStatistics extends AbstractMarsToolAndApplication
 
 
 	/**
-	 * method that is called each time the MIPS simulator accesses the text segment.
-	 * Before an instruction is executed by the simulator, the instruction is fetched from the program memory.
-	 * This memory access is observed and the corresponding instruction is decoded and categorized by the tool.
-	 * According to the category the counter values are increased and the display gets updated.
+	 * method that is called periodically while the tool is connected.
+	 * The simulator counts the executions of each basic instruction; these counts are summed
+	 * up by category, and the display gets updated if the counter values changed.
 	 *
-	 * @param resource the observed resource
-	 * @param notice signals the type of access (memory, register etc.)
 	 */
-	protected void processMIPSUpdate(Observable resource, AccessNotice notice)
+	protected void refresh()
 	{
-
-		if(!notice.accessIsFromMIPS())
+		long counts[] = ExecutionCounts.getInstance().getCountsByInstruction();
+		if(counts == null || m_countsAtReset == null)
 			return;
 
-		// check for a read access in the text segment
-		if(notice.getAccessType() == AccessNotice.READ && notice instanceof MemoryAccessNotice)
+		long total = 0;
+		long byCategory[] = new long[MAX_CATEGORY];
+		ArrayList instructions = Globals.instructionSet.getInstructionList();
+		for(int i = 0; i < instructions.size(); i++)
 		{
-
-			// now it is safe to make a cast of the notice
-			MemoryAccessNotice memAccNotice = (MemoryAccessNotice) notice;
-
-			// The next three statments are from Felipe Lessa's instruction counter.  Prevents double-counting.
-			int a = memAccNotice.getAddress();
-			if(a == lastAddress)
-				return;
-			lastAddress = a;
-
-			try
-			{
-
-				// access the statement in the text segment without notifying other tools etc.
-				ProgramStatement stmt = Memory.getInstance().getStatementNoNotify(memAccNotice.getAddress());
-
-				// necessary to handle possible null pointers at the end of the program
-				// (e.g., if the simulator tries to execute the next instruction after the last instruction in the text segment)
-				if(stmt != null)
-				{
-					int category = getInstructionCategory(stmt);
-
-					m_totalCounter ++;
-					m_counters[category] ++;
-					updateDisplay();
-				}
-			}
-			catch(AddressErrorException e)
-			{
-				// silently ignore these exceptions
-			}
+			if(!(instructions.get(i) instanceof BasicInstruction))
+				continue;
+			BasicInstruction instr = (BasicInstruction) instructions.get(i);
+			long count = counts[instr.getIndex()] - m_countsAtReset[instr.getIndex()];
+			total += count;
+			byCategory[getInstructionCategory(instr.getOpcodeMatch())] += count;
 		}
+
+		if(total == m_totalCounter)
+			return;
+		m_totalCounter = total;
+		m_counters = byCategory;
+		updateDisplay();
 	}
 
 
@@ -333,7 +356,6 @@ public class InstructionStatistics extends AbstractMarsToolAndApplication
 	protected void initializePreGUI()
 	{
 		m_totalCounter = 0;
-		lastAddress = -1; // from Felipe Lessa's instruction counter tool
 		for(int i = 0; i < InstructionStatistics.MAX_CATEGORY; i++)
 			m_counters[i] = 0;
 	}
@@ -346,7 +368,8 @@ public class InstructionStatistics extends AbstractMarsToolAndApplication
 	protected void reset()
 	{
 		m_totalCounter = 0;
-		lastAddress = -1; // from Felipe Lessa's instruction counter tool
+		if(m_countsAtReset != null)
+			m_countsAtReset = ExecutionCounts.getInstance().getCountsByInstruction();
 		for(int i = 0; i < InstructionStatistics.MAX_CATEGORY; i++)
 			m_counters[i] = 0;
 		updateDisplay();
@@ -363,9 +386,10 @@ public class InstructionStatistics extends AbstractMarsToolAndApplication
 
 		for(int i = 0; i < InstructionStatistics.MAX_CATEGORY; i++)
 		{
+			// the counters may not fit an int, so the progress bars show percentages
 			m_tfCounters[i].setText(String.valueOf(m_counters[i]));
-			m_pbCounters[i].setMaximum(m_totalCounter);
-			m_pbCounters[i].setValue(m_counters[i]);
+			m_pbCounters[i].setMaximum(100);
+			m_pbCounters[i].setValue((m_totalCounter == 0) ? 0 : (int)((m_counters[i] * 100) / m_totalCounter));
 		}
 	}
 }
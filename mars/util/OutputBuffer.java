@@ -0,0 +1,197 @@
+package mars.util;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * A large buffer in front of a channel, for output that a MIPS program writes a few
+ * bytes at a time: each print syscall would otherwise go through to the operating
+ * system on its own.  Bytes are collected until the buffer fills or flush() is called,
+ * then written to the channel in one piece.  A FileOutputStream is written through its
+ * own channel; any other stream, e.g. System.out, through a channel wrapping it, which
+ * is flushed after each write so nothing stays behind in the stream.
+ * <p>
+ * Not synchronized: each buffer is written by the simulator thread of one machine.
+ *
+ * @version October 2026
+ */
+
+public class OutputBuffer
+{
+	/** Capacity of a buffer unless another is given, in bytes. */
+	public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+	private final ByteBuffer buffer;
+	private final WritableByteChannel channel;
+	private final OutputStream stream;  // flushed after each write to the channel, or null
+	private final Charset charset;      // of strings written
+
+	/**
+	 * Create a buffer of the default capacity for the given stream.
+	 *
+	 * @param out where the bytes go
+	 */
+	public OutputBuffer(OutputStream out)
+	{
+		this(out, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a buffer of the given capacity for the given stream.
+	 *
+	 * @param out where the bytes go
+	 * @param capacity the number of bytes held before they are written out
+	 */
+	public OutputBuffer(OutputStream out, int capacity)
+	{
+		this(out, capacity, Charset.defaultCharset());
+	}
+
+	/**
+	 * Create a buffer of the given capacity for the given stream, encoding strings in
+	 * the given charset.
+	 *
+	 * @param out where the bytes go
+	 * @param capacity the number of bytes held before they are written out
+	 * @param charset the charset strings are encoded in
+	 */
+	public OutputBuffer(OutputStream out, int capacity, Charset charset)
+	{
+		this.charset = charset;
+		buffer = ByteBuffer.allocate(capacity);
+		if(out instanceof FileOutputStream)
+		{
+			channel = ((FileOutputStream) out).getChannel();
+			stream = null;
+		}
+		else
+		{
+			channel = Channels.newChannel(out);
+			stream = out;
+		}
+	}
+
+	/**
+	 * Add bytes to the buffer, writing it out as often as it fills.
+	 *
+	 * @param bytes array holding the bytes
+	 * @param offset index of the first byte
+	 * @param length number of bytes
+	 * @throws IOException if the buffer cannot be written out
+	 */
+	public void write(byte[] bytes, int offset, int length) throws IOException
+	{
+		while(length > buffer.remaining())
+		{
+			int part = buffer.remaining();
+			buffer.put(bytes, offset, part);
+			offset += part;
+			length -= part;
+			flush();
+		}
+		buffer.put(bytes, offset, length);
+	}
+
+	/**
+	 * Add the characters of a string, encoded in the charset of the buffer: unless
+	 * given, the platform's default charset, as PrintStream.print() does.
+	 *
+	 * @param string the string
+	 * @throws IOException if the buffer cannot be written out
+	 */
+	public void write(String string) throws IOException
+	{
+		int length = string.length();
+		if(length > buffer.remaining())
+		{
+			byte[] bytes = string.getBytes(charset);
+			write(bytes, 0, bytes.length);
+			return;
+		}
+		// The common case: ASCII, which all usual charsets encode as is.
+		int start = buffer.position();
+		for(int i = 0; i < length; i++)
+		{
+			char c = string.charAt(i);
+			if(c >= 0x80)
+			{
+				buffer.position(start);
+				byte[] bytes = string.getBytes(charset);
+				write(bytes, 0, bytes.length);
+				return;
+			}
+			buffer.put((byte) c);
+		}
+	}
+
+	/**
+	 * @return true if no bytes are waiting to be written out
+	 */
+	public boolean isEmpty()
+	{
+		return buffer.position() == 0;
+	}
+
+	/**
+	 * Returns whether the last byte added, if still waiting, is a newline.
+	 *
+	 * @return true if the buffer ends with a newline
+	 */
+	public boolean endsWithNewline()
+	{
+		int position = buffer.position();
+		return position > 0 && buffer.get(position - 1) == '\n';
+	}
+
+	/**
+	 * Write out the bytes waiting in the buffer.
+	 *
+	 * @throws IOException if they cannot be written
+	 */
+	public void flush() throws IOException
+	{
+		if(buffer.position() == 0)
+			return;
+		buffer.flip();
+		try
+		{
+			while(buffer.hasRemaining())
+				channel.write(buffer);
+		}
+		finally
+		{
+			buffer.clear();
+		}
+		if(stream != null)
+			stream.flush();
+	}
+}
@@ -0,0 +1,157 @@
+package mars.util;
+import java.lang.invoke.VarHandle;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * A sequence lock ("seqlock") for state that has a single writer thread and any
+ * number of occasional readers.  The writer brackets each burst of updates with
+ * beginWrite() and endWrite(), which makes the sequence number odd for the duration.
+ * A reader notes the sequence number, copies what it needs, and then checks that the
+ * number is still the same even value; if so, nothing was written while it was copying
+ * and its copy is consistent.  Readers never block the writer.
+ * <p>
+ * Used together with <tt>Globals.memoryAndRegistersLock</tt>: the simulator holds that
+ * lock for a whole batch of instructions and publishes the end of each batch through
+ * this sequence, so that tools and GUI windows can take snapshots of MIPS memory and
+ * registers without waiting for the lock.  A reader that keeps losing the race falls
+ * back to the lock, and asks the writer to yield it at its next batch boundary.
+ *
+ * @version October 2026
+ */
+
+public class SequenceLock
+{
+	// Number of optimistic attempts a reader makes before falling back to the lock.
+	private static final int OPTIMISTIC_ATTEMPTS = 64;
+
+	private volatile int sequence = 0;
+	private volatile int waitingReaders = 0;
+
+	/**
+	 * Writer: mark the start of a burst of updates.
+	 */
+	public void beginWrite()
+	{
+		sequence = sequence + 1;
+		VarHandle.storeStoreFence();
+	}
+
+	/**
+	 * Writer: mark the end of a burst of updates, publishing them to readers.
+	 */
+	public void endWrite()
+	{
+		sequence = sequence + 1;
+	}
+
+	/**
+	 * Writer: true if some reader gave up reading optimistically and is waiting for the
+	 * lock.  The writer should release the lock and yield at its next opportunity.
+	 *
+	 * @return true if a reader is waiting
+	 */
+	public boolean hasWaitingReaders()
+	{
+		return waitingReaders != 0;
+	}
+
+	/**
+	 * Reader: start an optimistic read.
+	 *
+	 * @return stamp to pass to validate(); odd if a write is in progress
+	 */
+	public int readBegin()
+	{
+		return sequence;
+	}
+
+	/**
+	 * Reader: finish an optimistic read.
+	 *
+	 * @param stamp the value returned by readBegin()
+	 * @return true if the values read since readBegin() are consistent
+	 */
+	public boolean validate(int stamp)
+	{
+		VarHandle.acquireFence();
+		return (stamp & 1) == 0 && sequence == stamp;
+	}
+
+	/**
+	 * Run a reader that copies shared state.  The reader is first run optimistically,
+	 * possibly several times, and its result is kept only if validate() succeeds.  If it
+	 * never does, the reader is run once more while holding the given lock.  The reader
+	 * must therefore only read shared state and must tolerate seeing it mid-update
+	 * (e.g. it must not loop on or index by values it reads without bounds checks).
+	 * If the calling thread already holds the lock the reader is simply run.
+	 *
+	 * @param lock the monitor the writer holds while writing
+	 * @param reader code that copies the state it needs
+	 */
+	public void read(Object lock, Runnable reader)
+	{
+		// The writer itself (e.g. an observer called back from the simulator thread)
+		// already sees consistent state.
+		if(Thread.holdsLock(lock))
+		{
+			reader.run();
+			return;
+		}
+		for(int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++)
+		{
+			int stamp = readBegin();
+			if((stamp & 1) == 0)
+			{
+				reader.run();
+				if(validate(stamp))
+					return;
+			}
+			Thread.onSpinWait();
+		}
+		synchronized(this)
+		{
+			waitingReaders++;
+		}
+		try
+		{
+			synchronized(lock)
+			{
+				reader.run();
+			}
+		}
+		finally
+		{
+			synchronized(this)
+			{
+				waitingReaders--;
+			}
+		}
+	}
+}
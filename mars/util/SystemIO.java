@@ -1,6 +1,8 @@
 package mars.util;
 import mars.*;
 import java.io.*;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
 import javax.swing.*;
 import java.util.*;
 
@@ -51,6 +53,13 @@ public class SystemIO
 	/** String used for description of file error */
 	public static String fileErrorString = new String("File operation OK");
 
+	/** Console output policy: write it out when the buffer is full, before input is read and when the run stops. */
+	public static final int FLUSH_WHEN_NEEDED = 0;
+	/** Console output policy: as FLUSH_WHEN_NEEDED, and also after each syscall that writes a newline. */
+	public static final int FLUSH_LINES = 1;
+	/** Console output policy: write it out after each syscall. */
+	public static final int FLUSH_ALWAYS = 2;
+
 	private static final int O_RDONLY = 0x00000000;
 	private static final int O_WRONLY = 0x00000001;
 	private static final int O_RDWR   = 0x00000002;
@@ -66,7 +75,112 @@ public class SystemIO
 
 	// Will use one buffered reader for all keyboard/redirected/piped input.
 	// Added by DPS 28 Feb 2008.  See getInputReader() below.
-	private static BufferedReader inputReader = null;
+	private BufferedReader inputReader = null;
+
+	// Console streams of the machine; null for System.in, System.out and System.err.
+	private InputStream consoleIn = null;
+	private PrintStream consoleOut = null;
+	private PrintStream consoleErr = null;
+	private Charset consoleCharset = null;  // of console text; null for the platform's default
+
+	// Output to STDOUT and STDERR when running from the command line, collected until
+	// written out (see flushOutput()), and the streams they were collected for.  The
+	// policy is -1 until set, for the default, see flushPolicy().
+	private OutputBuffer outBuffer, errBuffer;
+	private PrintStream outBufferStream, errBufferStream;
+	private int flushPolicy = -1;
+
+	// Files opened by the MIPS program.
+	private final FileIOData files = new FileIOData();
+
+	/**
+	 * Create the i/o state (open files and input reader) for a new Machine.  The
+	 * static methods below work on that of the current Machine, see Machine.current().
+	 */
+	public SystemIO()
+	{
+	}
+
+	// The i/o state of the machine being simulated by the calling thread.
+	private static SystemIO current()
+	{
+		return Machine.current().getSystemIO();
+	}
+
+	/**
+	 * Give this machine its own console in place of System.in, System.out and
+	 * System.err, e.g. to feed a program its input from memory and capture its output
+	 * when running many programs at once.  Only applies when running from the command
+	 * line.  Resets the file descriptor table, so do it before the program runs.
+	 *
+	 * @param in  source of keyboard input (STDIN), null for System.in
+	 * @param out destination of console output (STDOUT), null for System.out
+	 * @param err destination of STDERR output, null for System.err
+	 */
+	public void setConsole(InputStream in, PrintStream out, PrintStream err)
+	{
+		setConsole(in, out, err, null);
+	}
+
+	/**
+	 * Give this machine its own console, as above, on which text is read and written
+	 * in the given charset rather than the platform's default.
+	 *
+	 * @param in  source of keyboard input (STDIN), null for System.in
+	 * @param out destination of console output (STDOUT), null for System.out
+	 * @param err destination of STDERR output, null for System.err
+	 * @param charset charset of console input read as text and of strings printed,
+	 *   null for the platform's default
+	 */
+	public void setConsole(InputStream in, PrintStream out, PrintStream err, Charset charset)
+	{
+		consoleIn = in;
+		consoleOut = out;
+		consoleErr = err;
+		consoleCharset = charset;
+		inputReader = null;
+		files.resetFiles();
+	}
+
+	/**
+	 * Set when console output (STDOUT and STDERR) is written out when running from the
+	 * command line, one of FLUSH_WHEN_NEEDED, FLUSH_LINES or FLUSH_ALWAYS.  Unless set,
+	 * it is FLUSH_ALWAYS if <tt>Globals.disableStdoutBuffering</tt>, otherwise FLUSH_LINES
+	 * when MARS runs on an interactive terminal and FLUSH_WHEN_NEEDED when its output is
+	 * redirected or piped.  Files opened by the program are only written out when their
+	 * buffer is full, when they are closed and when the run stops.
+	 *
+	 * @param policy the flush policy
+	 */
+	public void setFlushPolicy(int policy)
+	{
+		flushPolicy = policy;
+	}
+
+	private int flushPolicy()
+	{
+		if(flushPolicy >= 0)
+			return flushPolicy;
+		if(Globals.disableStdoutBuffering)
+			return FLUSH_ALWAYS;
+		return (consoleOut == null && System.console() != null) ? FLUSH_LINES : FLUSH_WHEN_NEEDED;
+	}
+
+	// System.in/out/err are looked up each time since they can be reassigned.
+	private InputStream consoleIn()
+	{
+		return (consoleIn == null) ? System.in : consoleIn;
+	}
+
+	private PrintStream consoleOut()
+	{
+		return (consoleOut == null) ? System.out : consoleOut;
+	}
+
+	private PrintStream consoleErr()
+	{
+		return (consoleErr == null) ? System.err : consoleErr;
+	}
 
 	/**
 	 * Implements syscall to read an integer value.
@@ -176,11 +290,17 @@ public class SystemIO
 	 */
 	public static void printString(String string)
 	{
-		if(Globals.getGui() == null) {
-			System.out.print(string);
-
-			if(Globals.disableStdoutBuffering) {
-				System.out.flush();
+		if(Globals.getGui() == null)
+		{
+			SystemIO current = current();
+			try
+			{
+				current.consoleBuffer(STDOUT).write(string);
+				current.consoleWritten(STDOUT, string.indexOf('\n') >= 0);
+			}
+			catch(IOException e)
+			{
+				// PrintStream did not report these either
 			}
 		}
 		else
@@ -296,31 +416,26 @@ public class SystemIO
 		///////////////////////////////////////////////////////////////////////////////////
 		//// When running in command mode, code below works for either regular file or STDOUT/STDERR
 
-		if(!FileIOData.fdInUse(fd, 1))  // Check the existence of the "write" fd
+		SystemIO current = current();
+		if(!current.files.fdInUse(fd, 1))  // Check the existence of the "write" fd
 		{
 			fileErrorString = new String(
 				"File descriptor " + fd + " is not open for writing");
 			return -1;
 		}
-		// retrieve FileOutputStream from storage
-		OutputStream outputStream = (OutputStream) FileIOData.getStreamInUse(fd);
 		try
 		{
-			// Oct. 9 2005 Ken Vollmar
-			// Observation: made a call to outputStream.write(myBuffer, 0, lengthRequested)
-			//     with myBuffer containing 6(ten) 32-bit-words <---> 24(ten) bytes, where the
-			//     words are MIPS integers with values such that many of the bytes are ZEROES.
-			//     The effect is apparently that the write stops after encountering a zero-valued
-			//     byte. (The method write does not return a value and so this can't be verified
-			//     by the return value.)
-			// Writes up to lengthRequested bytes of data to this output stream from an array of bytes.
-			// outputStream.write(myBuffer, 0, lengthRequested); // write is a void method -- no verification value returned
-
 			// Oct. 9 2005 Ken Vollmar  Force the write statement to write exactly
 			// the number of bytes requested, even though those bytes include many ZERO values.
-			for(int ii = 0; ii < lengthRequested; ii++)
-				outputStream.write(myBuffer[ii]);
-			outputStream.flush();// DPS 7-Jan-2013
+			// The bytes are collected in a buffer, see OutputBuffer, written out when it is
+			// full, when the file is closed, and for STDOUT and STDERR as the flush policy says.
+			if(fd == STDOUT || fd == STDERR)
+			{
+				current.consoleBuffer(fd).write(myBuffer, 0, lengthRequested);
+				current.consoleWritten(fd, containsNewline(myBuffer, lengthRequested));
+			}
+			else
+				current.files.getBuffer(fd).write(myBuffer, 0, lengthRequested);
 		}
 		catch(IOException e)
 		{
@@ -363,14 +478,17 @@ public class SystemIO
 		////////////////////////////////////////////////////////////////////////////////////
 		//// When running in command mode, code below works for either regular file or STDIN
 
-		if(!FileIOData.fdInUse(fd, 0))  // Check the existence of the "read" fd
+		if(!current().files.fdInUse(fd, 0))  // Check the existence of the "read" fd
 		{
 			fileErrorString = new String(
 				"File descriptor " + fd + " is not open for reading");
 			return -1;
 		}
+		// Whatever the program wrote to the console must be seen before it waits for input.
+		if(fd == STDIN)
+			current().flushConsole();
 		// retrieve FileInputStream from storage
-		InputStream InputStream = (InputStream) FileIOData.getStreamInUse(fd);
+		InputStream InputStream = (InputStream) current().files.getStreamInUse(fd);
 		try
 		{
 			// Reads up to lengthRequested bytes of data from this Input stream into an array of bytes.
@@ -419,7 +537,7 @@ public class SystemIO
 		int fdToUse;
 
 		// Check internal plausibility of opening this file
-		fdToUse = FileIOData.nowOpening(filename, flags);
+		fdToUse = current().files.nowOpening(filename, flags);
 		retValue = fdToUse; // return value is the fd
 		if(fdToUse < 0)
 			return -1;
@@ -432,7 +550,7 @@ public class SystemIO
 			{
 				// Set up input stream from disk file
 				inputStream = new FileInputStream(filename);
-				FileIOData.setStreamInUse(fdToUse, inputStream); // Save stream for later use
+				current().files.setStreamInUse(fdToUse, inputStream); // Save stream for later use
 			}
 			catch(FileNotFoundException e)
 			{
@@ -447,7 +565,7 @@ public class SystemIO
 			try
 			{
 				outputStream = new FileOutputStream(filename, ((flags & O_APPEND) != 0));
-				FileIOData.setStreamInUse(fdToUse, outputStream); // Save stream for later use
+				current().files.setStreamInUse(fdToUse, outputStream); // Save stream for later use
 			}
 			catch(FileNotFoundException e)
 			{
@@ -466,7 +584,7 @@ public class SystemIO
 	 */
 	public static void closeFile(int fd)
 	{
-		FileIOData.close(fd);
+		current().files.close(fd);
 	}
 
 	/**
@@ -474,7 +592,45 @@ public class SystemIO
 	 */
 	public static void resetFiles()
 	{
-		FileIOData.resetFiles();
+		current().files.resetFiles();
+	}
+
+	/**
+	 * Write out all output of the program of the current machine still held in buffers:
+	 * that to STDOUT and STDERR, and that to files it has open.  The simulator calls
+	 * this whenever a run stops.
+	 */
+	public static void flushOutput()
+	{
+		SystemIO current = current();
+		current.flushConsole();
+		current.files.flushAll();
+	}
+
+	/**
+	 * Write the files opened by the MIPS program of the current machine to a checkpoint:
+	 * the descriptor, name, flags and position of each.  See mars.simulator.Checkpoint.
+	 *
+	 * @param out destination of the checkpoint
+	 * @throws IOException if it cannot be written
+	 */
+	public static void writeCheckpoint(DataOutputStream out) throws IOException
+	{
+		current().files.writeCheckpoint(out);
+	}
+
+	/**
+	 * Close the files opened by the MIPS program of the current machine and reopen those
+	 * of a checkpoint written by writeCheckpoint(), under the same descriptors and at the
+	 * same positions.  The files must still hold what they held when the checkpoint was
+	 * taken; files open for writing are cut back to their length at that time.
+	 *
+	 * @param in source of the checkpoint
+	 * @throws IOException if it cannot be read or a file cannot be reopened
+	 */
+	public static void readCheckpoint(DataInputStream in) throws IOException
+	{
+		current().files.readCheckpoint(in);
 	}
 
 	/**
@@ -495,9 +651,78 @@ public class SystemIO
 
 	private static BufferedReader getInputReader()
 	{
-		if(inputReader == null)
-			inputReader = new BufferedReader(new InputStreamReader(System.in));
-		return inputReader;
+		SystemIO current = current();
+		// Whatever the program wrote to the console must be seen before it waits for input.
+		current.flushConsole();
+		if(current.inputReader == null)
+			current.inputReader = new BufferedReader((current.consoleCharset == null)
+									? new InputStreamReader(current.consoleIn())
+									: new InputStreamReader(current.consoleIn(), current.consoleCharset));
+		return current.inputReader;
+	}
+
+
+	// The buffer collecting output to STDOUT or STDERR for the stream they go to now.
+	private OutputBuffer consoleBuffer(int fd) throws IOException
+	{
+		if(fd == STDOUT)
+		{
+			if(outBuffer == null || outBufferStream != consoleOut())
+			{
+				flushConsole();
+				outBufferStream = consoleOut();
+				outBuffer = consoleBuffer(outBufferStream);
+			}
+			else if(errBuffer != null && !errBuffer.isEmpty())
+				errBuffer.flush();  // keep the order of output to the two streams
+			return outBuffer;
+		}
+		if(errBuffer == null || errBufferStream != consoleErr())
+		{
+			flushConsole();
+			errBufferStream = consoleErr();
+			errBuffer = consoleBuffer(errBufferStream);
+		}
+		else if(outBuffer != null && !outBuffer.isEmpty())
+			outBuffer.flush();
+		return errBuffer;
+	}
+
+	private OutputBuffer consoleBuffer(PrintStream stream)
+	{
+		return (consoleCharset == null) ? new OutputBuffer(stream)
+			   : new OutputBuffer(stream, OutputBuffer.DEFAULT_CAPACITY, consoleCharset);
+	}
+
+	// Apply the flush policy after a syscall wrote to STDOUT or STDERR.
+	private void consoleWritten(int fd, boolean newline) throws IOException
+	{
+		int policy = flushPolicy();
+		if(policy == FLUSH_ALWAYS || (policy == FLUSH_LINES && newline))
+			((fd == STDOUT) ? outBuffer : errBuffer).flush();
+	}
+
+	private void flushConsole()
+	{
+		try
+		{
+			if(outBuffer != null)
+				outBuffer.flush();
+			if(errBuffer != null)
+				errBuffer.flush();
+		}
+		catch(IOException e)
+		{
+			// PrintStream did not report these either
+		}
+	}
+
+	private static boolean containsNewline(byte[] bytes, int length)
+	{
+		for(int i = 0; i < length && i < bytes.length; i++)
+			if(bytes[i] == '\n')
+				return true;
+		return false;
 	}
 
 
@@ -505,21 +730,22 @@ public class SystemIO
 	// Maintain information on files in use. The index to the arrays is the "file descriptor."
 	// Ken Vollmar, August 2005
 
-	private static class FileIOData
+	private class FileIOData
 	{
-		private static String[] fileNames = new String[ SYSCALL_MAXFILES ]; // The filenames in use. Null if file descriptor i is not in use.
-		private static int[] fileFlags = new int[ SYSCALL_MAXFILES ]; // The flags of this file, 0=READ, 1=WRITE. Invalid if this file descriptor is not in use.
-		private static Object[] streams = new Object[SYSCALL_MAXFILES]; // The streams in use, associated with the filenames
+		private String[] fileNames = new String[ SYSCALL_MAXFILES ]; // The filenames in use. Null if file descriptor i is not in use.
+		private int[] fileFlags = new int[ SYSCALL_MAXFILES ]; // The flags of this file, 0=READ, 1=WRITE. Invalid if this file descriptor is not in use.
+		private Object[] streams = new Object[SYSCALL_MAXFILES]; // The streams in use, associated with the filenames
+		private OutputBuffer[] buffers = new OutputBuffer[SYSCALL_MAXFILES]; // Output waiting to be written to the files open for writing
 
 		// Reset all file information. Closes any open files and resets the arrays
-		private static void resetFiles()
+		private void resetFiles()
 		{
 			for(int i = 0; i < SYSCALL_MAXFILES; i++)
 				close(i);
 			setupStdio();
 		}
 		// DPS 8-Jan-2013
-		private static void setupStdio()
+		private void setupStdio()
 		{
 			fileNames[STDIN]  = "STDIN";
 			fileNames[STDOUT] = "STDOUT";
@@ -527,29 +753,55 @@ public class SystemIO
 			fileFlags[STDIN]  = SystemIO.O_RDONLY;
 			fileFlags[STDOUT] = SystemIO.O_WRONLY;
 			fileFlags[STDERR] = SystemIO.O_WRONLY;
-			streams[STDIN]  = System.in;
-			streams[STDOUT] = System.out;
-			streams[STDERR] = System.err;
-			System.out.flush();
-			System.err.flush();
+			streams[STDIN]  = consoleIn();
+			streams[STDOUT] = consoleOut();
+			streams[STDERR] = consoleErr();
+			flushConsole();
+			consoleOut().flush();
+			consoleErr().flush();
+		}
+
+		// Retrieve the buffer of a file open for writing, other than STDOUT and STDERR
+		private OutputBuffer getBuffer(int fd)
+		{
+			if(buffers[fd] == null)
+				buffers[fd] = new OutputBuffer((OutputStream) streams[fd]);
+			return buffers[fd];
+		}
+
+		// Write out the buffers of all files
+		private void flushAll()
+		{
+			for(int fd = STDERR + 1; fd < SYSCALL_MAXFILES; fd++)
+			{
+				try
+				{
+					if(buffers[fd] != null)
+						buffers[fd].flush();
+				}
+				catch(IOException e)
+				{
+					// reported by the next write or close, if at all
+				}
+			}
 		}
 
 		// Preserve a stream that is in use
-		private static void setStreamInUse(int fd, Object s)
+		private void setStreamInUse(int fd, Object s)
 		{
 			streams[fd] = s;
 
 		}
 
 		// Retrieve a stream for use
-		private static Object getStreamInUse(int fd)
+		private Object getStreamInUse(int fd)
 		{
 			return streams[fd];
 
 		}
 
 		// Determine whether a given filename is already in use.
-		private static boolean filenameInUse(String requestedFilename)
+		private boolean filenameInUse(String requestedFilename)
 		{
 			for(int i = 0; i < SYSCALL_MAXFILES; i++)
 			{
@@ -567,7 +819,7 @@ public class SystemIO
 		}
 
 		// Determine whether a given fd is already in use with the given flag.
-		private static boolean fdInUse(int fd, int flag)
+		private boolean fdInUse(int fd, int flag)
 		{
 			if(fd < 0 || fd >= SYSCALL_MAXFILES)
 				return false;
@@ -587,7 +839,7 @@ public class SystemIO
 
 		// Close the file with file descriptor fd. No errors are recoverable -- if the user's
 		// made an error in the call, it will come back to him.
-		private static void close(int fd)
+		private void close(int fd)
 		{
 			// Can't close STDIN, STDOUT, STDERR, or invalid fd
 			if(fd <= STDERR || fd >= SYSCALL_MAXFILES)
@@ -599,8 +851,19 @@ public class SystemIO
 			{
 				int keepFlag = fileFlags[fd];
 				Object keepStream = streams[fd];
+				OutputBuffer keepBuffer = buffers[fd];
 				fileFlags[fd] = -1;
 				streams[fd] = null;
+				buffers[fd] = null;
+				try
+				{
+					if(keepBuffer != null)
+						keepBuffer.flush();
+				}
+				catch(IOException ioe)
+				{
+					// not concerned with this exception
+				}
 				try
 				{
 					if(keepFlag == O_RDONLY)
@@ -622,7 +885,7 @@ public class SystemIO
 		// Attempt to open a new file with the given flag, using the lowest available file descriptor.
 		// Check that filename is not in use, flag is reasonable, and there is an available file descriptor.
 		// Return: file descriptor in 0...(SYSCALL_MAXFILES-1), or -1 if error
-		private static int nowOpening(String filename, int flag)
+		private int nowOpening(String filename, int flag)
 		{
 			int i = 0;
 			if(filenameInUse(filename))
@@ -661,6 +924,80 @@ public class SystemIO
 
 		}
 
+		// Write the descriptor, name, flags and position of each open file.
+		private void writeCheckpoint(DataOutputStream out) throws IOException
+		{
+			flushAll();
+			int count = 0;
+			for(int fd = STDERR + 1; fd < SYSCALL_MAXFILES; fd++)
+				if(fileNames[fd] != null && streams[fd] != null)
+					count++;
+			out.writeInt(count);
+			for(int fd = STDERR + 1; fd < SYSCALL_MAXFILES; fd++)
+			{
+				if(fileNames[fd] != null && streams[fd] != null)
+				{
+					out.writeInt(fd);
+					out.writeUTF(fileNames[fd]);
+					out.writeInt(fileFlags[fd]);
+					out.writeLong(channel(fd).position());
+				}
+			}
+		}
+
+		// Close all files, then reopen those of a checkpoint under the same descriptors,
+		// each at its position.  Files written are truncated to that position.
+		private void readCheckpoint(DataInputStream in) throws IOException
+		{
+			int count = in.readInt();
+			int[] fds = new int[count];
+			String[] names = new String[count];
+			int[] flags = new int[count];
+			long[] positions = new long[count];
+			for(int n = 0; n < count; n++)
+			{
+				fds[n] = in.readInt();
+				names[n] = in.readUTF();
+				flags[n] = in.readInt();
+				positions[n] = in.readLong();
+				if(fds[n] <= STDERR || fds[n] >= SYSCALL_MAXFILES || positions[n] < 0)
+					throw new IOException("invalid file descriptor " + fds[n]);
+			}
+			resetFiles();
+			for(int n = 0; n < count; n++)
+			{
+				int fd = fds[n];
+				try
+				{
+					if(flags[n] == O_RDONLY)
+					{
+						FileInputStream inputStream = new FileInputStream(names[n]);
+						inputStream.getChannel().position(positions[n]);
+						streams[fd] = inputStream;
+					}
+					else
+					{
+						FileOutputStream outputStream = new FileOutputStream(names[n], true);
+						outputStream.getChannel().truncate(positions[n]);
+						streams[fd] = outputStream;
+					}
+				}
+				catch(IOException e)
+				{
+					resetFiles();
+					throw new IOException("cannot reopen file " + names[n] + ": " + e.getMessage());
+				}
+				fileNames[fd] = names[n];
+				fileFlags[fd] = flags[n];
+			}
+		}
+
+		private FileChannel channel(int fd)
+		{
+			return (fileFlags[fd] == O_RDONLY) ? ((FileInputStream) streams[fd]).getChannel()
+				   : ((FileOutputStream) streams[fd]).getChannel();
+		}
+
 	} // end private class FileIOData
 	////////////////////////////////////////////////////////////////////////////////
 
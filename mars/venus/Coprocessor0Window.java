@@ -145,8 +145,19 @@ public class Coprocessor0Window extends JPanel implements Observer
 	public void updateRegisters(int base)
 	{
 		registers = Coprocessor0.getRegisters();
+		// Copy the values first: this may run while the simulator is running in batches.
+		final int[] values = new int[registers.length];
+		Globals.memoryAndRegistersSequence.read(Globals.memoryAndRegistersLock,
+			new Runnable()
+			{
+				public void run()
+				{
+					for(int i = 0; i < registers.length; i++)
+						values[i] = registers[i].getValue();
+				}
+			});
 		for(int i = 0; i < registers.length; i++)
-			this.updateRegisterValue(registers[i].getNumber(), registers[i].getValue(), base);
+			this.updateRegisterValue(registers[i].getNumber(), values[i], base);
 	}
 
 	/**
@@ -203,19 +203,38 @@ public class Coprocessor1Window extends JPanel implements ActionListener, Observ
 	public void updateRegisters(int base)
 	{
 		registers = Coprocessor1.getRegisters();
+		// Copy the values first: this may run while the simulator is running in batches.
+		final int[] values = new int[registers.length];
+		final int[] flags = new int[1];
+		Globals.memoryAndRegistersSequence.read(Globals.memoryAndRegistersLock,
+			new Runnable()
+			{
+				public void run()
+				{
+					for(int i = 0; i < registers.length; i++)
+						values[i] = registers[i].getValue();
+					flags[0] = Coprocessor1.getConditionFlags();
+				}
+			});
 		for(int i = 0; i < registers.length; i++)
 		{
-			updateFloatRegisterValue(registers[i].getNumber(), registers[i].getValue(), base);
-			if(i % 2 == 0)
-				updateDoubleRegisterValue(i, base);
+			updateFloatRegisterValue(registers[i].getNumber(), values[i], base);
+			if(i % 2 == 0 && i + 1 < registers.length)
+				((RegTableModel)table.getModel()).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatDoubleNumber(
+					Binary.twoIntsToLong(values[i + 1], values[i]), base), i, DOUBLE_COLUMN);
 		}
-		updateConditionFlagDisplay();
+		updateConditionFlagDisplay(flags[0]);
 	}
 
 	private void updateConditionFlagDisplay()
+	{
+		updateConditionFlagDisplay(Coprocessor1.getConditionFlags());
+	}
+
+	private void updateConditionFlagDisplay(int flags)
 	{
 		for(int i = 0; i < conditionFlagCheckBox.length; i++)
-			conditionFlagCheckBox[i].setSelected((Coprocessor1.getConditionFlag(i) == 0) ? false : true);
+			conditionFlagCheckBox[i].setSelected((flags & (1 << i)) != 0);
 	}
 
 	/**
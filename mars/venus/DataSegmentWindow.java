@@ -644,66 +644,94 @@ public class DataSegmentWindow extends JPanel implements Observer
 		int addressBase = Globals.getGui().getMainPane().getExecutePane().getAddressDisplayBase();
 		int address = firstAddr;
 		TableModel dataModel = dataTable.getModel();
+		// Copy the values first: this may run while the simulator is running in batches.
+		final int[] values = readMemoryRange(firstAddr, NUMBER_OF_ROWS * (this.number_of_columns - 1));
 
 		for(int row = 0; row < NUMBER_OF_ROWS; row++)
 		{
 			((DataTableModel)dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatUnsignedInteger(address, addressBase), row, ADDRESS_COLUMN);
 			for(int column = 1; column < this.number_of_columns; column++)
 			{
-				try
-				{
-					String s;
-					if (!wordsDisplay) {
-						int value = Globals.memory.getByte( address );
-						if (valueBase == NumberDisplayBaseChooser.HEXADECIMAL) {
-							// Want to pick the size
-							String bin = Binary.intToBinaryString(value, 8);
-							s = Binary.binaryStringToHexString(bin);
-						} else if (valueBase == NumberDisplayBaseChooser.ASCII) {
-							s = "" + ((value < Globals.ASCII_TABLE.length) ? Globals.ASCII_TABLE[value] : Globals.ASCII_NON_PRINT);
-						} else {
-					 		s = NumberDisplayBaseChooser.formatNumber(value, valueBase);
-						}
+				int value = values[row * (this.number_of_columns - 1) + column - 1];
+				String s;
+				if (!wordsDisplay) {
+					if (valueBase == NumberDisplayBaseChooser.HEXADECIMAL) {
+						// Want to pick the size
+						String bin = Binary.intToBinaryString(value, 8);
+						s = Binary.binaryStringToHexString(bin);
+					} else if (valueBase == NumberDisplayBaseChooser.ASCII) {
+						s = "" + ((value < Globals.ASCII_TABLE.length) ? Globals.ASCII_TABLE[value] : Globals.ASCII_NON_PRINT);
 					} else {
-						s = NumberDisplayBaseChooser.formatNumber(Globals.memory.getWordNoNotify(address), valueBase);
+				 		s = NumberDisplayBaseChooser.formatNumber(value, valueBase);
 					}
+				} else {
+					s = NumberDisplayBaseChooser.formatNumber(value, valueBase);
+				}
+				((DataTableModel)dataModel).setDisplayAndModelValueAt(s, row, column);
+				address += bytes_per_value;
+			}
+		}
+	}
 
-					((DataTableModel)dataModel).setDisplayAndModelValueAt(s, row, column);
+	/*
+	 * Read the given number of bytes or words (as currently displayed) from memory starting
+	 * at the given address, through the sequence lock the simulator publishes its batches
+	 * through.  Values that cannot be read are 0.
+	 */
+	private int[] readMemoryRange(final int firstAddr, final int count)
+	{
+		final int[] values = new int[count];
+		final boolean words = wordsDisplay;
+		final int step = bytes_per_value;
+		Globals.memoryAndRegistersSequence.read(Globals.memoryAndRegistersLock,
+			new Runnable()
+			{
+				public void run()
+				{
+					int address = firstAddr;
+					for(int i = 0; i < count; i++, address += step)
+						values[i] = readMemoryValue(address, words);
 				}
-				catch(AddressErrorException aee)
+			});
+		return values;
+	}
+
+	private static int readMemoryValue(int address, boolean words)
+	{
+		try
+		{
+			return words ? Globals.memory.getWordNoNotify(address) : Globals.memory.getByte(address);
+		}
+		catch(AddressErrorException aee)
+		{
+			// Bit of a hack here.  Memory will throw an exception if you try to read directly from text segment when the
+			// self-modifying code setting is disabled.  This is a good thing if it is the executing MIPS program trying to
+			// read.  But not a good thing if it is the DataSegmentDisplay trying to read.  I'll trick Memory by
+			// temporarily enabling the setting as "non persistent" so it won't write through to the registry.
+			if(Memory.inTextSegment(address))
+			{
+				int displayValue = 0;
+				if(!Globals.getSettings().getBooleanSetting(Settings.SELF_MODIFYING_CODE_ENABLED))
 				{
-					// Bit of a hack here.  Memory will throw an exception if you try to read directly from text segment when the
-					// self-modifying code setting is disabled.  This is a good thing if it is the executing MIPS program trying to
-					// read.  But not a good thing if it is the DataSegmentDisplay trying to read.  I'll trick Memory by
-					// temporarily enabling the setting as "non persistent" so it won't write through to the registry.
-					if(Memory.inTextSegment(address))
+					Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, true);
+					try
 					{
-						int displayValue = 0;
-						if(!Globals.getSettings().getBooleanSetting(Settings.SELF_MODIFYING_CODE_ENABLED))
-						{
-							Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, true);
-							try
-							{
-								displayValue = Globals.memory.getWordNoNotify(address);
-							}
-							catch(AddressErrorException e)
-							{
-								// Still got an exception?  Doesn't seem possible but if we drop through it will write default value 0.
-							}
-							Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, false);
-						}
-						((DataTableModel)dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(displayValue, valueBase), row, column);
+						displayValue = Globals.memory.getWordNoNotify(address);
 					}
-					// Bug Fix: the following line of code disappeared during the release 4.4 mods, but is essential to
-					// display values of 0 for valid MIPS addresses that are outside the MARS simulated address space.  Such
-					// addresses cause an AddressErrorException.  Prior to 4.4, they performed this line of code unconditionally.
-					// With 4.4, I added the above IF statement to work with the text segment but inadvertently removed this line!
-					// Now it becomes the "else" part, executed when not in text segment.  DPS 8-July-2014.
-					else
-						((DataTableModel)dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(0, valueBase), row, column);
+					catch(AddressErrorException e)
+					{
+						// Still got an exception?  Doesn't seem possible but if we drop through it will write default value 0.
+					}
+					Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, false);
 				}
-				address += bytes_per_value;
+				return displayValue;
 			}
+			// Bug Fix: the following line of code disappeared during the release 4.4 mods, but is essential to
+			// display values of 0 for valid MIPS addresses that are outside the MARS simulated address space.  Such
+			// addresses cause an AddressErrorException.  Prior to 4.4, they performed this line of code unconditionally.
+			// With 4.4, I added the above IF statement to work with the text segment but inadvertently removed this line!
+			// Now it becomes the "else" part, executed when not in text segment.  DPS 8-July-2014.
+			return 0;
 		}
 	}
 
@@ -153,11 +153,25 @@ public class RegistersWindow extends JPanel implements Observer
 	public void updateRegisters(int base)
 	{
 		registers = RegisterFile.getRegisters();
+		// Copy the values first: this may run while the simulator is running in batches.
+		final int[] values = new int[registers.length + 3];
+		Globals.memoryAndRegistersSequence.read(Globals.memoryAndRegistersLock,
+			new Runnable()
+			{
+				public void run()
+				{
+					for(int i = 0; i < registers.length; i++)
+						values[i] = registers[i].getValue();
+					values[registers.length] = RegisterFile.getProgramCounter();
+					values[registers.length + 1] = RegisterFile.getValue(33);
+					values[registers.length + 2] = RegisterFile.getValue(34);
+				}
+			});
 		for(int i = 0; i < registers.length; i++)
-			updateRegisterValue(registers[i].getNumber(), registers[i].getValue(), base);
-		updateRegisterUnsignedValue(32, RegisterFile.getProgramCounter(), base);
-		updateRegisterValue(33, RegisterFile.getValue(33), base);
-		updateRegisterValue(34, RegisterFile.getValue(34), base);
+			updateRegisterValue(registers[i].getNumber(), values[i], base);
+		updateRegisterUnsignedValue(32, values[registers.length], base);
+		updateRegisterValue(33, values[registers.length + 1], base);
+		updateRegisterValue(34, values[registers.length + 2], base);
 	}
 
 	/**
@@ -1,5 +1,6 @@
 package mars.venus;
 import mars.*;
+import mars.simulator.*;
 import mars.util.*;
 import mars.mips.hardware.*;
 import java.util.*;
@@ -45,6 +46,7 @@ public class RunAssembleAction extends GuiAction
 	private static ArrayList MIPSprogramsToAssemble;
 	private static boolean extendedAssemblerEnabled;
 	private static boolean warningsAreErrors;
+	private static Memory.Snapshot memorySnapshot;
 	// Threshold for adding filename to printed message of files being assembled.
 	private static final int LINE_LENGTH_LIMIT = 60;
 
@@ -69,6 +71,12 @@ public class RunAssembleAction extends GuiAction
 		return warningsAreErrors;
 	}
 
+	// Used by RunResetAction to restore memory to what it was after assembly.
+	static Memory.Snapshot getMemorySnapshot()
+	{
+		return memorySnapshot;
+	}
+
 	public void actionPerformed(ActionEvent e)
 	{
 		String name = this.getValue(Action.NAME).toString();
@@ -84,6 +92,8 @@ public class RunAssembleAction extends GuiAction
 			try
 			{
 				Globals.program = new MIPSprogram();
+				memorySnapshot = null;
+				TimeTravel.getInstance().stop();
 				ArrayList filesToAssemble;
 				if(Globals.getSettings().getAssembleAllEnabled())   // setting calls for multiple file assembly
 				{
@@ -107,6 +117,7 @@ public class RunAssembleAction extends GuiAction
 									 warningsAreErrors);
 				if(warnings.warningsOccurred())
 					mainUI.messagesPane.postMarsMessage(warnings.generateWarningReport());
+				memorySnapshot = Globals.memory.takeSnapshot();
 				mainUI.messagesPane.postMarsMessage(
 					name + ": operation completed successfully.\n\n");
 				FileStatus.setAssembled(true);
@@ -114,6 +125,8 @@ public class RunAssembleAction extends GuiAction
 				RegisterFile.resetRegisters();
 				Coprocessor1.resetRegisters();
 				Coprocessor0.resetRegisters();
+				if(Globals.getSettings().getBackSteppingEnabled())
+					TimeTravel.getInstance().start();
 				executePane.getTextSegmentWindow().setupTable();
 				executePane.getDataSegmentWindow().setupTable();
 				executePane.getDataSegmentWindow().highlightCellForAddress(Memory.dataBaseAddress);
@@ -1,5 +1,6 @@
 package mars.venus;
 import mars.*;
+import mars.simulator.*;
 import mars.mips.hardware.*;
 import java.awt.*;
 import java.awt.event.*;
@@ -66,14 +67,24 @@ public class RunBackstepAction extends GuiAction
 
 		if(Globals.getSettings().getBackSteppingEnabled())
 		{
-			boolean inDelaySlot = Globals.program.getBackStepper().inDelaySlot(); // Added 25 June 2007
-			Memory.getInstance().addObserver(executePane.getDataSegmentWindow());
-			RegisterFile.addRegistersObserver(executePane.getRegistersWindow());
-			Coprocessor0.addRegistersObserver(executePane.getCoprocessor0Window());
-			Coprocessor1.addRegistersObserver(executePane.getCoprocessor1Window());
-			Globals.program.getBackStepper().backStep();
-			Memory.getInstance().deleteObserver(executePane.getDataSegmentWindow());
-			RegisterFile.deleteRegistersObserver(executePane.getRegistersWindow());
+			boolean inDelaySlot;
+			if(TimeTravel.getInstance().canGoBack())
+			{
+				// Replayed from the last point before the previous instruction, however far back.
+				TimeTravel.getInstance().stepBack(1);
+				inDelaySlot = Simulator.inDelaySlot();
+			}
+			else
+			{
+				inDelaySlot = Globals.program.getBackStepper().inDelaySlot(); // Added 25 June 2007
+				Memory.getInstance().addObserver(executePane.getDataSegmentWindow());
+				RegisterFile.addRegistersObserver(executePane.getRegistersWindow());
+				Coprocessor0.addRegistersObserver(executePane.getCoprocessor0Window());
+				Coprocessor1.addRegistersObserver(executePane.getCoprocessor1Window());
+				Globals.program.getBackStepper().backStep();
+				Memory.getInstance().deleteObserver(executePane.getDataSegmentWindow());
+				RegisterFile.deleteRegistersObserver(executePane.getRegistersWindow());
+			}
 			executePane.getRegistersWindow().updateRegisters();
 			executePane.getCoprocessor1Window().updateRegisters();
 			executePane.getCoprocessor0Window().updateRegisters();
@@ -0,0 +1,79 @@
+package mars.venus;
+import mars.*;
+import mars.simulator.*;
+import java.awt.event.*;
+import javax.swing.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Action for the Run -> Run Backward menu item.  Takes the program back to the last
+ * breakpoint it passed, or to where it started if it passed none.  Only available
+ * while backstepping, see TimeTravel.
+ *
+ * @version October 2026
+ */
+public class RunBackwardAction extends GuiAction
+{
+	public RunBackwardAction(String name, Icon icon, String descrip,
+							 Integer mnemonic, KeyStroke accel, VenusUI gui)
+	{
+		super(name, icon, descrip, mnemonic, accel, gui);
+	}
+
+	public void actionPerformed(ActionEvent e)
+	{
+		String name = this.getValue(Action.NAME).toString();
+		ExecutePane executePane = mainUI.getMainPane().getExecutePane();
+		if(!FileStatus.isAssembled() || !TimeTravel.getInstance().canGoBack())
+			return;
+		mainUI.setStarted(true);
+		mainUI.messagesPane.setSelectedComponent(mainUI.messagesPane.runTab);
+		executePane.getTextSegmentWindow().setCodeHighlighting(true);
+		int[] breakPoints = executePane.getTextSegmentWindow().getSortedBreakPointsArray();
+		if(TimeTravel.getInstance().runBackward(breakPoints))
+		{
+			mainUI.messagesPane.postMarsMessage(
+				name + ": execution paused at breakpoint: " + FileStatus.getFile().getName() + "\n\n");
+		}
+		else
+		{
+			mainUI.messagesPane.postMarsMessage(
+				name + ": no breakpoint reached, back to start: " + FileStatus.getFile().getName() + "\n\n");
+		}
+		mainUI.getMessagesPane().selectMarsMessageTab();
+		executePane.getRegistersWindow().updateRegisters();
+		executePane.getCoprocessor1Window().updateRegisters();
+		executePane.getCoprocessor0Window().updateRegisters();
+		executePane.getDataSegmentWindow().updateValues();
+		executePane.getTextSegmentWindow().highlightStepAtPC(Simulator.inDelaySlot());
+		FileStatus.set(FileStatus.RUNNABLE);
+		mainUI.setReset(false);
+	}
+}
@@ -0,0 +1,138 @@
+package mars.venus;
+import mars.*;
+import java.awt.*;
+import java.awt.event.*;
+import javax.swing.*;
+import javax.swing.border.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+*/
+
+/**
+ * Action class for the Run menu item to define conditional breakpoints and watchpoints,
+ * one per line of a dialog (see Breakpoints.define() for the syntax).  They are kept
+ * by the text segment window, checked when OK is pressed if the program is assembled,
+ * and take effect from the next Go.
+ *
+ * @version October 2026
+ */
+public class RunBreakpointConditionsAction extends GuiAction
+{
+	private static final String HELP =
+		"<html>One per line:&nbsp; <tt>break</tt> <i>address</i> <tt>if</tt> <i>condition</i>"
+		+ "&nbsp; or&nbsp; <tt>watch</tt> <i>address</i> [<i>bytes</i>]<br>"
+		+ "An address is an integer or a label.&nbsp; A condition compares registers, integers and<br>"
+		+ "memory words with == != &lt; &lt;= &gt; &gt;= and combines comparisons with &amp;&amp; and ||,<br>"
+		+ "for example&nbsp; <tt>break loop if $t0 == 10 &amp;&amp; [-4($fp)] &lt; 0</tt>&nbsp; or&nbsp; <tt>watch buffer 64</tt></html>";
+
+	private JDialog conditionsDialog;
+	private JTextArea definitions;
+
+	public RunBreakpointConditionsAction(String name, Icon icon, String descrip,
+										 Integer mnemonic, KeyStroke accel, VenusUI gui)
+	{
+		super(name, icon, descrip, mnemonic, accel, gui);
+	}
+
+	// launch dialog for editing the definitions
+	public void actionPerformed(ActionEvent e)
+	{
+		conditionsDialog = new JDialog(Globals.getGui(), "Breakpoint Conditions and Watchpoints", true);
+		conditionsDialog.setContentPane(buildDialogPanel());
+		conditionsDialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+		conditionsDialog.pack();
+		conditionsDialog.setLocationRelativeTo(Globals.getGui());
+		conditionsDialog.setVisible(true);
+	}
+
+	// The dialog box that appears when menu item is selected.
+	private JPanel buildDialogPanel()
+	{
+		JPanel contents = new JPanel(new BorderLayout(20, 20));
+		contents.setBorder(new EmptyBorder(10, 10, 10, 10));
+		contents.add(new JLabel(HELP), BorderLayout.NORTH);
+		definitions = new JTextArea(getTextSegmentWindow().getBreakpointDefinitions(), 10, 50);
+		definitions.setFont(new Font("Monospaced", Font.PLAIN, 12));
+		contents.add(new JScrollPane(definitions), BorderLayout.CENTER);
+		// Bottom row - the control buttons for OK and Cancel
+		Box controlPanel = Box.createHorizontalBox();
+		JButton okButton = new JButton("OK");
+		okButton.addActionListener(
+			new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e)
+			{
+				if(performOK())
+					conditionsDialog.dispose();
+			}
+		});
+		JButton cancelButton = new JButton("Cancel");
+		cancelButton.addActionListener(
+			new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e)
+			{
+				conditionsDialog.dispose();
+			}
+		});
+		controlPanel.add(Box.createHorizontalGlue());
+		controlPanel.add(okButton);
+		controlPanel.add(Box.createHorizontalGlue());
+		controlPanel.add(cancelButton);
+		controlPanel.add(Box.createHorizontalGlue());
+		contents.add(controlPanel, BorderLayout.SOUTH);
+		return contents;
+	}
+
+	// Keep the definitions if they are valid, or if they cannot be checked yet because
+	// there is no program to look labels up in.  Returns false to keep the dialog open.
+	private boolean performOK()
+	{
+		String text = definitions.getText();
+		if(FileStatus.isAssembled())
+		{
+			try
+			{
+				getTextSegmentWindow().getBreakpoints(text);
+			}
+			catch(IllegalArgumentException iae)
+			{
+				JOptionPane.showMessageDialog(conditionsDialog, iae.getMessage(),
+											  "Invalid breakpoint condition or watchpoint", JOptionPane.ERROR_MESSAGE);
+				return false;
+			}
+		}
+		getTextSegmentWindow().setBreakpointDefinitions(text);
+		return true;
+	}
+
+	private TextSegmentWindow getTextSegmentWindow()
+	{
+		return mainUI.getMainPane().getExecutePane().getTextSegmentWindow();
+	}
+}
@@ -47,6 +47,7 @@ public class RunGoAction extends GuiAction
 	public static int maxSteps = defaultMaxSteps;
 	private String name;
 	private ExecutePane executePane;
+	private Breakpoints breakpoints;  // those of the current run, null if none
 
 	public RunGoAction(String name, Icon icon, String descrip,
 					   Integer mnemonic, KeyStroke accel, VenusUI gui)
@@ -69,6 +70,18 @@ public class RunGoAction extends GuiAction
 			}
 			if(mainUI.getReset() || mainUI.getStarted())
 			{
+				TextSegmentWindow textSegment = executePane.getTextSegmentWindow();
+				try
+				{
+					breakpoints = textSegment.getBreakpoints(textSegment.getBreakpointDefinitions());
+				}
+				catch(IllegalArgumentException iae)
+				{
+					mainUI.messagesPane.postMarsMessage(
+						name + ": invalid breakpoint condition or watchpoint, " + iae.getMessage() + "\n\n");
+					mainUI.getMessagesPane().selectMarsMessageTab();
+					return;
+				}
 
 				mainUI.setStarted(true);  // added 8/27/05
 
@@ -81,8 +94,7 @@ public class RunGoAction extends GuiAction
 				mainUI.setMenuState(FileStatus.RUNNING);
 				try
 				{
-					int[] breakPoints = executePane.getTextSegmentWindow().getSortedBreakPointsArray();
-					boolean done = Globals.program.simulateFromPC(breakPoints, maxSteps, this);
+					boolean done = Globals.program.simulateFromPC(breakpoints, maxSteps, this);
 				}
 				catch(ProcessingException pe)
 				{
@@ -116,7 +128,13 @@ public class RunGoAction extends GuiAction
 			stopped(pe, Simulator.NORMAL_TERMINATION);
 			return;
 		}
-		if(pauseReason == Simulator.BREAKPOINT)
+		if(pauseReason == Simulator.BREAKPOINT && breakpoints != null && breakpoints.isStoppedByWatchpoint())
+		{
+			mainUI.messagesPane.postMarsMessage(
+				name + ": execution paused after write to watched address "
+				+ Binary.intToHexString(breakpoints.getWatchedAddress()) + ": " + FileStatus.getFile().getName() + "\n\n");
+		}
+		else if(pauseReason == Simulator.BREAKPOINT)
 		{
 			mainUI.messagesPane.postMarsMessage(
 				name + ": execution paused at breakpoint: " + FileStatus.getFile().getName() + "\n\n");
@@ -1,5 +1,6 @@
 package mars.venus;
 import mars.*;
+import mars.simulator.*;
 import mars.util.*;
 import mars.mips.hardware.*;
 import java.awt.*;
@@ -60,24 +61,39 @@ public class RunResetAction extends GuiAction
 		// 2. Simply re-assemble the program upon reset, and the assembler will
 		//    build a new data segment.  Reset can only be done after a successful
 		//    assembly, so there is "no" chance of assembler error.
-		// I am choosing the second approach although it will slow down the reset
-		// operation.  The first approach requires additional Memory class methods.
-		try
+		// The first approach is now taken, without the deep copy: the snapshot taken
+		// after assembly shares its blocks with memory, which copies a block only when
+		// the program first writes to it, so a reset puts back just the blocks written.
+		// The second remains as a fallback should there be no snapshot.
+		Memory.Snapshot snapshot = RunAssembleAction.getMemorySnapshot();
+		if(snapshot != null)
 		{
-			Globals.program.assemble(RunAssembleAction.getMIPSprogramsToAssemble(),
-									 RunAssembleAction.getExtendedAssemblerEnabled(),
-									 RunAssembleAction.getWarningsAreErrors());
+			Globals.memory.restoreSnapshot(snapshot);
+			if(Globals.program.getBackStepper() != null)
+				Globals.program.getBackStepper().clear();
+			executePane.getDataSegmentWindow().updateValues();
 		}
-		catch(ProcessingException pe)
+		else
 		{
-			mainUI.getMessagesPane().postMarsMessage(
-				//pe.errors().generateErrorReport());
-				"Unable to reset.  Please close file then re-open and re-assemble.\n");
-			return;
+			try
+			{
+				Globals.program.assemble(RunAssembleAction.getMIPSprogramsToAssemble(),
+										 RunAssembleAction.getExtendedAssemblerEnabled(),
+										 RunAssembleAction.getWarningsAreErrors());
+			}
+			catch(ProcessingException pe)
+			{
+				mainUI.getMessagesPane().postMarsMessage(
+					//pe.errors().generateErrorReport());
+					"Unable to reset.  Please close file then re-open and re-assemble.\n");
+				return;
+			}
 		}
 		RegisterFile.resetRegisters();
 		Coprocessor1.resetRegisters();
 		Coprocessor0.resetRegisters();
+		if(Globals.getSettings().getBackSteppingEnabled())
+			TimeTravel.getInstance().start();
 
 		executePane.getRegistersWindow().clearHighlighting();
 		executePane.getRegistersWindow().updateRegisters();
@@ -67,6 +67,7 @@ public class TextSegmentWindow extends JPanel implements Observer
 	private Font tableCellFont = new Font("Monospaced", Font.PLAIN, 12);
 	private  boolean codeHighlighting;
 	private boolean breakpointsEnabled;  // Added 31 Dec 2009
+	private String breakpointDefinitions = "";  // conditional breakpoints and watchpoints, see Breakpoints.define()
 	private int highlightAddress;
 	private TableModelListener tableModelListener;
 	private boolean inDelaySlot; // Added 25 June 2007
@@ -501,6 +502,58 @@ public class TextSegmentWindow extends JPanel implements Observer
 		return breakpoints;
 	}
 
+	/**
+	 *  Returns the conditional breakpoints and watchpoints set through the Run menu,
+	 *  one definition per line (see Breakpoints.define()).
+	 *  @return the definitions, an empty string if there are none
+	 */
+	public String getBreakpointDefinitions()
+	{
+		return breakpointDefinitions;
+	}
+
+	/**
+	 *  Sets the conditional breakpoints and watchpoints, one definition per line.
+	 *  Use getBreakpoints() to check them.
+	 *  @param definitions the definitions
+	 */
+	public void setBreakpointDefinitions(String definitions)
+	{
+		breakpointDefinitions = definitions;
+	}
+
+	/**
+	 *  Returns the breakpoints of the Bkpt column together with the conditional
+	 *  breakpoints and watchpoints defined, with labels looked up in the symbol tables
+	 *  of the program last assembled.  All are left out while breakpoints are toggled off.
+	 *  @param definitions the definitions of conditional breakpoints and watchpoints
+	 *  @return the breakpoints, or null if there are none
+	 *  @throws IllegalArgumentException if a definition is invalid, with the line number in its message
+	 */
+	public Breakpoints getBreakpoints(String definitions) throws IllegalArgumentException
+	{
+		if(!breakpointsEnabled)
+			return null;
+		Breakpoints breakpoints = new Breakpoints(getSortedBreakPointsArray());
+		breakpoints.addSymbolTable(Globals.symbolTable);
+		ArrayList programs = RunAssembleAction.getMIPSprogramsToAssemble();
+		for(int i = 0; programs != null && i < programs.size(); i++)
+			breakpoints.addSymbolTable(((MIPSprogram) programs.get(i)).getLocalSymbolTable());
+		String[] lines = definitions.split("\n");
+		for(int i = 0; i < lines.length; i++)
+		{
+			try
+			{
+				breakpoints.define(lines[i]);
+			}
+			catch(IllegalArgumentException e)
+			{
+				throw new IllegalArgumentException("line " + (i + 1) + ": " + e.getMessage());
+			}
+		}
+		return breakpoints.isEmpty() ? null : breakpoints;
+	}
+
 	/**
 	 * Clears all breakpoints that have been set since last assemble, and
 	 * updates the display of the breakpoint column.
@@ -1,5 +1,6 @@
 package mars.venus;
 import mars.*;
+import mars.simulator.*;
 import mars.mips.dump.*;
 import javax.swing.*;
 import java.awt.*;
@@ -77,7 +78,7 @@ public class VenusUI extends JFrame
 	private JMenuItem fileNew, fileOpen, fileClose, fileCloseAll, fileSave, fileSaveAs, fileSaveAll, fileDumpMemory, filePrint, fileExit;
 	private OpenRecent fileOpenRecent;
 	private JMenuItem editUndo, editRedo, editCut, editCopy, editPaste, editFindReplace, editSelectAll;
-	private JMenuItem runGo, runStep, runBackstep, runReset, runAssemble, runStop, runPause, runClearBreakpoints, runToggleBreakpoints;
+	private JMenuItem runGo, runStep, runBackstep, runBackward, runReset, runAssemble, runStop, runPause, runClearBreakpoints, runToggleBreakpoints, runBreakpointConditions;
 	private JCheckBoxMenuItem settingsLabel, settingsPopupInput, settingsValueDisplayBase, settingsAddressDisplayBase,
 			settingsExtended, settingsAssembleOnOpen, settingsAssembleAll, settingsClearRunIOOnAssemble,
 			settingsFunctionLocalLabels,
@@ -100,8 +101,8 @@ public class VenusUI extends JFrame
 	EditUndoAction editUndoAction;
 	public EditRedoAction editRedoAction;
 	private Action editCutAction, editCopyAction, editPasteAction, editFindReplaceAction, editSelectAllAction;
-	private Action runAssembleAction, runGoAction, runStepAction, runBackstepAction, runResetAction,
-			runStopAction, runPauseAction, runClearBreakpointsAction, runToggleBreakpointsAction;
+	private Action runAssembleAction, runGoAction, runStepAction, runBackstepAction, runBackwardAction, runResetAction,
+			runStopAction, runPauseAction, runClearBreakpointsAction, runToggleBreakpointsAction, runBreakpointConditionsAction;
 	private Action settingsLabelAction, settingsPopupInputAction, settingsValueDisplayBaseAction, settingsAddressDisplayBaseAction,
 			settingsExtendedAction, settingsAssembleOnOpenAction, settingsAssembleAllAction,
 			settingsClearRunIOOnAssembleAction,
@@ -423,6 +424,11 @@ public class VenusUI extends JFrame
 					"Undo the last step", new Integer(KeyEvent.VK_B),
 					KeyStroke.getKeyStroke(KeyEvent.VK_F8, 0),
 					mainUI);
+			runBackwardAction = new RunBackwardAction("Run Backward",
+					null,
+					"Run backward to the last breakpoint passed, or to the start", new Integer(KeyEvent.VK_W),
+					KeyStroke.getKeyStroke(KeyEvent.VK_F8, InputEvent.SHIFT_MASK),
+					mainUI);
 			runPauseAction = new RunPauseAction("Pause",
 												new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath + "Pause22.png"))),
 												"Pause the currently running program", new Integer(KeyEvent.VK_P),
@@ -450,6 +456,12 @@ public class VenusUI extends JFrame
 					new Integer(KeyEvent.VK_T),
 					KeyStroke.getKeyStroke(KeyEvent.VK_T, Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()),
 					mainUI);
+			runBreakpointConditionsAction = new RunBreakpointConditionsAction("Breakpoint conditions and watchpoints...",
+					null,
+					"Define breakpoints that only pause when a condition holds, and memory to pause after writes to",
+					new Integer(KeyEvent.VK_N),
+					null,
+					mainUI);
 			settingsLabelAction = new SettingsLabelAction("Show Labels Window (symbol table)",
 					null,
 					"Toggle visibility of Labels window (symbol table) in the Execute tab",
@@ -652,6 +664,8 @@ public class VenusUI extends JFrame
 		runStep.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath + "StepForward16.png")))); //"MyStepForward16.gif"))));
 		runBackstep = new JMenuItem(runBackstepAction);
 		runBackstep.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath + "StepBack16.png")))); //"MyStepBack16.gif"))));
+		runBackward = new JMenuItem(runBackwardAction);
+		runBackward.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath + "MyBlank16.gif"))));
 		runReset = new JMenuItem(runResetAction);
 		runReset.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath + "Reset16.png")))); //"MyReset16.gif"))));
 		runStop = new JMenuItem(runStopAction);
@@ -662,17 +676,21 @@ public class VenusUI extends JFrame
 		runClearBreakpoints.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath + "MyBlank16.gif"))));
 		runToggleBreakpoints = new JMenuItem(runToggleBreakpointsAction);
 		runToggleBreakpoints.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath + "MyBlank16.gif"))));
+		runBreakpointConditions = new JMenuItem(runBreakpointConditionsAction);
+		runBreakpointConditions.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath + "MyBlank16.gif"))));
 
 		run.add(runAssemble);
 		run.add(runGo);
 		run.add(runStep);
 		run.add(runBackstep);
+		run.add(runBackward);
 		run.add(runPause);
 		run.add(runStop);
 		run.add(runReset);
 		run.addSeparator();
 		run.add(runClearBreakpoints);
 		run.add(runToggleBreakpoints);
+		run.add(runBreakpointConditions);
 
 		settingsLabel = new JCheckBoxMenuItem(settingsLabelAction);
 		settingsLabel.setSelected(Globals.getSettings().getLabelWindowVisibility());
@@ -919,6 +937,7 @@ public class VenusUI extends JFrame
 		runGoAction.setEnabled(false);
 		runStepAction.setEnabled(false);
 		runBackstepAction.setEnabled(false);
+		runBackwardAction.setEnabled(false);
 		runResetAction.setEnabled(false);
 		runStopAction.setEnabled(false);
 		runPauseAction.setEnabled(false);
@@ -962,6 +981,7 @@ public class VenusUI extends JFrame
 			runGoAction.setEnabled(false);
 			runStepAction.setEnabled(false);
 			runBackstepAction.setEnabled(false);
+			runBackwardAction.setEnabled(false);
 			runResetAction.setEnabled(false);
 			runStopAction.setEnabled(false);
 			runPauseAction.setEnabled(false);
@@ -1002,6 +1022,7 @@ public class VenusUI extends JFrame
 		runGoAction.setEnabled(false);
 		runStepAction.setEnabled(false);
 		runBackstepAction.setEnabled(false);
+		runBackwardAction.setEnabled(false);
 		runResetAction.setEnabled(false);
 		runStopAction.setEnabled(false);
 		runPauseAction.setEnabled(false);
@@ -1040,6 +1061,7 @@ public class VenusUI extends JFrame
 		runGoAction.setEnabled(false);
 		runStepAction.setEnabled(false);
 		runBackstepAction.setEnabled(false);
+		runBackwardAction.setEnabled(false);
 		runResetAction.setEnabled(false);
 		runStopAction.setEnabled(false);
 		runPauseAction.setEnabled(false);
@@ -1079,7 +1101,8 @@ public class VenusUI extends JFrame
 		runStepAction.setEnabled(true);
 		runBackstepAction.setEnabled(
 			(Globals.getSettings().getBackSteppingEnabled() && !Globals.program.getBackStepper().empty())
-			? true : false);
+			|| TimeTravel.getInstance().canGoBack());
+		runBackwardAction.setEnabled(TimeTravel.getInstance().canGoBack());
 		runResetAction.setEnabled(true);
 		runStopAction.setEnabled(false);
 		runPauseAction.setEnabled(false);
@@ -1117,6 +1140,7 @@ public class VenusUI extends JFrame
 		runGoAction.setEnabled(false);
 		runStepAction.setEnabled(false);
 		runBackstepAction.setEnabled(false);
+		runBackwardAction.setEnabled(false);
 		runResetAction.setEnabled(false);
 		runStopAction.setEnabled(true);
 		runPauseAction.setEnabled(true);
@@ -1154,7 +1178,8 @@ public class VenusUI extends JFrame
 		runStepAction.setEnabled(false);
 		runBackstepAction.setEnabled(
 			(Globals.getSettings().getBackSteppingEnabled() && !Globals.program.getBackStepper().empty())
-			? true : false);
+			|| TimeTravel.getInstance().canGoBack());
+		runBackwardAction.setEnabled(TimeTravel.getInstance().canGoBack());
 		runResetAction.setEnabled(true);
 		runStopAction.setEnabled(false);
 		runPauseAction.setEnabled(false);
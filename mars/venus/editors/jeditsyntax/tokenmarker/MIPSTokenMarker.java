@@ -237,7 +237,7 @@ public class MIPSTokenMarker extends TokenMarker
 		ArrayList matches = null;
 		if(token != null && token.id == Token.KEYWORD1)
 		{
-			ArrayList instrMatches =  mars.Globals.instructionSet.matchOperator(tokenText);
+			List instrMatches =  mars.Globals.instructionSet.matchOperator(tokenText);
 			if(instrMatches.size() > 0)
 			{
 				int realMatches = 0;
@@ -425,7 +425,7 @@ public class MIPSTokenMarker extends TokenMarker
 	private ArrayList getTextFromInstructionMatch(String tokenText, boolean exact)
 	{
 		String text = null;
-		ArrayList matches = null;
+		List matches = null;
 		ArrayList results = new ArrayList();
 		if(exact)
 			matches =  mars.Globals.instructionSet.matchOperator(tokenText);